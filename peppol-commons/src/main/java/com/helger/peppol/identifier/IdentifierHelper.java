@@ -40,29 +40,31 @@
  */
 package com.helger.peppol.identifier;
 
-import java.nio.charset.Charset;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.Immutable;
 
 import com.helger.commons.ValueEnforcer;
 import com.helger.commons.annotation.Nonempty;
 import com.helger.commons.annotation.PresentForCodeCoverage;
-import com.helger.commons.charset.CCharset;
-import com.helger.commons.collection.ArrayHelper;
 import com.helger.commons.compare.CompareHelper;
 import com.helger.commons.equals.EqualsHelper;
 import com.helger.commons.exception.InitializationException;
-import com.helger.commons.regex.RegExHelper;
 import com.helger.commons.string.StringHelper;
+import com.helger.peppol.identifier.doctype.DocumentTypeIdentifierPartsParser;
 import com.helger.peppol.identifier.doctype.IPeppolDocumentTypeIdentifierParts;
 import com.helger.peppol.identifier.doctype.OpenPeppolDocumentTypeIdentifierParts;
-import com.helger.peppol.identifier.doctype.PeppolDocumentTypeIdentifierParts;
 import com.helger.peppol.identifier.doctype.SimpleDocumentTypeIdentifier;
 import com.helger.peppol.identifier.participant.IPeppolParticipantIdentifier;
+import com.helger.peppol.identifier.participant.ParticipantIdentifierValueParts;
 import com.helger.peppol.identifier.participant.SimpleParticipantIdentifier;
 import com.helger.peppol.identifier.process.SimpleProcessIdentifier;
 import com.helger.peppol.utils.BusdoxURLHelper;
@@ -78,12 +80,15 @@ public final class IdentifierHelper
   public static final boolean DEFAULT_CHARSET_CHECKS_DISABLED = false;
   public static final boolean DEFAULT_SCHEME_MAX_LENGTH_CHECKS_DISABLED = false;
 
-  // Grab the Charset objects, as they are thread-safe to use. The CharsetEncode
-  // objects are not thread-safe and therefore queried each time
-  private static final Charset CHARSET_ASCII = CCharset.CHARSET_US_ASCII_OBJ;
-  private static final Charset CHARSET_ISO88591 = CCharset.CHARSET_ISO_8859_1_OBJ;
+  /**
+   * The maximum number of document type identifier parts cached by
+   * getDocumentTypeIdentifierParts
+   */
+  public static final int DOCUMENT_TYPE_PARTS_CACHE_MAX_SIZE = 1000;
 
-  private static final String PATTERN_PARTICIPANT_ID = "^([^:]*):(.*)$";
+  // The maximum character value of US ASCII and ISO-8859-1
+  private static final char MAX_CHAR_ASCII = 0x7f;
+  private static final char MAX_CHAR_ISO88591 = 0xff;
 
   private static final String PREFIX_PARTICIPANT_IDENTIFIER_SCHEME = CIdentifier.DEFAULT_PARTICIPANT_IDENTIFIER_SCHEME +
                                                                      CIdentifier.URL_SCHEME_VALUE_SEPARATOR;
@@ -95,6 +100,18 @@ public final class IdentifierHelper
   private static final AtomicBoolean s_aCharsetChecksDisabled = new AtomicBoolean (DEFAULT_CHARSET_CHECKS_DISABLED);
   private static final AtomicBoolean s_aSchemeMaxLengthChecksDisabled = new AtomicBoolean (DEFAULT_SCHEME_MAX_LENGTH_CHECKS_DISABLED);
 
+  // The parts are immutable and can therefore be shared
+  private static final ReadWriteLock s_aRWLock = new ReentrantReadWriteLock ();
+  @GuardedBy ("s_aRWLock")
+  private static final Map <String, IPeppolDocumentTypeIdentifierParts> s_aDocTypePartsCache = new LinkedHashMap <String, IPeppolDocumentTypeIdentifierParts> ()
+  {
+    @Override
+    protected boolean removeEldestEntry (final Map.Entry <String, IPeppolDocumentTypeIdentifierParts> aEldest)
+    {
+      return size () > DOCUMENT_TYPE_PARTS_CACHE_MAX_SIZE;
+    }
+  };
+
   static
   {
     // Check that the default participant scheme is valid
@@ -185,9 +202,11 @@ public final class IdentifierHelper
    */
   public static boolean isValidIdentifierScheme (@Nullable final String sScheme)
   {
-    if (sScheme == null)
-      return false;
-    final int nLength = sScheme.length ();
+    return sScheme != null && _isValidSchemeLength (sScheme.length ());
+  }
+
+  private static boolean _isValidSchemeLength (final int nLength)
+  {
     if (nLength == 0)
       return false;
     if (areSchemeMaxLengthChecksDisabled ())
@@ -213,10 +232,86 @@ public final class IdentifierHelper
    */
   public static boolean isValidParticipantIdentifierScheme (@Nullable final String sScheme)
   {
-    if (!isValidIdentifierScheme (sScheme))
+    return sScheme != null && _isValidParticipantIdentifierScheme (sScheme, 0, sScheme.length ());
+  }
+
+  /**
+   * Check the participant identifier scheme in the passed range of the passed
+   * string. This is the single-pass equivalent of matching
+   * {@link CIdentifier#PARTICIPANT_IDENTIFIER_SCHEME_REGEX} case insensitive.
+   *
+   * @param s
+   *        The string to check. May not be <code>null</code>.
+   * @param nStart
+   *        The start index (inclusive).
+   * @param nEnd
+   *        The end index (exclusive).
+   * @return <code>true</code> if the range is a valid participant identifier
+   *         scheme.
+   */
+  private static boolean _isValidParticipantIdentifierScheme (@Nonnull final String s,
+                                                              final int nStart,
+                                                              final int nEnd)
+  {
+    if (!_isValidSchemeLength (nEnd - nStart))
       return false;
-    return RegExHelper.stringMatchesPattern (CIdentifier.PARTICIPANT_IDENTIFIER_SCHEME_REGEX,
-                                             sScheme.toLowerCase (BusdoxURLHelper.URL_LOCALE));
+
+    // Exactly 3 non-empty alphanumeric parts separated by dashes
+    int nDashes = 0;
+    boolean bPartEmpty = true;
+    for (int i = nStart; i < nEnd; ++i)
+    {
+      final char c = s.charAt (i);
+      if (c == '-')
+      {
+        if (bPartEmpty || ++nDashes > 2)
+          return false;
+        bPartEmpty = true;
+      }
+      else
+      {
+        if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')))
+          return false;
+        bPartEmpty = false;
+      }
+    }
+    return nDashes == 2 && !bPartEmpty;
+  }
+
+  /**
+   * Check the length and the characters of an identifier value in the passed
+   * range of the passed string.
+   *
+   * @param s
+   *        The string to check. May not be <code>null</code>.
+   * @param nStart
+   *        The start index (inclusive).
+   * @param nEnd
+   *        The end index (exclusive).
+   * @param nMaxLength
+   *        The maximum length of the value.
+   * @param cMaxChar
+   *        The maximum character value allowed if charset checks are enabled.
+   * @return <code>true</code> if the range is a valid identifier value.
+   */
+  private static boolean _isValidIdentifierValue (@Nonnull final String s,
+                                                  final int nStart,
+                                                  final int nEnd,
+                                                  final int nMaxLength,
+                                                  final char cMaxChar)
+  {
+    final int nLength = nEnd - nStart;
+    if (nLength == 0 || nLength > nMaxLength)
+      return false;
+
+    if (!areCharsetChecksDisabled ())
+    {
+      // Check if the value can be encoded in the respective charset
+      for (int i = nStart; i < nEnd; ++i)
+        if (s.charAt (i) > cMaxChar)
+          return false;
+    }
+    return true;
   }
 
   /**
@@ -234,12 +329,13 @@ public final class IdentifierHelper
    */
   public static boolean isValidParticipantIdentifierValue (@Nullable final String sValue)
   {
-    final int nLength = StringHelper.getLength (sValue);
-    if (nLength == 0 || nLength > CIdentifier.MAX_PARTICIPANT_IDENTIFIER_VALUE_LENGTH)
-      return false;
-
     // Check if the value is US ASCII encoded
-    return areCharsetChecksDisabled () || CHARSET_ASCII.newEncoder ().canEncode (sValue);
+    return sValue != null &&
+           _isValidIdentifierValue (sValue,
+                                    0,
+                                    sValue.length (),
+                                    CIdentifier.MAX_PARTICIPANT_IDENTIFIER_VALUE_LENGTH,
+                                    MAX_CHAR_ASCII);
   }
 
   /**
@@ -256,12 +352,13 @@ public final class IdentifierHelper
    */
   public static boolean isValidDocumentTypeIdentifierValue (@Nullable final String sValue)
   {
-    final int nLength = StringHelper.getLength (sValue);
-    if (nLength == 0 || nLength > CIdentifier.MAX_DOCUMENT_TYPE_IDENTIFIER_VALUE_LENGTH)
-      return false;
-
     // Check if the value is ISO-8859-1 encoded
-    return areCharsetChecksDisabled () || CHARSET_ISO88591.newEncoder ().canEncode (sValue);
+    return sValue != null &&
+           _isValidIdentifierValue (sValue,
+                                    0,
+                                    sValue.length (),
+                                    CIdentifier.MAX_DOCUMENT_TYPE_IDENTIFIER_VALUE_LENGTH,
+                                    MAX_CHAR_ISO88591);
   }
 
   /**
@@ -278,12 +375,13 @@ public final class IdentifierHelper
    */
   public static boolean isValidProcessIdentifierValue (@Nullable final String sValue)
   {
-    final int nLength = StringHelper.getLength (sValue);
-    if (nLength == 0 || nLength > CIdentifier.MAX_PROCESS_IDENTIFIER_VALUE_LENGTH)
-      return false;
-
     // Check if the value is ISO-8859-1 encoded
-    return areCharsetChecksDisabled () || CHARSET_ISO88591.newEncoder ().canEncode (sValue);
+    return sValue != null &&
+           _isValidIdentifierValue (sValue,
+                                    0,
+                                    sValue.length (),
+                                    CIdentifier.MAX_PROCESS_IDENTIFIER_VALUE_LENGTH,
+                                    MAX_CHAR_ISO88591);
   }
 
   /**
@@ -690,12 +788,20 @@ public final class IdentifierHelper
   {
     ValueEnforcer.notNull (sURIPart, "URIPart");
 
-    // This is quicker than splitting with RegEx!
-    final List <String> aSplitted = StringHelper.getExploded (CIdentifier.URL_SCHEME_VALUE_SEPARATOR, sURIPart, 2);
-    if (aSplitted.size () != 2)
+    // Validate in place and only create the strings for valid identifiers
+    final int nSepIndex = sURIPart.indexOf (CIdentifier.URL_SCHEME_VALUE_SEPARATOR);
+    if (nSepIndex < 0)
+      return null;
+    final int nValueStart = nSepIndex + CIdentifier.URL_SCHEME_VALUE_SEPARATOR.length ();
+    if (!_isValidSchemeLength (nSepIndex) ||
+        !_isValidIdentifierValue (sURIPart,
+                                  nValueStart,
+                                  sURIPart.length (),
+                                  CIdentifier.MAX_DOCUMENT_TYPE_IDENTIFIER_VALUE_LENGTH,
+                                  MAX_CHAR_ISO88591))
       return null;
 
-    return createDocumentTypeIdentifierOrNull (aSplitted.get (0), aSplitted.get (1));
+    return new SimpleDocumentTypeIdentifier (sURIPart.substring (0, nSepIndex), sURIPart.substring (nValueStart));
   }
 
   /**
@@ -765,12 +871,20 @@ public final class IdentifierHelper
   {
     ValueEnforcer.notNull (sURIPart, "URIPart");
 
-    // This is quicker than splitting with RegEx!
-    final List <String> aSplitted = StringHelper.getExploded (CIdentifier.URL_SCHEME_VALUE_SEPARATOR, sURIPart, 2);
-    if (aSplitted.size () != 2)
+    // Validate in place and only create the strings for valid identifiers
+    final int nSepIndex = sURIPart.indexOf (CIdentifier.URL_SCHEME_VALUE_SEPARATOR);
+    if (nSepIndex < 0)
+      return null;
+    final int nValueStart = nSepIndex + CIdentifier.URL_SCHEME_VALUE_SEPARATOR.length ();
+    if (!_isValidParticipantIdentifierScheme (sURIPart, 0, nSepIndex) ||
+        !_isValidIdentifierValue (sURIPart,
+                                  nValueStart,
+                                  sURIPart.length (),
+                                  CIdentifier.MAX_PARTICIPANT_IDENTIFIER_VALUE_LENGTH,
+                                  MAX_CHAR_ASCII))
       return null;
 
-    return createParticipantIdentifierOrNull (aSplitted.get (0), aSplitted.get (1));
+    return new SimpleParticipantIdentifier (sURIPart.substring (0, nSepIndex), sURIPart.substring (nValueStart));
   }
 
   /**
@@ -840,12 +954,20 @@ public final class IdentifierHelper
   {
     ValueEnforcer.notNull (sURIPart, "URIPart");
 
-    // This is quicker than splitting with RegEx!
-    final List <String> aSplitted = StringHelper.getExploded (CIdentifier.URL_SCHEME_VALUE_SEPARATOR, sURIPart, 2);
-    if (aSplitted.size () != 2)
+    // Validate in place and only create the strings for valid identifiers
+    final int nSepIndex = sURIPart.indexOf (CIdentifier.URL_SCHEME_VALUE_SEPARATOR);
+    if (nSepIndex < 0)
+      return null;
+    final int nValueStart = nSepIndex + CIdentifier.URL_SCHEME_VALUE_SEPARATOR.length ();
+    if (!_isValidSchemeLength (nSepIndex) ||
+        !_isValidIdentifierValue (sURIPart,
+                                  nValueStart,
+                                  sURIPart.length (),
+                                  CIdentifier.MAX_PROCESS_IDENTIFIER_VALUE_LENGTH,
+                                  MAX_CHAR_ISO88591))
       return null;
 
-    return createProcessIdentifierOrNull (aSplitted.get (0), aSplitted.get (1));
+    return new SimpleProcessIdentifier (sURIPart.substring (0, nSepIndex), sURIPart.substring (nValueStart));
   }
 
   /**
@@ -873,6 +995,29 @@ public final class IdentifierHelper
     return ret;
   }
 
+  /**
+   * Split the value of the passed participant identifier into the issuing
+   * agency ID and the local participant ID in a single pass. Use this method
+   * if both parts are needed.<br>
+   * Note: this only works for participant identifiers that are using the
+   * default scheme (iso6523-actorid-upis) because for the other schemes, I just
+   * can't tell!
+   *
+   * @param aIdentifier
+   *        The participant identifier to split. May not be <code>null</code>.
+   * @return <code>null</code> if the identifier is not of default scheme or if
+   *         the identifier is malformed.
+   */
+  @Nullable
+  public static ParticipantIdentifierValueParts getParticipantIdentifierValueParts (@Nonnull final IPeppolParticipantIdentifier aIdentifier)
+  {
+    ValueEnforcer.notNull (aIdentifier, "Identifier");
+
+    if (!hasDefaultParticipantIdentifierScheme (aIdentifier))
+      return null;
+    return ParticipantIdentifierValueParts.parseOrNull (aIdentifier.getValue ());
+  }
+
   /**
    * Extract the issuing agency ID from the passed participant identifier value.
    * <br>
@@ -893,11 +1038,8 @@ public final class IdentifierHelper
   {
     ValueEnforcer.notNull (aIdentifier, "Identifier");
 
-    if (!hasDefaultParticipantIdentifierScheme (aIdentifier))
-      return null;
-    return ArrayHelper.getSafeElement (RegExHelper.getAllMatchingGroupValues (PATTERN_PARTICIPANT_ID,
-                                                                              aIdentifier.getValue ()),
-                                       0);
+    final ParticipantIdentifierValueParts aParts = getParticipantIdentifierValueParts (aIdentifier);
+    return aParts == null ? null : aParts.getIssuingAgencyID ();
   }
 
   /**
@@ -920,11 +1062,59 @@ public final class IdentifierHelper
   {
     ValueEnforcer.notNull (aIdentifier, "Identifier");
 
-    if (!hasDefaultParticipantIdentifierScheme (aIdentifier))
+    final ParticipantIdentifierValueParts aParts = getParticipantIdentifierValueParts (aIdentifier);
+    return aParts == null ? null : aParts.getLocalParticipantID ();
+  }
+
+  /**
+   * Convert the passed document type identifier into its parts without
+   * throwing an exception. First the old PEPPOL scheme for identifiers is
+   * tried, and afterwards the OpenPEPPOL scheme for document type identifiers
+   * is used. Successfully parsed parts are cached by the identifier value.
+   *
+   * @param aIdentifier
+   *        The document type identifier to be split. May not be
+   *        <code>null</code>.
+   * @return <code>null</code> if the passed document type identifier is
+   *         neither a PEPPOL nor an OpenPEPPOL document type identifier.
+   * @see DocumentTypeIdentifierPartsParser
+   */
+  @Nullable
+  public static IPeppolDocumentTypeIdentifierParts getDocumentTypeIdentifierPartsOrNull (@Nonnull final IDocumentTypeIdentifier aIdentifier)
+  {
+    ValueEnforcer.notNull (aIdentifier, "Identifier");
+
+    final String sValue = aIdentifier.getValue ();
+    if (sValue == null)
       return null;
-    return ArrayHelper.getSafeElement (RegExHelper.getAllMatchingGroupValues (PATTERN_PARTICIPANT_ID,
-                                                                              aIdentifier.getValue ()),
-                                       1);
+
+    s_aRWLock.readLock ().lock ();
+    try
+    {
+      final IPeppolDocumentTypeIdentifierParts ret = s_aDocTypePartsCache.get (sValue);
+      if (ret != null)
+        return ret;
+    }
+    finally
+    {
+      s_aRWLock.readLock ().unlock ();
+    }
+
+    // Parse outside of the lock
+    final IPeppolDocumentTypeIdentifierParts ret = DocumentTypeIdentifierPartsParser.parseOrNull (sValue);
+    if (ret != null)
+    {
+      s_aRWLock.writeLock ().lock ();
+      try
+      {
+        s_aDocTypePartsCache.put (sValue, ret);
+      }
+      finally
+      {
+        s_aRWLock.writeLock ().unlock ();
+      }
+    }
+    return ret;
   }
 
   /**
@@ -939,20 +1129,50 @@ public final class IdentifierHelper
    * @throws IllegalArgumentException
    *         If the passed document type identifier is neither a PEPPOL nor an
    *         OpenPEPPOL document type identifier.
+   * @see #getDocumentTypeIdentifierPartsOrNull(IDocumentTypeIdentifier)
    */
   @Nonnull
   public static IPeppolDocumentTypeIdentifierParts getDocumentTypeIdentifierParts (@Nonnull final IDocumentTypeIdentifier aIdentifier)
   {
-    ValueEnforcer.notNull (aIdentifier, "Identifier");
+    final IPeppolDocumentTypeIdentifierParts ret = getDocumentTypeIdentifierPartsOrNull (aIdentifier);
+    if (ret != null)
+      return ret;
+
+    // Neither PEPPOL nor OpenPEPPOL - throws an exception with the details
+    return OpenPeppolDocumentTypeIdentifierParts.extractFromString (aIdentifier.getValue ());
+  }
+
+  /**
+   * @return The number of cached document type identifier parts. Always &ge;
+   *         0.
+   */
+  @Nonnegative
+  public static int getDocumentTypeIdentifierPartsCacheSize ()
+  {
+    s_aRWLock.readLock ().lock ();
+    try
+    {
+      return s_aDocTypePartsCache.size ();
+    }
+    finally
+    {
+      s_aRWLock.readLock ().unlock ();
+    }
+  }
 
+  /**
+   * Remove all cached document type identifier parts.
+   */
+  public static void clearDocumentTypeIdentifierPartsCache ()
+  {
+    s_aRWLock.writeLock ().lock ();
     try
     {
-      return PeppolDocumentTypeIdentifierParts.extractFromString (aIdentifier.getValue ());
+      s_aDocTypePartsCache.clear ();
     }
-    catch (final IllegalArgumentException ex)
+    finally
     {
-      // Not PEPPOL - try OpenPEPPOL
-      return OpenPeppolDocumentTypeIdentifierParts.extractFromString (aIdentifier.getValue ());
+      s_aRWLock.writeLock ().unlock ();
     }
   }
 }
@@ -0,0 +1,361 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.identifier;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.string.ToStringGenerator;
+import com.helger.peppol.identifier.doctype.PooledDocumentTypeIdentifier;
+import com.helger.peppol.identifier.participant.PooledParticipantIdentifier;
+import com.helger.peppol.identifier.process.PooledProcessIdentifier;
+import com.helger.peppol.utils.BusdoxURLHelper;
+
+/**
+ * A pool that canonicalizes participant, document type and process identifiers
+ * so that each distinct identifier is created only once. The returned objects
+ * are immutable and have all derived values (hash code, encodings, parts etc.)
+ * precalculated. Looking up an identifier that is already contained in the
+ * pool does not create any objects.<br>
+ * Participant identifiers are pooled case insensitive, so the first casing
+ * that was added is returned for all other casings. Document type and process
+ * identifiers are pooled case sensitive.<br>
+ * The pool is limited to a maximum number of identifiers. If the limit is
+ * reached, new identifiers are still created but no longer added to the pool.
+ *
+ * @author Philip Helger
+ */
+@ThreadSafe
+public class IdentifierPool
+{
+  /** The default maximum number of identifiers in a pool */
+  public static final int DEFAULT_MAX_SIZE = 100000;
+
+  private final int m_nMaxSize;
+  private final AtomicInteger m_aSize = new AtomicInteger (0);
+  // Map from scheme to map from value to identifier
+  private final ConcurrentMap <String, ConcurrentMap <String, PooledParticipantIdentifier>> m_aParticipantIDs = new ConcurrentHashMap <String, ConcurrentMap <String, PooledParticipantIdentifier>> ();
+  private final ConcurrentMap <String, ConcurrentMap <String, PooledDocumentTypeIdentifier>> m_aDocTypeIDs = new ConcurrentHashMap <String, ConcurrentMap <String, PooledDocumentTypeIdentifier>> ();
+  private final ConcurrentMap <String, ConcurrentMap <String, PooledProcessIdentifier>> m_aProcessIDs = new ConcurrentHashMap <String, ConcurrentMap <String, PooledProcessIdentifier>> ();
+
+  /**
+   * Constructor using {@link #DEFAULT_MAX_SIZE} as the maximum size.
+   */
+  public IdentifierPool ()
+  {
+    this (DEFAULT_MAX_SIZE);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param nMaxSize
+   *        The maximum number of identifiers in this pool. Must be &gt; 0.
+   */
+  public IdentifierPool (@Nonnegative final int nMaxSize)
+  {
+    ValueEnforcer.isGT0 (nMaxSize, "MaxSize");
+    m_nMaxSize = nMaxSize;
+  }
+
+  /**
+   * @return The maximum number of identifiers in this pool. Always &gt; 0.
+   */
+  @Nonnegative
+  public final int getMaxSize ()
+  {
+    return m_nMaxSize;
+  }
+
+  /**
+   * @return The number of identifiers currently contained in this pool.
+   */
+  @Nonnegative
+  public final int getSize ()
+  {
+    return m_aSize.get ();
+  }
+
+  /**
+   * @return The number of distinct schemes of all identifiers contained in
+   *         this pool. Only used for testing.
+   */
+  @Nonnegative
+  final int getSchemeCount ()
+  {
+    return m_aParticipantIDs.size () + m_aDocTypeIDs.size () + m_aProcessIDs.size ();
+  }
+
+  /**
+   * Remove all identifiers from this pool.
+   */
+  public void clear ()
+  {
+    m_aParticipantIDs.clear ();
+    m_aDocTypeIDs.clear ();
+    m_aProcessIDs.clear ();
+    m_aSize.set (0);
+  }
+
+  @Nullable
+  private static <T> T _get (@Nonnull final ConcurrentMap <String, ConcurrentMap <String, T>> aMap,
+                             @Nonnull final String sSchemeKey,
+                             @Nonnull final String sValueKey)
+  {
+    // Don't create the value map here, because the identifier may be invalid
+    final ConcurrentMap <String, T> aValueMap = aMap.get (sSchemeKey);
+    return aValueMap == null ? null : aValueMap.get (sValueKey);
+  }
+
+  @Nonnull
+  private static <T> ConcurrentMap <String, T> _getValueMap (@Nonnull final ConcurrentMap <String, ConcurrentMap <String, T>> aMap,
+                                                            @Nonnull final String sSchemeKey)
+  {
+    ConcurrentMap <String, T> ret = aMap.get (sSchemeKey);
+    if (ret == null)
+    {
+      final ConcurrentMap <String, T> aNewMap = new ConcurrentHashMap <String, T> ();
+      ret = aMap.putIfAbsent (sSchemeKey, aNewMap);
+      if (ret == null)
+        ret = aNewMap;
+    }
+    return ret;
+  }
+
+  /**
+   * Add a new identifier. Must only be called with valid identifiers, so that
+   * value maps are only created for schemes with at least one pooled
+   * identifier.
+   */
+  @Nonnull
+  private <T> T _add (@Nonnull final ConcurrentMap <String, ConcurrentMap <String, T>> aMap,
+                      @Nonnull final String sSchemeKey,
+                      @Nonnull final String sValueKey,
+                      @Nonnull final T aNewID)
+  {
+    // Reserve the space first, so that concurrent adds cannot exceed the
+    // maximum size
+    if (m_aSize.incrementAndGet () > m_nMaxSize)
+    {
+      // Pool is full - don't pool
+      m_aSize.decrementAndGet ();
+      return aNewID;
+    }
+    final T aOldID = _getValueMap (aMap, sSchemeKey).putIfAbsent (sValueKey, aNewID);
+    if (aOldID != null)
+    {
+      // Another thread was faster
+      m_aSize.decrementAndGet ();
+      return aOldID;
+    }
+    return aNewID;
+  }
+
+  /**
+   * Get the pooled participant identifier with the passed scheme and value.
+   *
+   * @param sScheme
+   *        The identifier scheme. May not be <code>null</code>.
+   * @param sValue
+   *        The identifier value. May not be <code>null</code>.
+   * @return The pooled identifier. Never <code>null</code>.
+   * @throws IllegalArgumentException
+   *         If the scheme or the value are invalid
+   */
+  @Nonnull
+  public PooledParticipantIdentifier getParticipantIdentifier (@Nonnull final String sScheme,
+                                                               @Nonnull final String sValue)
+  {
+    ValueEnforcer.notNull (sScheme, "Scheme");
+    ValueEnforcer.notNull (sValue, "Value");
+
+    // toLowerCase returns the same object if it is already lower case
+    final String sSchemeKey = sScheme.toLowerCase (BusdoxURLHelper.URL_LOCALE);
+    final String sValueKey = sValue.toLowerCase (BusdoxURLHelper.URL_LOCALE);
+    final PooledParticipantIdentifier ret = _get (m_aParticipantIDs, sSchemeKey, sValueKey);
+    if (ret != null)
+      return ret;
+    // Throws an exception if the identifier is invalid
+    final PooledParticipantIdentifier aNewID = new PooledParticipantIdentifier (sScheme, sValue);
+    return _add (m_aParticipantIDs, sSchemeKey, sValueKey, aNewID);
+  }
+
+  /**
+   * Get the pooled version of the passed participant identifier.
+   *
+   * @param aIdentifier
+   *        The identifier to be pooled. May be <code>null</code>.
+   * @return <code>null</code> if the passed identifier is <code>null</code>.
+   * @throws IllegalArgumentException
+   *         If the scheme or the value are invalid
+   */
+  @Nullable
+  public PooledParticipantIdentifier getParticipantIdentifier (@Nullable final IParticipantIdentifier aIdentifier)
+  {
+    if (aIdentifier == null)
+      return null;
+    if (!(aIdentifier instanceof PooledParticipantIdentifier))
+      return getParticipantIdentifier (aIdentifier.getScheme (), aIdentifier.getValue ());
+
+    // Already a pooled object - no need to create a new one
+    final PooledParticipantIdentifier aPooledID = (PooledParticipantIdentifier) aIdentifier;
+    final PooledParticipantIdentifier ret = _get (m_aParticipantIDs,
+                                                  aPooledID.getLowerCaseScheme (),
+                                                  aPooledID.getLowerCaseValue ());
+    if (ret != null)
+      return ret;
+    return _add (m_aParticipantIDs, aPooledID.getLowerCaseScheme (), aPooledID.getLowerCaseValue (), aPooledID);
+  }
+
+  /**
+   * Get the pooled document type identifier with the passed scheme and value.
+   *
+   * @param sScheme
+   *        The identifier scheme. May not be <code>null</code>.
+   * @param sValue
+   *        The identifier value. May not be <code>null</code>.
+   * @return The pooled identifier. Never <code>null</code>.
+   * @throws IllegalArgumentException
+   *         If the scheme or the value are invalid
+   */
+  @Nonnull
+  public PooledDocumentTypeIdentifier getDocumentTypeIdentifier (@Nonnull final String sScheme,
+                                                                 @Nonnull final String sValue)
+  {
+    ValueEnforcer.notNull (sScheme, "Scheme");
+    ValueEnforcer.notNull (sValue, "Value");
+
+    final PooledDocumentTypeIdentifier ret = _get (m_aDocTypeIDs, sScheme, sValue);
+    if (ret != null)
+      return ret;
+    // Throws an exception if the identifier is invalid
+    final PooledDocumentTypeIdentifier aNewID = new PooledDocumentTypeIdentifier (sScheme, sValue);
+    return _add (m_aDocTypeIDs, sScheme, sValue, aNewID);
+  }
+
+  /**
+   * Get the pooled version of the passed document type identifier.
+   *
+   * @param aIdentifier
+   *        The identifier to be pooled. May be <code>null</code>.
+   * @return <code>null</code> if the passed identifier is <code>null</code>.
+   * @throws IllegalArgumentException
+   *         If the scheme or the value are invalid
+   */
+  @Nullable
+  public PooledDocumentTypeIdentifier getDocumentTypeIdentifier (@Nullable final IDocumentTypeIdentifier aIdentifier)
+  {
+    if (aIdentifier == null)
+      return null;
+    if (!(aIdentifier instanceof PooledDocumentTypeIdentifier))
+      return getDocumentTypeIdentifier (aIdentifier.getScheme (), aIdentifier.getValue ());
+
+    // Already a pooled object - no need to create a new one
+    final PooledDocumentTypeIdentifier aPooledID = (PooledDocumentTypeIdentifier) aIdentifier;
+    final PooledDocumentTypeIdentifier ret = _get (m_aDocTypeIDs, aPooledID.getScheme (), aPooledID.getValue ());
+    if (ret != null)
+      return ret;
+    return _add (m_aDocTypeIDs, aPooledID.getScheme (), aPooledID.getValue (), aPooledID);
+  }
+
+  /**
+   * Get the pooled process identifier with the passed scheme and value.
+   *
+   * @param sScheme
+   *        The identifier scheme. May not be <code>null</code>.
+   * @param sValue
+   *        The identifier value. May not be <code>null</code>.
+   * @return The pooled identifier. Never <code>null</code>.
+   * @throws IllegalArgumentException
+   *         If the scheme or the value are invalid
+   */
+  @Nonnull
+  public PooledProcessIdentifier getProcessIdentifier (@Nonnull final String sScheme, @Nonnull final String sValue)
+  {
+    ValueEnforcer.notNull (sScheme, "Scheme");
+    ValueEnforcer.notNull (sValue, "Value");
+
+    final PooledProcessIdentifier ret = _get (m_aProcessIDs, sScheme, sValue);
+    if (ret != null)
+      return ret;
+    // Throws an exception if the identifier is invalid
+    final PooledProcessIdentifier aNewID = new PooledProcessIdentifier (sScheme, sValue);
+    return _add (m_aProcessIDs, sScheme, sValue, aNewID);
+  }
+
+  /**
+   * Get the pooled version of the passed process identifier.
+   *
+   * @param aIdentifier
+   *        The identifier to be pooled. May be <code>null</code>.
+   * @return <code>null</code> if the passed identifier is <code>null</code>.
+   * @throws IllegalArgumentException
+   *         If the scheme or the value are invalid
+   */
+  @Nullable
+  public PooledProcessIdentifier getProcessIdentifier (@Nullable final IProcessIdentifier aIdentifier)
+  {
+    if (aIdentifier == null)
+      return null;
+    if (!(aIdentifier instanceof PooledProcessIdentifier))
+      return getProcessIdentifier (aIdentifier.getScheme (), aIdentifier.getValue ());
+
+    // Already a pooled object - no need to create a new one
+    final PooledProcessIdentifier aPooledID = (PooledProcessIdentifier) aIdentifier;
+    final PooledProcessIdentifier ret = _get (m_aProcessIDs, aPooledID.getScheme (), aPooledID.getValue ());
+    if (ret != null)
+      return ret;
+    return _add (m_aProcessIDs, aPooledID.getScheme (), aPooledID.getValue (), aPooledID);
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("MaxSize", m_nMaxSize).append ("Size", m_aSize.get ()).toString ();
+  }
+}
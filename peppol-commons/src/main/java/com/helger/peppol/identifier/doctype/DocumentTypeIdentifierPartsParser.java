@@ -0,0 +1,180 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.identifier.doctype;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import com.helger.commons.annotation.PresentForCodeCoverage;
+import com.helger.peppol.identifier.BusdoxDocumentTypeIdentifierParts;
+import com.helger.peppol.identifier.IBusdoxDocumentTypeIdentifierParts;
+
+/**
+ * A parser for document type identifier values that detects the PEPPOL and
+ * the OpenPEPPOL syntax in a single scan of the value. In contrast to
+ * {@link PeppolDocumentTypeIdentifierParts#extractFromString(String)} and
+ * {@link OpenPeppolDocumentTypeIdentifierParts#extractFromString(String)} no
+ * exception is thrown if the value does not match.<br>
+ * The results are identical to first trying the PEPPOL syntax and afterwards
+ * the OpenPEPPOL syntax.
+ *
+ * @author Philip Helger
+ */
+@Immutable
+public final class DocumentTypeIdentifierPartsParser
+{
+  @SuppressWarnings ("unused")
+  @PresentForCodeCoverage
+  private static final DocumentTypeIdentifierPartsParser s_aInstance = new DocumentTypeIdentifierPartsParser ();
+
+  private DocumentTypeIdentifierPartsParser ()
+  {}
+
+  /**
+   * Split the passed extension IDs string.
+   *
+   * @param sExtensionIDs
+   *        The string to split. May not be <code>null</code>.
+   * @param sSeparator
+   *        The separator to use. May not be <code>null</code>.
+   * @return <code>null</code> if at least one extension ID is empty.
+   */
+  @Nullable
+  private static List <String> _getExtensionIDs (@Nonnull final String sExtensionIDs, @Nonnull final String sSeparator)
+  {
+    final List <String> ret = new ArrayList <String> (2);
+    int nStart = 0;
+    int nIndex;
+    while ((nIndex = sExtensionIDs.indexOf (sSeparator, nStart)) >= 0)
+    {
+      if (nIndex == nStart)
+        return null;
+      ret.add (sExtensionIDs.substring (nStart, nIndex));
+      nStart = nIndex + sSeparator.length ();
+    }
+    if (nStart == sExtensionIDs.length ())
+      return null;
+    ret.add (sExtensionIDs.substring (nStart));
+    return ret;
+  }
+
+  /**
+   * Parse the passed document type identifier value into its parts.
+   *
+   * @param sDocTypeID
+   *        The document type identifier value (without the scheme) to be
+   *        parsed. May be <code>null</code>.
+   * @return {@link PeppolDocumentTypeIdentifierParts} if the value matches the
+   *         PEPPOL syntax, {@link OpenPeppolDocumentTypeIdentifierParts} if the
+   *         value matches the OpenPEPPOL syntax and <code>null</code> if the
+   *         value matches neither of them.
+   */
+  @Nullable
+  public static IPeppolDocumentTypeIdentifierParts parseOrNull (@Nullable final String sDocTypeID)
+  {
+    if (sDocTypeID == null)
+      return null;
+
+    // <root NS>::<local name>##<sub type identifier>
+    final int nSubTypeIndex = sDocTypeID.indexOf (IBusdoxDocumentTypeIdentifierParts.SUBTYPE_SEPARATOR);
+    if (nSubTypeIndex < 0)
+      return null;
+    final int nLocalNameIndex = sDocTypeID.indexOf (IBusdoxDocumentTypeIdentifierParts.NAMESPACE_SEPARATOR);
+    if (nLocalNameIndex <= 0 ||
+        nLocalNameIndex + IBusdoxDocumentTypeIdentifierParts.NAMESPACE_SEPARATOR.length () >= nSubTypeIndex)
+      return null;
+    final String sSubTypeIdentifier = sDocTypeID.substring (nSubTypeIndex +
+                                                           IBusdoxDocumentTypeIdentifierParts.SUBTYPE_SEPARATOR.length ());
+
+    // <customization id>::<version>
+    final int nVersionIndex = sSubTypeIdentifier.indexOf (PeppolDocumentTypeIdentifierParts.VERSION_SEPARATOR);
+    if (nVersionIndex < 0)
+      return null;
+    final String sVersion = sSubTypeIdentifier.substring (nVersionIndex +
+                                                         PeppolDocumentTypeIdentifierParts.VERSION_SEPARATOR.length ());
+    if (sVersion.length () == 0)
+      return null;
+    final String sCustomizationID = sSubTypeIdentifier.substring (0, nVersionIndex);
+
+    final String sRootNS = sDocTypeID.substring (0, nLocalNameIndex);
+    final String sLocalName = sDocTypeID.substring (nLocalNameIndex +
+                                                    IBusdoxDocumentTypeIdentifierParts.NAMESPACE_SEPARATOR.length (),
+                                                    nSubTypeIndex);
+    final IBusdoxDocumentTypeIdentifierParts aBusdoxParts = new BusdoxDocumentTypeIdentifierParts (sRootNS,
+                                                                                                   sLocalName,
+                                                                                                   sSubTypeIdentifier);
+
+    // PEPPOL: <transactionId>:#<extensionId>[#<extensionId>]
+    final int nPeppolIndex = sCustomizationID.indexOf (PeppolDocumentTypeIdentifierParts.TRANSACTIONID_SEPARATOR);
+    if (nPeppolIndex > 0)
+    {
+      final List <String> aExtensionIDs = _getExtensionIDs (sCustomizationID.substring (nPeppolIndex +
+                                                                                        PeppolDocumentTypeIdentifierParts.TRANSACTIONID_SEPARATOR.length ()),
+                                                            PeppolDocumentTypeIdentifierParts.EXTENSION_SEPARATOR);
+      if (aExtensionIDs != null)
+        return new PeppolDocumentTypeIdentifierParts (aBusdoxParts,
+                                                      sCustomizationID.substring (0, nPeppolIndex),
+                                                      aExtensionIDs,
+                                                      sVersion);
+    }
+
+    // OpenPEPPOL: <transactionId>:extended:<extensionId>[:extended:<extensionId>]
+    final int nOpenPeppolIndex = sCustomizationID.indexOf (OpenPeppolDocumentTypeIdentifierParts.TRANSACTIONID_SEPARATOR);
+    if (nOpenPeppolIndex > 0)
+    {
+      final List <String> aExtensionIDs = _getExtensionIDs (sCustomizationID.substring (nOpenPeppolIndex +
+                                                                                        OpenPeppolDocumentTypeIdentifierParts.TRANSACTIONID_SEPARATOR.length ()),
+                                                            OpenPeppolDocumentTypeIdentifierParts.EXTENSION_SEPARATOR);
+      if (aExtensionIDs != null)
+        return new OpenPeppolDocumentTypeIdentifierParts (aBusdoxParts,
+                                                          sCustomizationID.substring (0, nOpenPeppolIndex),
+                                                          aExtensionIDs,
+                                                          sVersion);
+    }
+
+    // Neither PEPPOL nor OpenPEPPOL
+    return null;
+  }
+}
@@ -106,10 +106,10 @@ public final class OpenPeppolDocumentTypeIdentifierParts implements IPeppolDocum
            sVersion;
   }
 
-  private OpenPeppolDocumentTypeIdentifierParts (@Nonnull final IBusdoxDocumentTypeIdentifierParts aBusdoxParts,
-                                                 @Nonnull @Nonempty final String sTransactionID,
-                                                 @Nonnull @Nonempty final List <String> aExtensionIDs,
-                                                 @Nonnull @Nonempty final String sVersion)
+  OpenPeppolDocumentTypeIdentifierParts (@Nonnull final IBusdoxDocumentTypeIdentifierParts aBusdoxParts,
+                                         @Nonnull @Nonempty final String sTransactionID,
+                                         @Nonnull @Nonempty final List <String> aExtensionIDs,
+                                         @Nonnull @Nonempty final String sVersion)
   {
     ValueEnforcer.notEmpty (sTransactionID, "TransactionID");
     ValueEnforcer.notEmpty (aExtensionIDs, "ExtensionIDs");
@@ -106,10 +106,10 @@ public final class PeppolDocumentTypeIdentifierParts implements IPeppolDocumentT
            sVersion;
   }
 
-  private PeppolDocumentTypeIdentifierParts (@Nonnull final IBusdoxDocumentTypeIdentifierParts aBusdoxParts,
-                                             @Nonnull @Nonempty final String sTransactionID,
-                                             @Nonnull @Nonempty final List <String> aExtensionIDs,
-                                             @Nonnull @Nonempty final String sVersion)
+  PeppolDocumentTypeIdentifierParts (@Nonnull final IBusdoxDocumentTypeIdentifierParts aBusdoxParts,
+                                     @Nonnull @Nonempty final String sTransactionID,
+                                     @Nonnull @Nonempty final List <String> aExtensionIDs,
+                                     @Nonnull @Nonempty final String sVersion)
   {
     ValueEnforcer.notEmpty (sTransactionID, "TransactionID");
     ValueEnforcer.notEmpty (aExtensionIDs, "ExtensionIDs");
@@ -40,8 +40,10 @@
  */
 package com.helger.peppol.identifier.doctype;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -53,7 +55,6 @@ import com.helger.commons.annotation.Nonempty;
 import com.helger.commons.annotation.PresentForCodeCoverage;
 import com.helger.commons.annotation.ReturnsMutableCopy;
 import com.helger.commons.collection.CollectionHelper;
-import com.helger.peppol.identifier.IdentifierHelper;
 
 /**
  * This class manages the predefined PEPPOL document identifiers the
@@ -68,12 +69,19 @@ import com.helger.peppol.identifier.IdentifierHelper;
 public final class PredefinedDocumentTypeIdentifierManager
 {
   private static final Map <String, IPeppolPredefinedDocumentTypeIdentifier> s_aCodes = new HashMap <String, IPeppolPredefinedDocumentTypeIdentifier> ();
+  // Secondary indices
+  private static final Map <String, List <IPeppolPredefinedDocumentTypeIdentifier>> s_aByRootNSAndLocalName = new HashMap <String, List <IPeppolPredefinedDocumentTypeIdentifier>> ();
+  private static final Map <String, List <IPeppolPredefinedDocumentTypeIdentifier>> s_aByCustomizationID = new HashMap <String, List <IPeppolPredefinedDocumentTypeIdentifier>> ();
 
   static
   {
     // Add all predefined document identifier
     for (final EPredefinedDocumentTypeIdentifier eDocID : EPredefinedDocumentTypeIdentifier.values ())
+    {
       s_aCodes.put (eDocID.getValue (), eDocID);
+      _addToIndex (s_aByRootNSAndLocalName, _getRootNSAndLocalNameKey (eDocID.getRootNS (), eDocID.getLocalName ()), eDocID);
+      _addToIndex (s_aByCustomizationID, eDocID.getAsUBLCustomizationID (), eDocID);
+    }
   }
 
   @PresentForCodeCoverage
@@ -83,6 +91,26 @@ public final class PredefinedDocumentTypeIdentifierManager
   private PredefinedDocumentTypeIdentifierManager ()
   {}
 
+  private static void _addToIndex (@Nonnull final Map <String, List <IPeppolPredefinedDocumentTypeIdentifier>> aIndex,
+                                   @Nonnull final String sKey,
+                                   @Nonnull final IPeppolPredefinedDocumentTypeIdentifier aDocTypeID)
+  {
+    List <IPeppolPredefinedDocumentTypeIdentifier> aList = aIndex.get (sKey);
+    if (aList == null)
+    {
+      aList = new ArrayList <IPeppolPredefinedDocumentTypeIdentifier> (1);
+      aIndex.put (sKey, aList);
+    }
+    aList.add (aDocTypeID);
+  }
+
+  @Nonnull
+  private static String _getRootNSAndLocalNameKey (@Nonnull final String sRootNS, @Nonnull final String sLocalName)
+  {
+    // Same separator as in the document type identifier value
+    return sRootNS + "::" + sLocalName;
+  }
+
   /**
    * @return A non-modifiable list of all PEPPOL document identifiers.
    */
@@ -117,14 +145,12 @@ public final class PredefinedDocumentTypeIdentifierManager
   @Nullable
   public static IPeppolPredefinedDocumentTypeIdentifier getDocumentTypeIdentifierOfID (@Nullable final String sDocTypeIDValue)
   {
-    if (sDocTypeIDValue != null)
-      for (final Map.Entry <String, IPeppolPredefinedDocumentTypeIdentifier> aEntry : s_aCodes.entrySet ())
-      {
-        // Use case insensitive identifier value comparison
-        if (IdentifierHelper.areDocumentTypeIdentifierValuesEqual (sDocTypeIDValue, aEntry.getKey ()))
-          return aEntry.getValue ();
-      }
-    return null;
+    if (sDocTypeIDValue == null)
+      return null;
+    // Document type identifier values are compared case sensitive (see
+    // IdentifierHelper.areDocumentTypeIdentifierValuesEqual) so a direct map
+    // lookup is sufficient
+    return s_aCodes.get (sDocTypeIDValue);
   }
 
   /**
@@ -140,4 +166,47 @@ public final class PredefinedDocumentTypeIdentifierManager
   {
     return getDocumentTypeIdentifierOfID (sDocTypeIDValue) != null;
   }
+
+  /**
+   * Get all predefined document identifiers with the given root namespace and
+   * local name. This search is done case sensitive.
+   *
+   * @param sRootNS
+   *        The root namespace to search (e.g.
+   *        <code>urn:oasis:names:specification:ubl:schema:xsd:Invoice-2</code>).
+   *        May be <code>null</code>.
+   * @param sLocalName
+   *        The local name to search (e.g. <code>Invoice</code>). May be
+   *        <code>null</code>.
+   * @return A non-<code>null</code> but maybe empty list of all matching
+   *         document identifiers.
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public static List <IPeppolPredefinedDocumentTypeIdentifier> getAllDocumentTypeIdentifiersOfRootNSAndLocalName (@Nullable final String sRootNS,
+                                                                                                                 @Nullable final String sLocalName)
+  {
+    if (sRootNS == null || sLocalName == null)
+      return new ArrayList <IPeppolPredefinedDocumentTypeIdentifier> ();
+    return CollectionHelper.newList (s_aByRootNSAndLocalName.get (_getRootNSAndLocalNameKey (sRootNS, sLocalName)));
+  }
+
+  /**
+   * Get all predefined document identifiers with the given UBL customization
+   * ID. This search is done case sensitive.
+   *
+   * @param sCustomizationID
+   *        The customization ID to search. May be <code>null</code>.
+   * @return A non-<code>null</code> but maybe empty list of all matching
+   *         document identifiers.
+   * @see IPeppolDocumentTypeIdentifierParts#getAsUBLCustomizationID()
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public static List <IPeppolPredefinedDocumentTypeIdentifier> getAllDocumentTypeIdentifiersOfCustomizationID (@Nullable final String sCustomizationID)
+  {
+    if (sCustomizationID == null)
+      return new ArrayList <IPeppolPredefinedDocumentTypeIdentifier> ();
+    return CollectionHelper.newList (s_aByCustomizationID.get (sCustomizationID));
+  }
 }
@@ -41,10 +41,14 @@
 package com.helger.peppol.identifier.issuingagency;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
 
 import com.helger.commons.annotation.Nonempty;
 import com.helger.commons.annotation.PresentForCodeCoverage;
@@ -55,19 +59,47 @@ import com.helger.commons.string.StringHelper;
 
 /**
  * This class manages the PEPPOL identifier issuing agencies using the
- * <b>iso6523-actorid-upis</b> scheme.
+ * <b>iso6523-actorid-upis</b> scheme. All lookups are case insensitive and
+ * are resolved via indexes that are built once upon class initialization.
  *
  * @author PEPPOL.AT, BRZ, Philip Helger
  */
+@Immutable
 public final class IdentifierIssuingAgencyManager
 {
+  /** The number of possible 4-digit ICD values (0000-9999) */
+  private static final int ICD_COUNT = 10000;
+
   private static final List <IIdentifierIssuingAgency> s_aCodes = new ArrayList <IIdentifierIssuingAgency> ();
+  // Indexes - all keys are lower case
+  private static final Map <String, IIdentifierIssuingAgency> s_aByISO6523Code = new HashMap <String, IIdentifierIssuingAgency> ();
+  private static final Map <String, IIdentifierIssuingAgency> s_aBySchemeID = new HashMap <String, IIdentifierIssuingAgency> ();
+  // Indexed by the numeric value of the 4-digit ICD
+  private static final IIdentifierIssuingAgency [] s_aByICD = new IIdentifierIssuingAgency [ICD_COUNT];
+  private static final boolean [] s_aDeprecatedByICD = new boolean [ICD_COUNT];
 
   static
   {
     // Add all predefined identifier issuing agencies
     for (final EPredefinedIdentifierIssuingAgency eIIA : EPredefinedIdentifierIssuingAgency.values ())
+    {
       s_aCodes.add (eIIA);
+
+      // The first agency wins, as in a linear search
+      final String sISO6523Key = _getKey (eIIA.getISO6523Code ());
+      if (!s_aByISO6523Code.containsKey (sISO6523Key))
+        s_aByISO6523Code.put (sISO6523Key, eIIA);
+      final String sSchemeIDKey = _getKey (eIIA.getSchemeID ());
+      if (!s_aBySchemeID.containsKey (sSchemeIDKey))
+        s_aBySchemeID.put (sSchemeIDKey, eIIA);
+
+      final int nICD = _getICD (eIIA.getISO6523Code ());
+      if (nICD >= 0 && s_aByICD[nICD] == null)
+      {
+        s_aByICD[nICD] = eIIA;
+        s_aDeprecatedByICD[nICD] = eIIA.isDeprecated ();
+      }
+    }
   }
 
   @PresentForCodeCoverage
@@ -77,6 +109,36 @@ public final class IdentifierIssuingAgencyManager
   private IdentifierIssuingAgencyManager ()
   {}
 
+  @Nonnull
+  private static String _getKey (@Nonnull final String s)
+  {
+    // Returns the same object if it is already lower case
+    return s.toLowerCase (Locale.US);
+  }
+
+  /**
+   * Get the numeric value of the passed 4-digit ICD without creating any
+   * objects.
+   *
+   * @param sISO6523Code
+   *        The value to parse. May not be <code>null</code>.
+   * @return -1 if the passed value does not consist of exactly 4 digits.
+   */
+  private static int _getICD (@Nonnull final String sISO6523Code)
+  {
+    if (sISO6523Code.length () != 4)
+      return -1;
+    int ret = 0;
+    for (int i = 0; i < 4; ++i)
+    {
+      final char c = sISO6523Code.charAt (i);
+      if (c < '0' || c > '9')
+        return -1;
+      ret = ret * 10 + (c - '0');
+    }
+    return ret;
+  }
+
   /**
    * @return A non-modifiable list of all PEPPOL identifier issuing agencies.
    */
@@ -98,11 +160,27 @@ public final class IdentifierIssuingAgencyManager
   @Nullable
   public static IIdentifierIssuingAgency getAgencyOfISO6523Code (@Nullable final String sISO6523Code)
   {
-    if (StringHelper.hasText (sISO6523Code))
-      for (final IIdentifierIssuingAgency aAgency : s_aCodes)
-        if (aAgency.getISO6523Code ().equalsIgnoreCase (sISO6523Code))
-          return aAgency;
-    return null;
+    if (StringHelper.hasNoText (sISO6523Code))
+      return null;
+
+    // Fast path for the regular 4-digit codes
+    final int nICD = _getICD (sISO6523Code);
+    if (nICD >= 0)
+      return s_aByICD[nICD];
+    return s_aByISO6523Code.get (_getKey (sISO6523Code));
+  }
+
+  /**
+   * Find the agency with the respective numeric ICD value.
+   *
+   * @param nICD
+   *        The numeric ICD value to search (e.g. 88 for "0088").
+   * @return <code>null</code> if no such agency exists.
+   */
+  @Nullable
+  public static IIdentifierIssuingAgency getAgencyOfICD (final int nICD)
+  {
+    return nICD >= 0 && nICD < ICD_COUNT ? s_aByICD[nICD] : null;
   }
 
   /**
@@ -144,11 +222,9 @@ public final class IdentifierIssuingAgencyManager
   @Nullable
   public static IIdentifierIssuingAgency getAgencyOfSchemeID (@Nullable final String sSchemeID)
   {
-    if (StringHelper.hasText (sSchemeID))
-      for (final IIdentifierIssuingAgency aAgency : s_aCodes)
-        if (aAgency.getSchemeID ().equalsIgnoreCase (sSchemeID))
-          return aAgency;
-    return null;
+    if (StringHelper.hasNoText (sSchemeID))
+      return null;
+    return s_aBySchemeID.get (_getKey (sSchemeID));
   }
 
   /**
@@ -194,6 +270,12 @@ public final class IdentifierIssuingAgencyManager
   @Nonnull
   public static ETriState isAgencyWithISO6523CodeDeprecated (@Nullable final String sISO6523Code)
   {
+    if (sISO6523Code != null)
+    {
+      final int nICD = _getICD (sISO6523Code);
+      if (nICD >= 0)
+        return s_aByICD[nICD] == null ? ETriState.UNDEFINED : ETriState.valueOf (s_aDeprecatedByICD[nICD]);
+    }
     final IIdentifierIssuingAgency aAgency = getAgencyOfISO6523Code (sISO6523Code);
     return aAgency == null ? ETriState.UNDEFINED : ETriState.valueOf (aAgency.isDeprecated ());
   }
@@ -0,0 +1,146 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.identifier.participant;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.string.ToStringGenerator;
+
+/**
+ * The decomposition of a participant identifier value of the default scheme
+ * into the issuing agency ID and the local participant ID (e.g.
+ * <code>0088:123456</code> is split into <code>0088</code> and
+ * <code>123456</code>).<br>
+ * The value is split in a single pass and this object only keeps the original
+ * value and the separator position. The two parts are only extracted when
+ * they are requested.
+ *
+ * @author Philip Helger
+ */
+@Immutable
+public final class ParticipantIdentifierValueParts
+{
+  /** The separator between issuing agency ID and local participant ID */
+  public static final char SEPARATOR = ':';
+
+  private final String m_sValue;
+  private final int m_nSeparatorIndex;
+
+  private ParticipantIdentifierValueParts (@Nonnull final String sValue, @Nonnegative final int nSeparatorIndex)
+  {
+    m_sValue = sValue;
+    m_nSeparatorIndex = nSeparatorIndex;
+  }
+
+  /**
+   * @return The original participant identifier value. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  public String getValue ()
+  {
+    return m_sValue;
+  }
+
+  /**
+   * @return The issuing agency ID - everything before the first
+   *         {@link #SEPARATOR}. Never <code>null</code> but maybe empty.
+   */
+  @Nonnull
+  public String getIssuingAgencyID ()
+  {
+    return m_sValue.substring (0, m_nSeparatorIndex);
+  }
+
+  /**
+   * @return The local participant ID - everything after the first
+   *         {@link #SEPARATOR}. Never <code>null</code> but maybe empty.
+   */
+  @Nonnull
+  public String getLocalParticipantID ()
+  {
+    return m_sValue.substring (m_nSeparatorIndex + 1);
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("IssuingAgencyID", getIssuingAgencyID ())
+                                       .append ("LocalParticipantID", getLocalParticipantID ())
+                                       .toString ();
+  }
+
+  private static boolean _isLineTerminator (final char c)
+  {
+    return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+  }
+
+  /**
+   * Split the passed participant identifier value into its parts. The result
+   * is identical to matching the regular expression
+   * <code>^([^:]*):(.*)$</code>, so the local participant ID may not contain a
+   * line break.
+   *
+   * @param sValue
+   *        The participant identifier value to split. May not be
+   *        <code>null</code>.
+   * @return <code>null</code> if the passed value is malformed.
+   */
+  @Nullable
+  public static ParticipantIdentifierValueParts parseOrNull (@Nonnull final String sValue)
+  {
+    ValueEnforcer.notNull (sValue, "Value");
+
+    final int nSeparatorIndex = sValue.indexOf (SEPARATOR);
+    if (nSeparatorIndex < 0)
+      return null;
+
+    final int nLength = sValue.length ();
+    for (int i = nSeparatorIndex + 1; i < nLength; ++i)
+      if (_isLineTerminator (sValue.charAt (i)))
+        return null;
+    return new ParticipantIdentifierValueParts (sValue, nSeparatorIndex);
+  }
+}
@@ -0,0 +1,758 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.identifier.participant;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.charset.CCharset;
+import com.helger.commons.io.stream.StreamHelper;
+import com.helger.commons.string.ToStringGenerator;
+import com.helger.peppol.identifier.IParticipantIdentifier;
+import com.helger.peppol.identifier.IdentifierHelper;
+
+/**
+ * A compact map from participant identifiers to routing targets, intended
+ * for tables with millions of participants.<br>
+ * Participant identifiers are compared case insensitive, like in
+ * {@link IdentifierHelper#areParticipantIdentifiersEqual(IParticipantIdentifier, IParticipantIdentifier)}.
+ * The table stores a 128 bit hash of each normalized identifier in an open
+ * addressed primitive array. The normalized identifier itself is stored in
+ * large byte buffers (optionally off-heap) and is only used to verify a
+ * matching hash, so no object is created per entry. Each distinct target is
+ * stored only once.<br>
+ * The key storage of removed entries is not reused. Tables with many removals
+ * should be rebuilt from time to time.<br>
+ * Routing table files contain one entry per line in the form
+ * <code>scheme::value&lt;TAB&gt;target</code>. Empty lines and lines starting
+ * with <code>#</code> are ignored.
+ *
+ * @author Philip Helger
+ */
+@ThreadSafe
+public class ParticipantRoutingTable
+{
+  /** The default initial capacity */
+  public static final int DEFAULT_INITIAL_CAPACITY = 1024;
+  /** The separator between participant identifier and target in files */
+  public static final char FILE_SEPARATOR = '\t';
+  /** The maximum length of the scheme and of the value */
+  public static final int MAX_PART_LENGTH = 0x7fff;
+
+  private static final float MAX_LOAD_FACTOR = 0.7f;
+  // The slot array length (capacity << SLOT_BITS) must fit into an int
+  static final int MAX_CAPACITY = 1 << 28;
+  // The layout of a slot - all values of a slot share one cache line
+  static final int SLOT_BITS = 2;
+  private static final int SLOT_HASH1 = 0;
+  private static final int SLOT_HASH2 = 1;
+  private static final int SLOT_KEY_POS = 2;
+  private static final int SLOT_TARGET_INDEX = 3;
+  // 256 KB per key storage chunk - keys never span chunks
+  private static final int CHUNK_BITS = 18;
+  private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+  // Flag in the scheme length header for 2 byte chars
+  private static final int WIDE_FLAG = 0x8000;
+  // Hashed between scheme and value - not a valid char
+  private static final int SEPARATOR_UNIT = 0x10000;
+  private static final long SEED1 = 0xcbf29ce484222325L;
+  private static final long PRIME1 = 0x100000001b3L;
+  private static final long SEED2 = 0x84222325cbf29ce4L;
+  private static final long PRIME2 = 0x9e3779b97f4a7c15L;
+
+  private final int m_nInitialCapacity;
+  private final boolean m_bOffHeap;
+  private final ReadWriteLock m_aRWLock = new ReentrantReadWriteLock ();
+
+  // The slots - a target index of 0 means "empty"
+  @GuardedBy ("m_aRWLock")
+  private long [] m_aSlots;
+  @GuardedBy ("m_aRWLock")
+  private int m_nCapacity;
+  @GuardedBy ("m_aRWLock")
+  private int m_nSize = 0;
+  @GuardedBy ("m_aRWLock")
+  private int m_nThreshold;
+
+  // The key storage
+  @GuardedBy ("m_aRWLock")
+  private final List <ByteBuffer> m_aChunks = new ArrayList <ByteBuffer> ();
+  @GuardedBy ("m_aRWLock")
+  private long m_nNextKeyPos = 0;
+
+  // The targets - the target index is the list index + 1
+  @GuardedBy ("m_aRWLock")
+  private final List <String> m_aTargets = new ArrayList <String> ();
+  @GuardedBy ("m_aRWLock")
+  private final Map <String, Integer> m_aTargetIndexMap = new HashMap <String, Integer> ();
+
+  /**
+   * Constructor using {@link #DEFAULT_INITIAL_CAPACITY} and on-heap key
+   * storage.
+   */
+  public ParticipantRoutingTable ()
+  {
+    this (DEFAULT_INITIAL_CAPACITY, false);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param nInitialCapacity
+   *        The expected number of participant identifiers. Must be &gt; 0.
+   * @param bOffHeap
+   *        <code>true</code> to store the participant identifiers in direct
+   *        byte buffers outside of the Java heap, <code>false</code> to use
+   *        heap byte buffers.
+   */
+  public ParticipantRoutingTable (@Nonnegative final int nInitialCapacity, final boolean bOffHeap)
+  {
+    ValueEnforcer.isGT0 (nInitialCapacity, "InitialCapacity");
+    m_nInitialCapacity = nInitialCapacity;
+    m_bOffHeap = bOffHeap;
+    _allocateSlots (_getCapacity (nInitialCapacity));
+  }
+
+  @Nonnegative
+  static int _getCapacity (@Nonnegative final int nSize)
+  {
+    int ret = 16;
+    while (ret < MAX_CAPACITY && nSize > ret * MAX_LOAD_FACTOR)
+      ret <<= 1;
+    return ret;
+  }
+
+  private void _allocateSlots (@Nonnegative final int nCapacity)
+  {
+    final long nLength = (long) nCapacity << SLOT_BITS;
+    if (nLength > Integer.MAX_VALUE)
+      throw new IllegalStateException ("The capacity " + nCapacity + " is too large");
+    m_aSlots = new long [(int) nLength];
+    m_nCapacity = nCapacity;
+    m_nThreshold = (int) (nCapacity * MAX_LOAD_FACTOR);
+  }
+
+  /**
+   * @return <code>true</code> if the participant identifiers are stored
+   *         outside of the Java heap.
+   */
+  public final boolean isOffHeap ()
+  {
+    return m_bOffHeap;
+  }
+
+  private static char _normalize (final char c)
+  {
+    if (c < 0x80)
+      return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    // Same rules as String.equalsIgnoreCase
+    return Character.toLowerCase (Character.toUpperCase (c));
+  }
+
+  private static long _getHash (@Nonnull final String sScheme,
+                                @Nonnull final String sValue,
+                                final long nSeed,
+                                final long nPrime)
+  {
+    long h = nSeed;
+    for (int i = 0; i < sScheme.length (); ++i)
+      h = (h ^ _normalize (sScheme.charAt (i))) * nPrime;
+    h = (h ^ SEPARATOR_UNIT) * nPrime;
+    for (int i = 0; i < sValue.length (); ++i)
+      h = (h ^ _normalize (sValue.charAt (i))) * nPrime;
+
+    // Final avalanche
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  private static boolean _isWide (@Nonnull final String s)
+  {
+    for (int i = 0; i < s.length (); ++i)
+      if (_normalize (s.charAt (i)) > 0xff)
+        return true;
+    return false;
+  }
+
+  @GuardedBy ("m_aRWLock")
+  private long _storeKey (@Nonnull final String sScheme, @Nonnull final String sValue)
+  {
+    final boolean bWide = _isWide (sScheme) || _isWide (sValue);
+    final int nBytes = 4 + (sScheme.length () + sValue.length ()) * (bWide ? 2 : 1);
+
+    int nChunkIndex = (int) (m_nNextKeyPos >>> CHUNK_BITS);
+    int nOfs = (int) (m_nNextKeyPos & CHUNK_MASK);
+    if (nChunkIndex >= m_aChunks.size () || nOfs + nBytes > CHUNK_SIZE)
+    {
+      m_aChunks.add (m_bOffHeap ? ByteBuffer.allocateDirect (CHUNK_SIZE) : ByteBuffer.allocate (CHUNK_SIZE));
+      nChunkIndex = m_aChunks.size () - 1;
+      nOfs = 0;
+    }
+
+    final ByteBuffer aChunk = m_aChunks.get (nChunkIndex);
+    final long ret = ((long) nChunkIndex << CHUNK_BITS) | nOfs;
+    aChunk.putShort (nOfs, (short) (bWide ? sScheme.length () | WIDE_FLAG : sScheme.length ()));
+    aChunk.putShort (nOfs + 2, (short) sValue.length ());
+    nOfs = _putChars (aChunk, nOfs + 4, bWide, sScheme);
+    nOfs = _putChars (aChunk, nOfs, bWide, sValue);
+    m_nNextKeyPos = ((long) nChunkIndex << CHUNK_BITS) | nOfs;
+    return ret;
+  }
+
+  private static int _putChars (@Nonnull final ByteBuffer aChunk,
+                                final int nOfs,
+                                final boolean bWide,
+                                @Nonnull final String s)
+  {
+    int ret = nOfs;
+    for (int i = 0; i < s.length (); ++i)
+    {
+      final char c = _normalize (s.charAt (i));
+      if (bWide)
+      {
+        aChunk.putChar (ret, c);
+        ret += 2;
+      }
+      else
+      {
+        aChunk.put (ret, (byte) c);
+        ret++;
+      }
+    }
+    return ret;
+  }
+
+  private static int _matchChars (@Nonnull final ByteBuffer aChunk,
+                                  final int nOfs,
+                                  final boolean bWide,
+                                  @Nonnull final String s)
+  {
+    int ret = nOfs;
+    for (int i = 0; i < s.length (); ++i)
+    {
+      final char cStored;
+      if (bWide)
+      {
+        cStored = aChunk.getChar (ret);
+        ret += 2;
+      }
+      else
+      {
+        cStored = (char) (aChunk.get (ret) & 0xff);
+        ret++;
+      }
+      if (cStored != _normalize (s.charAt (i)))
+        return -1;
+    }
+    return ret;
+  }
+
+  @GuardedBy ("m_aRWLock")
+  private boolean _isKeyEqual (final long nKeyPos, @Nonnull final String sScheme, @Nonnull final String sValue)
+  {
+    final ByteBuffer aChunk = m_aChunks.get ((int) (nKeyPos >>> CHUNK_BITS));
+    final int nOfs = (int) (nKeyPos & CHUNK_MASK);
+    final int nSchemeHeader = aChunk.getShort (nOfs) & 0xffff;
+    if ((nSchemeHeader & ~WIDE_FLAG) != sScheme.length () || (aChunk.getShort (nOfs + 2) & 0xffff) != sValue.length ())
+      return false;
+
+    final boolean bWide = (nSchemeHeader & WIDE_FLAG) != 0;
+    final int nValueOfs = _matchChars (aChunk, nOfs + 4, bWide, sScheme);
+    return nValueOfs >= 0 && _matchChars (aChunk, nValueOfs, bWide, sValue) >= 0;
+  }
+
+  /**
+   * @return The index of the matching slot or (-1 - free slot index) if no
+   *         such entry is contained.
+   */
+  @GuardedBy ("m_aRWLock")
+  private int _findSlot (final long nHash1,
+                         final long nHash2,
+                         @Nonnull final String sScheme,
+                         @Nonnull final String sValue)
+  {
+    final long [] aSlots = m_aSlots;
+    final int nMask = m_nCapacity - 1;
+    int nSlot = (int) nHash1 & nMask;
+    while (true)
+    {
+      final int nBase = nSlot << SLOT_BITS;
+      if (aSlots[nBase + SLOT_TARGET_INDEX] == 0)
+        return -1 - nSlot;
+      if (aSlots[nBase + SLOT_HASH1] == nHash1 &&
+          aSlots[nBase + SLOT_HASH2] == nHash2 &&
+          _isKeyEqual (aSlots[nBase + SLOT_KEY_POS], sScheme, sValue))
+        return nSlot;
+      nSlot = (nSlot + 1) & nMask;
+    }
+  }
+
+  @GuardedBy ("m_aRWLock")
+  private void _resize (@Nonnegative final int nNewCapacity)
+  {
+    final long [] aOldSlots = m_aSlots;
+    _allocateSlots (nNewCapacity);
+
+    // The hashes are stored, so the keys don't need to be read
+    final int nMask = nNewCapacity - 1;
+    for (int nOldBase = 0; nOldBase < aOldSlots.length; nOldBase += 1 << SLOT_BITS)
+      if (aOldSlots[nOldBase + SLOT_TARGET_INDEX] != 0)
+      {
+        int nSlot = (int) aOldSlots[nOldBase + SLOT_HASH1] & nMask;
+        while (m_aSlots[(nSlot << SLOT_BITS) + SLOT_TARGET_INDEX] != 0)
+          nSlot = (nSlot + 1) & nMask;
+        System.arraycopy (aOldSlots, nOldBase, m_aSlots, nSlot << SLOT_BITS, 1 << SLOT_BITS);
+      }
+  }
+
+  @GuardedBy ("m_aRWLock")
+  private int _getOrAddTargetIndex (@Nonnull final String sTarget)
+  {
+    final Integer aIndex = m_aTargetIndexMap.get (sTarget);
+    if (aIndex != null)
+      return aIndex.intValue ();
+
+    m_aTargets.add (sTarget);
+    final int ret = m_aTargets.size ();
+    m_aTargetIndexMap.put (sTarget, Integer.valueOf (ret));
+    return ret;
+  }
+
+  /**
+   * Add or replace the routing target of the passed participant identifier.
+   *
+   * @param sScheme
+   *        The participant identifier scheme. May not be <code>null</code>.
+   * @param sValue
+   *        The participant identifier value. May not be <code>null</code>.
+   * @param sTarget
+   *        The routing target. May not be <code>null</code>.
+   * @return The previous routing target or <code>null</code> if the
+   *         participant identifier was not contained.
+   * @throws IllegalArgumentException
+   *         If the scheme or the value are longer than {@link #MAX_PART_LENGTH}
+   * @throws IllegalStateException
+   *         If the table is full
+   */
+  @Nullable
+  public String put (@Nonnull final String sScheme, @Nonnull final String sValue, @Nonnull final String sTarget)
+  {
+    ValueEnforcer.notNull (sScheme, "Scheme");
+    ValueEnforcer.notNull (sValue, "Value");
+    ValueEnforcer.notNull (sTarget, "Target");
+    if (sScheme.length () > MAX_PART_LENGTH)
+      throw new IllegalArgumentException ("The scheme is too long: " + sScheme.length ());
+    if (sValue.length () > MAX_PART_LENGTH)
+      throw new IllegalArgumentException ("The value is too long: " + sValue.length ());
+
+    final long nHash1 = _getHash (sScheme, sValue, SEED1, PRIME1);
+    final long nHash2 = _getHash (sScheme, sValue, SEED2, PRIME2);
+
+    m_aRWLock.writeLock ().lock ();
+    try
+    {
+      final int nTargetIndex = _getOrAddTargetIndex (sTarget);
+      int nSlot = _findSlot (nHash1, nHash2, sScheme, sValue);
+      if (nSlot >= 0)
+      {
+        // Replace target
+        final int nBase = nSlot << SLOT_BITS;
+        final String sOldTarget = m_aTargets.get ((int) m_aSlots[nBase + SLOT_TARGET_INDEX] - 1);
+        m_aSlots[nBase + SLOT_TARGET_INDEX] = nTargetIndex;
+        return sOldTarget;
+      }
+
+      if (m_nSize >= m_nThreshold)
+      {
+        if (m_nCapacity == MAX_CAPACITY)
+          throw new IllegalStateException ("The routing table is full");
+        _resize (m_nCapacity * 2);
+        nSlot = _findSlot (nHash1, nHash2, sScheme, sValue);
+      }
+
+      final int nBase = (-1 - nSlot) << SLOT_BITS;
+      m_aSlots[nBase + SLOT_HASH1] = nHash1;
+      m_aSlots[nBase + SLOT_HASH2] = nHash2;
+      m_aSlots[nBase + SLOT_KEY_POS] = _storeKey (sScheme, sValue);
+      m_aSlots[nBase + SLOT_TARGET_INDEX] = nTargetIndex;
+      m_nSize++;
+      return null;
+    }
+    finally
+    {
+      m_aRWLock.writeLock ().unlock ();
+    }
+  }
+
+  /**
+   * Add or replace the routing target of the passed participant identifier.
+   *
+   * @param aParticipantID
+   *        The participant identifier. May not be <code>null</code>.
+   * @param sTarget
+   *        The routing target. May not be <code>null</code>.
+   * @return The previous routing target or <code>null</code> if the
+   *         participant identifier was not contained.
+   * @see #put(String, String, String)
+   */
+  @Nullable
+  public String put (@Nonnull final IParticipantIdentifier aParticipantID, @Nonnull final String sTarget)
+  {
+    ValueEnforcer.notNull (aParticipantID, "ParticipantID");
+    return put (aParticipantID.getScheme (), aParticipantID.getValue (), sTarget);
+  }
+
+  /**
+   * Get the routing target of the passed participant identifier. This method
+   * does not create any objects.
+   *
+   * @param sScheme
+   *        The participant identifier scheme. May be <code>null</code>.
+   * @param sValue
+   *        The participant identifier value. May be <code>null</code>.
+   * @return <code>null</code> if no such participant identifier is contained.
+   */
+  @Nullable
+  public String get (@Nullable final String sScheme, @Nullable final String sValue)
+  {
+    if (sScheme == null || sValue == null)
+      return null;
+
+    final long nHash1 = _getHash (sScheme, sValue, SEED1, PRIME1);
+    final long nHash2 = _getHash (sScheme, sValue, SEED2, PRIME2);
+
+    m_aRWLock.readLock ().lock ();
+    try
+    {
+      final int nSlot = _findSlot (nHash1, nHash2, sScheme, sValue);
+      return nSlot < 0 ? null : m_aTargets.get ((int) m_aSlots[(nSlot << SLOT_BITS) + SLOT_TARGET_INDEX] - 1);
+    }
+    finally
+    {
+      m_aRWLock.readLock ().unlock ();
+    }
+  }
+
+  /**
+   * Get the routing target of the passed participant identifier. This method
+   * does not create any objects.
+   *
+   * @param aParticipantID
+   *        The participant identifier. May be <code>null</code>.
+   * @return <code>null</code> if no such participant identifier is contained.
+   */
+  @Nullable
+  public String get (@Nullable final IParticipantIdentifier aParticipantID)
+  {
+    return aParticipantID == null ? null : get (aParticipantID.getScheme (), aParticipantID.getValue ());
+  }
+
+  /**
+   * Check if the passed participant identifier is contained.
+   *
+   * @param aParticipantID
+   *        The participant identifier. May be <code>null</code>.
+   * @return <code>true</code> if it is contained, <code>false</code> if not.
+   */
+  public boolean containsParticipant (@Nullable final IParticipantIdentifier aParticipantID)
+  {
+    return get (aParticipantID) != null;
+  }
+
+  /**
+   * Remove the passed participant identifier.
+   *
+   * @param aParticipantID
+   *        The participant identifier. May be <code>null</code>.
+   * @return The removed routing target or <code>null</code> if the participant
+   *         identifier was not contained.
+   */
+  @Nullable
+  public String remove (@Nullable final IParticipantIdentifier aParticipantID)
+  {
+    if (aParticipantID == null)
+      return null;
+
+    final String sScheme = aParticipantID.getScheme ();
+    final String sValue = aParticipantID.getValue ();
+    if (sScheme == null || sValue == null)
+      return null;
+
+    final long nHash1 = _getHash (sScheme, sValue, SEED1, PRIME1);
+    final long nHash2 = _getHash (sScheme, sValue, SEED2, PRIME2);
+
+    m_aRWLock.writeLock ().lock ();
+    try
+    {
+      final int nSlot = _findSlot (nHash1, nHash2, sScheme, sValue);
+      if (nSlot < 0)
+        return null;
+
+      final String ret = m_aTargets.get ((int) m_aSlots[(nSlot << SLOT_BITS) + SLOT_TARGET_INDEX] - 1);
+
+      // Move the following entries of the cluster back, so that no
+      // tombstones are needed
+      final int nMask = m_nCapacity - 1;
+      int nFree = nSlot;
+      int i = nSlot;
+      while (true)
+      {
+        i = (i + 1) & nMask;
+        if (m_aSlots[(i << SLOT_BITS) + SLOT_TARGET_INDEX] == 0)
+          break;
+        final int nHome = (int) m_aSlots[(i << SLOT_BITS) + SLOT_HASH1] & nMask;
+        if (((i - nHome) & nMask) >= ((i - nFree) & nMask))
+        {
+          System.arraycopy (m_aSlots, i << SLOT_BITS, m_aSlots, nFree << SLOT_BITS, 1 << SLOT_BITS);
+          nFree = i;
+        }
+      }
+      m_aSlots[(nFree << SLOT_BITS) + SLOT_TARGET_INDEX] = 0;
+      m_nSize--;
+      return ret;
+    }
+    finally
+    {
+      m_aRWLock.writeLock ().unlock ();
+    }
+  }
+
+  /**
+   * Remove all entries and targets.
+   */
+  public void clear ()
+  {
+    m_aRWLock.writeLock ().lock ();
+    try
+    {
+      _allocateSlots (_getCapacity (m_nInitialCapacity));
+      m_nSize = 0;
+      m_aChunks.clear ();
+      m_nNextKeyPos = 0;
+      m_aTargets.clear ();
+      m_aTargetIndexMap.clear ();
+    }
+    finally
+    {
+      m_aRWLock.writeLock ().unlock ();
+    }
+  }
+
+  /**
+   * @return The number of contained participant identifiers. Always &ge; 0.
+   */
+  @Nonnegative
+  public int getSize ()
+  {
+    m_aRWLock.readLock ().lock ();
+    try
+    {
+      return m_nSize;
+    }
+    finally
+    {
+      m_aRWLock.readLock ().unlock ();
+    }
+  }
+
+  /**
+   * @return <code>true</code> if no participant identifier is contained.
+   */
+  public boolean isEmpty ()
+  {
+    return getSize () == 0;
+  }
+
+  /**
+   * @return The number of distinct routing targets that were added so far.
+   *         Always &ge; 0.
+   */
+  @Nonnegative
+  public int getTargetCount ()
+  {
+    m_aRWLock.readLock ().lock ();
+    try
+    {
+      return m_aTargets.size ();
+    }
+    finally
+    {
+      m_aRWLock.readLock ().unlock ();
+    }
+  }
+
+  /**
+   * @return The approximate number of bytes used by the slots and the key
+   *         storage. The routing targets are not included.
+   */
+  @Nonnegative
+  public long getMemoryUsage ()
+  {
+    m_aRWLock.readLock ().lock ();
+    try
+    {
+      return (long) m_aSlots.length * 8 + (long) m_aChunks.size () * CHUNK_SIZE;
+    }
+    finally
+    {
+      m_aRWLock.readLock ().unlock ();
+    }
+  }
+
+  /**
+   * Read all entries from the passed reader and add them to this table.
+   *
+   * @param aReader
+   *        The reader to read from. May not be <code>null</code>. It is not
+   *        closed by this method.
+   * @return The number of read entries. Always &ge; 0.
+   * @throws IOException
+   *         In case reading fails
+   * @throws IllegalArgumentException
+   *         If a line is invalid
+   */
+  @Nonnegative
+  public int readFrom (@Nonnull final Reader aReader) throws IOException
+  {
+    ValueEnforcer.notNull (aReader, "Reader");
+
+    final BufferedReader aBR = aReader instanceof BufferedReader ? (BufferedReader) aReader
+                                                                 : new BufferedReader (aReader);
+    int ret = 0;
+    int nLineNumber = 0;
+    String sLine;
+    while ((sLine = aBR.readLine ()) != null)
+    {
+      ++nLineNumber;
+      final String sTrimmedLine = sLine.trim ();
+      if (sTrimmedLine.length () == 0 || sTrimmedLine.charAt (0) == '#')
+        continue;
+
+      final int nSepIndex = sTrimmedLine.indexOf (FILE_SEPARATOR);
+      if (nSepIndex < 0)
+        throw new IllegalArgumentException ("Line " + nLineNumber + " contains no target: " + sLine);
+
+      final String sTarget = sTrimmedLine.substring (nSepIndex + 1).trim ();
+      if (sTarget.length () == 0)
+        throw new IllegalArgumentException ("Line " + nLineNumber + " contains no target: " + sLine);
+
+      final String sParticipantID = sTrimmedLine.substring (0, nSepIndex).trim ();
+      final SimpleParticipantIdentifier aParticipantID = IdentifierHelper.createParticipantIdentifierFromURIPartOrNull (sParticipantID);
+      if (aParticipantID == null)
+        throw new IllegalArgumentException ("Line " + nLineNumber + " contains an invalid participant identifier: " + sLine);
+
+      put (aParticipantID.getScheme (), aParticipantID.getValue (), sTarget);
+      ++ret;
+    }
+    return ret;
+  }
+
+  /**
+   * Read all entries from the passed UTF-8 encoded file and add them to this
+   * table.
+   *
+   * @param aFile
+   *        The file to read from. May not be <code>null</code>.
+   * @return The number of read entries. Always &ge; 0.
+   * @throws IOException
+   *         In case reading fails
+   * @throws IllegalArgumentException
+   *         If a line is invalid
+   * @see #readFrom(Reader)
+   */
+  @Nonnegative
+  public int readFrom (@Nonnull final File aFile) throws IOException
+  {
+    ValueEnforcer.notNull (aFile, "File");
+
+    final Reader aReader = new InputStreamReader (new FileInputStream (aFile), CCharset.CHARSET_UTF_8_OBJ);
+    try
+    {
+      return readFrom (aReader);
+    }
+    finally
+    {
+      StreamHelper.close (aReader);
+    }
+  }
+
+  @Override
+  public String toString ()
+  {
+    m_aRWLock.readLock ().lock ();
+    try
+    {
+      return new ToStringGenerator (this).append ("size", m_nSize)
+                                         .append ("capacity", m_nCapacity)
+                                         .append ("targetCount", m_aTargets.size ())
+                                         .append ("keyChunks", m_aChunks.size ())
+                                         .append ("offHeap", m_bOffHeap)
+                                         .toString ();
+    }
+    finally
+    {
+      m_aRWLock.readLock ().unlock ();
+    }
+  }
+}
@@ -0,0 +1,222 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.identifier.participant;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import com.helger.commons.hashcode.HashCodeGenerator;
+import com.helger.commons.string.ToStringGenerator;
+import com.helger.peppol.identifier.IParticipantIdentifier;
+import com.helger.peppol.identifier.IdentifierHelper;
+import com.helger.peppol.identifier.validator.IdentifierValidator;
+import com.helger.peppol.utils.BusdoxURLHelper;
+
+/**
+ * An immutable participant identifier that calculates all derived values (URI
+ * encodings, issuing agency ID, local participant ID, SML DNS hash, validity)
+ * only once upon construction. Instances are best obtained from
+ * {@link com.helger.peppol.identifier.IdentifierPool} so that each distinct
+ * identifier is only created once.<br>
+ * As participant identifiers are case insensitive, {@link #equals(Object)} and
+ * {@link #hashCode()} are based on the lower case scheme and value.
+ *
+ * @author Philip Helger
+ */
+@Immutable
+public final class PooledParticipantIdentifier implements IPeppolParticipantIdentifier, Comparable <PooledParticipantIdentifier>
+{
+  private final String m_sScheme;
+  private final String m_sValue;
+  // Status vars
+  private final String m_sLowerCaseScheme;
+  private final String m_sLowerCaseValue;
+  private final boolean m_bDefaultScheme;
+  private final String m_sURIEncoded;
+  private final String m_sURIPercentEncoded;
+  private final String m_sIssuingAgencyID;
+  private final String m_sLocalParticipantID;
+  private final String m_sDNSHashValue;
+  private final boolean m_bValid;
+  private final int m_nHashCode;
+
+  public PooledParticipantIdentifier (@Nonnull final IParticipantIdentifier aIdentifier)
+  {
+    this (aIdentifier.getScheme (), aIdentifier.getValue ());
+  }
+
+  public PooledParticipantIdentifier (@Nullable final String sScheme, @Nullable final String sValue)
+  {
+    if (!IdentifierHelper.isValidParticipantIdentifierScheme (sScheme))
+      throw new IllegalArgumentException ("Participant identifier scheme '" + sScheme + "' is invalid!");
+    if (!IdentifierHelper.isValidParticipantIdentifierValue (sValue))
+      throw new IllegalArgumentException ("Participant identifier value '" + sValue + "' is invalid!");
+
+    m_sScheme = sScheme;
+    m_sValue = sValue;
+    m_sLowerCaseScheme = sScheme.toLowerCase (BusdoxURLHelper.URL_LOCALE);
+    m_sLowerCaseValue = sValue.toLowerCase (BusdoxURLHelper.URL_LOCALE);
+    m_bDefaultScheme = IdentifierHelper.hasDefaultParticipantIdentifierScheme (this);
+    m_sURIEncoded = IdentifierHelper.getIdentifierURIEncoded (this);
+    m_sURIPercentEncoded = BusdoxURLHelper.createPercentEncodedURL (m_sURIEncoded);
+    final ParticipantIdentifierValueParts aParts = IdentifierHelper.getParticipantIdentifierValueParts (this);
+    m_sIssuingAgencyID = aParts == null ? null : aParts.getIssuingAgencyID ();
+    m_sLocalParticipantID = aParts == null ? null : aParts.getLocalParticipantID ();
+    m_sDNSHashValue = BusdoxURLHelper.getHashValueStringRepresentation (m_sLowerCaseValue);
+    m_bValid = IdentifierValidator.isValidParticipantIdentifier (this);
+    m_nHashCode = new HashCodeGenerator (this).append (m_sLowerCaseScheme).append (m_sLowerCaseValue).getHashCode ();
+  }
+
+  @Nonnull
+  public String getScheme ()
+  {
+    return m_sScheme;
+  }
+
+  @Nonnull
+  public String getValue ()
+  {
+    return m_sValue;
+  }
+
+  /**
+   * @return The scheme in lower case. Never <code>null</code>.
+   */
+  @Nonnull
+  public String getLowerCaseScheme ()
+  {
+    return m_sLowerCaseScheme;
+  }
+
+  /**
+   * @return The value in lower case. Never <code>null</code>.
+   */
+  @Nonnull
+  public String getLowerCaseValue ()
+  {
+    return m_sLowerCaseValue;
+  }
+
+  public boolean isDefaultScheme ()
+  {
+    return m_bDefaultScheme;
+  }
+
+  @Nonnull
+  public String getURIEncoded ()
+  {
+    return m_sURIEncoded;
+  }
+
+  @Nonnull
+  public String getURIPercentEncoded ()
+  {
+    return m_sURIPercentEncoded;
+  }
+
+  public boolean isValid ()
+  {
+    return m_bValid;
+  }
+
+  @Nullable
+  public String getIssuingAgencyID ()
+  {
+    return m_sIssuingAgencyID;
+  }
+
+  @Nullable
+  public String getLocalParticipantID ()
+  {
+    return m_sLocalParticipantID;
+  }
+
+  /**
+   * @return The MD5 hash of the lower case value as used in the SML DNS name.
+   *         Never <code>null</code>.
+   * @see BusdoxURLHelper#getHashValueStringRepresentation(String)
+   */
+  @Nonnull
+  public String getDNSHashValue ()
+  {
+    return m_sDNSHashValue;
+  }
+
+  /**
+   * @return A new mutable copy of this identifier. Never <code>null</code>.
+   */
+  @Nonnull
+  public SimpleParticipantIdentifier getAsSimpleParticipantIdentifier ()
+  {
+    return new SimpleParticipantIdentifier (m_sScheme, m_sValue);
+  }
+
+  public int compareTo (@Nonnull final PooledParticipantIdentifier aOther)
+  {
+    return IdentifierHelper.compareParticipantIdentifiers (this, aOther);
+  }
+
+  @Override
+  public boolean equals (final Object o)
+  {
+    if (o == this)
+      return true;
+    if (o == null || !getClass ().equals (o.getClass ()))
+      return false;
+    final PooledParticipantIdentifier rhs = (PooledParticipantIdentifier) o;
+    return m_nHashCode == rhs.m_nHashCode &&
+           m_sLowerCaseScheme.equals (rhs.m_sLowerCaseScheme) &&
+           m_sLowerCaseValue.equals (rhs.m_sLowerCaseValue);
+  }
+
+  @Override
+  public int hashCode ()
+  {
+    return m_nHashCode;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("Scheme", m_sScheme).append ("Value", m_sValue).toString ();
+  }
+}
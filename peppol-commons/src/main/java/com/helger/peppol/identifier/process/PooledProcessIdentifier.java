@@ -0,0 +1,159 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.identifier.process;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import com.helger.commons.hashcode.HashCodeGenerator;
+import com.helger.commons.string.ToStringGenerator;
+import com.helger.peppol.identifier.IProcessIdentifier;
+import com.helger.peppol.identifier.IdentifierHelper;
+import com.helger.peppol.utils.BusdoxURLHelper;
+
+/**
+ * An immutable process identifier that calculates the URI encodings only once
+ * upon construction. Instances are best obtained from
+ * {@link com.helger.peppol.identifier.IdentifierPool} so that each distinct
+ * identifier is only created once.<br>
+ * As process identifiers are case sensitive, {@link #equals(Object)} and
+ * {@link #hashCode()} are based on the scheme and value as they are.
+ *
+ * @author Philip Helger
+ */
+@Immutable
+public final class PooledProcessIdentifier implements IPeppolProcessIdentifier, Comparable <PooledProcessIdentifier>
+{
+  private final String m_sScheme;
+  private final String m_sValue;
+  // Status vars
+  private final boolean m_bDefaultScheme;
+  private final String m_sURIEncoded;
+  private final String m_sURIPercentEncoded;
+  private final int m_nHashCode;
+
+  public PooledProcessIdentifier (@Nonnull final IProcessIdentifier aIdentifier)
+  {
+    this (aIdentifier.getScheme (), aIdentifier.getValue ());
+  }
+
+  public PooledProcessIdentifier (@Nullable final String sScheme, @Nullable final String sValue)
+  {
+    if (!IdentifierHelper.isValidIdentifierScheme (sScheme))
+      throw new IllegalArgumentException ("Process identifier scheme '" + sScheme + "' is invalid!");
+    if (!IdentifierHelper.isValidProcessIdentifierValue (sValue))
+      throw new IllegalArgumentException ("Process identifier value '" + sValue + "' is invalid!");
+
+    m_sScheme = sScheme;
+    m_sValue = sValue;
+    m_bDefaultScheme = IdentifierHelper.hasDefaultProcessIdentifierScheme (this);
+    m_sURIEncoded = IdentifierHelper.getIdentifierURIEncoded (this);
+    m_sURIPercentEncoded = BusdoxURLHelper.createPercentEncodedURL (m_sURIEncoded);
+    m_nHashCode = new HashCodeGenerator (this).append (m_sScheme).append (m_sValue).getHashCode ();
+  }
+
+  @Nonnull
+  public String getScheme ()
+  {
+    return m_sScheme;
+  }
+
+  @Nonnull
+  public String getValue ()
+  {
+    return m_sValue;
+  }
+
+  public boolean isDefaultScheme ()
+  {
+    return m_bDefaultScheme;
+  }
+
+  @Nonnull
+  public String getURIEncoded ()
+  {
+    return m_sURIEncoded;
+  }
+
+  @Nonnull
+  public String getURIPercentEncoded ()
+  {
+    return m_sURIPercentEncoded;
+  }
+
+  /**
+   * @return A new mutable copy of this identifier. Never <code>null</code>.
+   */
+  @Nonnull
+  public SimpleProcessIdentifier getAsSimpleProcessIdentifier ()
+  {
+    return new SimpleProcessIdentifier (m_sScheme, m_sValue);
+  }
+
+  public int compareTo (@Nonnull final PooledProcessIdentifier aOther)
+  {
+    return IdentifierHelper.compareProcessIdentifiers (this, aOther);
+  }
+
+  @Override
+  public boolean equals (final Object o)
+  {
+    if (o == this)
+      return true;
+    if (o == null || !getClass ().equals (o.getClass ()))
+      return false;
+    final PooledProcessIdentifier rhs = (PooledProcessIdentifier) o;
+    return m_nHashCode == rhs.m_nHashCode && m_sScheme.equals (rhs.m_sScheme) && m_sValue.equals (rhs.m_sValue);
+  }
+
+  @Override
+  public int hashCode ()
+  {
+    return m_nHashCode;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("Scheme", m_sScheme).append ("Value", m_sValue).toString ();
+  }
+}
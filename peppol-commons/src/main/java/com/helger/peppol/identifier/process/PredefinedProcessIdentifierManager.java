@@ -53,7 +53,6 @@ import com.helger.commons.annotation.Nonempty;
 import com.helger.commons.annotation.PresentForCodeCoverage;
 import com.helger.commons.annotation.ReturnsMutableCopy;
 import com.helger.commons.collection.CollectionHelper;
-import com.helger.peppol.identifier.IdentifierHelper;
 
 /**
  * This class manages the predefined PEPPOL process identifiers the
@@ -116,14 +115,12 @@ public final class PredefinedProcessIdentifierManager
   @Nullable
   public static IPeppolPredefinedProcessIdentifier getProcessIdentifierOfID (@Nullable final String sProcIDValue)
   {
-    if (sProcIDValue != null)
-      for (final Map.Entry <String, IPeppolPredefinedProcessIdentifier> aEntry : s_aCodes.entrySet ())
-      {
-        // Use case insensitive identifier value comparison
-        if (IdentifierHelper.areProcessIdentifierValuesEqual (sProcIDValue, aEntry.getKey ()))
-          return aEntry.getValue ();
-      }
-    return null;
+    if (sProcIDValue == null)
+      return null;
+    // Process identifier values are compared case sensitive (see
+    // IdentifierHelper.areProcessIdentifierValuesEqual) so a direct map lookup
+    // is sufficient
+    return s_aCodes.get (sProcIDValue);
   }
 
   /**
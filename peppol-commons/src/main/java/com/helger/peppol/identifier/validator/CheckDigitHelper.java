@@ -0,0 +1,280 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.identifier.validator;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import com.helger.commons.annotation.PresentForCodeCoverage;
+
+/**
+ * The shared check digit algorithms used by the
+ * {@link IParticipantIdentifierValidatorSPI} implementations. All methods
+ * operate directly on the characters of the passed string and don't allocate
+ * any objects.
+ *
+ * @author Philip Helger
+ */
+@Immutable
+public final class CheckDigitHelper
+{
+  @SuppressWarnings ("unused")
+  @PresentForCodeCoverage
+  private static final CheckDigitHelper s_aInstance = new CheckDigitHelper ();
+
+  private CheckDigitHelper ()
+  {}
+
+  /**
+   * Get the numeric value of an ASCII digit.
+   *
+   * @param c
+   *        The character to check.
+   * @return The numeric value 0-9 or -1 if the passed character is not an
+   *         ASCII digit.
+   */
+  public static int getDigitValue (final char c)
+  {
+    return c >= '0' && c <= '9' ? c - '0' : -1;
+  }
+
+  /**
+   * Check if the passed string has the specified length and consists of ASCII
+   * digits only.
+   *
+   * @param sValue
+   *        The value to check. May be <code>null</code>.
+   * @param nLength
+   *        The expected length.
+   * @return <code>true</code> if the value has the expected length and only
+   *         contains the digits 0-9.
+   */
+  public static boolean isDigits (@Nullable final String sValue, @Nonnegative final int nLength)
+  {
+    return sValue != null && sValue.length () == nLength && isDigits (sValue, 0, nLength);
+  }
+
+  /**
+   * Check if the passed part of the string consists of ASCII digits only.
+   *
+   * @param sValue
+   *        The value to check. May not be <code>null</code>.
+   * @param nOfs
+   *        The index of the first character to check.
+   * @param nLen
+   *        The number of characters to check.
+   * @return <code>true</code> if all characters are in the range 0-9.
+   */
+  public static boolean isDigits (@Nonnull final String sValue,
+                                  @Nonnegative final int nOfs,
+                                  @Nonnegative final int nLen)
+  {
+    for (int i = nOfs; i < nOfs + nLen; ++i)
+    {
+      final char c = sValue.charAt (i);
+      if (c < '0' || c > '9')
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * Get the weighted sum of the digits starting at the passed offset. The
+   * number of digits is determined by the number of weights.
+   *
+   * @param sValue
+   *        The value to use. May not be <code>null</code>.
+   * @param nOfs
+   *        The index of the first digit.
+   * @param aWeights
+   *        The weight of each digit. May not be <code>null</code>.
+   * @return The weighted sum or -1 if a non-digit character was found.
+   */
+  public static int getWeightedSum (@Nonnull final String sValue,
+                                    @Nonnegative final int nOfs,
+                                    @Nonnull final int [] aWeights)
+  {
+    int nSum = 0;
+    for (int i = 0; i < aWeights.length; ++i)
+    {
+      final int nDigit = getDigitValue (sValue.charAt (nOfs + i));
+      if (nDigit < 0)
+        return -1;
+      nSum += nDigit * aWeights[i];
+    }
+    return nSum;
+  }
+
+  /**
+   * Get the modulus 11 check digit of the digits starting at the passed
+   * offset. The check digit is <code>11 - (sum % 11)</code>, where a result of
+   * 11 means 0.
+   *
+   * @param sValue
+   *        The value to use. May not be <code>null</code>.
+   * @param nOfs
+   *        The index of the first digit.
+   * @param aWeights
+   *        The weight of each digit. May not be <code>null</code>.
+   * @return The check digit 0-9 or -1 if a non-digit character was found or if
+   *         the passed digits result in a check digit of 10, which is never
+   *         valid.
+   */
+  public static int getMod11CheckDigit (@Nonnull final String sValue,
+                                        @Nonnegative final int nOfs,
+                                        @Nonnull final int [] aWeights)
+  {
+    final int nSum = getWeightedSum (sValue, nOfs, aWeights);
+    if (nSum < 0)
+      return -1;
+    final int nCheckDigit = (11 - nSum % 11) % 11;
+    return nCheckDigit == 10 ? -1 : nCheckDigit;
+  }
+
+  /**
+   * Check the passed digits with the Luhn (modulus 10) algorithm. The last
+   * digit is the check digit.
+   *
+   * @param sValue
+   *        The value to check. May not be <code>null</code>.
+   * @param nOfs
+   *        The index of the first digit.
+   * @param nLen
+   *        The number of digits including the check digit.
+   * @return <code>true</code> if all characters are digits and the check digit
+   *         is correct.
+   */
+  public static boolean isValidLuhn (@Nonnull final String sValue,
+                                     @Nonnegative final int nOfs,
+                                     @Nonnegative final int nLen)
+  {
+    int nSum = 0;
+    boolean bDouble = false;
+    for (int i = nOfs + nLen - 1; i >= nOfs; --i)
+    {
+      int nDigit = getDigitValue (sValue.charAt (i));
+      if (nDigit < 0)
+        return false;
+      if (bDouble)
+      {
+        nDigit *= 2;
+        if (nDigit > 9)
+          nDigit -= 9;
+      }
+      nSum += nDigit;
+      bDouble = !bDouble;
+    }
+    return nSum % 10 == 0;
+  }
+
+  /**
+   * Check the passed digits with the GS1 modulus 10 algorithm as used e.g. for
+   * GLN and GTIN. The last digit is the check digit.
+   *
+   * @param sValue
+   *        The value to check. May not be <code>null</code>.
+   * @param nOfs
+   *        The index of the first digit.
+   * @param nLen
+   *        The number of digits including the check digit.
+   * @return <code>true</code> if all characters are digits and the check digit
+   *         is correct.
+   */
+  public static boolean isValidGS1 (@Nonnull final String sValue,
+                                    @Nonnegative final int nOfs,
+                                    @Nonnegative final int nLen)
+  {
+    int nSum = 0;
+    boolean bTriple = false;
+    for (int i = nOfs + nLen - 1; i >= nOfs; --i)
+    {
+      final int nDigit = getDigitValue (sValue.charAt (i));
+      if (nDigit < 0)
+        return false;
+      nSum += bTriple ? nDigit * 3 : nDigit;
+      bTriple = !bTriple;
+    }
+    return nSum % 10 == 0;
+  }
+
+  /**
+   * Continue an ISO 7064 modulus 97 calculation with the passed characters.
+   * Digits are used as they are and the letters A-Z (case insensitive) are
+   * used as the numbers 10-35. The numeric representation of the string is
+   * never created.
+   *
+   * @param nRemainder
+   *        The remainder of the previous characters. Use 0 to start a new
+   *        calculation.
+   * @param sValue
+   *        The value to use. May not be <code>null</code>.
+   * @param nOfs
+   *        The index of the first character.
+   * @param nLen
+   *        The number of characters to use.
+   * @return The new remainder in the range 0-96 or -1 if a character other
+   *         than a digit or a letter was found.
+   */
+  public static int getMod97 (@Nonnegative final int nRemainder,
+                              @Nonnull final String sValue,
+                              @Nonnegative final int nOfs,
+                              @Nonnegative final int nLen)
+  {
+    int ret = nRemainder;
+    for (int i = nOfs; i < nOfs + nLen; ++i)
+    {
+      final char c = sValue.charAt (i);
+      if (c >= '0' && c <= '9')
+        ret = (ret * 10 + c - '0') % 97;
+      else
+        if (c >= 'A' && c <= 'Z')
+          ret = (ret * 100 + c - 'A' + 10) % 97;
+        else
+          if (c >= 'a' && c <= 'z')
+            ret = (ret * 100 + c - 'a' + 10) % 97;
+          else
+            return -1;
+    }
+    return ret;
+  }
+}
@@ -40,9 +40,18 @@
  */
 package com.helger.peppol.identifier.validator;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
+import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.Immutable;
 
 import org.slf4j.Logger;
@@ -52,26 +61,67 @@ import com.helger.commons.ValueEnforcer;
 import com.helger.commons.annotation.PresentForCodeCoverage;
 import com.helger.commons.lang.ServiceLoaderHelper;
 import com.helger.peppol.identifier.CIdentifier;
+import com.helger.peppol.identifier.IdentifierHelper;
+import com.helger.peppol.identifier.issuingagency.IIdentifierIssuingAgency;
+import com.helger.peppol.identifier.issuingagency.IdentifierIssuingAgencyManager;
 import com.helger.peppol.identifier.participant.IPeppolParticipantIdentifier;
+import com.helger.peppol.identifier.participant.ParticipantIdentifierValueParts;
 
 /**
- * A wrapper around the custom identifier validator implementations.
+ * A wrapper around the custom identifier validator implementations.<br>
+ * Upon startup each validator is asked once for all issuing agencies known to
+ * {@link IdentifierIssuingAgencyManager}, so that only the responsible
+ * validators need to be invoked for a participant identifier. The verdicts
+ * are cached in a bounded LRU cache.
  *
  * @author philip
  */
 @Immutable
 public final class IdentifierValidator
 {
+  /** The maximum number of verdicts cached by isValidParticipantIdentifier */
+  public static final int VERDICT_CACHE_MAX_SIZE = 10000;
+
   private static final Logger s_aLogger = LoggerFactory.getLogger (IdentifierValidator.class);
   private static final List <IParticipantIdentifierValidatorSPI> s_aParticipantIDValidators;
+  // Issuing agency ID to all validators supporting it - in SPI order
+  private static final Map <String, List <IParticipantIdentifierValidatorSPI>> s_aValidatorsByIssuingAgencyID = new HashMap <String, List <IParticipantIdentifierValidatorSPI>> ();
+
+  private static final Lock s_aLock = new ReentrantLock ();
+  // Participant identifier value to verdict - access order for LRU
+  @GuardedBy ("s_aLock")
+  private static final Map <String, Boolean> s_aVerdictCache = new LinkedHashMap <String, Boolean> (16, 0.75f, true)
+  {
+    @Override
+    protected boolean removeEldestEntry (final Map.Entry <String, Boolean> aEldest)
+    {
+      return size () > VERDICT_CACHE_MAX_SIZE;
+    }
+  };
 
   static
   {
     s_aParticipantIDValidators = ServiceLoaderHelper.getAllSPIImplementations (IParticipantIdentifierValidatorSPI.class);
     if (!s_aParticipantIDValidators.isEmpty ())
+    {
       s_aLogger.info ("Loaded " +
                       s_aParticipantIDValidators.size () +
                       " SPI implementations of IParticipantIdentifierValidatorSPI");
+
+      // Build the index
+      for (final IIdentifierIssuingAgency aAgency : IdentifierIssuingAgencyManager.getAllAgencies ())
+      {
+        final String sIssuingAgencyID = aAgency.getISO6523Code ();
+        if (s_aValidatorsByIssuingAgencyID.containsKey (sIssuingAgencyID))
+          continue;
+
+        final List <IParticipantIdentifierValidatorSPI> aValidators = new ArrayList <IParticipantIdentifierValidatorSPI> ();
+        for (final IParticipantIdentifierValidatorSPI aValidator : s_aParticipantIDValidators)
+          if (aValidator.isSupportedIssuingAgency (sIssuingAgencyID))
+            aValidators.add (aValidator);
+        s_aValidatorsByIssuingAgencyID.put (sIssuingAgencyID, aValidators);
+      }
+    }
   }
 
   @SuppressWarnings ("unused")
@@ -81,6 +131,42 @@ public final class IdentifierValidator
   private IdentifierValidator ()
   {}
 
+  /**
+   * Get all validators that support the passed issuing agency ID.
+   *
+   * @param sIssuingAgencyID
+   *        The issuing agency ID to check. May be <code>null</code>.
+   * @return Never <code>null</code> but maybe empty. The returned list may not
+   *         be modified.
+   */
+  @Nonnull
+  private static List <IParticipantIdentifierValidatorSPI> _getAllValidators (@Nullable final String sIssuingAgencyID)
+  {
+    final List <IParticipantIdentifierValidatorSPI> ret = s_aValidatorsByIssuingAgencyID.get (sIssuingAgencyID);
+    if (ret != null)
+      return ret;
+
+    // Issuing agency is not in the index - ask all validators
+    final List <IParticipantIdentifierValidatorSPI> aValidators = new ArrayList <IParticipantIdentifierValidatorSPI> ();
+    for (final IParticipantIdentifierValidatorSPI aValidator : s_aParticipantIDValidators)
+      if (aValidator.isSupportedIssuingAgency (sIssuingAgencyID))
+        aValidators.add (aValidator);
+    return aValidators;
+  }
+
+  private static boolean _isValid (@Nonnull final List <IParticipantIdentifierValidatorSPI> aValidators,
+                                   @Nullable final ParticipantIdentifierValueParts aParts)
+  {
+    final String sLocal = aParts == null ? null : aParts.getLocalParticipantID ();
+    for (final IParticipantIdentifierValidatorSPI aValidator : aValidators)
+      if (aValidator.isValueValid (sLocal))
+      {
+        // At least one matching is fine for us
+        return true;
+      }
+    return false;
+  }
+
   /**
    * Check if the passed participant ID matches all custom rules. But only
    * participant IDs with the default scheme
@@ -104,27 +190,102 @@ public final class IdentifierValidator
     if (!aParticipantID.isDefaultScheme ())
       return true;
 
-    boolean bAtLeastOneSupported = false;
-    final String sIssuingAgencyID = aParticipantID.getIssuingAgencyID ();
-    final String sLocal = aParticipantID.getLocalParticipantID ();
+    // Split the value only once
+    final ParticipantIdentifierValueParts aParts = IdentifierHelper.getParticipantIdentifierValueParts (aParticipantID);
+    final String sIssuingAgencyID = aParts == null ? null : aParts.getIssuingAgencyID ();
 
-    // For all SPI instances
-    for (final IParticipantIdentifierValidatorSPI aValidator : s_aParticipantIDValidators)
-      if (aValidator.isSupportedIssuingAgency (sIssuingAgencyID))
-      {
-        if (aValidator.isValueValid (sLocal))
-        {
-          // At least one matching is fine for us
-          return true;
-        }
-        bAtLeastOneSupported = true;
-      }
+    final List <IParticipantIdentifierValidatorSPI> aValidators = _getAllValidators (sIssuingAgencyID);
+    if (aValidators.isEmpty ())
+    {
+      // No validator found!
+      return true;
+    }
 
-    // None matched
-    if (bAtLeastOneSupported)
-      return false;
+    // The verdict only depends on the value
+    final String sCacheKey = aParticipantID.getValue ();
+    s_aLock.lock ();
+    try
+    {
+      final Boolean aVerdict = s_aVerdictCache.get (sCacheKey);
+      if (aVerdict != null)
+        return aVerdict.booleanValue ();
+    }
+    finally
+    {
+      s_aLock.unlock ();
+    }
 
-    // No validator found!
-    return true;
+    // Validate outside of the lock
+    final boolean bValid = _isValid (aValidators, aParts);
+
+    s_aLock.lock ();
+    try
+    {
+      s_aVerdictCache.put (sCacheKey, Boolean.valueOf (bValid));
+    }
+    finally
+    {
+      s_aLock.unlock ();
+    }
+    return bValid;
+  }
+
+  /**
+   * Same as {@link #isValidParticipantIdentifier(IPeppolParticipantIdentifier)}
+   * but without using the verdict cache. Used for bulk validation of mostly
+   * unique values, which would only contend on the lock of the cache and evict
+   * the verdicts of the regular callers.
+   *
+   * @param aParticipantID
+   *        The participant ID to validate. May not be <code>null</code>.
+   * @return See
+   *         {@link #isValidParticipantIdentifier(IPeppolParticipantIdentifier)}
+   */
+  static boolean isValidParticipantIdentifierUncached (@Nonnull final IPeppolParticipantIdentifier aParticipantID)
+  {
+    ValueEnforcer.notNull (aParticipantID, "ParticipantID");
+
+    // Only validate our default scheme
+    if (!aParticipantID.isDefaultScheme ())
+      return true;
+
+    final ParticipantIdentifierValueParts aParts = IdentifierHelper.getParticipantIdentifierValueParts (aParticipantID);
+    final List <IParticipantIdentifierValidatorSPI> aValidators = _getAllValidators (aParts == null ? null
+                                                                                                   : aParts.getIssuingAgencyID ());
+    // No validator found means valid
+    return aValidators.isEmpty () || _isValid (aValidators, aParts);
+  }
+
+  /**
+   * @return The number of cached validation verdicts. Always &ge; 0.
+   */
+  @Nonnegative
+  public static int getVerdictCacheSize ()
+  {
+    s_aLock.lock ();
+    try
+    {
+      return s_aVerdictCache.size ();
+    }
+    finally
+    {
+      s_aLock.unlock ();
+    }
+  }
+
+  /**
+   * Remove all cached validation verdicts.
+   */
+  public static void clearVerdictCache ()
+  {
+    s_aLock.lock ();
+    try
+    {
+      s_aVerdictCache.clear ();
+    }
+    finally
+    {
+      s_aLock.unlock ();
+    }
   }
 }
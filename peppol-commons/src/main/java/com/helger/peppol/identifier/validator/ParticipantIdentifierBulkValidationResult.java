@@ -0,0 +1,359 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.identifier.validator;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.annotation.ReturnsMutableCopy;
+import com.helger.commons.collection.CollectionHelper;
+import com.helger.commons.string.ToStringGenerator;
+import com.helger.peppol.identifier.issuingagency.EPredefinedIdentifierIssuingAgency;
+
+/**
+ * The compact report of {@link ParticipantIdentifierBulkValidator}. Only
+ * counters and a limited number of invalid rows are stored, so the size of
+ * this object does not depend on the number of validated identifiers.<br>
+ * All counters are kept per {@link EPredefinedIdentifierIssuingAgency}.
+ * Identifiers that are not using the default scheme or that use an unknown
+ * issuing agency are counted for the <code>null</code> agency.
+ *
+ * @author Philip Helger
+ */
+@NotThreadSafe
+public final class ParticipantIdentifierBulkValidationResult
+{
+  /**
+   * A single invalid row.
+   *
+   * @author Philip Helger
+   */
+  @Immutable
+  public static final class InvalidRow
+  {
+    private final long m_nRowNumber;
+    private final String m_sRawValue;
+    private final EPredefinedIdentifierIssuingAgency m_eAgency;
+    private final EParticipantIdentifierValidationError m_eError;
+
+    InvalidRow (@Nonnegative final long nRowNumber,
+                @Nonnull final String sRawValue,
+                @Nullable final EPredefinedIdentifierIssuingAgency eAgency,
+                @Nonnull final EParticipantIdentifierValidationError eError)
+    {
+      m_nRowNumber = nRowNumber;
+      m_sRawValue = sRawValue;
+      m_eAgency = eAgency;
+      m_eError = eError;
+    }
+
+    /**
+     * @return The 1-based row number of the invalid identifier in the source.
+     */
+    @Nonnegative
+    public long getRowNumber ()
+    {
+      return m_nRowNumber;
+    }
+
+    /**
+     * @return The raw value as read from the source. Never <code>null</code>.
+     */
+    @Nonnull
+    public String getRawValue ()
+    {
+      return m_sRawValue;
+    }
+
+    /**
+     * @return The issuing agency of the identifier. May be <code>null</code>
+     *         if it could not be determined.
+     */
+    @Nullable
+    public EPredefinedIdentifierIssuingAgency getAgency ()
+    {
+      return m_eAgency;
+    }
+
+    /**
+     * @return The reason why the identifier is invalid. Never
+     *         <code>null</code>.
+     */
+    @Nonnull
+    public EParticipantIdentifierValidationError getError ()
+    {
+      return m_eError;
+    }
+
+    @Override
+    public String toString ()
+    {
+      return new ToStringGenerator (this).append ("rowNumber", m_nRowNumber)
+                                         .append ("rawValue", m_sRawValue)
+                                         .append ("agency", m_eAgency)
+                                         .append ("error", m_eError)
+                                         .toString ();
+    }
+  }
+
+  private static final int AGENCY_COUNT = EPredefinedIdentifierIssuingAgency.values ().length;
+  private static final int ERROR_COUNT = EParticipantIdentifierValidationError.values ().length;
+
+  private final int m_nMaxInvalidRows;
+  private long m_nSkippedCount;
+  // Index AGENCY_COUNT is used for the null agency
+  private final long [] m_aValidCounts = new long [AGENCY_COUNT + 1];
+  private final long [] [] m_aInvalidCounts = new long [AGENCY_COUNT + 1] [ERROR_COUNT];
+  private final List <InvalidRow> m_aInvalidRows = new ArrayList <InvalidRow> ();
+  private boolean m_bInvalidRowsTruncated = false;
+
+  ParticipantIdentifierBulkValidationResult (@Nonnegative final int nMaxInvalidRows)
+  {
+    ValueEnforcer.isGE0 (nMaxInvalidRows, "MaxInvalidRows");
+    m_nMaxInvalidRows = nMaxInvalidRows;
+  }
+
+  private static int _getIndex (@Nullable final EPredefinedIdentifierIssuingAgency eAgency)
+  {
+    return eAgency == null ? AGENCY_COUNT : eAgency.ordinal ();
+  }
+
+  void addSkipped ()
+  {
+    m_nSkippedCount++;
+  }
+
+  void addValid (@Nullable final EPredefinedIdentifierIssuingAgency eAgency)
+  {
+    m_aValidCounts[_getIndex (eAgency)]++;
+  }
+
+  void addInvalid (@Nonnegative final long nRowNumber,
+                   @Nonnull final String sRawValue,
+                   @Nullable final EPredefinedIdentifierIssuingAgency eAgency,
+                   @Nonnull final EParticipantIdentifierValidationError eError)
+  {
+    m_aInvalidCounts[_getIndex (eAgency)][eError.ordinal ()]++;
+    if (m_aInvalidRows.size () < m_nMaxInvalidRows)
+      m_aInvalidRows.add (new InvalidRow (nRowNumber, sRawValue, eAgency, eError));
+    else
+      m_bInvalidRowsTruncated = true;
+  }
+
+  /**
+   * Add all counters and invalid rows of the passed result. The rows of the
+   * passed result must come after the rows already contained.
+   *
+   * @param aOther
+   *        The result to add. May not be <code>null</code>.
+   */
+  void addAll (@Nonnull final ParticipantIdentifierBulkValidationResult aOther)
+  {
+    m_nSkippedCount += aOther.m_nSkippedCount;
+    for (int i = 0; i <= AGENCY_COUNT; ++i)
+    {
+      m_aValidCounts[i] += aOther.m_aValidCounts[i];
+      for (int j = 0; j < ERROR_COUNT; ++j)
+        m_aInvalidCounts[i][j] += aOther.m_aInvalidCounts[i][j];
+    }
+    for (final InvalidRow aRow : aOther.m_aInvalidRows)
+      if (m_aInvalidRows.size () < m_nMaxInvalidRows)
+        m_aInvalidRows.add (aRow);
+      else
+      {
+        m_bInvalidRowsTruncated = true;
+        break;
+      }
+    if (aOther.m_bInvalidRowsTruncated)
+      m_bInvalidRowsTruncated = true;
+  }
+
+  /**
+   * @return The number of empty rows that were skipped. Always &ge; 0.
+   */
+  @Nonnegative
+  public long getSkippedCount ()
+  {
+    return m_nSkippedCount;
+  }
+
+  /**
+   * @return The number of validated rows (valid and invalid). Skipped rows
+   *         are not contained. Always &ge; 0.
+   */
+  @Nonnegative
+  public long getTotalCount ()
+  {
+    return getValidCount () + getInvalidCount ();
+  }
+
+  /**
+   * @return The number of valid participant identifiers. Always &ge; 0.
+   */
+  @Nonnegative
+  public long getValidCount ()
+  {
+    long ret = 0;
+    for (final long nCount : m_aValidCounts)
+      ret += nCount;
+    return ret;
+  }
+
+  /**
+   * @param eAgency
+   *        The issuing agency to query. May be <code>null</code>.
+   * @return The number of valid participant identifiers of the passed issuing
+   *         agency. Always &ge; 0.
+   */
+  @Nonnegative
+  public long getValidCount (@Nullable final EPredefinedIdentifierIssuingAgency eAgency)
+  {
+    return m_aValidCounts[_getIndex (eAgency)];
+  }
+
+  /**
+   * @return The number of invalid participant identifiers. Always &ge; 0.
+   */
+  @Nonnegative
+  public long getInvalidCount ()
+  {
+    long ret = 0;
+    for (final long [] aCounts : m_aInvalidCounts)
+      for (final long nCount : aCounts)
+        ret += nCount;
+    return ret;
+  }
+
+  /**
+   * @param eError
+   *        The error to query. May not be <code>null</code>.
+   * @return The number of participant identifiers that are invalid because of
+   *         the passed error. Always &ge; 0.
+   */
+  @Nonnegative
+  public long getInvalidCount (@Nonnull final EParticipantIdentifierValidationError eError)
+  {
+    ValueEnforcer.notNull (eError, "Error");
+
+    long ret = 0;
+    for (final long [] aCounts : m_aInvalidCounts)
+      ret += aCounts[eError.ordinal ()];
+    return ret;
+  }
+
+  /**
+   * @param eAgency
+   *        The issuing agency to query. May be <code>null</code>.
+   * @param eError
+   *        The error to query. May not be <code>null</code>.
+   * @return The number of participant identifiers of the passed issuing agency
+   *         that are invalid because of the passed error. Always &ge; 0.
+   */
+  @Nonnegative
+  public long getInvalidCount (@Nullable final EPredefinedIdentifierIssuingAgency eAgency,
+                               @Nonnull final EParticipantIdentifierValidationError eError)
+  {
+    ValueEnforcer.notNull (eError, "Error");
+
+    return m_aInvalidCounts[_getIndex (eAgency)][eError.ordinal ()];
+  }
+
+  /**
+   * @return All issuing agencies that have at least one invalid participant
+   *         identifier. Never <code>null</code>. The <code>null</code> agency
+   *         is not contained.
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public Set <EPredefinedIdentifierIssuingAgency> getAllAgenciesWithInvalidIdentifiers ()
+  {
+    final Set <EPredefinedIdentifierIssuingAgency> ret = EnumSet.noneOf (EPredefinedIdentifierIssuingAgency.class);
+    for (final EPredefinedIdentifierIssuingAgency eAgency : EPredefinedIdentifierIssuingAgency.values ())
+      for (final long nCount : m_aInvalidCounts[eAgency.ordinal ()])
+        if (nCount > 0)
+        {
+          ret.add (eAgency);
+          break;
+        }
+    return ret;
+  }
+
+  /**
+   * @return The first invalid rows in source order. Never <code>null</code>.
+   * @see #isInvalidRowListTruncated()
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public List <InvalidRow> getAllInvalidRows ()
+  {
+    return CollectionHelper.newList (m_aInvalidRows);
+  }
+
+  /**
+   * @return <code>true</code> if there were more invalid rows than the
+   *         configured maximum, so that {@link #getAllInvalidRows()} does not
+   *         contain all of them.
+   */
+  public boolean isInvalidRowListTruncated ()
+  {
+    return m_bInvalidRowsTruncated;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("skippedCount", m_nSkippedCount)
+                                       .append ("validCount", getValidCount ())
+                                       .append ("invalidCount", getInvalidCount ())
+                                       .append ("invalidRows", m_aInvalidRows)
+                                       .append ("invalidRowsTruncated", m_bInvalidRowsTruncated)
+                                       .toString ();
+  }
+}
@@ -0,0 +1,400 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.identifier.validator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.string.ToStringGenerator;
+import com.helger.peppol.identifier.CIdentifier;
+import com.helger.peppol.identifier.IdentifierHelper;
+import com.helger.peppol.identifier.issuingagency.EPredefinedIdentifierIssuingAgency;
+import com.helger.peppol.identifier.issuingagency.IIdentifierIssuingAgency;
+import com.helger.peppol.identifier.issuingagency.IdentifierIssuingAgencyManager;
+import com.helger.peppol.identifier.participant.ParticipantIdentifierValueParts;
+import com.helger.peppol.identifier.participant.SimpleParticipantIdentifier;
+
+/**
+ * Validate large amounts of participant identifiers in the form
+ * <code>scheme::value</code> (e.g.
+ * <code>iso6523-actorid-upis::0088:123456</code>) in parallel. Each
+ * identifier is checked with
+ * {@link IdentifierHelper#createParticipantIdentifierFromURIPartOrNull(String)}
+ * and {@link IdentifierValidator#isValidParticipantIdentifier(com.helger.peppol.identifier.participant.IPeppolParticipantIdentifier)}
+ * .<br>
+ * The source is read in chunks on the calling thread and the chunks are
+ * validated on the provided executor service. Only a limited number of chunks
+ * is in flight at the same time, so the memory consumption does not depend on
+ * the size of the source. Empty lines are skipped. The validation must not be
+ * started from a thread of the used executor service.
+ *
+ * @author Philip Helger
+ */
+@ThreadSafe
+public class ParticipantIdentifierBulkValidator
+{
+  /** The default number of lines validated in one task */
+  public static final int DEFAULT_CHUNK_SIZE = 1000;
+  /** The default maximum number of invalid rows contained in the result */
+  public static final int DEFAULT_MAX_INVALID_ROWS = 1000;
+
+  /**
+   * Abstraction over the different sources.
+   */
+  private static interface ILineProvider
+  {
+    @Nullable
+    String getNextLine () throws IOException;
+  }
+
+  private final ExecutorService m_aExecutorService;
+  private final int m_nMaxChunksInFlight;
+  private final int m_nChunkSize;
+  private final int m_nMaxInvalidRows;
+
+  /**
+   * Constructor using the default chunk size and the default maximum number
+   * of invalid rows.
+   *
+   * @param aExecutorService
+   *        The executor service on which the validation is performed. May not
+   *        be <code>null</code>.
+   * @param nParallelism
+   *        The number of threads of the executor service to be used. Must be
+   *        &gt; 0.
+   */
+  public ParticipantIdentifierBulkValidator (@Nonnull final ExecutorService aExecutorService,
+                                             @Nonnegative final int nParallelism)
+  {
+    this (aExecutorService, nParallelism, DEFAULT_CHUNK_SIZE, DEFAULT_MAX_INVALID_ROWS);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param aExecutorService
+   *        The executor service on which the validation is performed. May not
+   *        be <code>null</code>.
+   * @param nParallelism
+   *        The number of threads of the executor service to be used. Must be
+   *        &gt; 0. Twice as many chunks are kept in flight so that no thread
+   *        runs idle while the next chunk is read.
+   * @param nChunkSize
+   *        The number of lines validated in one task. Must be &gt; 0.
+   * @param nMaxInvalidRows
+   *        The maximum number of invalid rows contained in the result. Must be
+   *        &ge; 0.
+   */
+  public ParticipantIdentifierBulkValidator (@Nonnull final ExecutorService aExecutorService,
+                                             @Nonnegative final int nParallelism,
+                                             @Nonnegative final int nChunkSize,
+                                             @Nonnegative final int nMaxInvalidRows)
+  {
+    ValueEnforcer.notNull (aExecutorService, "ExecutorService");
+    ValueEnforcer.isGT0 (nParallelism, "Parallelism");
+    ValueEnforcer.isGT0 (nChunkSize, "ChunkSize");
+    ValueEnforcer.isGE0 (nMaxInvalidRows, "MaxInvalidRows");
+    m_aExecutorService = aExecutorService;
+    m_nMaxChunksInFlight = nParallelism * 2;
+    m_nChunkSize = nChunkSize;
+    m_nMaxInvalidRows = nMaxInvalidRows;
+  }
+
+  /**
+   * @return The number of lines validated in one task. Always &gt; 0.
+   */
+  @Nonnegative
+  public int getChunkSize ()
+  {
+    return m_nChunkSize;
+  }
+
+  /**
+   * @return The maximum number of invalid rows contained in the result. Always
+   *         &ge; 0.
+   */
+  @Nonnegative
+  public int getMaxInvalidRows ()
+  {
+    return m_nMaxInvalidRows;
+  }
+
+  /**
+   * Determine the issuing agency of the passed identifier.
+   *
+   * @param sIssuingAgencyID
+   *        The issuing agency ID (e.g. <code>0088</code>). May be
+   *        <code>null</code>.
+   * @return <code>null</code> if the issuing agency is unknown.
+   */
+  @Nullable
+  private static EPredefinedIdentifierIssuingAgency _getAgency (@Nullable final String sIssuingAgencyID)
+  {
+    final IIdentifierIssuingAgency aAgency = IdentifierIssuingAgencyManager.getAgencyOfISO6523Code (sIssuingAgencyID);
+    return aAgency instanceof EPredefinedIdentifierIssuingAgency ? (EPredefinedIdentifierIssuingAgency) aAgency : null;
+  }
+
+  /**
+   * Try to determine the issuing agency of a syntactically invalid identifier.
+   *
+   * @param sLine
+   *        The trimmed source line. May not be <code>null</code>.
+   * @return <code>null</code> if the issuing agency cannot be determined.
+   */
+  @Nullable
+  private static EPredefinedIdentifierIssuingAgency _guessAgency (@Nonnull final String sLine)
+  {
+    final int nIndex = sLine.indexOf (CIdentifier.URL_SCHEME_VALUE_SEPARATOR);
+    if (nIndex < 0 ||
+        !sLine.substring (0, nIndex).equalsIgnoreCase (CIdentifier.DEFAULT_PARTICIPANT_IDENTIFIER_SCHEME))
+      return null;
+    final ParticipantIdentifierValueParts aParts = ParticipantIdentifierValueParts.parseOrNull (sLine.substring (nIndex +
+                                                                                                                 CIdentifier.URL_SCHEME_VALUE_SEPARATOR.length ()));
+    return aParts == null ? null : _getAgency (aParts.getIssuingAgencyID ());
+  }
+
+  /**
+   * Validate a single chunk.
+   *
+   * @param aLines
+   *        The lines to validate. May not be <code>null</code>.
+   * @param nCount
+   *        The number of lines to be used from the array.
+   * @param nFirstRowNumber
+   *        The 1-based row number of the first line.
+   * @param nMaxInvalidRows
+   *        The maximum number of invalid rows to be contained in the result.
+   * @return The result of the chunk. Never <code>null</code>.
+   */
+  @Nonnull
+  private static ParticipantIdentifierBulkValidationResult _validateChunk (@Nonnull final String [] aLines,
+                                                                           @Nonnegative final int nCount,
+                                                                           @Nonnegative final long nFirstRowNumber,
+                                                                           @Nonnegative final int nMaxInvalidRows)
+  {
+    final ParticipantIdentifierBulkValidationResult ret = new ParticipantIdentifierBulkValidationResult (nMaxInvalidRows);
+    for (int i = 0; i < nCount; ++i)
+    {
+      final String sLine = aLines[i].trim ();
+      if (sLine.length () == 0)
+      {
+        ret.addSkipped ();
+        continue;
+      }
+
+      final SimpleParticipantIdentifier aPI = IdentifierHelper.createParticipantIdentifierFromURIPartOrNull (sLine);
+      if (aPI == null)
+      {
+        ret.addInvalid (nFirstRowNumber + i,
+                        aLines[i],
+                        _guessAgency (sLine),
+                        EParticipantIdentifierValidationError.INVALID_SYNTAX);
+        continue;
+      }
+
+      final EPredefinedIdentifierIssuingAgency eAgency = aPI.isDefaultScheme () ? _getAgency (aPI.getIssuingAgencyID ())
+                                                                                : null;
+      // Don't pollute the verdict cache with the bulk values
+      if (IdentifierValidator.isValidParticipantIdentifierUncached (aPI))
+        ret.addValid (eAgency);
+      else
+        ret.addInvalid (nFirstRowNumber + i, aLines[i], eAgency, EParticipantIdentifierValidationError.INVALID_VALUE);
+    }
+    return ret;
+  }
+
+  private static void _merge (@Nonnull final ParticipantIdentifierBulkValidationResult aResult,
+                              @Nonnull final Future <ParticipantIdentifierBulkValidationResult> aFuture) throws InterruptedException
+  {
+    try
+    {
+      aResult.addAll (aFuture.get ());
+    }
+    catch (final ExecutionException ex)
+    {
+      throw new IllegalStateException ("Error in bulk participant identifier validation", ex.getCause ());
+    }
+  }
+
+  @Nonnull
+  private ParticipantIdentifierBulkValidationResult _validate (@Nonnull final ILineProvider aLineProvider) throws IOException,
+                                                                                                          InterruptedException
+  {
+    final ParticipantIdentifierBulkValidationResult ret = new ParticipantIdentifierBulkValidationResult (m_nMaxInvalidRows);
+    final Queue <Future <ParticipantIdentifierBulkValidationResult>> aInFlight = new LinkedList <Future <ParticipantIdentifierBulkValidationResult>> ();
+    boolean bSuccess = false;
+    try
+    {
+      long nRowNumber = 1;
+      while (true)
+      {
+        // Read the next chunk on the calling thread
+        final String [] aLines = new String [m_nChunkSize];
+        int nCount = 0;
+        String sLine;
+        while (nCount < m_nChunkSize && (sLine = aLineProvider.getNextLine ()) != null)
+          aLines[nCount++] = sLine;
+        if (nCount == 0)
+          break;
+
+        // Wait for the oldest chunk to keep the memory bounded
+        if (aInFlight.size () >= m_nMaxChunksInFlight)
+          _merge (ret, aInFlight.remove ());
+
+        final int nFinalCount = nCount;
+        final long nFirstRowNumber = nRowNumber;
+        aInFlight.add (m_aExecutorService.submit (new Callable <ParticipantIdentifierBulkValidationResult> ()
+        {
+          public ParticipantIdentifierBulkValidationResult call ()
+          {
+            return _validateChunk (aLines, nFinalCount, nFirstRowNumber, m_nMaxInvalidRows);
+          }
+        }));
+        nRowNumber += nCount;
+        if (nCount < m_nChunkSize)
+          break;
+      }
+
+      // Merge the remaining chunks in order
+      while (!aInFlight.isEmpty ())
+        _merge (ret, aInFlight.remove ());
+      bSuccess = true;
+    }
+    finally
+    {
+      if (!bSuccess)
+        for (final Future <?> aFuture : aInFlight)
+          aFuture.cancel (true);
+    }
+    return ret;
+  }
+
+  /**
+   * Validate all participant identifiers of the passed iterator.
+   *
+   * @param aIter
+   *        The iterator over the raw <code>scheme::value</code> strings. May
+   *        not be <code>null</code> and may not return <code>null</code>
+   *        elements.
+   * @return The validation result. Never <code>null</code>.
+   * @throws InterruptedException
+   *         If the calling thread was interrupted while waiting for the
+   *         validation to finish
+   */
+  @Nonnull
+  public ParticipantIdentifierBulkValidationResult validate (@Nonnull final Iterator <String> aIter) throws InterruptedException
+  {
+    ValueEnforcer.notNull (aIter, "Iterator");
+
+    try
+    {
+      return _validate (new ILineProvider ()
+      {
+        @Nullable
+        public String getNextLine ()
+        {
+          return aIter.hasNext () ? aIter.next () : null;
+        }
+      });
+    }
+    catch (final IOException ex)
+    {
+      // Cannot happen
+      throw new IllegalStateException (ex);
+    }
+  }
+
+  /**
+   * Validate all participant identifiers of the passed reader. Each line must
+   * contain a single participant identifier in the form
+   * <code>scheme::value</code>. The reader is not closed.
+   *
+   * @param aReader
+   *        The reader to read the lines from. May not be <code>null</code>.
+   * @return The validation result. Never <code>null</code>.
+   * @throws IOException
+   *         If reading fails
+   * @throws InterruptedException
+   *         If the calling thread was interrupted while waiting for the
+   *         validation to finish
+   */
+  @Nonnull
+  public ParticipantIdentifierBulkValidationResult validate (@Nonnull final Reader aReader) throws IOException,
+                                                                                            InterruptedException
+  {
+    ValueEnforcer.notNull (aReader, "Reader");
+
+    final BufferedReader aBR = aReader instanceof BufferedReader ? (BufferedReader) aReader
+                                                                 : new BufferedReader (aReader);
+    return _validate (new ILineProvider ()
+    {
+      @Nullable
+      public String getNextLine () throws IOException
+      {
+        return aBR.readLine ();
+      }
+    });
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("executorService", m_aExecutorService)
+                                       .append ("maxChunksInFlight", m_nMaxChunksInFlight)
+                                       .append ("chunkSize", m_nChunkSize)
+                                       .append ("maxInvalidRows", m_nMaxInvalidRows)
+                                       .toString ();
+  }
+}
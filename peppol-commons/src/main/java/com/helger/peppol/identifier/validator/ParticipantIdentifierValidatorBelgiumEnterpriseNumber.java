@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.identifier.validator;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.helger.commons.annotation.IsSPIImplementation;
+import com.helger.commons.annotation.Nonempty;
+import com.helger.commons.string.StringHelper;
+import com.helger.peppol.identifier.issuingagency.EPredefinedIdentifierIssuingAgency;
+
+/**
+ * Implementation of {@link IParticipantIdentifierValidatorSPI} for the Belgian
+ * VAT number, which is the enterprise number (KBO/BCE) with an optional "BE"
+ * prefix. The enterprise number consists of 10 digits starting with 0 or 1,
+ * the last two digits being a modulus 97 check number.
+ *
+ * @author Philip Helger
+ */
+@IsSPIImplementation
+public final class ParticipantIdentifierValidatorBelgiumEnterpriseNumber implements IParticipantIdentifierValidatorSPI
+{
+  private static final String PREFIX = "BE";
+
+  public boolean isSupportedIssuingAgency (@Nonnull @Nonempty final String sIssuingAgencyID)
+  {
+    return EPredefinedIdentifierIssuingAgency.BE_VAT.getISO6523Code ().equals (sIssuingAgencyID);
+  }
+
+  public boolean isValueValid (@Nonnull @Nonempty final String sValue)
+  {
+    return isValidEnterpriseNumber (sValue);
+  }
+
+  /**
+   * Static check method.
+   *
+   * @param sValue
+   *        The value to be checked. The prefix "BE" is optional and case
+   *        insensitive.
+   * @return <code>true</code> if the passed value is a valid BE enterprise
+   *         number.
+   */
+  public static boolean isValidEnterpriseNumber (@Nullable final String sValue)
+  {
+    final int nLength = StringHelper.getLength (sValue);
+    int nOfs = 0;
+    if (nLength == 12 && sValue.regionMatches (true, 0, PREFIX, 0, 2))
+      nOfs = 2;
+    else
+      if (nLength != 10)
+        return false;
+
+    final char cFirst = sValue.charAt (nOfs);
+    if (cFirst != '0' && cFirst != '1')
+      return false;
+    if (!CheckDigitHelper.isDigits (sValue, nOfs, 10))
+      return false;
+
+    final int nCheckNumber = 97 - CheckDigitHelper.getMod97 (0, sValue, nOfs, 8);
+    return CheckDigitHelper.getDigitValue (sValue.charAt (nOfs + 8)) * 10 +
+           CheckDigitHelper.getDigitValue (sValue.charAt (nOfs + 9)) == nCheckNumber;
+  }
+}
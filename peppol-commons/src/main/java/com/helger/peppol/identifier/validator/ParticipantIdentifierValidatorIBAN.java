@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.identifier.validator;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.helger.commons.annotation.IsSPIImplementation;
+import com.helger.commons.annotation.Nonempty;
+import com.helger.commons.string.StringHelper;
+import com.helger.peppol.identifier.issuingagency.EPredefinedIdentifierIssuingAgency;
+
+/**
+ * Implementation of {@link IParticipantIdentifierValidatorSPI} for the
+ * International Bank Account Number (IBAN). An IBAN consists of a two letter
+ * country code, two check digits and up to 30 letters and digits. The check
+ * digits are validated with the ISO 7064 modulus 97 algorithm without creating
+ * the numeric representation of the IBAN.
+ *
+ * @author Philip Helger
+ */
+@IsSPIImplementation
+public final class ParticipantIdentifierValidatorIBAN implements IParticipantIdentifierValidatorSPI
+{
+  private static final int MIN_LENGTH = 15;
+  private static final int MAX_LENGTH = 34;
+
+  public boolean isSupportedIssuingAgency (@Nonnull @Nonempty final String sIssuingAgencyID)
+  {
+    return EPredefinedIdentifierIssuingAgency.IBAN.getISO6523Code ().equals (sIssuingAgencyID);
+  }
+
+  public boolean isValueValid (@Nonnull @Nonempty final String sValue)
+  {
+    return isValidIBAN (sValue);
+  }
+
+  private static boolean _isLetter (final char c)
+  {
+    return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+  }
+
+  /**
+   * Static check method.
+   *
+   * @param sValue
+   *        The value to be checked. Letters are case insensitive and no
+   *        whitespaces are allowed.
+   * @return <code>true</code> if the passed value is a valid IBAN.
+   */
+  public static boolean isValidIBAN (@Nullable final String sValue)
+  {
+    final int nLength = StringHelper.getLength (sValue);
+    if (nLength < MIN_LENGTH || nLength > MAX_LENGTH)
+      return false;
+    if (!_isLetter (sValue.charAt (0)) || !_isLetter (sValue.charAt (1)) || !CheckDigitHelper.isDigits (sValue, 2, 2))
+      return false;
+
+    // The first 4 chars are moved to the end
+    final int nRemainder = CheckDigitHelper.getMod97 (0, sValue, 4, nLength - 4);
+    return nRemainder >= 0 && CheckDigitHelper.getMod97 (nRemainder, sValue, 0, 4) == 1;
+  }
+}
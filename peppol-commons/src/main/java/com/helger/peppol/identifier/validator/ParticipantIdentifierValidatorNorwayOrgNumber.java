@@ -83,30 +83,7 @@ public final class ParticipantIdentifierValidatorNorwayOrgNumber implements IPar
     if (StringHelper.getLength (sValue) != 9)
       return false;
 
-    final char [] aData = sValue.toCharArray ();
-    if (!Character.isDigit (aData[8]))
-      return false;
-
-    final int nActualCheckDigit = aData[8] - 48;
-    int nSum = 0;
-
-    for (int i = 0; i < 8; i++)
-    {
-      final char cNext = aData[i];
-      if (!Character.isDigit (cNext))
-        return false;
-
-      final int nDigit = cNext - 48;
-      nSum += nDigit * WEIGHTS[i];
-    }
-
-    final int nModulus = nSum % 11;
-
-    /** don't subtract from length if the modulus is 0 */
-    if (nModulus == 0 && nActualCheckDigit == 0)
-      return true;
-
-    final int nCalculatedCheckDigit = 11 - nModulus;
-    return nActualCheckDigit == nCalculatedCheckDigit;
+    final int nCheckDigit = CheckDigitHelper.getMod11CheckDigit (sValue, 0, WEIGHTS);
+    return nCheckDigit >= 0 && CheckDigitHelper.getDigitValue (sValue.charAt (8)) == nCheckDigit;
   }
 }
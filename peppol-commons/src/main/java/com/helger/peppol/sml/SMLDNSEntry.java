@@ -0,0 +1,165 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.sml;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.annotation.Nonempty;
+import com.helger.commons.annotation.ReturnsMutableCopy;
+import com.helger.commons.string.StringHelper;
+import com.helger.commons.string.ToStringGenerator;
+
+/**
+ * The result of a successful DNS lookup of an SML participant host name as
+ * performed by {@link SMLDNSResolver}.
+ *
+ * @author Philip Helger
+ */
+@Immutable
+public final class SMLDNSEntry
+{
+  private final String m_sHostName;
+  private final String m_sCanonicalHostName;
+  private final List <InetAddress> m_aAddresses;
+
+  /**
+   * Constructor
+   *
+   * @param sHostName
+   *        The queried host name without a trailing dot. May neither be
+   *        <code>null</code> nor empty.
+   * @param sCanonicalHostName
+   *        The target of the CNAME record of the host name without a trailing
+   *        dot. May be <code>null</code> if no CNAME record is present.
+   * @param aAddresses
+   *        The resolved IPv4 addresses. May not be <code>null</code> but may be
+   *        empty if a canonical host name is present.
+   */
+  public SMLDNSEntry (@Nonnull @Nonempty final String sHostName,
+                      @Nullable final String sCanonicalHostName,
+                      @Nonnull final Collection <InetAddress> aAddresses)
+  {
+    ValueEnforcer.notEmpty (sHostName, "HostName");
+    ValueEnforcer.notNull (aAddresses, "Addresses");
+    if (StringHelper.hasNoText (sCanonicalHostName) && aAddresses.isEmpty ())
+      throw new IllegalArgumentException ("Either a canonical host name or an address must be present");
+
+    m_sHostName = sHostName;
+    m_sCanonicalHostName = sCanonicalHostName;
+    m_aAddresses = new ArrayList <InetAddress> (aAddresses);
+  }
+
+  /**
+   * @return The queried host name without a trailing dot. Neither
+   *         <code>null</code> nor empty.
+   */
+  @Nonnull
+  @Nonempty
+  public String getHostName ()
+  {
+    return m_sHostName;
+  }
+
+  /**
+   * @return The target of the CNAME record without a trailing dot. May be
+   *         <code>null</code>.
+   */
+  @Nullable
+  public String getCanonicalHostName ()
+  {
+    return m_sCanonicalHostName;
+  }
+
+  /**
+   * @return <code>true</code> if a CNAME record is present, <code>false</code>
+   *         if the host name directly resolves to an address.
+   */
+  public boolean hasCanonicalHostName ()
+  {
+    return StringHelper.hasText (m_sCanonicalHostName);
+  }
+
+  /**
+   * @return A copy of all resolved IPv4 addresses. Never <code>null</code> but
+   *         maybe empty.
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public List <InetAddress> getAllAddresses ()
+  {
+    return new ArrayList <InetAddress> (m_aAddresses);
+  }
+
+  /**
+   * Get the name identifying the SMP the participant is registered at. This is
+   * the canonical host name if present, or the first resolved address
+   * otherwise. It can be used to group participants by SMP, but it must not be
+   * used to build the SMP URI, because SMPs may rely on the participant host
+   * name in the HTTP Host header.
+   *
+   * @return The SMP host name. Neither <code>null</code> nor empty.
+   */
+  @Nonnull
+  @Nonempty
+  public String getSMPHostName ()
+  {
+    if (hasCanonicalHostName ())
+      return m_sCanonicalHostName;
+    return m_aAddresses.get (0).getHostAddress ();
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("HostName", m_sHostName)
+                                       .appendIfNotNull ("CanonicalHostName", m_sCanonicalHostName)
+                                       .append ("Addresses", m_aAddresses)
+                                       .toString ();
+  }
+}
@@ -0,0 +1,600 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.sml;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xbill.DNS.ARecord;
+import org.xbill.DNS.CNAMERecord;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.Lookup;
+import org.xbill.DNS.Message;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Rcode;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.Resolver;
+import org.xbill.DNS.ResolverListener;
+import org.xbill.DNS.SOARecord;
+import org.xbill.DNS.Section;
+import org.xbill.DNS.TextParseException;
+import org.xbill.DNS.Type;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.annotation.Nonempty;
+import com.helger.commons.string.StringHelper;
+import com.helger.commons.string.ToStringGenerator;
+import com.helger.peppol.identifier.IParticipantIdentifier;
+import com.helger.peppol.utils.BusdoxURLHelper;
+
+/**
+ * A DNS resolver for SML participant host names (like
+ * <code>B-&lt;hash&gt;.iso6523-actorid-upis.&lt;sml-zone&gt;</code>) that does
+ * not rely on the JVM global {@link InetAddress} cache. The A and the CNAME
+ * records of a host name are queried in parallel and the result is cached for
+ * the TTL provided by the DNS server (limited by a configurable maximum).
+ * Non-existing host names (NXDOMAIN or no data) are cached as well, using the
+ * negative TTL of the SOA record of the response if present. DNS errors and
+ * timeouts are never cached.
+ *
+ * @author Philip Helger
+ */
+@ThreadSafe
+public class SMLDNSResolver
+{
+  /** Default maximum number of cached host names */
+  public static final int DEFAULT_MAX_SIZE = 10000;
+  /** Default maximum time to live of a positive result: 1 hour */
+  public static final long DEFAULT_MAX_TTL_MILLIS = 60 * 60 * 1000L;
+  /**
+   * Default maximum time to live of a negative result: 1 minute. This is also
+   * used if the response contains no SOA record.
+   */
+  public static final long DEFAULT_MAX_NEGATIVE_TTL_MILLIS = 60 * 1000L;
+
+  private static final Logger s_aLogger = LoggerFactory.getLogger (SMLDNSResolver.class);
+
+  private static final class CacheEntry
+  {
+    // null for negative entries
+    private final SMLDNSEntry m_aEntry;
+    private final long m_nExpiration;
+
+    public CacheEntry (@Nullable final SMLDNSEntry aEntry, final long nExpiration)
+    {
+      m_aEntry = aEntry;
+      m_nExpiration = nExpiration;
+    }
+  }
+
+  private static final class QueryListener implements ResolverListener
+  {
+    private final CountDownLatch m_aLatch;
+    private volatile Message m_aResponse;
+    private volatile Exception m_aException;
+
+    public QueryListener (@Nonnull final CountDownLatch aLatch)
+    {
+      m_aLatch = aLatch;
+    }
+
+    public void receiveMessage (final Object aID, final Message aResponse)
+    {
+      m_aResponse = aResponse;
+      m_aLatch.countDown ();
+    }
+
+    public void handleException (final Object aID, final Exception ex)
+    {
+      m_aException = ex;
+      m_aLatch.countDown ();
+    }
+  }
+
+  private final Resolver m_aResolver;
+  private final int m_nMaxSize;
+  private final long m_nMaxTTLMillis;
+  private final long m_nMaxNegativeTTLMillis;
+  private final Lock m_aLock = new ReentrantLock ();
+  @GuardedBy ("m_aLock")
+  private final Map <String, CacheEntry> m_aMap;
+  private final AtomicLong m_aHits = new AtomicLong ();
+  private final AtomicLong m_aNegativeHits = new AtomicLong ();
+  private final AtomicLong m_aMisses = new AtomicLong ();
+  private final AtomicLong m_aQueries = new AtomicLong ();
+  private final AtomicLong m_aErrors = new AtomicLong ();
+
+  /**
+   * Constructor using the system default DNS resolver and the default cache
+   * settings.
+   *
+   * @see Lookup#getDefaultResolver()
+   */
+  public SMLDNSResolver ()
+  {
+    this (Lookup.getDefaultResolver ());
+  }
+
+  /**
+   * Constructor using the default cache settings.
+   *
+   * @param aResolver
+   *        The DNS resolver to be used. May not be <code>null</code>.
+   */
+  public SMLDNSResolver (@Nonnull final Resolver aResolver)
+  {
+    this (aResolver, DEFAULT_MAX_SIZE, DEFAULT_MAX_TTL_MILLIS, DEFAULT_MAX_NEGATIVE_TTL_MILLIS);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param aResolver
+   *        The DNS resolver to be used. May not be <code>null</code>.
+   * @param nMaxSize
+   *        The maximum number of cached host names. Must be &gt; 0. If the
+   *        maximum size is reached, the least recently used entry is removed.
+   * @param nMaxTTLMillis
+   *        The maximum time to live of a positive result in milliseconds. Must
+   *        be &gt; 0.
+   * @param nMaxNegativeTTLMillis
+   *        The maximum time to live of a negative result in milliseconds. Must
+   *        be &ge; 0. Use 0 to disable negative caching.
+   */
+  public SMLDNSResolver (@Nonnull final Resolver aResolver,
+                         @Nonnegative final int nMaxSize,
+                         @Nonnegative final long nMaxTTLMillis,
+                         @Nonnegative final long nMaxNegativeTTLMillis)
+  {
+    ValueEnforcer.notNull (aResolver, "Resolver");
+    ValueEnforcer.isGT0 (nMaxSize, "MaxSize");
+    ValueEnforcer.isGT0 (nMaxTTLMillis, "MaxTTLMillis");
+    ValueEnforcer.isGE0 (nMaxNegativeTTLMillis, "MaxNegativeTTLMillis");
+    m_aResolver = aResolver;
+    m_nMaxSize = nMaxSize;
+    m_nMaxTTLMillis = nMaxTTLMillis;
+    m_nMaxNegativeTTLMillis = nMaxNegativeTTLMillis;
+    // Access order for LRU
+    m_aMap = new LinkedHashMap <String, CacheEntry> (16, 0.75f, true)
+    {
+      @Override
+      protected boolean removeEldestEntry (final Map.Entry <String, CacheEntry> aEldest)
+      {
+        return size () > m_nMaxSize;
+      }
+    };
+  }
+
+  /**
+   * @return The DNS resolver used. Never <code>null</code>.
+   */
+  @Nonnull
+  public Resolver getResolver ()
+  {
+    return m_aResolver;
+  }
+
+  /**
+   * @return The maximum number of cached host names. Always &gt; 0.
+   */
+  @Nonnegative
+  public int getMaxSize ()
+  {
+    return m_nMaxSize;
+  }
+
+  /**
+   * @return The maximum time to live of a positive result in milliseconds.
+   *         Always &gt; 0.
+   */
+  @Nonnegative
+  public long getMaxTTLMillis ()
+  {
+    return m_nMaxTTLMillis;
+  }
+
+  /**
+   * @return The maximum time to live of a negative result in milliseconds.
+   *         Always &ge; 0.
+   */
+  @Nonnegative
+  public long getMaxNegativeTTLMillis ()
+  {
+    return m_nMaxNegativeTTLMillis;
+  }
+
+  @Nonnull
+  private static String _getWithoutTrailingDot (@Nonnull final String s)
+  {
+    return StringHelper.endsWith (s, '.') ? s.substring (0, s.length () - 1) : s;
+  }
+
+  @Nonnull
+  private QueryListener _sendQuery (@Nonnull final Name aName, final int nType, @Nonnull final CountDownLatch aLatch)
+  {
+    final QueryListener aListener = new QueryListener (aLatch);
+    m_aQueries.incrementAndGet ();
+    m_aResolver.sendAsync (Message.newQuery (Record.newRecord (aName, nType, DClass.IN)), aListener);
+    return aListener;
+  }
+
+  @Nonnull
+  private static Message _getResponse (@Nonnull final QueryListener aListener,
+                                       @Nonnull final String sHostName) throws IOException
+  {
+    final Exception ex = aListener.m_aException;
+    if (ex instanceof IOException)
+      throw (IOException) ex;
+    if (ex != null)
+      throw new IOException ("Error resolving '" + sHostName + "'", ex);
+    return aListener.m_aResponse;
+  }
+
+  /**
+   * Get the negative TTL of the passed response according to RFC 2308.
+   *
+   * @return The negative TTL in milliseconds or -1 if no SOA record is present.
+   */
+  private static long _getNegativeTTLMillis (@Nonnull final Message aResponse)
+  {
+    for (final Record aRecord : aResponse.getSectionArray (Section.AUTHORITY))
+      if (aRecord instanceof SOARecord)
+        return Math.min (aRecord.getTTL (), ((SOARecord) aRecord).getMinimum ()) * 1000L;
+    return -1;
+  }
+
+  @Nonnull
+  private CacheEntry _query (@Nonnull final String sHostName, final long nNow) throws IOException
+  {
+    final Name aName;
+    try
+    {
+      aName = Name.fromString (sHostName, Name.root);
+    }
+    catch (final TextParseException ex)
+    {
+      throw new IllegalArgumentException ("Invalid host name '" + sHostName + "'", ex);
+    }
+
+    // Query A and CNAME records in parallel
+    final CountDownLatch aLatch = new CountDownLatch (2);
+    final QueryListener aAListener = _sendQuery (aName, Type.A, aLatch);
+    final QueryListener aCNAMEListener = _sendQuery (aName, Type.CNAME, aLatch);
+    try
+    {
+      aLatch.await ();
+    }
+    catch (final InterruptedException ex)
+    {
+      Thread.currentThread ().interrupt ();
+      throw new InterruptedIOException ("Interrupted while resolving '" + sHostName + "'");
+    }
+
+    final Message aAResponse = _getResponse (aAListener, sHostName);
+    final Message aCNAMEResponse = _getResponse (aCNAMEListener, sHostName);
+
+    final int nARcode = aAResponse.getRcode ();
+    final int nCNAMERcode = aCNAMEResponse.getRcode ();
+    if (nARcode != Rcode.NOERROR && nARcode != Rcode.NXDOMAIN)
+      throw new IOException ("DNS A query for '" + sHostName + "' failed with " + Rcode.string (nARcode));
+    if (nCNAMERcode != Rcode.NOERROR && nCNAMERcode != Rcode.NXDOMAIN)
+      throw new IOException ("DNS CNAME query for '" + sHostName + "' failed with " + Rcode.string (nCNAMERcode));
+
+    String sCanonicalHostName = null;
+    final List <InetAddress> aAddresses = new ArrayList <InetAddress> ();
+    long nTTLMillis = m_nMaxTTLMillis;
+    if (nARcode == Rcode.NOERROR && nCNAMERcode == Rcode.NOERROR)
+    {
+      // The A response may contain the CNAME chain as well
+      for (final Message aResponse : new Message [] { aCNAMEResponse, aAResponse })
+        for (final Record aRecord : aResponse.getSectionArray (Section.ANSWER))
+          if (aRecord instanceof CNAMERecord && aRecord.getName ().equals (aName))
+          {
+            if (sCanonicalHostName == null)
+              sCanonicalHostName = _getWithoutTrailingDot (((CNAMERecord) aRecord).getTarget ().toString ());
+            nTTLMillis = Math.min (nTTLMillis, aRecord.getTTL () * 1000L);
+          }
+          else
+            if (aRecord instanceof ARecord && aResponse == aAResponse)
+            {
+              aAddresses.add (((ARecord) aRecord).getAddress ());
+              nTTLMillis = Math.min (nTTLMillis, aRecord.getTTL () * 1000L);
+            }
+    }
+
+    if (sCanonicalHostName == null && aAddresses.isEmpty ())
+    {
+      // NXDOMAIN or no data
+      long nNegativeTTLMillis = _getNegativeTTLMillis (nCNAMERcode == Rcode.NXDOMAIN ? aCNAMEResponse : aAResponse);
+      if (nNegativeTTLMillis < 0)
+        nNegativeTTLMillis = m_nMaxNegativeTTLMillis;
+      return new CacheEntry (null, nNow + Math.min (nNegativeTTLMillis, m_nMaxNegativeTTLMillis));
+    }
+
+    return new CacheEntry (new SMLDNSEntry (sHostName, sCanonicalHostName, aAddresses), nNow + nTTLMillis);
+  }
+
+  /**
+   * Resolve the passed host name. If a non-expired result is cached, no DNS
+   * query is performed.
+   *
+   * @param sHostName
+   *        The host name to resolve. May neither be <code>null</code> nor empty.
+   *        A trailing dot is ignored. Host names are case insensitive.
+   * @return <code>null</code> if the host name does not exist or has neither
+   *         an A nor a CNAME record.
+   * @throws IOException
+   *         In case of a DNS error or a timeout
+   */
+  @Nullable
+  public SMLDNSEntry resolve (@Nonnull @Nonempty final String sHostName) throws IOException
+  {
+    ValueEnforcer.notEmpty (sHostName, "HostName");
+
+    final String sKey = _getWithoutTrailingDot (sHostName).toLowerCase (BusdoxURLHelper.URL_LOCALE);
+    final long nNow = System.currentTimeMillis ();
+
+    m_aLock.lock ();
+    try
+    {
+      final CacheEntry aCacheEntry = m_aMap.get (sKey);
+      if (aCacheEntry != null)
+      {
+        if (aCacheEntry.m_nExpiration > nNow)
+        {
+          if (aCacheEntry.m_aEntry == null)
+            m_aNegativeHits.incrementAndGet ();
+          else
+            m_aHits.incrementAndGet ();
+          return aCacheEntry.m_aEntry;
+        }
+        // Expired
+        m_aMap.remove (sKey);
+      }
+    }
+    finally
+    {
+      m_aLock.unlock ();
+    }
+
+    // Query outside of the lock
+    m_aMisses.incrementAndGet ();
+    final CacheEntry aCacheEntry;
+    try
+    {
+      aCacheEntry = _query (sKey, nNow);
+    }
+    catch (final IOException ex)
+    {
+      m_aErrors.incrementAndGet ();
+      s_aLogger.warn ("Failed to resolve '" + sKey + "': " + ex.getMessage ());
+      throw ex;
+    }
+
+    if (aCacheEntry.m_nExpiration > nNow)
+    {
+      m_aLock.lock ();
+      try
+      {
+        m_aMap.put (sKey, aCacheEntry);
+      }
+      finally
+      {
+        m_aLock.unlock ();
+      }
+    }
+    return aCacheEntry.m_aEntry;
+  }
+
+  /**
+   * Resolve the SMP URI of the passed participant.
+   *
+   * @param aParticipantIdentifier
+   *        Participant identifier. May not be <code>null</code>.
+   * @param aSMLInfo
+   *        The SML information object to be used. May not be <code>null</code>.
+   * @return The "http://" URI of the SMP. Never <code>null</code>.
+   * @throws UnknownHostException
+   *         If the participant is not registered in the SML
+   * @throws IOException
+   *         In case of a DNS error or a timeout
+   * @see #getSMPURIOfParticipant(IParticipantIdentifier, String)
+   */
+  @Nonnull
+  public URI getSMPURIOfParticipant (@Nonnull final IParticipantIdentifier aParticipantIdentifier,
+                                     @Nonnull final ISMLInfo aSMLInfo) throws IOException
+  {
+    ValueEnforcer.notNull (aSMLInfo, "SMLInfo");
+    return getSMPURIOfParticipant (aParticipantIdentifier, aSMLInfo.getDNSZone ());
+  }
+
+  /**
+   * Resolve the SMP URI of the passed participant. The resulting URI is the
+   * same as the one of
+   * {@link BusdoxURLHelper#getSMPURIOfParticipant(IParticipantIdentifier, String)}
+   * and contains the participant host name, because SMPs may rely on it in the
+   * HTTP Host header (e.g. for virtual hosting). In contrast to
+   * {@link BusdoxURLHelper} the existence of the participant host name is
+   * checked using the cache of this resolver.<br>
+   * Note: the HTTP client connecting to the returned URI resolves the host name
+   * again. To use the cache of this resolver for the connection as well, the
+   * HTTP client needs a DNS resolver that is backed by this object (see
+   * <code>SMPPooledRequestExecutor</code> of the SMP client).
+   *
+   * @param aParticipantIdentifier
+   *        Participant identifier. May not be <code>null</code>.
+   * @param sSMLZoneName
+   *        e.g. "sml.peppolcentral.org.". May be empty. If it is not empty, it
+   *        must end with a dot!
+   * @return The "http://" URI of the SMP. Never <code>null</code>.
+   * @throws UnknownHostException
+   *         If the participant is not registered in the SML
+   * @throws IOException
+   *         In case of a DNS error or a timeout
+   */
+  @Nonnull
+  public URI getSMPURIOfParticipant (@Nonnull final IParticipantIdentifier aParticipantIdentifier,
+                                     @Nullable final String sSMLZoneName) throws IOException
+  {
+    final String sHostName = BusdoxURLHelper.getDNSNameOfParticipant (aParticipantIdentifier, sSMLZoneName);
+    if (resolve (sHostName) == null)
+      throw new UnknownHostException (sHostName);
+
+    // Keep the participant host name
+    return BusdoxURLHelper.getSMPURIOfParticipant (aParticipantIdentifier, sSMLZoneName);
+  }
+
+  /**
+   * @return The number of lookups answered from the cache with an existing
+   *         host name.
+   */
+  @Nonnegative
+  public long getHitCount ()
+  {
+    return m_aHits.get ();
+  }
+
+  /**
+   * @return The number of lookups answered from the cache with a non-existing
+   *         host name.
+   */
+  @Nonnegative
+  public long getNegativeHitCount ()
+  {
+    return m_aNegativeHits.get ();
+  }
+
+  /**
+   * @return The number of lookups that required DNS queries.
+   */
+  @Nonnegative
+  public long getMissCount ()
+  {
+    return m_aMisses.get ();
+  }
+
+  /**
+   * @return The number of DNS queries sent. Each cache miss results in two
+   *         queries.
+   */
+  @Nonnegative
+  public long getQueryCount ()
+  {
+    return m_aQueries.get ();
+  }
+
+  /**
+   * @return The number of lookups that failed with a DNS error or a timeout.
+   */
+  @Nonnegative
+  public long getErrorCount ()
+  {
+    return m_aErrors.get ();
+  }
+
+  /**
+   * @return The number of currently cached host names, including already
+   *         expired ones that were not yet evicted.
+   */
+  @Nonnegative
+  public int getSize ()
+  {
+    m_aLock.lock ();
+    try
+    {
+      return m_aMap.size ();
+    }
+    finally
+    {
+      m_aLock.unlock ();
+    }
+  }
+
+  /**
+   * Remove all cached results. The counters are not modified.
+   */
+  public void clearCache ()
+  {
+    m_aLock.lock ();
+    try
+    {
+      m_aMap.clear ();
+    }
+    finally
+    {
+      m_aLock.unlock ();
+    }
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("Resolver", m_aResolver)
+                                       .append ("MaxSize", m_nMaxSize)
+                                       .append ("MaxTTLMillis", m_nMaxTTLMillis)
+                                       .append ("MaxNegativeTTLMillis", m_nMaxNegativeTTLMillis)
+                                       .append ("Hits", m_aHits.get ())
+                                       .append ("NegativeHits", m_aNegativeHits.get ())
+                                       .append ("Misses", m_aMisses.get ())
+                                       .append ("Queries", m_aQueries.get ())
+                                       .append ("Errors", m_aErrors.get ())
+                                       .toString ();
+  }
+}
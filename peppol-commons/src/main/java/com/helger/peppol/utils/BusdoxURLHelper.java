@@ -45,18 +45,28 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
 
 import com.helger.commons.ValueEnforcer;
 import com.helger.commons.annotation.PresentForCodeCoverage;
 import com.helger.commons.charset.CCharset;
 import com.helger.commons.codec.URLCodec;
+import com.helger.commons.equals.EqualsHelper;
+import com.helger.commons.hashcode.HashCodeGenerator;
 import com.helger.commons.messagedigest.EMessageDigestAlgorithm;
-import com.helger.commons.messagedigest.MessageDigestGeneratorHelper;
 import com.helger.commons.string.StringHelper;
 import com.helger.peppol.identifier.CIdentifier;
 import com.helger.peppol.identifier.IParticipantIdentifier;
@@ -68,12 +78,86 @@ import com.helger.peppol.sml.ISMLInfo;
  *
  * @author PEPPOL.AT, BRZ, Philip Helger
  */
-@Immutable
+@ThreadSafe
 public final class BusdoxURLHelper
 {
   public static final Charset URL_CHARSET = CCharset.CHARSET_UTF_8_OBJ;
   public static final Locale URL_LOCALE = Locale.US;
 
+  /** The maximum number of SMP URIs cached by getSMPURIOfParticipant */
+  public static final int SMP_URI_CACHE_MAX_SIZE = 10000;
+
+  @Immutable
+  private static final class SMPURICacheKey
+  {
+    private final String m_sScheme;
+    private final String m_sValue;
+    private final String m_sSMLZoneName;
+    private final int m_nHashCode;
+
+    public SMPURICacheKey (@Nonnull final String sScheme,
+                           @Nonnull final String sValue,
+                           @Nullable final String sSMLZoneName)
+    {
+      m_sScheme = sScheme;
+      m_sValue = sValue;
+      m_sSMLZoneName = sSMLZoneName;
+      m_nHashCode = new HashCodeGenerator (this).append (sScheme)
+                                                .append (sValue)
+                                                .append (sSMLZoneName)
+                                                .getHashCode ();
+    }
+
+    @Override
+    public boolean equals (final Object o)
+    {
+      if (o == this)
+        return true;
+      if (o == null || !getClass ().equals (o.getClass ()))
+        return false;
+      final SMPURICacheKey rhs = (SMPURICacheKey) o;
+      return m_sScheme.equals (rhs.m_sScheme) &&
+             m_sValue.equals (rhs.m_sValue) &&
+             EqualsHelper.equals (m_sSMLZoneName, rhs.m_sSMLZoneName);
+    }
+
+    @Override
+    public int hashCode ()
+    {
+      return m_nHashCode;
+    }
+  }
+
+  private static final char [] HEX_CHARS = "0123456789abcdef".toCharArray ();
+
+  // MessageDigest objects are not thread-safe
+  private static final ThreadLocal <MessageDigest> s_aMD5 = new ThreadLocal <MessageDigest> ()
+  {
+    @Override
+    protected MessageDigest initialValue ()
+    {
+      try
+      {
+        return MessageDigest.getInstance (EMessageDigestAlgorithm.MD5.getAlgorithm ());
+      }
+      catch (final NoSuchAlgorithmException ex)
+      {
+        throw new IllegalStateException ("No MD5 message digest present!", ex);
+      }
+    }
+  };
+
+  private static final ReadWriteLock s_aRWLock = new ReentrantReadWriteLock ();
+  @GuardedBy ("s_aRWLock")
+  private static final Map <SMPURICacheKey, URI> s_aSMPURICache = new LinkedHashMap <SMPURICacheKey, URI> ()
+  {
+    @Override
+    protected boolean removeEldestEntry (final Map.Entry <SMPURICacheKey, URI> aEldest)
+    {
+      return size () > SMP_URI_CACHE_MAX_SIZE;
+    }
+  };
+
   @SuppressWarnings ("unused")
   @PresentForCodeCoverage
   private static final BusdoxURLHelper s_aInstance = new BusdoxURLHelper ();
@@ -121,10 +205,30 @@ public final class BusdoxURLHelper
   @Nonnull
   public static String getHashValueStringRepresentation (@Nonnull final String sValueToHash)
   {
-    // Create the MD5 hash
-    final byte [] aDigest = MessageDigestGeneratorHelper.getAllDigestBytes (sValueToHash, URL_CHARSET, EMessageDigestAlgorithm.MD5);
+    // Create the MD5 hash - digest resets the message digest
+    final byte [] aDigest = s_aMD5.get ().digest (sValueToHash.getBytes (URL_CHARSET));
+
     // Convert to hex-encoded string
-    return MessageDigestGeneratorHelper.getHexValueFromDigest (aDigest);
+    final char [] aChars = new char [aDigest.length * 2];
+    int nIndex = 0;
+    for (final byte b : aDigest)
+    {
+      aChars[nIndex++] = HEX_CHARS[(b >> 4) & 0x0f];
+      aChars[nIndex++] = HEX_CHARS[b & 0x0f];
+    }
+    return new String (aChars);
+  }
+
+  private static void _checkArgs (@Nonnull final IParticipantIdentifier aParticipantIdentifier,
+                                  @Nullable final String sSMLZoneName)
+  {
+    ValueEnforcer.notNull (aParticipantIdentifier, "ParticipantIdentifier");
+    ValueEnforcer.notEmpty (aParticipantIdentifier.getScheme (), "ParticipantIdentifier scheme");
+    ValueEnforcer.notEmpty (aParticipantIdentifier.getValue (), "ParticipantIdentifier value");
+
+    // Ensure the DNS zone name ends with a dot!
+    if (StringHelper.hasText (sSMLZoneName) && !StringHelper.endsWith (sSMLZoneName, '.'))
+      throw new IllegalArgumentException ("if an SML zone name is specified, it must end with a dot (.). Value is: " + sSMLZoneName);
   }
 
   /**
@@ -171,22 +275,23 @@ public final class BusdoxURLHelper
   @Nonnull
   public static String getDNSNameOfParticipant (@Nonnull final IParticipantIdentifier aParticipantIdentifier, @Nullable final String sSMLZoneName)
   {
-    ValueEnforcer.notNull (aParticipantIdentifier, "ParticipantIdentifier");
-    ValueEnforcer.notEmpty (aParticipantIdentifier.getScheme (), "ParticipantIdentifier scheme");
-    ValueEnforcer.notEmpty (aParticipantIdentifier.getValue (), "ParticipantIdentifier value");
+    _checkArgs (aParticipantIdentifier, sSMLZoneName);
 
-    // Ensure the DNS zone name ends with a dot!
-    if (StringHelper.hasText (sSMLZoneName) && !StringHelper.endsWith (sSMLZoneName, '.'))
-      throw new IllegalArgumentException ("if an SML zone name is specified, it must end with a dot (.). Value is: " + sSMLZoneName);
+    return _getDNSNameOfParticipant (aParticipantIdentifier.getScheme ().toLowerCase (URL_LOCALE),
+                                     aParticipantIdentifier.getValue (),
+                                     sSMLZoneName);
+  }
 
+  @Nonnull
+  private static String _getDNSNameOfParticipant (@Nonnull final String sIdentifierScheme,
+                                                  @Nonnull final String sValue,
+                                                  @Nullable final String sSMLZoneName)
+  {
     // Check identifier scheme (must be lowercase for the URL later on!)
-    final String sIdentifierScheme = aParticipantIdentifier.getScheme ().toLowerCase (URL_LOCALE);
     if (!IdentifierHelper.isValidParticipantIdentifierScheme (sIdentifierScheme))
       throw new IllegalArgumentException ("Invalid participant identifier scheme '" + sIdentifierScheme + "'");
 
-    // Get the identifier value
-    final String sValue = aParticipantIdentifier.getValue ();
-    final StringBuilder ret = new StringBuilder ();
+    final StringBuilder ret = new StringBuilder (128);
     if ("*".equals (sValue))
     {
       // Wild card registration
@@ -228,21 +333,99 @@ public final class BusdoxURLHelper
     return getSMPURIOfParticipant (aParticipantIdentifier, aSMLInfo.getDNSZone ());
   }
 
+  /**
+   * Get the SMP URI of the passed participant. The results are cached in a
+   * bounded cache, because the computation requires lower casing, hashing and
+   * validating the participant identifier.
+   *
+   * @param aParticipantIdentifier
+   *        Participant identifier. May not be <code>null</code>.
+   * @param sSMLZoneName
+   *        e.g. "sml.peppolcentral.org.". May be empty. If it is not empty, it
+   *        must end with a dot!
+   * @return The "http://" URI of the SMP. Never <code>null</code>.
+   * @throws IllegalArgumentException
+   *         In case one argument is invalid
+   * @see #getDNSNameOfParticipant(IParticipantIdentifier, String)
+   */
   @Nonnull
   public static URI getSMPURIOfParticipant (@Nonnull final IParticipantIdentifier aParticipantIdentifier, @Nullable final String sSMLZoneName)
   {
-    ValueEnforcer.notNull (aParticipantIdentifier, "ParticipantIdentifier");
+    _checkArgs (aParticipantIdentifier, sSMLZoneName);
 
-    final String sURIString = "http://" + getDNSNameOfParticipant (aParticipantIdentifier, sSMLZoneName);
+    // Participant identifiers are case insensitive and the DNS name only
+    // contains the lower case version
+    final String sScheme = aParticipantIdentifier.getScheme ().toLowerCase (URL_LOCALE);
+    final String sValue = aParticipantIdentifier.getValue ().toLowerCase (URL_LOCALE);
+    final SMPURICacheKey aKey = new SMPURICacheKey (sScheme, sValue, sSMLZoneName);
 
+    s_aRWLock.readLock ().lock ();
     try
     {
-      return new URI (sURIString);
+      final URI ret = s_aSMPURICache.get (aKey);
+      if (ret != null)
+        return ret;
+    }
+    finally
+    {
+      s_aRWLock.readLock ().unlock ();
+    }
+
+    // Compute outside of the lock
+    final String sURIString = "http://" + _getDNSNameOfParticipant (sScheme, sValue, sSMLZoneName);
+    final URI ret;
+    try
+    {
+      ret = new URI (sURIString);
     }
     catch (final URISyntaxException ex)
     {
       throw new IllegalArgumentException ("Error building SMP URI from string '" + sURIString + "'", ex);
     }
+
+    s_aRWLock.writeLock ().lock ();
+    try
+    {
+      s_aSMPURICache.put (aKey, ret);
+    }
+    finally
+    {
+      s_aRWLock.writeLock ().unlock ();
+    }
+    return ret;
+  }
+
+  /**
+   * @return The number of cached SMP URIs. Always &ge; 0.
+   */
+  @Nonnegative
+  public static int getSMPURICacheSize ()
+  {
+    s_aRWLock.readLock ().lock ();
+    try
+    {
+      return s_aSMPURICache.size ();
+    }
+    finally
+    {
+      s_aRWLock.readLock ().unlock ();
+    }
+  }
+
+  /**
+   * Remove all cached SMP URIs.
+   */
+  public static void clearSMPURICache ()
+  {
+    s_aRWLock.writeLock ().lock ();
+    try
+    {
+      s_aSMPURICache.clear ();
+    }
+    finally
+    {
+      s_aRWLock.writeLock ().unlock ();
+    }
   }
 
   @Nonnull
@@ -0,0 +1,222 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.utils;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertPath;
+import java.security.cert.CertPathValidator;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.PKIXParameters;
+import java.security.cert.TrustAnchor;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.annotation.Nonempty;
+import com.helger.commons.annotation.ReturnsImmutableObject;
+import com.helger.commons.annotation.ReturnsMutableCopy;
+import com.helger.commons.string.ToStringGenerator;
+
+/**
+ * An immutable, pre-processed representation of a trust store. All trusted
+ * certificate entries are converted to {@link TrustAnchor} objects once, so
+ * that the PKIX validation of a certificate does not need to touch the
+ * underlying {@link KeyStore} again. Instances of this class are usually
+ * retrieved via {@link TrustStoreCache}.
+ *
+ * @author Philip Helger
+ */
+@Immutable
+public final class CachedTrustStore
+{
+  /** The certificate factory type used to build certificate paths */
+  public static final String CERTIFICATE_FACTORY_TYPE = "X509";
+
+  /** The algorithm of the certificate path validator */
+  public static final String CERT_PATH_VALIDATOR_ALGORITHM = "PKIX";
+
+  // Neither CertificateFactory nor CertPathValidator are guaranteed to be
+  // thread-safe, so each thread gets its own instances
+  private static final ThreadLocal <CertificateFactory> s_aCertificateFactory = new ThreadLocal <CertificateFactory> ()
+  {
+    @Override
+    protected CertificateFactory initialValue ()
+    {
+      try
+      {
+        return CertificateFactory.getInstance (CERTIFICATE_FACTORY_TYPE);
+      }
+      catch (final CertificateException ex)
+      {
+        throw new IllegalStateException ("No " + CERTIFICATE_FACTORY_TYPE + " certificate factory present!", ex);
+      }
+    }
+  };
+
+  private static final ThreadLocal <CertPathValidator> s_aCertPathValidator = new ThreadLocal <CertPathValidator> ()
+  {
+    @Override
+    protected CertPathValidator initialValue ()
+    {
+      try
+      {
+        return CertPathValidator.getInstance (CERT_PATH_VALIDATOR_ALGORITHM);
+      }
+      catch (final NoSuchAlgorithmException ex)
+      {
+        throw new IllegalStateException ("No " + CERT_PATH_VALIDATOR_ALGORITHM + " cert path validator present!", ex);
+      }
+    }
+  };
+
+  private final String m_sLocation;
+  private final Set <TrustAnchor> m_aTrustAnchors;
+  private final PKIXParameters m_aPKIXParams;
+
+  /**
+   * Constructor
+   *
+   * @param sLocation
+   *        The location from which the key store was loaded. May neither be
+   *        <code>null</code> nor empty.
+   * @param aKeyStore
+   *        The loaded key store. May not be <code>null</code>.
+   * @throws GeneralSecurityException
+   *         If the key store cannot be read or contains no trusted certificate
+   *         entries.
+   */
+  public CachedTrustStore (@Nonnull @Nonempty final String sLocation,
+                           @Nonnull final KeyStore aKeyStore) throws GeneralSecurityException
+  {
+    ValueEnforcer.notEmpty (sLocation, "Location");
+    ValueEnforcer.notNull (aKeyStore, "KeyStore");
+
+    // Same selection as in PKIXParameters(KeyStore): only trusted certificate
+    // entries are used
+    final Set <TrustAnchor> aTrustAnchors = new HashSet <TrustAnchor> ();
+    final Enumeration <String> aAliases = aKeyStore.aliases ();
+    while (aAliases.hasMoreElements ())
+    {
+      final String sAlias = aAliases.nextElement ();
+      if (aKeyStore.isCertificateEntry (sAlias))
+      {
+        final Certificate aCert = aKeyStore.getCertificate (sAlias);
+        if (aCert instanceof X509Certificate)
+          aTrustAnchors.add (new TrustAnchor ((X509Certificate) aCert, null));
+      }
+    }
+
+    m_sLocation = sLocation;
+    m_aTrustAnchors = Collections.unmodifiableSet (aTrustAnchors);
+
+    // The PKIXParameters constructor fails if the trust anchor set is empty
+    m_aPKIXParams = new PKIXParameters (m_aTrustAnchors);
+    m_aPKIXParams.setRevocationEnabled (false);
+  }
+
+  /**
+   * @return The location from which the underlying key store was loaded.
+   *         Neither <code>null</code> nor empty.
+   */
+  @Nonnull
+  @Nonempty
+  public String getLocation ()
+  {
+    return m_sLocation;
+  }
+
+  /**
+   * @return All trust anchors contained in the trust store. Never
+   *         <code>null</code> nor empty.
+   */
+  @Nonnull
+  @ReturnsImmutableObject
+  public Set <TrustAnchor> getAllTrustAnchors ()
+  {
+    return m_aTrustAnchors;
+  }
+
+  /**
+   * @return A new PKIX parameter object based on the contained trust anchors
+   *         and with revocation checking disabled. Never <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public PKIXParameters createPKIXParameters ()
+  {
+    return (PKIXParameters) m_aPKIXParams.clone ();
+  }
+
+  /**
+   * Validate the certificate path consisting only of the passed certificate
+   * against the contained trust anchors.
+   *
+   * @param aCertificate
+   *        The certificate to be validated. May not be <code>null</code>.
+   * @throws GeneralSecurityException
+   *         If the certificate is not trusted
+   */
+  public void validateCertificate (@Nonnull final X509Certificate aCertificate) throws GeneralSecurityException
+  {
+    ValueEnforcer.notNull (aCertificate, "Certificate");
+
+    final CertPath aCertPath = s_aCertificateFactory.get ().generateCertPath (Collections.singletonList (aCertificate));
+    s_aCertPathValidator.get ().validate (aCertPath, createPKIXParameters ());
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("Location", m_sLocation)
+                                       .append ("TrustAnchorCount", m_aTrustAnchors.size ())
+                                       .toString ();
+  }
+}
@@ -0,0 +1,310 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.utils;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.cert.X509Certificate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.hashcode.HashCodeGenerator;
+import com.helger.commons.messagedigest.MessageDigestGeneratorHelper;
+import com.helger.commons.string.ToStringGenerator;
+
+/**
+ * A bounded cache for successful certificate path validations. The cache key
+ * is the SHA-256 fingerprint of the certificate together with the identity of
+ * the {@link CachedTrustStore} it was validated against, so that a reloaded
+ * trust store never uses results of a previous version. A cached result is
+ * valid for the configured time to live but never beyond the "not after" date
+ * of the certificate. Failed validations are never cached.
+ *
+ * @author Philip Helger
+ */
+@ThreadSafe
+public class CertificateValidationCache
+{
+  /** Default maximum number of cached validation results */
+  public static final int DEFAULT_MAX_SIZE = 1000;
+  /** Default time to live of a cached validation result: 1 hour */
+  public static final long DEFAULT_TTL_MILLIS = 60 * 60 * 1000L;
+
+  /** The algorithm used to create the certificate fingerprint */
+  public static final String FINGERPRINT_ALGORITHM = "SHA-256";
+
+  @Immutable
+  private static final class Key
+  {
+    private final CachedTrustStore m_aTrustStore;
+    private final String m_sFingerprint;
+
+    public Key (@Nonnull final CachedTrustStore aTrustStore, @Nonnull final String sFingerprint)
+    {
+      m_aTrustStore = aTrustStore;
+      m_sFingerprint = sFingerprint;
+    }
+
+    @Override
+    public boolean equals (final Object o)
+    {
+      if (o == this)
+        return true;
+      if (o == null || !getClass ().equals (o.getClass ()))
+        return false;
+      final Key rhs = (Key) o;
+      // Trust store identity is by reference
+      return m_aTrustStore == rhs.m_aTrustStore && m_sFingerprint.equals (rhs.m_sFingerprint);
+    }
+
+    @Override
+    public int hashCode ()
+    {
+      return new HashCodeGenerator (this).append (System.identityHashCode (m_aTrustStore))
+                                         .append (m_sFingerprint)
+                                         .getHashCode ();
+    }
+  }
+
+  private final int m_nMaxSize;
+  private final long m_nTTLMillis;
+  private final Lock m_aLock = new ReentrantLock ();
+  @GuardedBy ("m_aLock")
+  private final Map <Key, Long> m_aMap;
+  private final AtomicLong m_aHits = new AtomicLong ();
+  private final AtomicLong m_aMisses = new AtomicLong ();
+
+  /**
+   * Constructor using {@link #DEFAULT_MAX_SIZE} and
+   * {@link #DEFAULT_TTL_MILLIS}.
+   */
+  public CertificateValidationCache ()
+  {
+    this (DEFAULT_MAX_SIZE, DEFAULT_TTL_MILLIS);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param nMaxSize
+   *        The maximum number of cached validation results. Must be &gt; 0.
+   *        If the maximum size is reached, the least recently used entry is
+   *        removed.
+   * @param nTTLMillis
+   *        The maximum time to live of a cached validation result in
+   *        milliseconds. Must be &gt; 0.
+   */
+  public CertificateValidationCache (@Nonnegative final int nMaxSize, @Nonnegative final long nTTLMillis)
+  {
+    ValueEnforcer.isGT0 (nMaxSize, "MaxSize");
+    ValueEnforcer.isGT0 (nTTLMillis, "TTLMillis");
+    m_nMaxSize = nMaxSize;
+    m_nTTLMillis = nTTLMillis;
+    // Access order for LRU
+    m_aMap = new LinkedHashMap <Key, Long> (16, 0.75f, true)
+    {
+      @Override
+      protected boolean removeEldestEntry (final Map.Entry <Key, Long> aEldest)
+      {
+        return size () > m_nMaxSize;
+      }
+    };
+  }
+
+  /**
+   * @return The maximum number of cached validation results. Always &gt; 0.
+   */
+  @Nonnegative
+  public int getMaxSize ()
+  {
+    return m_nMaxSize;
+  }
+
+  /**
+   * @return The maximum time to live of a cached validation result in
+   *         milliseconds. Always &gt; 0.
+   */
+  @Nonnegative
+  public long getTTLMillis ()
+  {
+    return m_nTTLMillis;
+  }
+
+  @Nonnull
+  private static String _getFingerprint (@Nonnull final X509Certificate aCertificate) throws GeneralSecurityException
+  {
+    final byte [] aDigest = MessageDigest.getInstance (FINGERPRINT_ALGORITHM).digest (aCertificate.getEncoded ());
+    return MessageDigestGeneratorHelper.getHexValueFromDigest (aDigest);
+  }
+
+  /**
+   * Validate the passed certificate against the passed trust store. If the
+   * same certificate was already successfully validated against the same
+   * trust store and the cached result is not yet expired, the PKIX validation
+   * is skipped.
+   *
+   * @param aTrustStore
+   *        The trust store to validate against. May not be <code>null</code>.
+   * @param aCertificate
+   *        The certificate to be validated. May not be <code>null</code>.
+   * @throws GeneralSecurityException
+   *         If the certificate is not trusted
+   * @see CachedTrustStore#validateCertificate(X509Certificate)
+   */
+  public void validateCertificate (@Nonnull final CachedTrustStore aTrustStore,
+                                   @Nonnull final X509Certificate aCertificate) throws GeneralSecurityException
+  {
+    ValueEnforcer.notNull (aTrustStore, "TrustStore");
+    ValueEnforcer.notNull (aCertificate, "Certificate");
+
+    final Key aKey = new Key (aTrustStore, _getFingerprint (aCertificate));
+    final long nNow = System.currentTimeMillis ();
+
+    m_aLock.lock ();
+    try
+    {
+      final Long aExpiration = m_aMap.get (aKey);
+      if (aExpiration != null)
+      {
+        if (aExpiration.longValue () > nNow)
+        {
+          m_aHits.incrementAndGet ();
+          return;
+        }
+        // Expired
+        m_aMap.remove (aKey);
+      }
+    }
+    finally
+    {
+      m_aLock.unlock ();
+    }
+
+    // Validate outside of the lock - throws an exception on error
+    m_aMisses.incrementAndGet ();
+    aTrustStore.validateCertificate (aCertificate);
+
+    // Never cache beyond the end of the certificate validity
+    final long nExpiration = Math.min (nNow + m_nTTLMillis, aCertificate.getNotAfter ().getTime ());
+    m_aLock.lock ();
+    try
+    {
+      m_aMap.put (aKey, Long.valueOf (nExpiration));
+    }
+    finally
+    {
+      m_aLock.unlock ();
+    }
+  }
+
+  /**
+   * @return The number of validations that were answered from the cache.
+   */
+  @Nonnegative
+  public long getHitCount ()
+  {
+    return m_aHits.get ();
+  }
+
+  /**
+   * @return The number of validations that required a full PKIX validation.
+   */
+  @Nonnegative
+  public long getMissCount ()
+  {
+    return m_aMisses.get ();
+  }
+
+  /**
+   * @return The number of currently cached validation results, including
+   *         already expired ones that were not yet evicted.
+   */
+  @Nonnegative
+  public int getSize ()
+  {
+    m_aLock.lock ();
+    try
+    {
+      return m_aMap.size ();
+    }
+    finally
+    {
+      m_aLock.unlock ();
+    }
+  }
+
+  /**
+   * Remove all cached validation results. The hit and miss counters are not
+   * modified.
+   */
+  public void clearCache ()
+  {
+    m_aLock.lock ();
+    try
+    {
+      m_aMap.clear ();
+    }
+    finally
+    {
+      m_aLock.unlock ();
+    }
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("MaxSize", m_nMaxSize)
+                                       .append ("TTLMillis", m_nTTLMillis)
+                                       .append ("Hits", m_aHits.get ())
+                                       .append ("Misses", m_aMisses.get ())
+                                       .toString ();
+  }
+}
@@ -0,0 +1,242 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.utils;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.annotation.Nonempty;
+import com.helger.commons.annotation.PresentForCodeCoverage;
+import com.helger.commons.equals.EqualsHelper;
+import com.helger.commons.hashcode.HashCodeGenerator;
+
+/**
+ * A global cache for trust stores, so that a trust store is only loaded and
+ * decrypted once per location and password. The cached objects are immutable
+ * and can be shared between all threads. Use {@link #reload(String, String)}
+ * to explicitly re-read a trust store that was changed.
+ *
+ * @author Philip Helger
+ */
+@ThreadSafe
+public final class TrustStoreCache
+{
+  @Immutable
+  private static final class Key
+  {
+    private final String m_sLocation;
+    private final String m_sPassword;
+
+    public Key (@Nonnull final String sLocation, @Nullable final String sPassword)
+    {
+      m_sLocation = sLocation;
+      m_sPassword = sPassword;
+    }
+
+    @Override
+    public boolean equals (final Object o)
+    {
+      if (o == this)
+        return true;
+      if (o == null || !getClass ().equals (o.getClass ()))
+        return false;
+      final Key rhs = (Key) o;
+      return m_sLocation.equals (rhs.m_sLocation) && EqualsHelper.equals (m_sPassword, rhs.m_sPassword);
+    }
+
+    @Override
+    public int hashCode ()
+    {
+      return new HashCodeGenerator (this).append (m_sLocation).append (m_sPassword).getHashCode ();
+    }
+  }
+
+  private static final Logger s_aLogger = LoggerFactory.getLogger (TrustStoreCache.class);
+
+  private static final ReadWriteLock s_aRWLock = new ReentrantReadWriteLock ();
+  @GuardedBy ("s_aRWLock")
+  private static final Map <Key, CachedTrustStore> s_aMap = new HashMap <Key, CachedTrustStore> ();
+
+  @PresentForCodeCoverage
+  @SuppressWarnings ("unused")
+  private static final TrustStoreCache s_aInstance = new TrustStoreCache ();
+
+  private TrustStoreCache ()
+  {}
+
+  @Nonnull
+  private static CachedTrustStore _load (@Nonnull final String sLocation,
+                                         @Nullable final String sPassword) throws GeneralSecurityException,
+                                                                           IOException
+  {
+    final KeyStore aKeyStore = KeyStoreHelper.loadKeyStore (sLocation, sPassword);
+    final CachedTrustStore ret = new CachedTrustStore (sLocation, aKeyStore);
+    if (s_aLogger.isDebugEnabled ())
+      s_aLogger.debug ("Loaded trust store '" + sLocation + "' with " + ret.getAllTrustAnchors ().size () + " trust anchor(s)");
+    return ret;
+  }
+
+  /**
+   * Get the cached trust store for the passed location and password. If it is
+   * not yet cached, it is loaded via
+   * {@link KeyStoreHelper#loadKeyStore(String, String)}.
+   *
+   * @param sLocation
+   *        The path pointing to the trust store. May neither be
+   *        <code>null</code> nor empty.
+   * @param sPassword
+   *        The trust store password. May be <code>null</code> to indicate that
+   *        no password is required.
+   * @return The cached trust store and never <code>null</code>.
+   * @throws GeneralSecurityException
+   *         In case of a key store error
+   * @throws IOException
+   *         In case key store loading fails
+   */
+  @Nonnull
+  public static CachedTrustStore getTrustStore (@Nonnull @Nonempty final String sLocation,
+                                                @Nullable final String sPassword) throws GeneralSecurityException,
+                                                                                  IOException
+  {
+    ValueEnforcer.notEmpty (sLocation, "Location");
+
+    final Key aKey = new Key (sLocation, sPassword);
+    s_aRWLock.readLock ().lock ();
+    try
+    {
+      final CachedTrustStore ret = s_aMap.get (aKey);
+      if (ret != null)
+        return ret;
+    }
+    finally
+    {
+      s_aRWLock.readLock ().unlock ();
+    }
+
+    s_aRWLock.writeLock ().lock ();
+    try
+    {
+      // Try again in write lock
+      CachedTrustStore ret = s_aMap.get (aKey);
+      if (ret == null)
+      {
+        ret = _load (sLocation, sPassword);
+        s_aMap.put (aKey, ret);
+      }
+      return ret;
+    }
+    finally
+    {
+      s_aRWLock.writeLock ().unlock ();
+    }
+  }
+
+  /**
+   * Explicitly reload the trust store of the passed location and password,
+   * replacing any previously cached object.
+   *
+   * @param sLocation
+   *        The path pointing to the trust store. May neither be
+   *        <code>null</code> nor empty.
+   * @param sPassword
+   *        The trust store password. May be <code>null</code> to indicate that
+   *        no password is required.
+   * @return The newly loaded trust store and never <code>null</code>.
+   * @throws GeneralSecurityException
+   *         In case of a key store error
+   * @throws IOException
+   *         In case key store loading fails. In this case the previously
+   *         cached version stays in the cache.
+   */
+  @Nonnull
+  public static CachedTrustStore reload (@Nonnull @Nonempty final String sLocation,
+                                         @Nullable final String sPassword) throws GeneralSecurityException,
+                                                                           IOException
+  {
+    ValueEnforcer.notEmpty (sLocation, "Location");
+
+    // Load outside of the lock
+    final CachedTrustStore ret = _load (sLocation, sPassword);
+
+    s_aRWLock.writeLock ().lock ();
+    try
+    {
+      s_aMap.put (new Key (sLocation, sPassword), ret);
+    }
+    finally
+    {
+      s_aRWLock.writeLock ().unlock ();
+    }
+    s_aLogger.info ("Reloaded trust store '" + sLocation + "'");
+    return ret;
+  }
+
+  /**
+   * Remove all cached trust stores. They are loaded again upon next access.
+   */
+  public static void clearCache ()
+  {
+    s_aRWLock.writeLock ().lock ();
+    try
+    {
+      s_aMap.clear ();
+    }
+    finally
+    {
+      s_aRWLock.writeLock ().unlock ();
+    }
+  }
+}
@@ -42,6 +42,8 @@ package com.helger.peppol.identifier;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -335,6 +337,38 @@ public final class IdentifierHelperTest
     assertFalse (IdentifierHelper.isValidParticipantIdentifier ("any-actorid-dummy9908:976098896"));
   }
 
+  @Test
+  public void testCreateFromURIPart ()
+  {
+    // Split at the first separator
+    SimpleParticipantIdentifier aPI = IdentifierHelper.createParticipantIdentifierFromURIPartOrNull ("any-actorid-dummy::9908::abc");
+    assertNotNull (aPI);
+    assertEquals ("any-actorid-dummy", aPI.getScheme ());
+    assertEquals ("9908::abc", aPI.getValue ());
+    aPI = IdentifierHelper.createParticipantIdentifierFromURIPartOrNull ("ANY-actorid-dummy:::abc");
+    assertNotNull (aPI);
+    assertEquals ("ANY-actorid-dummy", aPI.getScheme ());
+    assertEquals (":abc", aPI.getValue ());
+    assertNull (IdentifierHelper.createParticipantIdentifierFromURIPartOrNull ("::abc"));
+    assertNull (IdentifierHelper.createParticipantIdentifierFromURIPartOrNull ("any-actorid-dummy::"));
+    assertNull (IdentifierHelper.createParticipantIdentifierFromURIPartOrNull ("any--dummy::abc"));
+    assertNull (IdentifierHelper.createParticipantIdentifierFromURIPartOrNull ("any-actorid-dummy-::abc"));
+    assertNull (IdentifierHelper.createParticipantIdentifierFromURIPartOrNull ("any-actorid-dum.my::abc"));
+    // Not US ASCII
+    assertNull (IdentifierHelper.createParticipantIdentifierFromURIPartOrNull ("any-actorid-dummy::\u00e4bc"));
+
+    final SimpleDocumentTypeIdentifier aDocTypeID = IdentifierHelper.createDocumentTypeIdentifierFromURIPartOrNull ("doctype::a::b");
+    assertNotNull (aDocTypeID);
+    assertEquals ("doctype", aDocTypeID.getScheme ());
+    assertEquals ("a::b", aDocTypeID.getValue ());
+    // ISO-8859-1 is okay, but not more
+    assertNotNull (IdentifierHelper.createDocumentTypeIdentifierFromURIPartOrNull ("doctype::\u00e4bc"));
+    assertNull (IdentifierHelper.createDocumentTypeIdentifierFromURIPartOrNull ("doctype::\u0409bc"));
+    assertNotNull (IdentifierHelper.createProcessIdentifierFromURIPartOrNull ("process::\u00e4bc"));
+    assertNull (IdentifierHelper.createProcessIdentifierFromURIPartOrNull ("process::\u0409bc"));
+    assertNull (IdentifierHelper.createProcessIdentifierFromURIPartOrNull ("::proc"));
+  }
+
   @Test
   public void testIsValidProcessIdentifierValue ()
   {
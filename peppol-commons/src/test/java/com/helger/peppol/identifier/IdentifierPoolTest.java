@@ -0,0 +1,245 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.identifier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import com.helger.peppol.identifier.doctype.EPredefinedDocumentTypeIdentifier;
+import com.helger.peppol.identifier.doctype.PooledDocumentTypeIdentifier;
+import com.helger.peppol.identifier.doctype.SimpleDocumentTypeIdentifier;
+import com.helger.peppol.identifier.participant.PooledParticipantIdentifier;
+import com.helger.peppol.identifier.participant.SimpleParticipantIdentifier;
+import com.helger.peppol.identifier.process.EPredefinedProcessIdentifier;
+import com.helger.peppol.identifier.process.PooledProcessIdentifier;
+
+/**
+ * Test class for class {@link IdentifierPool}.
+ *
+ * @author Philip Helger
+ */
+public final class IdentifierPoolTest
+{
+  @Test
+  public void testParticipantIdentifier ()
+  {
+    final IdentifierPool aPool = new IdentifierPool ();
+    assertEquals (0, aPool.getSize ());
+
+    final PooledParticipantIdentifier aID1 = aPool.getParticipantIdentifier (CIdentifier.DEFAULT_PARTICIPANT_IDENTIFIER_SCHEME,
+                                                                            "0088:ABC");
+    assertEquals (1, aPool.getSize ());
+    assertEquals ("0088:ABC", aID1.getValue ());
+    assertEquals ("0088", aID1.getIssuingAgencyID ());
+    assertEquals ("ABC", aID1.getLocalParticipantID ());
+
+    // Case insensitive
+    assertSame (aID1,
+                aPool.getParticipantIdentifier (CIdentifier.DEFAULT_PARTICIPANT_IDENTIFIER_SCHEME.toUpperCase (),
+                                                "0088:abc"));
+    assertSame (aID1, aPool.getParticipantIdentifier (SimpleParticipantIdentifier.createWithDefaultScheme ("0088:Abc")));
+    assertSame (aID1,
+                aPool.getParticipantIdentifier (new PooledParticipantIdentifier (CIdentifier.DEFAULT_PARTICIPANT_IDENTIFIER_SCHEME,
+                                                                                 "0088:abc")));
+    assertEquals (1, aPool.getSize ());
+
+    // Different value
+    final PooledParticipantIdentifier aID2 = aPool.getParticipantIdentifier (CIdentifier.DEFAULT_PARTICIPANT_IDENTIFIER_SCHEME,
+                                                                            "0088:abcd");
+    assertNotSame (aID1, aID2);
+    assertFalse (aID1.equals (aID2));
+    assertEquals (2, aPool.getSize ());
+
+    assertNull (aPool.getParticipantIdentifier ((IParticipantIdentifier) null));
+
+    try
+    {
+      aPool.getParticipantIdentifier ("invalid scheme", "0088:abc");
+      fail ();
+    }
+    catch (final IllegalArgumentException ex)
+    {
+      // expected
+    }
+
+    aPool.clear ();
+    assertEquals (0, aPool.getSize ());
+    final PooledParticipantIdentifier aID3 = aPool.getParticipantIdentifier (CIdentifier.DEFAULT_PARTICIPANT_IDENTIFIER_SCHEME,
+                                                                            "0088:abc");
+    assertNotSame (aID1, aID3);
+    assertEquals (aID1, aID3);
+  }
+
+  @Test
+  public void testDocumentTypeIdentifier ()
+  {
+    final IdentifierPool aPool = new IdentifierPool ();
+    final EPredefinedDocumentTypeIdentifier eDocType = EPredefinedDocumentTypeIdentifier.INVOICE_T010_BIS4A_V20;
+
+    final PooledDocumentTypeIdentifier aID1 = aPool.getDocumentTypeIdentifier (eDocType);
+    assertSame (aID1, aPool.getDocumentTypeIdentifier (eDocType.getScheme (), eDocType.getValue ()));
+    assertSame (aID1, aPool.getDocumentTypeIdentifier (new SimpleDocumentTypeIdentifier (eDocType)));
+    assertEquals (1, aPool.getSize ());
+    assertEquals (eDocType.getURIEncoded (), aID1.getURIEncoded ());
+    assertEquals (eDocType.getURIPercentEncoded (), aID1.getURIPercentEncoded ());
+    assertTrue (aID1.hasParts ());
+    assertEquals (eDocType.getParts ().getAsDocumentTypeIdentifierValue (),
+                  aID1.getParts ().getAsDocumentTypeIdentifierValue ());
+
+    // Case sensitive
+    final PooledDocumentTypeIdentifier aID2 = aPool.getDocumentTypeIdentifier (eDocType.getScheme (),
+                                                                              eDocType.getValue ().toUpperCase ());
+    assertNotSame (aID1, aID2);
+    assertFalse (aID1.equals (aID2));
+    assertEquals (2, aPool.getSize ());
+
+    // Not a PEPPOL document type identifier
+    final PooledDocumentTypeIdentifier aID3 = aPool.getDocumentTypeIdentifier (CIdentifier.DEFAULT_DOCUMENT_TYPE_IDENTIFIER_SCHEME,
+                                                                              "abc");
+    assertFalse (aID3.hasParts ());
+    try
+    {
+      aID3.getParts ();
+      fail ();
+    }
+    catch (final IllegalArgumentException ex)
+    {
+      // expected
+    }
+    assertNull (aPool.getDocumentTypeIdentifier ((IDocumentTypeIdentifier) null));
+  }
+
+  @Test
+  public void testProcessIdentifier ()
+  {
+    final IdentifierPool aPool = new IdentifierPool ();
+    final EPredefinedProcessIdentifier eProcess = EPredefinedProcessIdentifier.BIS4A_V20;
+
+    final PooledProcessIdentifier aID1 = aPool.getProcessIdentifier (eProcess);
+    assertSame (aID1, aPool.getProcessIdentifier (eProcess.getScheme (), eProcess.getValue ()));
+    assertSame (aID1, aPool.getProcessIdentifier (aID1.getAsSimpleProcessIdentifier ()));
+    assertEquals (1, aPool.getSize ());
+    assertEquals (eProcess.getURIEncoded (), aID1.getURIEncoded ());
+    assertTrue (aID1.isDefaultScheme ());
+    assertNull (aPool.getProcessIdentifier ((IProcessIdentifier) null));
+  }
+
+  @Test
+  public void testMaxSize ()
+  {
+    final IdentifierPool aPool = new IdentifierPool (2);
+    final PooledProcessIdentifier aID1 = aPool.getProcessIdentifier (CIdentifier.DEFAULT_PROCESS_IDENTIFIER_SCHEME,
+                                                                     "a");
+    aPool.getProcessIdentifier (CIdentifier.DEFAULT_PROCESS_IDENTIFIER_SCHEME, "b");
+    assertEquals (2, aPool.getSize ());
+
+    // Pool is full - new objects are created
+    final PooledProcessIdentifier aID3 = aPool.getProcessIdentifier (CIdentifier.DEFAULT_PROCESS_IDENTIFIER_SCHEME,
+                                                                     "c");
+    assertNotSame (aID3, aPool.getProcessIdentifier (CIdentifier.DEFAULT_PROCESS_IDENTIFIER_SCHEME, "c"));
+    assertEquals (aID3, aPool.getProcessIdentifier (CIdentifier.DEFAULT_PROCESS_IDENTIFIER_SCHEME, "c"));
+    assertEquals (2, aPool.getSize ());
+
+    // Existing objects are still returned
+    assertSame (aID1, aPool.getProcessIdentifier (CIdentifier.DEFAULT_PROCESS_IDENTIFIER_SCHEME, "a"));
+  }
+
+  @Test
+  public void testInvalidAndUnpooledSchemes ()
+  {
+    final IdentifierPool aPool = new IdentifierPool (1);
+
+    // Invalid identifiers leave nothing behind
+    for (int i = 0; i < 100; ++i)
+      try
+      {
+        aPool.getParticipantIdentifier ("invalid scheme " + i, "0088:abc");
+        fail ();
+      }
+      catch (final IllegalArgumentException ex)
+      {
+        // expected
+      }
+    assertEquals (0, aPool.getSize ());
+    assertEquals (0, aPool.getSchemeCount ());
+
+    aPool.getProcessIdentifier (CIdentifier.DEFAULT_PROCESS_IDENTIFIER_SCHEME, "a");
+    assertEquals (1, aPool.getSize ());
+    assertEquals (1, aPool.getSchemeCount ());
+
+    // Pool is full - no new schemes are added
+    for (int i = 0; i < 100; ++i)
+      aPool.getDocumentTypeIdentifier ("scheme" + i, "abc");
+    assertEquals (1, aPool.getSize ());
+    assertEquals (1, aPool.getSchemeCount ());
+  }
+
+  @Test
+  public void testMaxSizeConcurrent () throws Exception
+  {
+    final int nMaxSize = 100;
+    final IdentifierPool aPool = new IdentifierPool (nMaxSize);
+    final Thread [] aThreads = new Thread [8];
+    for (int i = 0; i < aThreads.length; ++i)
+    {
+      final int nThread = i;
+      aThreads[i] = new Thread (new Runnable ()
+      {
+        public void run ()
+        {
+          for (int j = 0; j < nMaxSize; ++j)
+            aPool.getProcessIdentifier (CIdentifier.DEFAULT_PROCESS_IDENTIFIER_SCHEME, nThread + "-" + j);
+        }
+      });
+      aThreads[i].start ();
+    }
+    for (final Thread aThread : aThreads)
+      aThread.join ();
+    assertEquals (nMaxSize, aPool.getSize ());
+  }
+}
@@ -0,0 +1,167 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.identifier.doctype;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.junit.Test;
+
+import com.helger.peppol.identifier.IdentifierHelper;
+
+/**
+ * Test class for class {@link DocumentTypeIdentifierPartsParser}.
+ *
+ * @author Philip Helger
+ */
+public final class DocumentTypeIdentifierPartsParserTest
+{
+  @Nullable
+  private static IPeppolDocumentTypeIdentifierParts _parseLegacy (@Nonnull final String sDocTypeID)
+  {
+    try
+    {
+      return PeppolDocumentTypeIdentifierParts.extractFromString (sDocTypeID);
+    }
+    catch (final IllegalArgumentException ex)
+    {
+      try
+      {
+        return OpenPeppolDocumentTypeIdentifierParts.extractFromString (sDocTypeID);
+      }
+      catch (final IllegalArgumentException ex2)
+      {
+        return null;
+      }
+    }
+  }
+
+  private static void _assertSameAsLegacy (@Nonnull final String sDocTypeID)
+  {
+    final IPeppolDocumentTypeIdentifierParts aExpected = _parseLegacy (sDocTypeID);
+    final IPeppolDocumentTypeIdentifierParts aParts = DocumentTypeIdentifierPartsParser.parseOrNull (sDocTypeID);
+    if (aExpected == null)
+      assertNull (sDocTypeID, aParts);
+    else
+    {
+      assertNotNull (sDocTypeID, aParts);
+      assertSame (sDocTypeID, aExpected.getClass (), aParts.getClass ());
+      assertEquals (sDocTypeID, aExpected.getRootNS (), aParts.getRootNS ());
+      assertEquals (sDocTypeID, aExpected.getLocalName (), aParts.getLocalName ());
+      assertEquals (sDocTypeID, aExpected.getSubTypeIdentifier (), aParts.getSubTypeIdentifier ());
+      assertEquals (sDocTypeID, aExpected.getTransactionID (), aParts.getTransactionID ());
+      assertEquals (sDocTypeID, aExpected.getExtensionIDs (), aParts.getExtensionIDs ());
+      assertEquals (sDocTypeID, aExpected.getVersion (), aParts.getVersion ());
+      assertEquals (sDocTypeID, sDocTypeID, aParts.getAsDocumentTypeIdentifierValue ());
+    }
+  }
+
+  @Test
+  public void testPredefined ()
+  {
+    for (final EPredefinedDocumentTypeIdentifier e : EPredefinedDocumentTypeIdentifier.values ())
+    {
+      assertNotNull (DocumentTypeIdentifierPartsParser.parseOrNull (e.getValue ()));
+      _assertSameAsLegacy (e.getValue ());
+    }
+  }
+
+  @Test
+  public void testSameAsLegacy ()
+  {
+    for (final String sDocTypeID : new String [] { "root::local##subtype:#ext1#ext2::version",
+                                                   "root::local##basic:extended:subtype:extended:ext1::ver1",
+                                                   "root::local##a:#b:extended:c::ver1",
+                                                   "root::local##a:#:extended:c::ver1",
+                                                   "root:::local##a:#b::ver1",
+                                                   "root::local::x##a:#b::v::w",
+                                                   "",
+                                                   "root",
+                                                   "root::local",
+                                                   "::local##subtype:#ext1::version",
+                                                   "root::##subtype:#ext1::version",
+                                                   "root##sub::local",
+                                                   "root::local##",
+                                                   "root::local##subtype",
+                                                   "root::local##subtype::",
+                                                   "root::local##subtype::version",
+                                                   "root::local##subtype:#::version",
+                                                   "root::local##subtype:#ext1#ext2##ext3::version",
+                                                   "root::local##subtype:#ext1#::version",
+                                                   "root::local##:#ext1#ext2::version",
+                                                   "root::local##subtype:#ext1#ext2::",
+                                                   "root::local##:extended:foo::version",
+                                                   "root::local##bar:extended::version",
+                                                   "root::local##:extended::extended::version",
+                                                   "root::local##a:extended:b:extended:::version" })
+      _assertSameAsLegacy (sDocTypeID);
+
+    assertNull (DocumentTypeIdentifierPartsParser.parseOrNull (null));
+  }
+
+  @Test
+  public void testCache ()
+  {
+    IdentifierHelper.clearDocumentTypeIdentifierPartsCache ();
+    assertEquals (0, IdentifierHelper.getDocumentTypeIdentifierPartsCacheSize ());
+
+    final SimpleDocumentTypeIdentifier aDocTypeID = new SimpleDocumentTypeIdentifier (EPredefinedDocumentTypeIdentifier.INVOICE_T010_BIS4A_V20);
+    final IPeppolDocumentTypeIdentifierParts aParts = IdentifierHelper.getDocumentTypeIdentifierParts (aDocTypeID);
+    assertTrue (aParts instanceof OpenPeppolDocumentTypeIdentifierParts);
+    assertEquals (1, IdentifierHelper.getDocumentTypeIdentifierPartsCacheSize ());
+    assertSame (aParts, IdentifierHelper.getDocumentTypeIdentifierPartsOrNull (aDocTypeID));
+    assertSame (aParts, aDocTypeID.getParts ());
+
+    // Unparsable values are not cached
+    final SimpleDocumentTypeIdentifier aInvalid = SimpleDocumentTypeIdentifier.createWithDefaultScheme ("root::local");
+    assertNull (IdentifierHelper.getDocumentTypeIdentifierPartsOrNull (aInvalid));
+    assertEquals (1, IdentifierHelper.getDocumentTypeIdentifierPartsCacheSize ());
+
+    IdentifierHelper.clearDocumentTypeIdentifierPartsCache ();
+    assertEquals (0, IdentifierHelper.getDocumentTypeIdentifierPartsCacheSize ());
+  }
+}
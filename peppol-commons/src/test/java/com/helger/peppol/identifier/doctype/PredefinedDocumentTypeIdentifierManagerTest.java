@@ -40,12 +40,15 @@
  */
 package com.helger.peppol.identifier.doctype;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.util.List;
+
 import org.junit.Test;
 
 /**
@@ -74,4 +77,49 @@ public final class PredefinedDocumentTypeIdentifierManagerTest
       assertTrue (PredefinedDocumentTypeIdentifierManager.containsDocumentTypeIdentifierWithID (eDocID.getValue ()));
     }
   }
+
+  @Test
+  public void testSecondaryIndices ()
+  {
+    int nCount = 0;
+    for (final EPredefinedDocumentTypeIdentifier eDocID : EPredefinedDocumentTypeIdentifier.values ())
+    {
+      final List <IPeppolPredefinedDocumentTypeIdentifier> aByName = PredefinedDocumentTypeIdentifierManager.getAllDocumentTypeIdentifiersOfRootNSAndLocalName (eDocID.getRootNS (),
+                                                                                                                                                               eDocID.getLocalName ());
+      assertTrue (aByName.contains (eDocID));
+      for (final IPeppolPredefinedDocumentTypeIdentifier aDocID : aByName)
+      {
+        assertEquals (eDocID.getRootNS (), aDocID.getRootNS ());
+        assertEquals (eDocID.getLocalName (), aDocID.getLocalName ());
+      }
+
+      final List <IPeppolPredefinedDocumentTypeIdentifier> aByCustID = PredefinedDocumentTypeIdentifierManager.getAllDocumentTypeIdentifiersOfCustomizationID (eDocID.getAsUBLCustomizationID ());
+      assertTrue (aByCustID.contains (eDocID));
+      for (final IPeppolPredefinedDocumentTypeIdentifier aDocID : aByCustID)
+        assertEquals (eDocID.getAsUBLCustomizationID (), aDocID.getAsUBLCustomizationID ());
+      nCount += aByCustID.size ();
+    }
+    assertTrue (nCount >= EPredefinedDocumentTypeIdentifier.values ().length);
+
+    // Case sensitive
+    assertTrue (PredefinedDocumentTypeIdentifierManager.getAllDocumentTypeIdentifiersOfRootNSAndLocalName ("urn:oasis:names:specification:ubl:schema:xsd:Invoice-2",
+                                                                                                           "Invoice")
+                                                       .size () > 0);
+    assertTrue (PredefinedDocumentTypeIdentifierManager.getAllDocumentTypeIdentifiersOfRootNSAndLocalName ("urn:oasis:names:specification:ubl:schema:xsd:Invoice-2",
+                                                                                                           "invoice")
+                                                       .isEmpty ());
+    assertTrue (PredefinedDocumentTypeIdentifierManager.getAllDocumentTypeIdentifiersOfRootNSAndLocalName (null, "Invoice")
+                                                       .isEmpty ());
+    assertTrue (PredefinedDocumentTypeIdentifierManager.getAllDocumentTypeIdentifiersOfCustomizationID (null).isEmpty ());
+    assertTrue (PredefinedDocumentTypeIdentifierManager.getAllDocumentTypeIdentifiersOfCustomizationID ("urn:bla").isEmpty ());
+  }
+
+  @Test
+  public void testCaseSensitive ()
+  {
+    for (final EPredefinedDocumentTypeIdentifier eDocID : EPredefinedDocumentTypeIdentifier.values ())
+      if (!eDocID.getValue ().equals (eDocID.getValue ().toUpperCase ()))
+        assertNull (PredefinedDocumentTypeIdentifierManager.getDocumentTypeIdentifierOfID (eDocID.getValue ().toUpperCase ()));
+    assertNull (PredefinedDocumentTypeIdentifierManager.getDocumentTypeIdentifierOfID (null));
+  }
 }
@@ -44,6 +44,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
@@ -95,4 +96,33 @@ public final class IdentifierIssuingAgencyManagerTest
     assertEquals (ETriState.UNDEFINED, IdentifierIssuingAgencyManager.isAgencyWithISO6523CodeDeprecated (null));
     assertEquals (ETriState.UNDEFINED, IdentifierIssuingAgencyManager.isAgencyWithSchemeIDDeprecated (null));
   }
+
+  @Test
+  public void testIndices ()
+  {
+    for (final EPredefinedIdentifierIssuingAgency eAgency : EPredefinedIdentifierIssuingAgency.values ())
+    {
+      assertSame (eAgency, IdentifierIssuingAgencyManager.getAgencyOfISO6523Code (eAgency.getISO6523Code ()));
+      assertSame (eAgency, IdentifierIssuingAgencyManager.getAgencyOfSchemeID (eAgency.getSchemeID ()));
+      assertSame (eAgency,
+                  IdentifierIssuingAgencyManager.getAgencyOfICD (Integer.parseInt (eAgency.getISO6523Code ())));
+      assertEquals (ETriState.valueOf (eAgency.isDeprecated ()),
+                    IdentifierIssuingAgencyManager.isAgencyWithISO6523CodeDeprecated (eAgency.getISO6523Code ()));
+      assertEquals (ETriState.valueOf (eAgency.isDeprecated ()),
+                    IdentifierIssuingAgencyManager.isAgencyWithSchemeIDDeprecated (eAgency.getSchemeID ()));
+    }
+
+    // Case insensitive
+    assertSame (EPredefinedIdentifierIssuingAgency.GLN, IdentifierIssuingAgencyManager.getAgencyOfSchemeID ("gln"));
+    assertSame (EPredefinedIdentifierIssuingAgency.AT_VAT,
+                IdentifierIssuingAgencyManager.getAgencyOfSchemeID ("at:vat"));
+
+    // Invalid ICDs
+    assertNull (IdentifierIssuingAgencyManager.getAgencyOfICD (-1));
+    assertNull (IdentifierIssuingAgencyManager.getAgencyOfICD (1024));
+    assertNull (IdentifierIssuingAgencyManager.getAgencyOfICD (10000));
+    assertNull (IdentifierIssuingAgencyManager.getAgencyOfISO6523Code ("088"));
+    assertNull (IdentifierIssuingAgencyManager.getAgencyOfISO6523Code ("00088"));
+    assertNull (IdentifierIssuingAgencyManager.getAgencyOfISO6523Code ("00x8"));
+  }
 }
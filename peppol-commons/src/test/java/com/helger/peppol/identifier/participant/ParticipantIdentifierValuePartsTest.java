@@ -0,0 +1,124 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.identifier.participant;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import com.helger.commons.regex.RegExHelper;
+import com.helger.peppol.identifier.IdentifierHelper;
+
+/**
+ * Test class for class {@link ParticipantIdentifierValueParts}.
+ *
+ * @author Philip Helger
+ */
+public final class ParticipantIdentifierValuePartsTest
+{
+  @Test
+  public void testParse ()
+  {
+    ParticipantIdentifierValueParts aParts = ParticipantIdentifierValueParts.parseOrNull ("0088:123456");
+    assertNotNull (aParts);
+    assertEquals ("0088:123456", aParts.getValue ());
+    assertEquals ("0088", aParts.getIssuingAgencyID ());
+    assertEquals ("123456", aParts.getLocalParticipantID ());
+
+    // Only the first separator is relevant
+    aParts = ParticipantIdentifierValueParts.parseOrNull ("9956:DE:EPROC:BMIEVG");
+    assertNotNull (aParts);
+    assertEquals ("9956", aParts.getIssuingAgencyID ());
+    assertEquals ("DE:EPROC:BMIEVG", aParts.getLocalParticipantID ());
+
+    aParts = ParticipantIdentifierValueParts.parseOrNull (":");
+    assertNotNull (aParts);
+    assertEquals ("", aParts.getIssuingAgencyID ());
+    assertEquals ("", aParts.getLocalParticipantID ());
+
+    assertNull (ParticipantIdentifierValueParts.parseOrNull (""));
+    assertNull (ParticipantIdentifierValueParts.parseOrNull ("0088"));
+  }
+
+  @Test
+  public void testSameAsRegEx ()
+  {
+    for (final String sValue : new String [] { "0088:123456",
+                                               "0088:",
+                                               ":123",
+                                               "abc",
+                                               "a:b:c",
+                                               "a\nb:c",
+                                               "a:b\nc",
+                                               "a:bc\n",
+                                               "a:bc\r\n",
+                                               "a:bc\n\n",
+                                               "a:bc " })
+    {
+      final String [] aGroups = RegExHelper.getAllMatchingGroupValues ("^([^:]*):(.*)$", sValue);
+      final ParticipantIdentifierValueParts aParts = ParticipantIdentifierValueParts.parseOrNull (sValue);
+      if (aGroups == null)
+        assertNull (sValue, aParts);
+      else
+      {
+        assertNotNull (sValue, aParts);
+        assertEquals (sValue, aGroups[0], aParts.getIssuingAgencyID ());
+        assertEquals (sValue, aGroups[1], aParts.getLocalParticipantID ());
+      }
+    }
+  }
+
+  @Test
+  public void testIdentifierHelper ()
+  {
+    final SimpleParticipantIdentifier aPI = SimpleParticipantIdentifier.createWithDefaultScheme ("0088:abc");
+    final ParticipantIdentifierValueParts aParts = IdentifierHelper.getParticipantIdentifierValueParts (aPI);
+    assertNotNull (aParts);
+    assertEquals (aPI.getIssuingAgencyID (), aParts.getIssuingAgencyID ());
+    assertEquals (aPI.getLocalParticipantID (), aParts.getLocalParticipantID ());
+
+    // Not the default scheme
+    assertNull (IdentifierHelper.getParticipantIdentifierValueParts (new SimpleParticipantIdentifier ("scheme-actorid-test",
+                                                                                                     "0088:abc")));
+  }
+}
@@ -0,0 +1,193 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.identifier.participant;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.helger.peppol.identifier.CIdentifier;
+
+/**
+ * Test class for class {@link ParticipantRoutingTable}.
+ *
+ * @author Philip Helger
+ */
+public final class ParticipantRoutingTableTest
+{
+  private static final String SCHEME = CIdentifier.DEFAULT_PARTICIPANT_IDENTIFIER_SCHEME;
+
+  @Test
+  public void testBasic ()
+  {
+    for (final boolean bOffHeap : new boolean [] { false, true })
+    {
+      final ParticipantRoutingTable aTable = new ParticipantRoutingTable (10, bOffHeap);
+      assertTrue (aTable.isEmpty ());
+      assertEquals (bOffHeap, aTable.isOffHeap ());
+      assertNull (aTable.get (SCHEME, "0088:123"));
+      assertNull (aTable.get (null));
+
+      assertNull (aTable.put (SCHEME, "0088:ABC", "ap1"));
+      assertNull (aTable.put (new SimpleParticipantIdentifier (SCHEME, "0088:def"), "ap2"));
+      assertEquals (2, aTable.getSize ());
+      assertEquals (2, aTable.getTargetCount ());
+
+      // Case insensitive
+      assertEquals ("ap1", aTable.get (SCHEME, "0088:abc"));
+      assertEquals ("ap1", aTable.get (SCHEME.toUpperCase (), "0088:aBc"));
+      assertEquals ("ap2", aTable.get (new SimpleParticipantIdentifier (SCHEME, "0088:DEF")));
+      assertNull (aTable.get (SCHEME, "0088:ab"));
+      assertNull (aTable.get (SCHEME, "0088:abcd"));
+      assertNull (aTable.get ("busdox-actorid-upis", "0088:abc"));
+      // Scheme and value are not mixed up
+      assertNull (aTable.get (SCHEME + "::0088", "abc"));
+
+      // Non-ASCII chars
+      assertNull (aTable.put ("scheme-actorid-test", "\u00c4\u03a3", "ap1"));
+      assertEquals ("ap1", aTable.get ("scheme-actorid-test", "\u00e4\u03c3"));
+      assertEquals (2, aTable.getTargetCount ());
+
+      // Replace
+      assertEquals ("ap1", aTable.put (SCHEME, "0088:abc", "ap3"));
+      assertEquals ("ap3", aTable.get (SCHEME, "0088:ABC"));
+      assertEquals (3, aTable.getSize ());
+      assertEquals (3, aTable.getTargetCount ());
+
+      // Remove
+      assertEquals ("ap3", aTable.remove (new SimpleParticipantIdentifier (SCHEME, "0088:Abc")));
+      assertNull (aTable.remove (new SimpleParticipantIdentifier (SCHEME, "0088:Abc")));
+      assertFalse (aTable.containsParticipant (new SimpleParticipantIdentifier (SCHEME, "0088:abc")));
+      assertTrue (aTable.containsParticipant (new SimpleParticipantIdentifier (SCHEME, "0088:def")));
+      assertEquals (2, aTable.getSize ());
+
+      aTable.clear ();
+      assertTrue (aTable.isEmpty ());
+      assertEquals (0, aTable.getTargetCount ());
+      assertNull (aTable.get (SCHEME, "0088:def"));
+    }
+  }
+
+  @Test
+  public void testManyEntries ()
+  {
+    final ParticipantRoutingTable aTable = new ParticipantRoutingTable ();
+    final Map <String, String> aExpected = new HashMap <String, String> ();
+    final Random aRandom = new Random (1234);
+    for (int i = 0; i < 50000; ++i)
+    {
+      final String sValue = "9908:" + aRandom.nextInt (40000);
+      if (aRandom.nextInt (4) == 0)
+        assertEquals (aExpected.remove (sValue),
+                      aTable.remove (new SimpleParticipantIdentifier (SCHEME, sValue.toUpperCase ())));
+      else
+      {
+        final String sTarget = "ap" + aRandom.nextInt (10);
+        assertEquals (aExpected.put (sValue, sTarget), aTable.put (SCHEME, sValue, sTarget));
+      }
+    }
+
+    assertEquals (aExpected.size (), aTable.getSize ());
+    assertEquals (10, aTable.getTargetCount ());
+    for (int i = 0; i < 40000; ++i)
+    {
+      final String sValue = "9908:" + i;
+      assertEquals (aExpected.get (sValue), aTable.get (SCHEME, sValue));
+    }
+    assertTrue (aTable.getMemoryUsage () > 0);
+  }
+
+  @Test
+  public void testReadFrom () throws Exception
+  {
+    final ParticipantRoutingTable aTable = new ParticipantRoutingTable ();
+    assertEquals (3,
+                  aTable.readFrom (new StringReader ("# Comment\n" +
+                                                     "iso6523-actorid-upis::0088:123\tap1\n" +
+                                                     "\n" +
+                                                     "  iso6523-actorid-upis::0088:456 \t ap2 \n" +
+                                                     "iso6523-actorid-upis::0088:789\tap1\n")));
+    assertEquals (3, aTable.getSize ());
+    assertEquals (2, aTable.getTargetCount ());
+    assertEquals ("ap2", aTable.get (SCHEME, "0088:456"));
+
+    for (final String sLine : new String [] { "iso6523-actorid-upis::0088:123",
+                                              "iso6523-actorid-upis::0088:123\t",
+                                              "iso6523-actorid-upis:0088:123\tap1" })
+      try
+      {
+        aTable.readFrom (new StringReader (sLine));
+        fail ();
+      }
+      catch (final IllegalArgumentException ex)
+      {
+        // expected
+      }
+  }
+
+  @Test
+  public void testGetCapacity ()
+  {
+    assertEquals (16, ParticipantRoutingTable._getCapacity (1));
+    assertEquals (16, ParticipantRoutingTable._getCapacity (11));
+    assertEquals (32, ParticipantRoutingTable._getCapacity (12));
+
+    // Boundary
+    final int nMaxSize = (int) (ParticipantRoutingTable.MAX_CAPACITY * 0.7f);
+    assertEquals (ParticipantRoutingTable.MAX_CAPACITY, ParticipantRoutingTable._getCapacity (nMaxSize));
+    assertEquals (ParticipantRoutingTable.MAX_CAPACITY, ParticipantRoutingTable._getCapacity (nMaxSize + 1));
+    assertEquals (ParticipantRoutingTable.MAX_CAPACITY, ParticipantRoutingTable._getCapacity (Integer.MAX_VALUE));
+
+    // The slot array of the maximum capacity must be allocatable
+    final int nLength = ParticipantRoutingTable._getCapacity (Integer.MAX_VALUE) << ParticipantRoutingTable.SLOT_BITS;
+    assertTrue (nLength > 0);
+    assertEquals ((long) ParticipantRoutingTable.MAX_CAPACITY << ParticipantRoutingTable.SLOT_BITS, nLength);
+  }
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.identifier.participant;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import com.helger.commons.mock.CommonsTestHelper;
+import com.helger.peppol.identifier.CIdentifier;
+import com.helger.peppol.identifier.IdentifierHelper;
+import com.helger.peppol.utils.BusdoxURLHelper;
+
+/**
+ * Test class for class {@link PooledParticipantIdentifier}.
+ *
+ * @author Philip Helger
+ */
+public final class PooledParticipantIdentifierTest
+{
+  @Test
+  public void testBasicMethods ()
+  {
+    final PooledParticipantIdentifier aID1 = new PooledParticipantIdentifier ("scheme-actorid-test", "value");
+    final PooledParticipantIdentifier aID2 = new PooledParticipantIdentifier ("scheme-actorid-test", "VALUE");
+    final PooledParticipantIdentifier aID3 = new PooledParticipantIdentifier ("scheme2-actorid-test", "value");
+    CommonsTestHelper.testDefaultImplementationWithEqualContentObject (aID1, aID2);
+    CommonsTestHelper.testDefaultImplementationWithDifferentContentObject (aID1, aID3);
+    CommonsTestHelper.testDefaultImplementationWithDifferentContentObject (aID2, aID3);
+    assertEquals (0, aID1.compareTo (aID2));
+  }
+
+  @Test
+  public void testDerivedValues ()
+  {
+    final SimpleParticipantIdentifier aSimpleID = SimpleParticipantIdentifier.createWithDefaultScheme ("0088:ABC");
+    final PooledParticipantIdentifier aID = new PooledParticipantIdentifier (aSimpleID);
+    assertEquals (CIdentifier.DEFAULT_PARTICIPANT_IDENTIFIER_SCHEME, aID.getScheme ());
+    assertEquals ("0088:ABC", aID.getValue ());
+    assertEquals ("0088:abc", aID.getLowerCaseValue ());
+    assertTrue (aID.isDefaultScheme ());
+    assertEquals (aSimpleID.getURIEncoded (), aID.getURIEncoded ());
+    assertEquals (aSimpleID.getURIPercentEncoded (), aID.getURIPercentEncoded ());
+    assertEquals (aSimpleID.getIssuingAgencyID (), aID.getIssuingAgencyID ());
+    assertEquals (aSimpleID.getLocalParticipantID (), aID.getLocalParticipantID ());
+    assertEquals (aSimpleID.isValid (), aID.isValid ());
+    assertEquals (BusdoxURLHelper.getHashValueStringRepresentation ("0088:abc"), aID.getDNSHashValue ());
+    assertTrue (IdentifierHelper.areParticipantIdentifiersEqual (aSimpleID, aID.getAsSimpleParticipantIdentifier ()));
+
+    final PooledParticipantIdentifier aID2 = new PooledParticipantIdentifier ("scheme-actorid-test", "value");
+    assertFalse (aID2.isDefaultScheme ());
+    assertNull (aID2.getIssuingAgencyID ());
+    assertNull (aID2.getLocalParticipantID ());
+  }
+
+  @Test
+  public void testConstraints ()
+  {
+    try
+    {
+      // null key not allowed
+      new PooledParticipantIdentifier (null, "value");
+      fail ();
+    }
+    catch (final IllegalArgumentException ex)
+    {}
+
+    try
+    {
+      // Empty is not allowed
+      new PooledParticipantIdentifier (CIdentifier.DEFAULT_PARTICIPANT_IDENTIFIER_SCHEME, "");
+      fail ();
+    }
+    catch (final IllegalArgumentException ex)
+    {}
+  }
+}
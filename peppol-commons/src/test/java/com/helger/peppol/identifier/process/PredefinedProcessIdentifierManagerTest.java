@@ -43,6 +43,7 @@ package com.helger.peppol.identifier.process;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
@@ -68,5 +69,12 @@ public final class PredefinedProcessIdentifierManagerTest
     assertNull (PredefinedProcessIdentifierManager.getProcessIdentifierOfID ("urn:www.cenbii.eu:profile:bii01:ver1.0a"));
     assertTrue (PredefinedProcessIdentifierManager.containsProcessIdentifierWithID ("urn:www.cenbii.eu:profile:bii01:ver1.0"));
     assertFalse (PredefinedProcessIdentifierManager.containsProcessIdentifierWithID ("urn:www.cenbii.eu:profile:bii01:ver1.0a"));
+    assertNull (PredefinedProcessIdentifierManager.getProcessIdentifierOfID (null));
+    // Case sensitive
+    assertNull (PredefinedProcessIdentifierManager.getProcessIdentifierOfID ("URN:WWW.CENBII.EU:PROFILE:BII01:VER1.0"));
+
+    // all enum ones must be contained
+    for (final EPredefinedProcessIdentifier eProcID : EPredefinedProcessIdentifier.values ())
+      assertSame (eProcID, PredefinedProcessIdentifierManager.getProcessIdentifierOfID (eProcID.getValue ()));
   }
 }
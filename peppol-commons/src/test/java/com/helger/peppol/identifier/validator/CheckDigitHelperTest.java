@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.identifier.validator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Test class for class {@link CheckDigitHelper}.
+ *
+ * @author Philip Helger
+ */
+public final class CheckDigitHelperTest
+{
+  @Test
+  public void testDigits ()
+  {
+    assertEquals (0, CheckDigitHelper.getDigitValue ('0'));
+    assertEquals (9, CheckDigitHelper.getDigitValue ('9'));
+    assertEquals (-1, CheckDigitHelper.getDigitValue ('a'));
+    assertEquals (-1, CheckDigitHelper.getDigitValue ('\u0663'));
+
+    assertTrue (CheckDigitHelper.isDigits ("0123", 4));
+    assertTrue (CheckDigitHelper.isDigits ("", 0));
+    assertTrue (CheckDigitHelper.isDigits ("ab12cd", 2, 2));
+    assertFalse (CheckDigitHelper.isDigits (null, 0));
+    assertFalse (CheckDigitHelper.isDigits ("0123", 3));
+    assertFalse (CheckDigitHelper.isDigits ("01 3", 4));
+    assertFalse (CheckDigitHelper.isDigits ("ab12cd", 1, 2));
+  }
+
+  @Test
+  public void testWeightedSum ()
+  {
+    assertEquals (0, CheckDigitHelper.getWeightedSum ("abc", 1, new int [0]));
+    assertEquals (1 * 3 + 2 * 2 + 3 * 1, CheckDigitHelper.getWeightedSum ("x123", 1, new int [] { 3, 2, 1 }));
+    assertEquals (-1, CheckDigitHelper.getWeightedSum ("1x3", 0, new int [] { 3, 2, 1 }));
+
+    final int [] aNOWeights = new int [] { 3, 2, 7, 6, 5, 4, 3, 2 };
+    assertEquals (5, CheckDigitHelper.getMod11CheckDigit ("123456785", 0, aNOWeights));
+    assertEquals (0, CheckDigitHelper.getMod11CheckDigit ("961329310", 0, aNOWeights));
+    // Check digit 10 is never valid
+    assertEquals (-1, CheckDigitHelper.getMod11CheckDigit ("32345678", 0, aNOWeights));
+    assertEquals (-1, CheckDigitHelper.getMod11CheckDigit ("1234567-", 0, aNOWeights));
+  }
+
+  @Test
+  public void testLuhnAndGS1 ()
+  {
+    assertTrue (CheckDigitHelper.isValidLuhn ("5560360793", 0, 10));
+    assertTrue (CheckDigitHelper.isValidLuhn ("79927398713", 0, 11));
+    assertTrue (CheckDigitHelper.isValidLuhn ("xx79927398713", 2, 11));
+    assertFalse (CheckDigitHelper.isValidLuhn ("5560360794", 0, 10));
+    assertFalse (CheckDigitHelper.isValidLuhn ("556036-0793", 0, 11));
+
+    assertTrue (CheckDigitHelper.isValidGS1 ("5798000000001", 0, 13));
+    assertTrue (CheckDigitHelper.isValidGS1 ("4000001000005", 0, 13));
+    assertTrue (CheckDigitHelper.isValidGS1 ("96385074", 0, 8));
+    assertFalse (CheckDigitHelper.isValidGS1 ("5798000000002", 0, 13));
+    assertFalse (CheckDigitHelper.isValidGS1 ("579800000000a", 0, 13));
+  }
+
+  @Test
+  public void testMod97 ()
+  {
+    assertEquals (0, CheckDigitHelper.getMod97 (0, "", 0, 0));
+    assertEquals (1234567 % 97, CheckDigitHelper.getMod97 (0, "1234567", 0, 7));
+    assertEquals (1234567 % 97, CheckDigitHelper.getMod97 (CheckDigitHelper.getMod97 (0, "1234", 0, 4), "567", 0, 3));
+    // A = 10, Z = 35
+    assertEquals (1035 % 97, CheckDigitHelper.getMod97 (0, "AZ", 0, 2));
+    assertEquals (1035 % 97, CheckDigitHelper.getMod97 (0, "az", 0, 2));
+    assertEquals (-1, CheckDigitHelper.getMod97 (0, "12-4", 0, 4));
+    assertEquals (-1, CheckDigitHelper.getMod97 (0, "\u00c4", 0, 1));
+  }
+}
@@ -40,12 +40,15 @@
  */
 package com.helger.peppol.identifier.validator;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 
+import com.helger.peppol.identifier.CIdentifier;
 import com.helger.peppol.identifier.issuingagency.EPredefinedIdentifierIssuingAgency;
+import com.helger.peppol.identifier.participant.SimpleParticipantIdentifier;
 
 /**
  * Test class for class {@link IdentifierValidator}.
@@ -75,4 +78,58 @@ public final class IdentifierValidatorTest
     assertTrue (IdentifierValidator.isValidParticipantIdentifier (EPredefinedIdentifierIssuingAgency.AD_VAT.createParticipantIdentifier ("968218743")));
     assertTrue (IdentifierValidator.isValidParticipantIdentifier (EPredefinedIdentifierIssuingAgency.AD_VAT.createParticipantIdentifier ("961329310")));
   }
+
+  @Test
+  public void testAdditionalValidators ()
+  {
+    assertTrue (IdentifierValidator.isValidParticipantIdentifier (EPredefinedIdentifierIssuingAgency.GLN.createParticipantIdentifier ("5798000000001")));
+    assertFalse (IdentifierValidator.isValidParticipantIdentifier (EPredefinedIdentifierIssuingAgency.GLN.createParticipantIdentifier ("5798000000002")));
+    assertTrue (IdentifierValidator.isValidParticipantIdentifier (EPredefinedIdentifierIssuingAgency.DK_CVR.createParticipantIdentifier ("13585628")));
+    assertFalse (IdentifierValidator.isValidParticipantIdentifier (EPredefinedIdentifierIssuingAgency.DK_CVR.createParticipantIdentifier ("13585627")));
+    assertTrue (IdentifierValidator.isValidParticipantIdentifier (EPredefinedIdentifierIssuingAgency.SE_ORGNR.createParticipantIdentifier ("5560360793")));
+    assertFalse (IdentifierValidator.isValidParticipantIdentifier (EPredefinedIdentifierIssuingAgency.SE_ORGNR.createParticipantIdentifier ("5560360794")));
+    assertTrue (IdentifierValidator.isValidParticipantIdentifier (EPredefinedIdentifierIssuingAgency.FI_OVT.createParticipantIdentifier ("003701120389")));
+    assertFalse (IdentifierValidator.isValidParticipantIdentifier (EPredefinedIdentifierIssuingAgency.FI_OVT.createParticipantIdentifier ("003701120388")));
+    assertTrue (IdentifierValidator.isValidParticipantIdentifier (EPredefinedIdentifierIssuingAgency.BE_VAT.createParticipantIdentifier ("BE0403170701")));
+    assertFalse (IdentifierValidator.isValidParticipantIdentifier (EPredefinedIdentifierIssuingAgency.BE_VAT.createParticipantIdentifier ("BE0403170702")));
+    assertTrue (IdentifierValidator.isValidParticipantIdentifier (EPredefinedIdentifierIssuingAgency.IBAN.createParticipantIdentifier ("DE89370400440532013000")));
+    assertFalse (IdentifierValidator.isValidParticipantIdentifier (EPredefinedIdentifierIssuingAgency.IBAN.createParticipantIdentifier ("DE89370400440532013001")));
+    assertTrue (IdentifierValidator.isValidParticipantIdentifier (EPredefinedIdentifierIssuingAgency.DUNS.createParticipantIdentifier ("150483782")));
+    assertFalse (IdentifierValidator.isValidParticipantIdentifier (EPredefinedIdentifierIssuingAgency.DUNS.createParticipantIdentifier ("15048378")));
+  }
+
+  @Test
+  public void testVerdictCache ()
+  {
+    IdentifierValidator.clearVerdictCache ();
+    assertEquals (0, IdentifierValidator.getVerdictCacheSize ());
+
+    // Only values with a supporting validator are cached
+    assertTrue (IdentifierValidator.isValidParticipantIdentifier (EPredefinedIdentifierIssuingAgency.AD_VAT.createParticipantIdentifier ("123456789")));
+    assertTrue (IdentifierValidator.isValidParticipantIdentifier (new SimpleParticipantIdentifier ("scheme-actorid-test",
+                                                                                                   "9908:123456789")));
+    assertEquals (0, IdentifierValidator.getVerdictCacheSize ());
+
+    for (int i = 0; i < 2; ++i)
+    {
+      assertFalse (IdentifierValidator.isValidParticipantIdentifier (EPredefinedIdentifierIssuingAgency.NO_ORGNR.createParticipantIdentifier ("123456789")));
+      assertTrue (IdentifierValidator.isValidParticipantIdentifier (EPredefinedIdentifierIssuingAgency.NO_ORGNR.createParticipantIdentifier ("968218743")));
+      assertEquals (2, IdentifierValidator.getVerdictCacheSize ());
+    }
+
+    // Same verdicts without the cache
+    assertFalse (IdentifierValidator.isValidParticipantIdentifierUncached (EPredefinedIdentifierIssuingAgency.NO_ORGNR.createParticipantIdentifier ("123456789")));
+    assertTrue (IdentifierValidator.isValidParticipantIdentifierUncached (EPredefinedIdentifierIssuingAgency.NO_ORGNR.createParticipantIdentifier ("968218743")));
+    assertFalse (IdentifierValidator.isValidParticipantIdentifierUncached (EPredefinedIdentifierIssuingAgency.NO_ORGNR.createParticipantIdentifier ("968218744")));
+    assertEquals (2, IdentifierValidator.getVerdictCacheSize ());
+
+    // Unknown issuing agencies and malformed values are not a problem
+    assertTrue (IdentifierValidator.isValidParticipantIdentifier (new SimpleParticipantIdentifier (CIdentifier.DEFAULT_PARTICIPANT_IDENTIFIER_SCHEME,
+                                                                                                   "0000:123456789")));
+    assertTrue (IdentifierValidator.isValidParticipantIdentifier (new SimpleParticipantIdentifier (CIdentifier.DEFAULT_PARTICIPANT_IDENTIFIER_SCHEME,
+                                                                                                   "123456789")));
+
+    IdentifierValidator.clearVerdictCache ();
+    assertEquals (0, IdentifierValidator.getVerdictCacheSize ());
+  }
 }
@@ -0,0 +1,164 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.identifier.validator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import com.helger.commons.collection.CollectionHelper;
+import com.helger.peppol.identifier.issuingagency.EPredefinedIdentifierIssuingAgency;
+
+/**
+ * Test class for class {@link ParticipantIdentifierBulkValidator}.
+ *
+ * @author Philip Helger
+ */
+public final class ParticipantIdentifierBulkValidatorTest
+{
+  private static final String INPUT = "iso6523-actorid-upis::9908:968218743\n" +
+                                      "iso6523-actorid-upis::9908:123456789\n" +
+                                      "\n" +
+                                      "iso6523-actorid-upis::0088:5798000000001\n" +
+                                      "iso6523-actorid-upis:0088:5798000000001\n" +
+                                      "iso6523-actorid-upis::9909:961329310\n" +
+                                      "scheme-actorid-test::abc\n" +
+                                      "iso6523-actorid-upis::9909:12345678\n" +
+                                      "iso6523-actorid-upis::0088:\u00e4\n";
+
+  @Test
+  public void testValidate () throws Exception
+  {
+    final ExecutorService aES = Executors.newFixedThreadPool (2);
+    try
+    {
+      // Small chunks to test the ordering
+      final ParticipantIdentifierBulkValidator aValidator = new ParticipantIdentifierBulkValidator (aES, 2, 2, 10);
+      IdentifierValidator.clearVerdictCache ();
+      final ParticipantIdentifierBulkValidationResult aResult = aValidator.validate (new StringReader (INPUT));
+      // The verdict cache is not used
+      assertEquals (0, IdentifierValidator.getVerdictCacheSize ());
+      assertEquals (1, aResult.getSkippedCount ());
+      assertEquals (8, aResult.getTotalCount ());
+      assertEquals (4, aResult.getValidCount ());
+      assertEquals (4, aResult.getInvalidCount ());
+      assertEquals (2, aResult.getInvalidCount (EParticipantIdentifierValidationError.INVALID_SYNTAX));
+      assertEquals (2, aResult.getInvalidCount (EParticipantIdentifierValidationError.INVALID_VALUE));
+
+      assertEquals (1, aResult.getValidCount (EPredefinedIdentifierIssuingAgency.NO_ORGNR));
+      assertEquals (1, aResult.getValidCount (EPredefinedIdentifierIssuingAgency.NO_VAT));
+      assertEquals (1, aResult.getValidCount (EPredefinedIdentifierIssuingAgency.GLN));
+      assertEquals (1, aResult.getValidCount (null));
+      assertEquals (1,
+                    aResult.getInvalidCount (EPredefinedIdentifierIssuingAgency.NO_ORGNR,
+                                             EParticipantIdentifierValidationError.INVALID_VALUE));
+      assertEquals (1,
+                    aResult.getInvalidCount (EPredefinedIdentifierIssuingAgency.NO_VAT,
+                                             EParticipantIdentifierValidationError.INVALID_VALUE));
+      assertEquals (1,
+                    aResult.getInvalidCount (EPredefinedIdentifierIssuingAgency.GLN,
+                                             EParticipantIdentifierValidationError.INVALID_SYNTAX));
+      assertEquals (1, aResult.getInvalidCount (null, EParticipantIdentifierValidationError.INVALID_SYNTAX));
+      assertEquals (CollectionHelper.newSet (EPredefinedIdentifierIssuingAgency.NO_ORGNR,
+                                             EPredefinedIdentifierIssuingAgency.NO_VAT,
+                                             EPredefinedIdentifierIssuingAgency.GLN),
+                    aResult.getAllAgenciesWithInvalidIdentifiers ());
+
+      // In source order
+      final List <ParticipantIdentifierBulkValidationResult.InvalidRow> aRows = aResult.getAllInvalidRows ();
+      assertEquals (4, aRows.size ());
+      assertFalse (aResult.isInvalidRowListTruncated ());
+      assertEquals (2, aRows.get (0).getRowNumber ());
+      assertEquals ("iso6523-actorid-upis::9908:123456789", aRows.get (0).getRawValue ());
+      assertEquals (EParticipantIdentifierValidationError.INVALID_VALUE, aRows.get (0).getError ());
+      assertEquals (5, aRows.get (1).getRowNumber ());
+      assertNull (aRows.get (1).getAgency ());
+      assertEquals (EParticipantIdentifierValidationError.INVALID_SYNTAX, aRows.get (1).getError ());
+      assertEquals (8, aRows.get (2).getRowNumber ());
+      assertEquals (EPredefinedIdentifierIssuingAgency.NO_VAT, aRows.get (2).getAgency ());
+      assertEquals (9, aRows.get (3).getRowNumber ());
+      assertEquals (EPredefinedIdentifierIssuingAgency.GLN, aRows.get (3).getAgency ());
+    }
+    finally
+    {
+      aES.shutdown ();
+    }
+  }
+
+  @Test
+  public void testManyRows () throws Exception
+  {
+    final List <String> aLines = new ArrayList <String> ();
+    for (int i = 0; i < 10000; ++i)
+      aLines.add (i % 10 == 0 ? "invalid" : "iso6523-actorid-upis::0106:" + i);
+
+    final ExecutorService aES = Executors.newFixedThreadPool (4);
+    try
+    {
+      final ParticipantIdentifierBulkValidator aValidator = new ParticipantIdentifierBulkValidator (aES, 4, 100, 5);
+      final ParticipantIdentifierBulkValidationResult aResult = aValidator.validate (aLines.iterator ());
+      assertEquals (10000, aResult.getTotalCount ());
+      assertEquals (9000, aResult.getValidCount (EPredefinedIdentifierIssuingAgency.NL_KVK));
+      assertEquals (1000, aResult.getInvalidCount (EParticipantIdentifierValidationError.INVALID_SYNTAX));
+      assertTrue (aResult.isInvalidRowListTruncated ());
+      final List <ParticipantIdentifierBulkValidationResult.InvalidRow> aRows = aResult.getAllInvalidRows ();
+      assertEquals (5, aRows.size ());
+      for (int i = 0; i < 5; ++i)
+        assertEquals (i * 10 + 1, aRows.get (i).getRowNumber ());
+
+      // Empty source
+      assertEquals (0, aValidator.validate (new ArrayList <String> ().iterator ()).getTotalCount ());
+    }
+    finally
+    {
+      aES.shutdown ();
+    }
+  }
+}
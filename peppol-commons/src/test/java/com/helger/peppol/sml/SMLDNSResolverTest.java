@@ -0,0 +1,362 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.sml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xbill.DNS.ARecord;
+import org.xbill.DNS.CNAMERecord;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.Flags;
+import org.xbill.DNS.Message;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Rcode;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.SOARecord;
+import org.xbill.DNS.Section;
+import org.xbill.DNS.SimpleResolver;
+import org.xbill.DNS.Type;
+
+import com.helger.peppol.identifier.IParticipantIdentifier;
+import com.helger.peppol.identifier.participant.SimpleParticipantIdentifier;
+import com.helger.peppol.utils.BusdoxURLHelper;
+
+/**
+ * Test class for class {@link SMLDNSResolver}.
+ *
+ * @author Philip Helger
+ */
+public final class SMLDNSResolverTest
+{
+  private static final String ZONE = "sml.test.";
+
+  /**
+   * A minimal in-process DNS server answering UDP queries from an in-memory
+   * zone.
+   */
+  private static final class MockDNSServer implements Runnable
+  {
+    private final DatagramSocket m_aSocket;
+    private final Map <Name, List <Record>> m_aRecords = new ConcurrentHashMap <Name, List <Record>> ();
+    private final Map <Name, Integer> m_aRcodes = new ConcurrentHashMap <Name, Integer> ();
+    private final AtomicInteger m_aQueryCount = new AtomicInteger ();
+    private final Thread m_aThread;
+
+    public MockDNSServer () throws IOException
+    {
+      m_aSocket = new DatagramSocket (0, InetAddress.getByName ("127.0.0.1"));
+      m_aThread = new Thread (this, "MockDNSServer");
+      m_aThread.setDaemon (true);
+      m_aThread.start ();
+    }
+
+    public int getPort ()
+    {
+      return m_aSocket.getLocalPort ();
+    }
+
+    public void addRecord (@Nonnull final Record aRecord)
+    {
+      List <Record> aList = m_aRecords.get (aRecord.getName ());
+      if (aList == null)
+      {
+        aList = new ArrayList <Record> ();
+        m_aRecords.put (aRecord.getName (), aList);
+      }
+      aList.add (aRecord);
+    }
+
+    public void setRcode (@Nonnull final Name aName, final int nRcode)
+    {
+      m_aRcodes.put (aName, Integer.valueOf (nRcode));
+    }
+
+    public int getQueryCount ()
+    {
+      return m_aQueryCount.get ();
+    }
+
+    @Nonnull
+    private Message _createResponse (@Nonnull final Message aQuery) throws IOException
+    {
+      final Record aQuestion = aQuery.getQuestion ();
+      final Name aName = aQuestion.getName ();
+
+      final Message aResponse = new Message (aQuery.getHeader ().getID ());
+      aResponse.getHeader ().setFlag (Flags.QR);
+      aResponse.getHeader ().setFlag (Flags.AA);
+      aResponse.addRecord (aQuestion, Section.QUESTION);
+
+      final Integer aRcode = m_aRcodes.get (aName);
+      if (aRcode != null)
+      {
+        aResponse.getHeader ().setRcode (aRcode.intValue ());
+        return aResponse;
+      }
+
+      final List <Record> aRecords = m_aRecords.get (aName);
+      if (aRecords == null)
+      {
+        aResponse.getHeader ().setRcode (Rcode.NXDOMAIN);
+        aResponse.addRecord (new SOARecord (Name.fromString (ZONE),
+                                            DClass.IN,
+                                            300,
+                                            Name.fromString ("ns." + ZONE),
+                                            Name.fromString ("admin." + ZONE),
+                                            1,
+                                            3600,
+                                            600,
+                                            86400,
+                                            30),
+                             Section.AUTHORITY);
+        return aResponse;
+      }
+
+      for (final Record aRecord : aRecords)
+        if (aRecord.getType () == aQuestion.getType () || aRecord.getType () == Type.CNAME)
+          aResponse.addRecord (aRecord, Section.ANSWER);
+      return aResponse;
+    }
+
+    public void run ()
+    {
+      final byte [] aBuffer = new byte [512];
+      while (!m_aSocket.isClosed ())
+      {
+        try
+        {
+          final DatagramPacket aPacket = new DatagramPacket (aBuffer, aBuffer.length);
+          m_aSocket.receive (aPacket);
+          m_aQueryCount.incrementAndGet ();
+
+          final byte [] aQueryBytes = new byte [aPacket.getLength ()];
+          System.arraycopy (aPacket.getData (), aPacket.getOffset (), aQueryBytes, 0, aQueryBytes.length);
+          final byte [] aResponseBytes = _createResponse (new Message (aQueryBytes)).toWire ();
+          m_aSocket.send (new DatagramPacket (aResponseBytes,
+                                              aResponseBytes.length,
+                                              aPacket.getAddress (),
+                                              aPacket.getPort ()));
+        }
+        catch (final IOException ex)
+        {
+          // Socket closed
+        }
+      }
+    }
+
+    public void close () throws InterruptedException
+    {
+      m_aSocket.close ();
+      m_aThread.join ();
+    }
+  }
+
+  private MockDNSServer m_aServer;
+  private SMLDNSResolver m_aResolver;
+
+  @Before
+  public void before () throws IOException
+  {
+    m_aServer = new MockDNSServer ();
+    final SimpleResolver aSimpleResolver = new SimpleResolver ("127.0.0.1");
+    aSimpleResolver.setPort (m_aServer.getPort ());
+    aSimpleResolver.setTimeout (2);
+    m_aResolver = new SMLDNSResolver (aSimpleResolver);
+  }
+
+  @After
+  public void after () throws InterruptedException
+  {
+    m_aServer.close ();
+  }
+
+  @Nonnull
+  private static Name _getName (@Nonnull final IParticipantIdentifier aPI) throws IOException
+  {
+    return Name.fromString (BusdoxURLHelper.getDNSNameOfParticipant (aPI, ZONE) + ".");
+  }
+
+  @Test
+  public void testCNAME () throws IOException
+  {
+    final IParticipantIdentifier aPI = SimpleParticipantIdentifier.createWithDefaultScheme ("0088:123abc");
+    m_aServer.addRecord (new CNAMERecord (_getName (aPI), DClass.IN, 60, Name.fromString ("smp.example.org.")));
+
+    final URI aURI = m_aResolver.getSMPURIOfParticipant (aPI, ZONE);
+    // The participant host name is kept
+    assertEquals (BusdoxURLHelper.getSMPURIOfParticipant (aPI, ZONE), aURI);
+    assertEquals (2, m_aServer.getQueryCount ());
+    assertEquals (2, m_aResolver.getQueryCount ());
+    assertEquals (1, m_aResolver.getMissCount ());
+    assertEquals (0, m_aResolver.getHitCount ());
+
+    // Cached - host names are case insensitive
+    assertEquals (aURI,
+                  m_aResolver.getSMPURIOfParticipant (SimpleParticipantIdentifier.createWithDefaultScheme ("0088:123ABC"),
+                                                      ZONE));
+    final SMLDNSEntry aEntry = m_aResolver.resolve (_getName (aPI).toString ().toUpperCase ());
+    assertNotNull (aEntry);
+    assertTrue (aEntry.hasCanonicalHostName ());
+    assertEquals ("smp.example.org", aEntry.getCanonicalHostName ());
+    assertEquals ("smp.example.org", aEntry.getSMPHostName ());
+    assertEquals (2, m_aServer.getQueryCount ());
+    assertEquals (2, m_aResolver.getHitCount ());
+    assertEquals (1, m_aResolver.getSize ());
+
+    m_aResolver.clearCache ();
+    assertEquals (0, m_aResolver.getSize ());
+    m_aResolver.getSMPURIOfParticipant (aPI, ZONE);
+    assertEquals (4, m_aServer.getQueryCount ());
+  }
+
+  @Test
+  public void testARecord () throws IOException
+  {
+    final IParticipantIdentifier aPI = SimpleParticipantIdentifier.createWithDefaultScheme ("9915:test");
+    m_aServer.addRecord (new ARecord (_getName (aPI), DClass.IN, 60, InetAddress.getByName ("10.1.2.3")));
+
+    final SMLDNSEntry aEntry = m_aResolver.resolve (BusdoxURLHelper.getDNSNameOfParticipant (aPI, ZONE));
+    assertNotNull (aEntry);
+    assertFalse (aEntry.hasCanonicalHostName ());
+    assertEquals (1, aEntry.getAllAddresses ().size ());
+    assertEquals ("10.1.2.3", aEntry.getSMPHostName ());
+
+    assertEquals (BusdoxURLHelper.getSMPURIOfParticipant (aPI, ZONE), m_aResolver.getSMPURIOfParticipant (aPI, ZONE));
+    assertEquals (2, m_aServer.getQueryCount ());
+    assertEquals (1, m_aResolver.getHitCount ());
+  }
+
+  @Test
+  public void testNegativeCaching () throws IOException
+  {
+    final IParticipantIdentifier aPI = SimpleParticipantIdentifier.createWithDefaultScheme ("0088:notregistered");
+    final String sHostName = BusdoxURLHelper.getDNSNameOfParticipant (aPI, ZONE);
+    assertNull (m_aResolver.resolve (sHostName));
+    assertEquals (2, m_aServer.getQueryCount ());
+    assertEquals (0, m_aResolver.getNegativeHitCount ());
+
+    assertNull (m_aResolver.resolve (sHostName));
+    try
+    {
+      m_aResolver.getSMPURIOfParticipant (aPI, ZONE);
+      fail ();
+    }
+    catch (final UnknownHostException ex)
+    {
+      // expected
+    }
+    assertEquals (2, m_aServer.getQueryCount ());
+    assertEquals (2, m_aResolver.getNegativeHitCount ());
+    assertEquals (0, m_aResolver.getErrorCount ());
+  }
+
+  @Test
+  public void testNegativeCachingDisabled () throws IOException
+  {
+    final SimpleResolver aSimpleResolver = new SimpleResolver ("127.0.0.1");
+    aSimpleResolver.setPort (m_aServer.getPort ());
+    final SMLDNSResolver aResolver = new SMLDNSResolver (aSimpleResolver, 10, 60 * 1000, 0);
+
+    assertNull (aResolver.resolve ("unknown." + ZONE));
+    assertNull (aResolver.resolve ("unknown." + ZONE));
+    assertEquals (4, m_aServer.getQueryCount ());
+    assertEquals (0, aResolver.getNegativeHitCount ());
+    assertEquals (0, aResolver.getSize ());
+  }
+
+  @Test
+  public void testError () throws IOException
+  {
+    final Name aName = Name.fromString ("servfail." + ZONE);
+    m_aServer.setRcode (aName, Rcode.SERVFAIL);
+
+    for (int i = 0; i < 2; ++i)
+      try
+      {
+        m_aResolver.resolve (aName.toString ());
+        fail ();
+      }
+      catch (final IOException ex)
+      {
+        // expected
+      }
+
+    // Errors are not cached
+    assertEquals (4, m_aServer.getQueryCount ());
+    assertEquals (2, m_aResolver.getErrorCount ());
+    assertEquals (0, m_aResolver.getSize ());
+  }
+
+  @Test
+  public void testZeroTTL () throws IOException
+  {
+    m_aServer.addRecord (new ARecord (Name.fromString ("nocache." + ZONE),
+                                      DClass.IN,
+                                      0,
+                                      InetAddress.getByName ("10.1.2.3")));
+    assertNotNull (m_aResolver.resolve ("nocache." + ZONE));
+    assertNotNull (m_aResolver.resolve ("nocache." + ZONE));
+    assertEquals (4, m_aServer.getQueryCount ());
+    assertEquals (0, m_aResolver.getHitCount ());
+  }
+}
@@ -0,0 +1,187 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.supplementary.benchmark;
+
+import java.math.BigInteger;
+
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.string.StringHelper;
+import com.helger.peppol.identifier.validator.CheckDigitHelper;
+import com.helger.peppol.identifier.validator.ParticipantIdentifierValidatorIBAN;
+import com.helger.peppol.identifier.validator.ParticipantIdentifierValidatorNorwayOrgNumber;
+
+/**
+ * Compare the allocation free check digit algorithms of
+ * {@link CheckDigitHelper} with ad-hoc implementations that copy the
+ * characters into a new array or create a {@link BigInteger} from the
+ * rearranged value.
+ *
+ * @author Philip Helger
+ */
+public final class MainCheckDigitBenchmark
+{
+  private static final Logger s_aLogger = LoggerFactory.getLogger (MainCheckDigitBenchmark.class);
+  private static final int WARMUP_RUNS = 5;
+  private static final int RUNS = 10;
+  private static final int ITERATIONS = 100000;
+  private static final int [] NO_WEIGHTS = new int [] { 3, 2, 7, 6, 5, 4, 3, 2 };
+  private static final BigInteger NINETY_SEVEN = BigInteger.valueOf (97);
+
+  private static final String [] NO_ORGNRS = new String [] { "968218743", "961329310", "123456785", "123456789" };
+  private static final String [] IBANS = new String [] { "GB82WEST12345698765432",
+                                                         "DE89370400440532013000",
+                                                         "GB82WEST12345698765433",
+                                                         "NO9386011117947" };
+
+  private MainCheckDigitBenchmark ()
+  {}
+
+  private static boolean _legacyIsValidNorwayOrgNumber (@Nonnull final String sValue)
+  {
+    if (StringHelper.getLength (sValue) != 9)
+      return false;
+
+    final char [] aData = sValue.toCharArray ();
+    if (!Character.isDigit (aData[8]))
+      return false;
+
+    final int nActualCheckDigit = aData[8] - 48;
+    int nSum = 0;
+    for (int i = 0; i < 8; i++)
+    {
+      final char cNext = aData[i];
+      if (!Character.isDigit (cNext))
+        return false;
+      nSum += (cNext - 48) * NO_WEIGHTS[i];
+    }
+
+    final int nModulus = nSum % 11;
+    if (nModulus == 0 && nActualCheckDigit == 0)
+      return true;
+    return nActualCheckDigit == 11 - nModulus;
+  }
+
+  private static boolean _legacyIsValidIBAN (@Nonnull final String sValue)
+  {
+    if (sValue.length () < 15 || sValue.length () > 34)
+      return false;
+    if (!Character.isLetter (sValue.charAt (0)) ||
+        !Character.isLetter (sValue.charAt (1)) ||
+        !Character.isDigit (sValue.charAt (2)) ||
+        !Character.isDigit (sValue.charAt (3)))
+      return false;
+
+    final String sRearranged = sValue.substring (4) + sValue.substring (0, 4);
+    final StringBuilder aSB = new StringBuilder ();
+    for (final char c : sRearranged.toUpperCase ().toCharArray ())
+    {
+      final int nValue = Character.digit (c, 36);
+      if (nValue < 0)
+        return false;
+      aSB.append (nValue);
+    }
+    return new BigInteger (aSB.toString ()).mod (NINETY_SEVEN).intValue () == 1;
+  }
+
+  private static long _runLegacy ()
+  {
+    long nValid = 0;
+    for (int i = 0; i < ITERATIONS; ++i)
+    {
+      for (final String s : NO_ORGNRS)
+        if (_legacyIsValidNorwayOrgNumber (s))
+          nValid++;
+      for (final String s : IBANS)
+        if (_legacyIsValidIBAN (s))
+          nValid++;
+    }
+    return nValid;
+  }
+
+  private static long _runKernel ()
+  {
+    long nValid = 0;
+    for (int i = 0; i < ITERATIONS; ++i)
+    {
+      for (final String s : NO_ORGNRS)
+        if (ParticipantIdentifierValidatorNorwayOrgNumber.isValidOrganisationNumber (s))
+          nValid++;
+      for (final String s : IBANS)
+        if (ParticipantIdentifierValidatorIBAN.isValidIBAN (s))
+          nValid++;
+    }
+    return nValid;
+  }
+
+  public static void main (final String [] args)
+  {
+    for (int i = 0; i < WARMUP_RUNS; ++i)
+    {
+      _runLegacy ();
+      _runKernel ();
+    }
+
+    long nLegacyNanos = 0;
+    long nKernelNanos = 0;
+    long nChecksum = 0;
+    for (int i = 0; i < RUNS; ++i)
+    {
+      long nStart = System.nanoTime ();
+      nChecksum += _runLegacy ();
+      nLegacyNanos += System.nanoTime () - nStart;
+
+      nStart = System.nanoTime ();
+      nChecksum -= _runKernel ();
+      nKernelNanos += System.nanoTime () - nStart;
+    }
+    if (nChecksum != 0)
+      throw new IllegalStateException ("Different results!");
+
+    final long nChecks = (long) RUNS * ITERATIONS * (NO_ORGNRS.length + IBANS.length);
+    s_aLogger.info ("Ad-hoc check digits: " + (nLegacyNanos / nChecks) + " ns/value");
+    s_aLogger.info ("CheckDigitHelper:    " + (nKernelNanos / nChecks) + " ns/value");
+    s_aLogger.info ("Speedup: " + (nLegacyNanos / Math.max (1, nKernelNanos)) + "x");
+  }
+}
@@ -0,0 +1,158 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.supplementary.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.charset.CCharset;
+import com.helger.commons.regex.RegExHelper;
+import com.helger.commons.string.StringHelper;
+import com.helger.peppol.identifier.CIdentifier;
+import com.helger.peppol.identifier.IdentifierHelper;
+import com.helger.peppol.identifier.participant.SimpleParticipantIdentifier;
+import com.helger.peppol.utils.BusdoxURLHelper;
+
+/**
+ * Compare the single-pass scanner of
+ * {@link IdentifierHelper#createParticipantIdentifierFromURIPartOrNull(String)}
+ * with the previous implementation that used
+ * {@link StringHelper#getExploded(String, String, int)}, a regular expression
+ * and a new charset encoder per call.
+ *
+ * @author Philip Helger
+ */
+public final class MainIdentifierHelperParsingBenchmark
+{
+  private static final Logger s_aLogger = LoggerFactory.getLogger (MainIdentifierHelperParsingBenchmark.class);
+  private static final int WARMUP_RUNS = 5;
+  private static final int RUNS = 10;
+  private static final int ITERATIONS = 10000;
+
+  private MainIdentifierHelperParsingBenchmark ()
+  {}
+
+  @Nullable
+  private static SimpleParticipantIdentifier _legacyParse (@Nonnull final String sURIPart)
+  {
+    final List <String> aSplitted = StringHelper.getExploded (CIdentifier.URL_SCHEME_VALUE_SEPARATOR, sURIPart, 2);
+    if (aSplitted.size () != 2)
+      return null;
+    final String sScheme = aSplitted.get (0);
+    final String sValue = aSplitted.get (1);
+    if (sScheme.length () == 0 || sScheme.length () > CIdentifier.MAX_IDENTIFIER_SCHEME_LENGTH)
+      return null;
+    if (!RegExHelper.stringMatchesPattern (CIdentifier.PARTICIPANT_IDENTIFIER_SCHEME_REGEX,
+                                           sScheme.toLowerCase (BusdoxURLHelper.URL_LOCALE)))
+      return null;
+    if (sValue.length () == 0 || sValue.length () > CIdentifier.MAX_PARTICIPANT_IDENTIFIER_VALUE_LENGTH)
+      return null;
+    if (!CCharset.CHARSET_US_ASCII_OBJ.newEncoder ().canEncode (sValue))
+      return null;
+    return new SimpleParticipantIdentifier (sScheme, sValue);
+  }
+
+  private static long _runLegacy (@Nonnull final List <String> aValues)
+  {
+    long nFound = 0;
+    for (int i = 0; i < ITERATIONS; ++i)
+      for (final String sValue : aValues)
+        if (_legacyParse (sValue) != null)
+          nFound++;
+    return nFound;
+  }
+
+  private static long _runScanner (@Nonnull final List <String> aValues)
+  {
+    long nFound = 0;
+    for (int i = 0; i < ITERATIONS; ++i)
+      for (final String sValue : aValues)
+        if (IdentifierHelper.createParticipantIdentifierFromURIPartOrNull (sValue) != null)
+          nFound++;
+    return nFound;
+  }
+
+  public static void main (final String [] args)
+  {
+    final List <String> aValues = new ArrayList <String> ();
+    aValues.add ("iso6523-actorid-upis::0088:5798000000001");
+    aValues.add ("iso6523-actorid-upis::9908:976098897");
+    aValues.add ("ISO6523-ACTORID-UPIS::9915:test");
+    aValues.add ("iso6523-actorid-upis::9956:DE:EPROC:BMIEVG:BeschA");
+    // Invalid ones
+    aValues.add ("iso6523-actorid-upis:0088:5798000000001");
+    aValues.add ("iso6523_actorid_upis::0088:5798000000001");
+    aValues.add ("iso6523-actorid-upis::0088:\u00e4");
+
+    for (int i = 0; i < WARMUP_RUNS; ++i)
+    {
+      _runLegacy (aValues);
+      _runScanner (aValues);
+    }
+
+    long nLegacyNanos = 0;
+    long nScannerNanos = 0;
+    long nChecksum = 0;
+    for (int i = 0; i < RUNS; ++i)
+    {
+      long nStart = System.nanoTime ();
+      nChecksum += _runLegacy (aValues);
+      nLegacyNanos += System.nanoTime () - nStart;
+
+      nStart = System.nanoTime ();
+      nChecksum -= _runScanner (aValues);
+      nScannerNanos += System.nanoTime () - nStart;
+    }
+    if (nChecksum != 0)
+      throw new IllegalStateException ("Different results!");
+
+    final long nParses = (long) RUNS * ITERATIONS * aValues.size ();
+    s_aLogger.info ("Legacy parsing:  " + (nLegacyNanos / nParses) + " ns/identifier");
+    s_aLogger.info ("Scanner parsing: " + (nScannerNanos / nParses) + " ns/identifier");
+    s_aLogger.info ("Speedup: " + (nLegacyNanos / Math.max (1, nScannerNanos)) + "x");
+  }
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.supplementary.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.collection.ArrayHelper;
+import com.helger.commons.lang.ServiceLoaderHelper;
+import com.helger.commons.regex.RegExHelper;
+import com.helger.peppol.identifier.issuingagency.EPredefinedIdentifierIssuingAgency;
+import com.helger.peppol.identifier.participant.IPeppolParticipantIdentifier;
+import com.helger.peppol.identifier.validator.IParticipantIdentifierValidatorSPI;
+import com.helger.peppol.identifier.validator.IdentifierValidator;
+import com.helger.peppol.identifier.validator.ParticipantIdentifierValidatorNorwayOrgNumber;
+
+/**
+ * Compare the indexed and cached validation of
+ * {@link IdentifierValidator#isValidParticipantIdentifier(IPeppolParticipantIdentifier)}
+ * with the previous implementation that matched the participant identifier
+ * value twice and asked every validator for every participant. The Norwegian
+ * organisation numbers are handled by
+ * {@link ParticipantIdentifierValidatorNorwayOrgNumber}.
+ *
+ * @author Philip Helger
+ */
+public final class MainIdentifierValidatorBenchmark
+{
+  private static final Logger s_aLogger = LoggerFactory.getLogger (MainIdentifierValidatorBenchmark.class);
+  private static final int WARMUP_RUNS = 5;
+  private static final int RUNS = 10;
+  private static final int ITERATIONS = 20000;
+  private static final String PATTERN_PARTICIPANT_ID = "^([^:]*):(.*)$";
+
+  private static final List <IParticipantIdentifierValidatorSPI> s_aValidators = ServiceLoaderHelper.getAllSPIImplementations (IParticipantIdentifierValidatorSPI.class);
+
+  private MainIdentifierValidatorBenchmark ()
+  {}
+
+  private static boolean _legacyIsValid (@Nonnull final IPeppolParticipantIdentifier aParticipantID)
+  {
+    if (!aParticipantID.isDefaultScheme ())
+      return true;
+
+    boolean bAtLeastOneSupported = false;
+    final String sIssuingAgencyID = ArrayHelper.getSafeElement (RegExHelper.getAllMatchingGroupValues (PATTERN_PARTICIPANT_ID,
+                                                                                                       aParticipantID.getValue ()),
+                                                                0);
+    final String sLocal = ArrayHelper.getSafeElement (RegExHelper.getAllMatchingGroupValues (PATTERN_PARTICIPANT_ID,
+                                                                                             aParticipantID.getValue ()),
+                                                      1);
+    for (final IParticipantIdentifierValidatorSPI aValidator : s_aValidators)
+      if (aValidator.isSupportedIssuingAgency (sIssuingAgencyID))
+      {
+        if (aValidator.isValueValid (sLocal))
+          return true;
+        bAtLeastOneSupported = true;
+      }
+    return !bAtLeastOneSupported;
+  }
+
+  private static long _runLegacy (@Nonnull final List <? extends IPeppolParticipantIdentifier> aIDs)
+  {
+    long nValid = 0;
+    for (int i = 0; i < ITERATIONS; ++i)
+      for (final IPeppolParticipantIdentifier aID : aIDs)
+        if (_legacyIsValid (aID))
+          nValid++;
+    return nValid;
+  }
+
+  private static long _runIndexed (@Nonnull final List <? extends IPeppolParticipantIdentifier> aIDs)
+  {
+    long nValid = 0;
+    for (int i = 0; i < ITERATIONS; ++i)
+      for (final IPeppolParticipantIdentifier aID : aIDs)
+        if (IdentifierValidator.isValidParticipantIdentifier (aID))
+          nValid++;
+    return nValid;
+  }
+
+  public static void main (final String [] args)
+  {
+    final List <IPeppolParticipantIdentifier> aIDs = new ArrayList <IPeppolParticipantIdentifier> ();
+    for (final String sOrgNumber : new String [] { "968218743", "961329310", "123456785", "123456789" })
+    {
+      aIDs.add (EPredefinedIdentifierIssuingAgency.NO_ORGNR.createParticipantIdentifier (sOrgNumber));
+      aIDs.add (EPredefinedIdentifierIssuingAgency.NO_VAT.createParticipantIdentifier (sOrgNumber));
+    }
+    // Without a validator
+    aIDs.add (EPredefinedIdentifierIssuingAgency.NL_KVK.createParticipantIdentifier ("12345678"));
+
+    for (int i = 0; i < WARMUP_RUNS; ++i)
+    {
+      _runLegacy (aIDs);
+      _runIndexed (aIDs);
+    }
+
+    long nLegacyNanos = 0;
+    long nIndexedNanos = 0;
+    long nChecksum = 0;
+    for (int i = 0; i < RUNS; ++i)
+    {
+      long nStart = System.nanoTime ();
+      nChecksum += _runLegacy (aIDs);
+      nLegacyNanos += System.nanoTime () - nStart;
+
+      nStart = System.nanoTime ();
+      nChecksum -= _runIndexed (aIDs);
+      nIndexedNanos += System.nanoTime () - nStart;
+    }
+    if (nChecksum != 0)
+      throw new IllegalStateException ("Different results!");
+
+    final long nValidations = (long) RUNS * ITERATIONS * aIDs.size ();
+    s_aLogger.info ("Legacy validation:  " + (nLegacyNanos / nValidations) + " ns/identifier");
+    s_aLogger.info ("Indexed validation: " + (nIndexedNanos / nValidations) + " ns/identifier");
+    s_aLogger.info ("Speedup: " + (nLegacyNanos / Math.max (1, nIndexedNanos)) + "x");
+  }
+}
@@ -0,0 +1,159 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.supplementary.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.peppol.identifier.CIdentifier;
+import com.helger.peppol.identifier.participant.ParticipantRoutingTable;
+import com.helger.peppol.identifier.participant.SimpleParticipantIdentifier;
+
+/**
+ * Compare the memory usage and the lookup speed of
+ * {@link ParticipantRoutingTable} with a {@link HashMap} using
+ * {@link SimpleParticipantIdentifier} keys.
+ *
+ * @author Philip Helger
+ */
+public final class MainParticipantRoutingTableBenchmark
+{
+  private static final Logger s_aLogger = LoggerFactory.getLogger (MainParticipantRoutingTableBenchmark.class);
+  private static final int WARMUP_RUNS = 3;
+  private static final int RUNS = 5;
+  private static final int ENTRIES = 1000000;
+  private static final int TARGETS = 20;
+
+  private MainParticipantRoutingTableBenchmark ()
+  {}
+
+  private static long _getUsedMemory ()
+  {
+    final Runtime aRuntime = Runtime.getRuntime ();
+    for (int i = 0; i < 3; ++i)
+      System.gc ();
+    return aRuntime.totalMemory () - aRuntime.freeMemory ();
+  }
+
+  @Nonnull
+  private static String _getValue (final int i)
+  {
+    return "9908:" + (100000000 + i);
+  }
+
+  private static long _runHashMap (@Nonnull final Map <SimpleParticipantIdentifier, String> aMap,
+                                   @Nonnull final List <SimpleParticipantIdentifier> aLookups)
+  {
+    long ret = 0;
+    for (final SimpleParticipantIdentifier aID : aLookups)
+      if (aMap.get (aID) != null)
+        ret++;
+    return ret;
+  }
+
+  private static long _runTable (@Nonnull final ParticipantRoutingTable aTable,
+                                 @Nonnull final List <SimpleParticipantIdentifier> aLookups)
+  {
+    long ret = 0;
+    for (final SimpleParticipantIdentifier aID : aLookups)
+      if (aTable.get (aID) != null)
+        ret++;
+    return ret;
+  }
+
+  public static void main (final String [] args)
+  {
+    final String sScheme = CIdentifier.DEFAULT_PARTICIPANT_IDENTIFIER_SCHEME;
+
+    long nBefore = _getUsedMemory ();
+    final Map <SimpleParticipantIdentifier, String> aMap = new HashMap <SimpleParticipantIdentifier, String> ();
+    for (int i = 0; i < ENTRIES; ++i)
+      aMap.put (new SimpleParticipantIdentifier (sScheme, _getValue (i)), "ap" + (i % TARGETS));
+    final long nMapBytes = _getUsedMemory () - nBefore;
+
+    nBefore = _getUsedMemory ();
+    final ParticipantRoutingTable aTable = new ParticipantRoutingTable (ENTRIES, false);
+    for (int i = 0; i < ENTRIES; ++i)
+      aTable.put (sScheme, _getValue (i), "ap" + (i % TARGETS));
+    final long nTableBytes = _getUsedMemory () - nBefore;
+
+    s_aLogger.info ("HashMap:                 " + (nMapBytes / ENTRIES) + " bytes/entry");
+    s_aLogger.info ("ParticipantRoutingTable: " + (nTableBytes / ENTRIES) + " bytes/entry");
+
+    // Half of the lookups are hits
+    final List <SimpleParticipantIdentifier> aLookups = new ArrayList <SimpleParticipantIdentifier> ();
+    for (int i = 0; i < 100000; ++i)
+      aLookups.add (new SimpleParticipantIdentifier (sScheme, _getValue (i * 20)));
+
+    for (int i = 0; i < WARMUP_RUNS; ++i)
+    {
+      _runHashMap (aMap, aLookups);
+      _runTable (aTable, aLookups);
+    }
+
+    long nMapNanos = 0;
+    long nTableNanos = 0;
+    long nChecksum = 0;
+    for (int i = 0; i < RUNS; ++i)
+    {
+      long nStart = System.nanoTime ();
+      nChecksum += _runHashMap (aMap, aLookups);
+      nMapNanos += System.nanoTime () - nStart;
+
+      nStart = System.nanoTime ();
+      nChecksum -= _runTable (aTable, aLookups);
+      nTableNanos += System.nanoTime () - nStart;
+    }
+    if (nChecksum != 0)
+      throw new IllegalStateException ("Different results!");
+
+    final long nLookups = (long) RUNS * aLookups.size ();
+    s_aLogger.info ("HashMap lookup:                 " + (nMapNanos / nLookups) + " ns/lookup");
+    s_aLogger.info ("ParticipantRoutingTable lookup: " + (nTableNanos / nLookups) + " ns/lookup");
+  }
+}
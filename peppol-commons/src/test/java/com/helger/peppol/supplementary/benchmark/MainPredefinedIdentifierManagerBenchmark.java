@@ -0,0 +1,149 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.supplementary.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.peppol.identifier.IdentifierHelper;
+import com.helger.peppol.identifier.doctype.EPredefinedDocumentTypeIdentifier;
+import com.helger.peppol.identifier.doctype.IPeppolPredefinedDocumentTypeIdentifier;
+import com.helger.peppol.identifier.doctype.PredefinedDocumentTypeIdentifierManager;
+
+/**
+ * Compare the indexed lookup of
+ * {@link PredefinedDocumentTypeIdentifierManager#getDocumentTypeIdentifierOfID(String)}
+ * with the previous linear search over all predefined document types.
+ *
+ * @author Philip Helger
+ */
+public final class MainPredefinedIdentifierManagerBenchmark
+{
+  private static final Logger s_aLogger = LoggerFactory.getLogger (MainPredefinedIdentifierManagerBenchmark.class);
+  private static final int WARMUP_RUNS = 5;
+  private static final int RUNS = 10;
+  private static final int ITERATIONS = 20000;
+
+  private static final Map <String, IPeppolPredefinedDocumentTypeIdentifier> s_aLegacyCodes = new HashMap <String, IPeppolPredefinedDocumentTypeIdentifier> ();
+
+  static
+  {
+    for (final EPredefinedDocumentTypeIdentifier eDocID : EPredefinedDocumentTypeIdentifier.values ())
+      s_aLegacyCodes.put (eDocID.getValue (), eDocID);
+  }
+
+  private MainPredefinedIdentifierManagerBenchmark ()
+  {}
+
+  @Nullable
+  private static IPeppolPredefinedDocumentTypeIdentifier _legacyLookup (@Nonnull final String sValue)
+  {
+    for (final Map.Entry <String, IPeppolPredefinedDocumentTypeIdentifier> aEntry : s_aLegacyCodes.entrySet ())
+      if (IdentifierHelper.areDocumentTypeIdentifierValuesEqual (sValue, aEntry.getKey ()))
+        return aEntry.getValue ();
+    return null;
+  }
+
+  private static long _runLegacy (@Nonnull final List <String> aValues)
+  {
+    long nFound = 0;
+    for (int i = 0; i < ITERATIONS; ++i)
+      for (final String sValue : aValues)
+        if (_legacyLookup (sValue) != null)
+          nFound++;
+    return nFound;
+  }
+
+  private static long _runIndexed (@Nonnull final List <String> aValues)
+  {
+    long nFound = 0;
+    for (int i = 0; i < ITERATIONS; ++i)
+      for (final String sValue : aValues)
+        if (PredefinedDocumentTypeIdentifierManager.getDocumentTypeIdentifierOfID (sValue) != null)
+          nFound++;
+    return nFound;
+  }
+
+  public static void main (final String [] args)
+  {
+    // Use new String objects to avoid identity shortcuts in String.equals
+    final List <String> aValues = new ArrayList <String> ();
+    for (final EPredefinedDocumentTypeIdentifier eDocID : EPredefinedDocumentTypeIdentifier.values ())
+      aValues.add (new String (eDocID.getValue ()));
+    // And one that is not found
+    aValues.add ("urn:oasis:names:specification:ubl:schema:xsd:Invoice-2::Invoice##urn:unknown::2.1");
+
+    for (int i = 0; i < WARMUP_RUNS; ++i)
+    {
+      _runLegacy (aValues);
+      _runIndexed (aValues);
+    }
+
+    long nLegacyNanos = 0;
+    long nIndexedNanos = 0;
+    long nChecksum = 0;
+    for (int i = 0; i < RUNS; ++i)
+    {
+      long nStart = System.nanoTime ();
+      nChecksum += _runLegacy (aValues);
+      nLegacyNanos += System.nanoTime () - nStart;
+
+      nStart = System.nanoTime ();
+      nChecksum -= _runIndexed (aValues);
+      nIndexedNanos += System.nanoTime () - nStart;
+    }
+    if (nChecksum != 0)
+      throw new IllegalStateException ("Different results!");
+
+    final long nLookups = (long) RUNS * ITERATIONS * aValues.size ();
+    s_aLogger.info ("Legacy lookup:  " + (nLegacyNanos / nLookups) + " ns/lookup");
+    s_aLogger.info ("Indexed lookup: " + (nIndexedNanos / nLookups) + " ns/lookup");
+    s_aLogger.info ("Speedup: " + (nLegacyNanos / Math.max (1, nIndexedNanos)) + "x");
+  }
+}
@@ -42,6 +42,8 @@ package com.helger.peppol.utils;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.net.MalformedURLException;
@@ -53,6 +55,8 @@ import org.junit.Test;
 import org.xbill.DNS.Name;
 import org.xbill.DNS.TextParseException;
 
+import com.helger.commons.messagedigest.EMessageDigestAlgorithm;
+import com.helger.commons.messagedigest.MessageDigestGeneratorHelper;
 import com.helger.peppol.identifier.IParticipantIdentifier;
 import com.helger.peppol.identifier.participant.SimpleParticipantIdentifier;
 import com.helger.peppol.sml.ESML;
@@ -205,4 +209,60 @@ public final class BusdoxURLHelperTest
     assertEquals (new URL ("http://B-f5e78500450d37de5aabe6648ac3bb70.iso6523-actorid-upis.edelivery.tech.ec.europa.eu"),
                   aURL);
   }
+
+  @Test
+  public void testGetHashValueStringRepresentation ()
+  {
+    for (final String s : new String [] { "", "0088:123abc", "9915:test", "*", "\u00e4\u00f6\u00fc\u20ac" })
+      assertEquals (MessageDigestGeneratorHelper.getHexValueFromDigest (MessageDigestGeneratorHelper.getAllDigestBytes (s,
+                                                                                                                        BusdoxURLHelper.URL_CHARSET,
+                                                                                                                        EMessageDigestAlgorithm.MD5)),
+                    BusdoxURLHelper.getHashValueStringRepresentation (s));
+  }
+
+  @Test
+  public void testGetSMPURIOfParticipantCached ()
+  {
+    BusdoxURLHelper.clearSMPURICache ();
+    assertEquals (0, BusdoxURLHelper.getSMPURICacheSize ());
+
+    final URI aURI = BusdoxURLHelper.getSMPURIOfParticipant (SimpleParticipantIdentifier.createWithDefaultScheme ("0088:123abc"),
+                                                             ESML.DIGIT_PRODUCTION);
+    assertEquals (1, BusdoxURLHelper.getSMPURICacheSize ());
+
+    // Participant identifiers are case insensitive
+    assertSame (aURI,
+                BusdoxURLHelper.getSMPURIOfParticipant (SimpleParticipantIdentifier.createWithDefaultScheme ("0088:123ABC"),
+                                                        ESML.DIGIT_PRODUCTION));
+    assertEquals (1, BusdoxURLHelper.getSMPURICacheSize ());
+
+    // Different zone
+    assertEquals ("B-f5e78500450d37de5aabe6648ac3bb70.iso6523-actorid-upis",
+                  BusdoxURLHelper.getSMPURIOfParticipant (SimpleParticipantIdentifier.createWithDefaultScheme ("0088:123abc"),
+                                                          (String) null)
+                                 .getHost ());
+    assertEquals (2, BusdoxURLHelper.getSMPURICacheSize ());
+
+    // Invalid values are not cached
+    try
+    {
+      BusdoxURLHelper.getSMPURIOfParticipant (new SimpleParticipantIdentifier ("invalid.scheme", "0088:123"),
+                                              "anyzone.org.");
+      fail ();
+    }
+    catch (final IllegalArgumentException ex)
+    {
+      // expected
+    }
+    assertEquals (2, BusdoxURLHelper.getSMPURICacheSize ());
+
+    // The cache is bounded
+    for (int i = 0; i < BusdoxURLHelper.SMP_URI_CACHE_MAX_SIZE + 10; ++i)
+      BusdoxURLHelper.getSMPURIOfParticipant (SimpleParticipantIdentifier.createWithDefaultScheme ("0088:" + i),
+                                              ESML.DIGIT_PRODUCTION);
+    assertTrue (BusdoxURLHelper.getSMPURICacheSize () <= BusdoxURLHelper.SMP_URI_CACHE_MAX_SIZE);
+
+    BusdoxURLHelper.clearSMPURICache ();
+    assertEquals (0, BusdoxURLHelper.getSMPURICacheSize ());
+  }
 }
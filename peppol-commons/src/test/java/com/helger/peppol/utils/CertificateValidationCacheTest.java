@@ -0,0 +1,156 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.Security;
+import java.security.cert.X509Certificate;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test class for class {@link CertificateValidationCache}.
+ *
+ * @author Philip Helger
+ */
+public final class CertificateValidationCacheTest
+{
+  @BeforeClass
+  public static void init ()
+  {
+    Security.addProvider (new BouncyCastleProvider ());
+  }
+
+  private static KeyPair _createKeyPair () throws Exception
+  {
+    final KeyPairGenerator aGenerator = KeyPairGenerator.getInstance ("RSA");
+    aGenerator.initialize (1024);
+    return aGenerator.generateKeyPair ();
+  }
+
+  @Test
+  public void testBasic () throws Exception
+  {
+    // Create an in-memory trust store with a single self-signed certificate
+    final X509Certificate aTrustedCert = KeyStoreHelperTest.createX509V1Certificate (_createKeyPair ());
+    final KeyStore aKeyStore = KeyStore.getInstance (KeyStoreHelper.KEYSTORE_TYPE_JKS);
+    aKeyStore.load (null, null);
+    aKeyStore.setCertificateEntry ("trusted", aTrustedCert);
+    final CachedTrustStore aTrustStore = new CachedTrustStore ("in-memory", aKeyStore);
+
+    final CertificateValidationCache aCache = new CertificateValidationCache (2, 60 * 1000);
+    assertEquals (0, aCache.getHitCount ());
+    assertEquals (0, aCache.getMissCount ());
+
+    // First validation does the full validation
+    aCache.validateCertificate (aTrustStore, aTrustedCert);
+    assertEquals (0, aCache.getHitCount ());
+    assertEquals (1, aCache.getMissCount ());
+    assertEquals (1, aCache.getSize ());
+
+    // Now it is cached
+    aCache.validateCertificate (aTrustStore, aTrustedCert);
+    aCache.validateCertificate (aTrustStore, aTrustedCert);
+    assertEquals (2, aCache.getHitCount ());
+    assertEquals (1, aCache.getMissCount ());
+
+    // Another trust store instance with the same content is a different key
+    final CachedTrustStore aTrustStore2 = new CachedTrustStore ("in-memory", aKeyStore);
+    aCache.validateCertificate (aTrustStore2, aTrustedCert);
+    assertEquals (2, aCache.getHitCount ());
+    assertEquals (2, aCache.getMissCount ());
+    assertEquals (2, aCache.getSize ());
+
+    // Untrusted certificates are never cached
+    final X509Certificate aUntrustedCert = KeyStoreHelperTest.createX509V1Certificate (_createKeyPair ());
+    for (int i = 0; i < 2; ++i)
+      try
+      {
+        aCache.validateCertificate (aTrustStore, aUntrustedCert);
+        fail ();
+      }
+      catch (final GeneralSecurityException ex)
+      {
+        // expected
+      }
+    assertEquals (2, aCache.getHitCount ());
+    assertEquals (4, aCache.getMissCount ());
+    assertEquals (2, aCache.getSize ());
+
+    aCache.clearCache ();
+    assertEquals (0, aCache.getSize ());
+    aCache.validateCertificate (aTrustStore, aTrustedCert);
+    assertEquals (5, aCache.getMissCount ());
+  }
+
+  @Test
+  public void testMaxSize () throws Exception
+  {
+    final KeyStore aKeyStore = KeyStore.getInstance (KeyStoreHelper.KEYSTORE_TYPE_JKS);
+    aKeyStore.load (null, null);
+    final X509Certificate [] aCerts = new X509Certificate [3];
+    for (int i = 0; i < aCerts.length; ++i)
+    {
+      aCerts[i] = KeyStoreHelperTest.createX509V1Certificate (_createKeyPair ());
+      aKeyStore.setCertificateEntry ("trusted" + i, aCerts[i]);
+    }
+    final CachedTrustStore aTrustStore = new CachedTrustStore ("in-memory", aKeyStore);
+
+    final CertificateValidationCache aCache = new CertificateValidationCache (2, 60 * 1000);
+    for (final X509Certificate aCert : aCerts)
+      aCache.validateCertificate (aTrustStore, aCert);
+    assertEquals (2, aCache.getSize ());
+    assertEquals (3, aCache.getMissCount ());
+
+    // The first one was evicted
+    aCache.validateCertificate (aTrustStore, aCerts[0]);
+    assertEquals (0, aCache.getHitCount ());
+    assertEquals (4, aCache.getMissCount ());
+  }
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.security.KeyStore;
+import java.security.cert.PKIXParameters;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Test class for class {@link TrustStoreCache}.
+ *
+ * @author Philip Helger
+ */
+public final class TrustStoreCacheTest
+{
+  @After
+  public void cleanup ()
+  {
+    TrustStoreCache.clearCache ();
+  }
+
+  @Test
+  public void testGetTrustStore () throws Exception
+  {
+    final CachedTrustStore aTS1 = TrustStoreCache.getTrustStore (KeyStoreHelper.TRUSTSTORE_COMPLETE_CLASSPATH,
+                                                                 KeyStoreHelper.TRUSTSTORE_PASSWORD);
+    assertNotNull (aTS1);
+    assertEquals (KeyStoreHelper.TRUSTSTORE_COMPLETE_CLASSPATH, aTS1.getLocation ());
+    assertFalse (aTS1.getAllTrustAnchors ().isEmpty ());
+
+    // Same object from cache
+    assertSame (aTS1,
+                TrustStoreCache.getTrustStore (KeyStoreHelper.TRUSTSTORE_COMPLETE_CLASSPATH,
+                                               KeyStoreHelper.TRUSTSTORE_PASSWORD));
+
+    // Different trust store
+    final CachedTrustStore aTS2 = TrustStoreCache.getTrustStore (KeyStoreHelper.TRUSTSTORE_PILOT_CLASSPATH,
+                                                                 KeyStoreHelper.TRUSTSTORE_PASSWORD);
+    assertNotSame (aTS1, aTS2);
+    assertTrue (aTS2.getAllTrustAnchors ().size () < aTS1.getAllTrustAnchors ().size ());
+
+    // Same as PKIXParameters (KeyStore)
+    final KeyStore aKeyStore = KeyStoreHelper.loadKeyStore (KeyStoreHelper.TRUSTSTORE_COMPLETE_CLASSPATH,
+                                                            KeyStoreHelper.TRUSTSTORE_PASSWORD);
+    assertEquals (new PKIXParameters (aKeyStore).getTrustAnchors (), aTS1.getAllTrustAnchors ());
+
+    // Different password
+    try
+    {
+      TrustStoreCache.getTrustStore (KeyStoreHelper.TRUSTSTORE_COMPLETE_CLASSPATH, "wrongpw");
+      fail ();
+    }
+    catch (final IOException ex)
+    {
+      // expected
+    }
+  }
+
+  @Test
+  public void testCreatePKIXParameters () throws Exception
+  {
+    final CachedTrustStore aTS = TrustStoreCache.getTrustStore (KeyStoreHelper.TRUSTSTORE_PRODUCTION_CLASSPATH,
+                                                                KeyStoreHelper.TRUSTSTORE_PASSWORD);
+    final PKIXParameters aParams1 = aTS.createPKIXParameters ();
+    final PKIXParameters aParams2 = aTS.createPKIXParameters ();
+    assertNotSame (aParams1, aParams2);
+    assertFalse (aParams1.isRevocationEnabled ());
+    assertEquals (aTS.getAllTrustAnchors (), aParams1.getTrustAnchors ());
+
+    // Modifying one copy must not influence the next one
+    aParams1.setRevocationEnabled (true);
+    assertFalse (aTS.createPKIXParameters ().isRevocationEnabled ());
+  }
+
+  @Test
+  public void testReload () throws Exception
+  {
+    final CachedTrustStore aTS1 = TrustStoreCache.getTrustStore (KeyStoreHelper.TRUSTSTORE_COMPLETE_CLASSPATH,
+                                                                 KeyStoreHelper.TRUSTSTORE_PASSWORD);
+    final CachedTrustStore aTS2 = TrustStoreCache.reload (KeyStoreHelper.TRUSTSTORE_COMPLETE_CLASSPATH,
+                                                          KeyStoreHelper.TRUSTSTORE_PASSWORD);
+    assertNotSame (aTS1, aTS2);
+    assertEquals (aTS1.getAllTrustAnchors (), aTS2.getAllTrustAnchors ());
+    assertSame (aTS2,
+                TrustStoreCache.getTrustStore (KeyStoreHelper.TRUSTSTORE_COMPLETE_CLASSPATH,
+                                               KeyStoreHelper.TRUSTSTORE_PASSWORD));
+  }
+}
@@ -28,6 +28,9 @@ import com.helger.commons.annotation.PresentForCodeCoverage;
 @Immutable
 public final class CPeppolSBDH
 {
+  /** The namespace URI of the Standard Business Document Header elements */
+  public static final String SBDH_NS = "http://www.unece.org/cefact/namespaces/StandardBusinessDocumentHeader";
+
   /** The expected SBDH header version */
   public static final String HEADER_VERSION = "1.0";
 
@@ -28,6 +28,7 @@ import org.w3c.dom.Element;
 import com.helger.commons.ValueEnforcer;
 import com.helger.commons.annotation.Nonempty;
 import com.helger.commons.annotation.ReturnsMutableCopy;
+import com.helger.commons.annotation.ReturnsMutableObject;
 import com.helger.commons.equals.EqualsHelper;
 import com.helger.commons.hashcode.HashCodeGenerator;
 import com.helger.commons.string.StringHelper;
@@ -522,6 +523,26 @@ public class PeppolSBDHDocument
     return this;
   }
 
+  /**
+   * Set the main business message that should be transmitted together with the
+   * SBDH without cloning it. This is the cheap alternative to
+   * {@link #setBusinessMessage(Element)} for large business messages that are
+   * passed from reading over routing to writing without being modified.
+   *
+   * @param aBusinessMessage
+   *        The business message to be set. May not be <code>null</code>. The
+   *        passed element is used as is, so it must not be modified afterwards
+   *        by the caller.
+   * @return this
+   * @see #getBusinessMessageNoClone()
+   */
+  @Nonnull
+  public PeppolSBDHDocument setBusinessMessageNoClone (@Nonnull final Element aBusinessMessage)
+  {
+    m_aBusinessMessage = ValueEnforcer.notNull (aBusinessMessage, "BusinessMessage");
+    return this;
+  }
+
   /**
    * Check if a business message is present without having the need to
    * explicitly call {@link #getBusinessMessage()} which returns a cloned node
@@ -549,11 +570,29 @@ public class PeppolSBDHDocument
   }
 
   /**
-   * @return <code>true</code> if all mandatory fields required for creating an
-   *         SBDH are present, <code>false</code> if at least one field is not
-   *         set.
+   * Get the contained business message without cloning it. This is the cheap
+   * alternative to {@link #getBusinessMessage()} for read-only access. The
+   * returned element must not be modified by the caller, because it is the
+   * same object that is contained in this document.
+   *
+   * @return <code>null</code> if no business message is present. The contained
+   *         business message otherwise.
+   * @see #setBusinessMessageNoClone(Element)
    */
-  public boolean areAllFieldsSet ()
+  @Nullable
+  @ReturnsMutableObject ("Read-only access to avoid copying large business messages")
+  public Element getBusinessMessageNoClone ()
+  {
+    return m_aBusinessMessage;
+  }
+
+  /**
+   * @return <code>true</code> if all mandatory header fields required for
+   *         creating an SBDH are present, <code>false</code> if at least one
+   *         field is not set. The business message is not checked.
+   * @see #areAllFieldsSet()
+   */
+  public boolean areAllHeaderFieldsSet ()
   {
     return StringHelper.hasText (m_sSenderScheme) &&
            StringHelper.hasText (m_sSenderValue) &&
@@ -567,8 +606,18 @@ public class PeppolSBDHDocument
            m_sTypeVersion != null &&
            m_sType != null &&
            m_sInstanceIdentifier != null &&
-           m_aCreationDateAndTime != null &&
-           m_aBusinessMessage != null;
+           m_aCreationDateAndTime != null;
+  }
+
+  /**
+   * @return <code>true</code> if all mandatory fields required for creating an
+   *         SBDH are present, <code>false</code> if at least one field is not
+   *         set.
+   * @see #areAllHeaderFieldsSet()
+   */
+  public boolean areAllFieldsSet ()
+  {
+    return areAllHeaderFieldsSet () && m_aBusinessMessage != null;
   }
 
   @Override
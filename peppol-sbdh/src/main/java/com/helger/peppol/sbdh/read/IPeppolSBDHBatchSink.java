@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2014-2016 Philip Helger
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.peppol.sbdh.read;
+
+import java.io.IOException;
+
+import javax.annotation.Nonnull;
+
+import com.helger.peppol.sbdh.PeppolSBDHDocument;
+
+/**
+ * Callback interface for {@link PeppolSBDHBatchReader}. All methods are
+ * invoked on the thread that started the batch, in the order of the documents
+ * in the source. Implementations therefore don't need to be thread-safe.
+ *
+ * @author Philip Helger
+ */
+public interface IPeppolSBDHBatchSink
+{
+  /**
+   * Invoked for each document with a valid SBDH.
+   *
+   * @param sName
+   *        The name of the document in the source (e.g. the relative file name
+   *        or the ZIP entry name). Never <code>null</code>.
+   * @param aHeaderData
+   *        The extracted header data. It never contains a business message.
+   *        Never <code>null</code>.
+   */
+  void onHeaderData (@Nonnull String sName, @Nonnull PeppolSBDHDocument aHeaderData);
+
+  /**
+   * Invoked for each document with an invalid SBDH.
+   *
+   * @param sName
+   *        The name of the document in the source (e.g. the relative file name
+   *        or the ZIP entry name). Never <code>null</code>.
+   * @param aException
+   *        The exception that occurred while reading the SBDH. Use
+   *        {@link PeppolSBDHDocumentReadException#getErrorCode()} to get the
+   *        reason. Never <code>null</code>.
+   */
+  void onReadError (@Nonnull String sName, @Nonnull PeppolSBDHDocumentReadException aException);
+
+  /**
+   * Invoked for each document that could not be accessed at all (e.g. because
+   * it was deleted, because of missing permissions or because of a corrupt ZIP
+   * entry). The batch continues with the next document.
+   *
+   * @param sName
+   *        The name of the document in the source (e.g. the relative file name
+   *        or the ZIP entry name). Never <code>null</code>.
+   * @param aException
+   *        The exception that occurred while accessing the document. Never
+   *        <code>null</code>.
+   */
+  void onIOError (@Nonnull String sName, @Nonnull IOException aException);
+}
@@ -0,0 +1,610 @@
+/**
+ * Copyright (C) 2014-2016 Philip Helger
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.peppol.sbdh.read;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.WillNotClose;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.io.resource.IReadableResource;
+import com.helger.commons.string.ToStringGenerator;
+import com.helger.peppol.sbdh.PeppolSBDHDocument;
+
+/**
+ * Read and check the SBDH headers of large amounts of Standard Business
+ * Documents in parallel. The documents can be provided as a directory, as a
+ * ZIP file, as a ZIP stream or as an iterator of resources. Only the header of
+ * each document is read (see
+ * {@link PeppolSBDHDocumentReader#extractHeaderData(InputStream)}) and the
+ * result of each document is passed to an {@link IPeppolSBDHBatchSink}.<br>
+ * The documents are enumerated on the calling thread and read on the provided
+ * executor service (except for ZIP streams, see
+ * {@link #readZipStream(ZipInputStream, IPeppolSBDHBatchSink)}). Only a limited number of documents is in flight at the
+ * same time, so the memory consumption does not depend on the number of
+ * documents. The results are passed to the sink on the calling thread in the
+ * order of the source. Documents that cannot be accessed are passed to the
+ * sink as I/O errors and don't abort the batch. The batch must not be started
+ * from a thread of the used executor service.
+ *
+ * @author Philip Helger
+ */
+@ThreadSafe
+public class PeppolSBDHBatchReader
+{
+  /**
+   * Abstraction over a single document of the different sources.
+   */
+  private static interface IDocument
+  {
+    @Nonnull
+    String getName ();
+
+    @Nonnull
+    InputStream openStream () throws IOException;
+  }
+
+  /**
+   * Abstraction over the different sources.
+   */
+  private static interface IDocumentProvider
+  {
+    @Nullable
+    IDocument getNextDocument () throws IOException;
+  }
+
+  /**
+   * The result of reading a single document.
+   */
+  private static final class Result
+  {
+    private final String m_sName;
+    private final PeppolSBDHDocument m_aHeaderData;
+    private final PeppolSBDHDocumentReadException m_aException;
+    private final IOException m_aIOException;
+
+    Result (@Nonnull final String sName,
+            @Nullable final PeppolSBDHDocument aHeaderData,
+            @Nullable final PeppolSBDHDocumentReadException aException,
+            @Nullable final IOException aIOException)
+    {
+      m_sName = sName;
+      m_aHeaderData = aHeaderData;
+      m_aException = aException;
+      m_aIOException = aIOException;
+    }
+  }
+
+  /**
+   * The stream of the current entry of a ZIP stream. Closing it does not close
+   * the ZIP stream.
+   */
+  private static final class ZipEntryInputStream extends FilterInputStream
+  {
+    ZipEntryInputStream (@Nonnull final ZipInputStream aZIS)
+    {
+      super (aZIS);
+    }
+
+    /**
+     * Skip the rest of the entry. This also verifies the checksum of the entry.
+     *
+     * @throws IOException
+     *         E.g. for corrupt compressed data or an invalid checksum
+     */
+    void closeEntry () throws IOException
+    {
+      ((ZipInputStream) in).closeEntry ();
+    }
+
+    @Override
+    public void close ()
+    {
+      // Keep the ZIP stream open for the next entry
+    }
+  }
+
+  private final ExecutorService m_aExecutorService;
+  private final int m_nMaxDocumentsInFlight;
+  private final ThreadSafePeppolSBDHDocumentReader m_aReader;
+
+  /**
+   * Constructor using the default {@link ThreadSafePeppolSBDHDocumentReader}.
+   *
+   * @param aExecutorService
+   *        The executor service on which the documents are read. May not be
+   *        <code>null</code>.
+   * @param nMaxDocumentsInFlight
+   *        The maximum number of documents that are read or waiting to be
+   *        passed to the sink at the same time. Should be at least the number
+   *        of threads of the executor service. Must be &gt; 0.
+   */
+  public PeppolSBDHBatchReader (@Nonnull final ExecutorService aExecutorService,
+                                @Nonnegative final int nMaxDocumentsInFlight)
+  {
+    this (aExecutorService, nMaxDocumentsInFlight, new ThreadSafePeppolSBDHDocumentReader ());
+  }
+
+  /**
+   * Constructor
+   *
+   * @param aExecutorService
+   *        The executor service on which the documents are read. May not be
+   *        <code>null</code>.
+   * @param nMaxDocumentsInFlight
+   *        The maximum number of documents that are read or waiting to be
+   *        passed to the sink at the same time. Should be at least the number
+   *        of threads of the executor service. Must be &gt; 0.
+   * @param aReader
+   *        The reader to be used to check the documents. May not be
+   *        <code>null</code>.
+   */
+  public PeppolSBDHBatchReader (@Nonnull final ExecutorService aExecutorService,
+                                @Nonnegative final int nMaxDocumentsInFlight,
+                                @Nonnull final ThreadSafePeppolSBDHDocumentReader aReader)
+  {
+    ValueEnforcer.notNull (aExecutorService, "ExecutorService");
+    ValueEnforcer.isGT0 (nMaxDocumentsInFlight, "MaxDocumentsInFlight");
+    ValueEnforcer.notNull (aReader, "Reader");
+    m_aExecutorService = aExecutorService;
+    m_nMaxDocumentsInFlight = nMaxDocumentsInFlight;
+    m_aReader = aReader;
+  }
+
+  /**
+   * @return The maximum number of documents in flight. Always &gt; 0.
+   */
+  @Nonnegative
+  public int getMaxDocumentsInFlight ()
+  {
+    return m_nMaxDocumentsInFlight;
+  }
+
+  @Nonnull
+  private Result _read (@Nonnull final IDocument aDocument)
+  {
+    final String sName = aDocument.getName ();
+    final InputStream aIS;
+    try
+    {
+      aIS = aDocument.openStream ();
+    }
+    catch (final IOException ex)
+    {
+      return new Result (sName, null, null, ex);
+    }
+
+    PeppolSBDHDocument aHeaderData = null;
+    PeppolSBDHDocumentReadException aReadException = null;
+    try
+    {
+      aHeaderData = m_aReader.extractHeaderData (aIS);
+    }
+    catch (final PeppolSBDHDocumentReadException ex)
+    {
+      aReadException = ex;
+    }
+
+    if (aIS instanceof ZipEntryInputStream)
+      try
+      {
+        // Only the header was read
+        ((ZipEntryInputStream) aIS).closeEntry ();
+      }
+      catch (final IOException ex)
+      {
+        return new Result (sName, null, null, ex);
+      }
+    return new Result (sName, aHeaderData, aReadException, null);
+  }
+
+  private static void _deliver (@Nonnull final Future <Result> aFuture,
+                                @Nonnull final IPeppolSBDHBatchSink aSink,
+                                @Nonnull final PeppolSBDHBatchStatistics aStats) throws InterruptedException
+  {
+    final Result aResult;
+    try
+    {
+      aResult = aFuture.get ();
+    }
+    catch (final ExecutionException ex)
+    {
+      final Throwable aCause = ex.getCause ();
+      if (aCause instanceof RuntimeException)
+        throw (RuntimeException) aCause;
+      throw new IllegalStateException ("Error in SBDH batch reading", aCause);
+    }
+
+    if (aResult.m_aIOException != null)
+    {
+      aStats.addIOError ();
+      aSink.onIOError (aResult.m_sName, aResult.m_aIOException);
+    }
+    else
+      if (aResult.m_aException != null)
+      {
+        aStats.addError (aResult.m_aException.getErrorCode ());
+        aSink.onReadError (aResult.m_sName, aResult.m_aException);
+      }
+      else
+      {
+        aStats.addValid ();
+        aSink.onHeaderData (aResult.m_sName, aResult.m_aHeaderData);
+      }
+  }
+
+  @Nonnull
+  private PeppolSBDHBatchStatistics _readAll (@Nonnull final IDocumentProvider aDocumentProvider,
+                                              final boolean bReadInCallingThread,
+                                              @Nonnull final IPeppolSBDHBatchSink aSink) throws IOException,
+                                                                                       InterruptedException
+  {
+    ValueEnforcer.notNull (aSink, "Sink");
+
+    final PeppolSBDHBatchStatistics ret = new PeppolSBDHBatchStatistics ();
+    final long nStart = System.nanoTime ();
+    final Queue <Future <Result>> aInFlight = new LinkedList <Future <Result>> ();
+    boolean bSuccess = false;
+    try
+    {
+      IDocument aDocument;
+      while ((aDocument = aDocumentProvider.getNextDocument ()) != null)
+      {
+        // Wait for the oldest document to keep the memory bounded
+        if (aInFlight.size () >= m_nMaxDocumentsInFlight)
+          _deliver (aInFlight.remove (), aSink, ret);
+
+        final IDocument aFinalDocument = aDocument;
+        final FutureTask <Result> aTask = new FutureTask <Result> (new Callable <Result> ()
+        {
+          public Result call ()
+          {
+            return _read (aFinalDocument);
+          }
+        });
+        if (bReadInCallingThread)
+          aTask.run ();
+        else
+          m_aExecutorService.execute (aTask);
+        aInFlight.add (aTask);
+      }
+
+      // Deliver the remaining documents in order
+      while (!aInFlight.isEmpty ())
+        _deliver (aInFlight.remove (), aSink, ret);
+      bSuccess = true;
+    }
+    finally
+    {
+      if (!bSuccess)
+        for (final Future <?> aFuture : aInFlight)
+          aFuture.cancel (true);
+    }
+    ret.setDurationNanos (System.nanoTime () - nStart);
+    return ret;
+  }
+
+  @Nonnull
+  private static IDocument _createFileDocument (@Nonnull final String sName, @Nonnull final File aFile)
+  {
+    return new IDocument ()
+    {
+      @Nonnull
+      public String getName ()
+      {
+        return sName;
+      }
+
+      @Nonnull
+      public InputStream openStream () throws IOException
+      {
+        return new FileInputStream (aFile);
+      }
+    };
+  }
+
+  @Nonnull
+  private static IDocument _createFailedDocument (@Nonnull final String sName, @Nonnull final IOException aException)
+  {
+    return new IDocument ()
+    {
+      @Nonnull
+      public String getName ()
+      {
+        return sName;
+      }
+
+      @Nonnull
+      public InputStream openStream () throws IOException
+      {
+        throw aException;
+      }
+    };
+  }
+
+  /**
+   * Read all files of the passed directory and all its sub directories. The
+   * files are read in the alphabetical order of their names and the name
+   * passed to the sink is the path relative to the passed directory, using
+   * "/" as the separator. Sub directories that cannot be listed are passed to
+   * the sink as I/O errors.
+   *
+   * @param aDirectory
+   *        The directory to read. May not be <code>null</code>.
+   * @param aSink
+   *        The sink to pass the results to. May not be <code>null</code>.
+   * @return The statistics of the batch. Never <code>null</code>.
+   * @throws IOException
+   *         If the passed directory cannot be listed
+   * @throws InterruptedException
+   *         If the calling thread was interrupted while waiting for the
+   *         documents to be read
+   */
+  @Nonnull
+  public PeppolSBDHBatchStatistics readDirectory (@Nonnull final File aDirectory,
+                                                  @Nonnull final IPeppolSBDHBatchSink aSink) throws IOException,
+                                                                                           InterruptedException
+  {
+    ValueEnforcer.notNull (aDirectory, "Directory");
+    if (!aDirectory.isDirectory ())
+      throw new IOException ("Not a directory: " + aDirectory);
+
+    final LinkedList <File> aDirectories = new LinkedList <File> ();
+    final LinkedList <String> aPrefixes = new LinkedList <String> ();
+    final LinkedList <File> aFiles = new LinkedList <File> ();
+    final LinkedList <String> aNames = new LinkedList <String> ();
+    aDirectories.add (aDirectory);
+    aPrefixes.add ("");
+    return _readAll (new IDocumentProvider ()
+    {
+      @Nullable
+      public IDocument getNextDocument () throws IOException
+      {
+        // List directories depth-first until a file is found
+        while (aFiles.isEmpty ())
+        {
+          if (aDirectories.isEmpty ())
+            return null;
+          final File aDir = aDirectories.removeFirst ();
+          final String sPrefix = aPrefixes.removeFirst ();
+          final File [] aChildren = aDir.listFiles ();
+          if (aChildren == null)
+          {
+            final IOException ex = new IOException ("Failed to list directory " + aDir);
+            if (aDir == aDirectory)
+              throw ex;
+            return _createFailedDocument (sPrefix, ex);
+          }
+          Arrays.sort (aChildren);
+
+          // Sub directories are processed before the remaining directories
+          int nSubDirIndex = 0;
+          for (final File aChild : aChildren)
+            if (aChild.isDirectory ())
+            {
+              aDirectories.add (nSubDirIndex, aChild);
+              aPrefixes.add (nSubDirIndex, sPrefix + aChild.getName () + '/');
+              nSubDirIndex++;
+            }
+            else
+            {
+              aFiles.add (aChild);
+              aNames.add (sPrefix + aChild.getName ());
+            }
+        }
+        return _createFileDocument (aNames.removeFirst (), aFiles.removeFirst ());
+      }
+    }, false, aSink);
+  }
+
+  /**
+   * Read all entries of the passed ZIP file. Directory entries are skipped.
+   * The entries are opened concurrently on the executor service. The ZIP file
+   * is not closed.
+   *
+   * @param aZipFile
+   *        The ZIP file to read. May not be <code>null</code>.
+   * @param aSink
+   *        The sink to pass the results to. May not be <code>null</code>.
+   * @return The statistics of the batch. Never <code>null</code>.
+   * @throws IOException
+   *         Declared for consistency only. Entries that cannot be opened are
+   *         passed to the sink as I/O errors.
+   * @throws InterruptedException
+   *         If the calling thread was interrupted while waiting for the
+   *         documents to be read
+   */
+  @Nonnull
+  public PeppolSBDHBatchStatistics readZipFile (@Nonnull @WillNotClose final ZipFile aZipFile,
+                                                @Nonnull final IPeppolSBDHBatchSink aSink) throws IOException,
+                                                                                         InterruptedException
+  {
+    ValueEnforcer.notNull (aZipFile, "ZipFile");
+
+    final Enumeration <? extends ZipEntry> aEntries = aZipFile.entries ();
+    return _readAll (new IDocumentProvider ()
+    {
+      @Nullable
+      public IDocument getNextDocument ()
+      {
+        while (aEntries.hasMoreElements ())
+        {
+          final ZipEntry aEntry = aEntries.nextElement ();
+          if (!aEntry.isDirectory ())
+            return new IDocument ()
+            {
+              @Nonnull
+              public String getName ()
+              {
+                return aEntry.getName ();
+              }
+
+              @Nonnull
+              public InputStream openStream () throws IOException
+              {
+                // ZipFile is thread-safe
+                return aZipFile.getInputStream (aEntry);
+              }
+            };
+        }
+        return null;
+      }
+    }, false, aSink);
+  }
+
+  /**
+   * Read all entries of the passed ZIP stream. Directory entries are skipped.
+   * Because a ZIP stream can only be read sequentially, the header of each
+   * entry is read directly from the stream on the calling thread and the rest
+   * of the entry is skipped, so no entry is buffered in memory and the
+   * executor service is not used. Entries that cannot be read (e.g. because of
+   * an invalid checksum) are passed to the sink as I/O errors. The stream is
+   * not closed.
+   *
+   * @param aZIS
+   *        The ZIP stream to read. May not be <code>null</code>.
+   * @param aSink
+   *        The sink to pass the results to. May not be <code>null</code>.
+   * @return The statistics of the batch. Never <code>null</code>.
+   * @throws IOException
+   *         If the next entry of the stream cannot be determined
+   * @throws InterruptedException
+   *         If the calling thread was interrupted while waiting for the
+   *         documents to be read
+   */
+  @Nonnull
+  public PeppolSBDHBatchStatistics readZipStream (@Nonnull @WillNotClose final ZipInputStream aZIS,
+                                                  @Nonnull final IPeppolSBDHBatchSink aSink) throws IOException,
+                                                                                           InterruptedException
+  {
+    ValueEnforcer.notNull (aZIS, "ZipInputStream");
+
+    return _readAll (new IDocumentProvider ()
+    {
+      @Nullable
+      public IDocument getNextDocument () throws IOException
+      {
+        ZipEntry aEntry;
+        while ((aEntry = aZIS.getNextEntry ()) != null)
+          if (!aEntry.isDirectory ())
+          {
+            final String sName = aEntry.getName ();
+            return new IDocument ()
+            {
+              @Nonnull
+              public String getName ()
+              {
+                return sName;
+              }
+
+              @Nonnull
+              public InputStream openStream ()
+              {
+                // Only valid until the next entry is requested
+                return new ZipEntryInputStream (aZIS);
+              }
+            };
+          }
+        return null;
+      }
+    }, true, aSink);
+  }
+
+  /**
+   * Read all resources of the passed iterator. The name passed to the sink is
+   * the path of the resource. The resources are opened on the executor
+   * service.
+   *
+   * @param aResources
+   *        The resources to read. May not be <code>null</code> and may not
+   *        return <code>null</code> elements.
+   * @param aSink
+   *        The sink to pass the results to. May not be <code>null</code>.
+   * @return The statistics of the batch. Never <code>null</code>.
+   * @throws IOException
+   *         Declared for consistency only. Resources that cannot be opened are
+   *         passed to the sink as I/O errors.
+   * @throws InterruptedException
+   *         If the calling thread was interrupted while waiting for the
+   *         documents to be read
+   */
+  @Nonnull
+  public PeppolSBDHBatchStatistics readResources (@Nonnull final Iterator <? extends IReadableResource> aResources,
+                                                  @Nonnull final IPeppolSBDHBatchSink aSink) throws IOException,
+                                                                                           InterruptedException
+  {
+    ValueEnforcer.notNull (aResources, "Resources");
+
+    return _readAll (new IDocumentProvider ()
+    {
+      @Nullable
+      public IDocument getNextDocument ()
+      {
+        if (!aResources.hasNext ())
+          return null;
+        final IReadableResource aResource = aResources.next ();
+        return new IDocument ()
+        {
+          @Nonnull
+          public String getName ()
+          {
+            return aResource.getPath ();
+          }
+
+          @Nonnull
+          public InputStream openStream () throws IOException
+          {
+            final InputStream ret = aResource.getInputStream ();
+            if (ret == null)
+              throw new IOException ("Failed to open " + aResource);
+            return ret;
+          }
+        };
+      }
+    }, false, aSink);
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("executorService", m_aExecutorService)
+                                       .append ("maxDocumentsInFlight", m_nMaxDocumentsInFlight)
+                                       .append ("reader", m_aReader)
+                                       .toString ();
+  }
+}
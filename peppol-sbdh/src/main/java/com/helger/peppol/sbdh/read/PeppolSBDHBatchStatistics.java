@@ -0,0 +1,143 @@
+/**
+ * Copyright (C) 2014-2016 Philip Helger
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.peppol.sbdh.read;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.string.ToStringGenerator;
+
+/**
+ * The statistics of a single run of {@link PeppolSBDHBatchReader}.
+ *
+ * @author Philip Helger
+ */
+@NotThreadSafe
+public final class PeppolSBDHBatchStatistics
+{
+  private long m_nValidCount;
+  private long m_nIOErrorCount;
+  private final long [] m_aErrorCounts = new long [EPeppolSBDHDocumentReadError.values ().length];
+  private long m_nDurationNanos;
+
+  PeppolSBDHBatchStatistics ()
+  {}
+
+  void addValid ()
+  {
+    m_nValidCount++;
+  }
+
+  void addIOError ()
+  {
+    m_nIOErrorCount++;
+  }
+
+  void addError (@Nonnull final EPeppolSBDHDocumentReadError eError)
+  {
+    m_aErrorCounts[eError.ordinal ()]++;
+  }
+
+  void setDurationNanos (final long nDurationNanos)
+  {
+    m_nDurationNanos = nDurationNanos;
+  }
+
+  /**
+   * @return The number of documents read, including the ones that could not be
+   *         accessed. Always &ge; 0.
+   */
+  @Nonnegative
+  public long getTotalCount ()
+  {
+    return m_nValidCount + getErrorCount () + m_nIOErrorCount;
+  }
+
+  /**
+   * @return The number of documents with a valid SBDH. Always &ge; 0.
+   */
+  @Nonnegative
+  public long getValidCount ()
+  {
+    return m_nValidCount;
+  }
+
+  /**
+   * @return The number of documents that could not be accessed. Always &ge; 0.
+   */
+  @Nonnegative
+  public long getIOErrorCount ()
+  {
+    return m_nIOErrorCount;
+  }
+
+  /**
+   * @return The number of documents with an invalid SBDH. Always &ge; 0.
+   */
+  @Nonnegative
+  public long getErrorCount ()
+  {
+    long ret = 0;
+    for (final long nCount : m_aErrorCounts)
+      ret += nCount;
+    return ret;
+  }
+
+  /**
+   * @param eError
+   *        The error to query. May not be <code>null</code>.
+   * @return The number of documents that failed with the passed error. Always
+   *         &ge; 0.
+   */
+  @Nonnegative
+  public long getErrorCount (@Nonnull final EPeppolSBDHDocumentReadError eError)
+  {
+    ValueEnforcer.notNull (eError, "Error");
+    return m_aErrorCounts[eError.ordinal ()];
+  }
+
+  /**
+   * @return The duration of the whole batch in milliseconds. Always &ge; 0.
+   */
+  @Nonnegative
+  public long getDurationMillis ()
+  {
+    return m_nDurationNanos / 1000000;
+  }
+
+  /**
+   * @return The number of documents read per second. Always &ge; 0.
+   */
+  @Nonnegative
+  public double getDocumentsPerSecond ()
+  {
+    return m_nDurationNanos == 0 ? 0 : getTotalCount () * 1E9 / m_nDurationNanos;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("validCount", m_nValidCount)
+                                       .append ("errorCount", getErrorCount ())
+                                       .append ("ioErrorCount", m_nIOErrorCount)
+                                       .append ("durationMillis", getDurationMillis ())
+                                       .append ("documentsPerSecond", getDocumentsPerSecond ())
+                                       .toString ();
+  }
+}
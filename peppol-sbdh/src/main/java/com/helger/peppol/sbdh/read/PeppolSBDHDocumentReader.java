@@ -17,15 +17,28 @@
 package com.helger.peppol.sbdh.read;
 
 import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.WillClose;
+import javax.annotation.WillCloseWhenClosed;
 import javax.annotation.concurrent.NotThreadSafe;
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeConstants;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.datatype.XMLGregorianCalendar;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.joda.time.LocalDateTime;
 import org.unece.cefact.namespaces.sbdh.BusinessScope;
 import org.unece.cefact.namespaces.sbdh.DocumentIdentification;
+import org.unece.cefact.namespaces.sbdh.Partner;
 import org.unece.cefact.namespaces.sbdh.PartnerIdentification;
 import org.unece.cefact.namespaces.sbdh.Scope;
 import org.unece.cefact.namespaces.sbdh.StandardBusinessDocument;
@@ -48,13 +61,24 @@ import com.helger.sbdh.SBDMarshaller;
 
 /**
  * Main class to read standard business documents and extract the PEPPOL
- * required data out of it.
+ * required data out of it.<br>
+ * Besides the JAXB based <code>extractData</code> methods, this class offers
+ * {@link #extractDataStreaming(InputStream)} that only reads the
+ * <code>StandardBusinessDocumentHeader</code> with StAX and leaves the business
+ * message untouched in the input stream.<br>
+ * Instances of this class reuse the created marshaller and StAX factory and
+ * should therefore be reused as well. To share a reader between threads use
+ * {@link ThreadSafePeppolSBDHDocumentReader}.
  *
  * @author Philip Helger
  */
 @NotThreadSafe
 public class PeppolSBDHDocumentReader
 {
+  private SBDMarshaller m_aSBDMarshaller;
+  private XMLInputFactory m_aXMLInputFactory;
+  private DatatypeFactory m_aDatatypeFactory;
+
   public PeppolSBDHDocumentReader ()
   {}
 
@@ -270,6 +294,91 @@ public class PeppolSBDHDocumentReader
     return EqualsHelper.equals (sType, aBusinessMessage.getLocalName ());
   }
 
+  /**
+   * Check if the passed business message is valid or not when reading in
+   * streaming mode. This is the counterpart of
+   * {@link #isValidBusinessMessage(Element)} that only knows the name of the
+   * business message root element. By default this method always returns
+   * <code>true</code>. Override this method to perform further or other checks.
+   *
+   * @param aBusinessMessageName
+   *        The qualified name of the business message root element. Never
+   *        <code>null</code>.
+   * @return <code>true</code> if the value is valid, <code>false</code>
+   *         otherwise.
+   */
+  @OverrideOnDemand
+  protected boolean isValidBusinessMessage (@Nonnull final QName aBusinessMessageName)
+  {
+    return true;
+  }
+
+  /**
+   * Check if the passed document identification standard is valid or not when
+   * reading in streaming mode. This is the counterpart of
+   * {@link #isValidStandard(String, Element)} and by default checks if the
+   * standard is the same as the namespace URI of the business message root
+   * element.
+   *
+   * @param sStandard
+   *        The value to be checked. This corresponds to the field
+   *        "DocumentIdentification/Standard". May be <code>null</code>.
+   * @param aBusinessMessageName
+   *        The qualified name of the business message root element. Never
+   *        <code>null</code>.
+   * @return <code>true</code> if the value is valid, <code>false</code>
+   *         otherwise.
+   */
+  @OverrideOnDemand
+  protected boolean isValidStandard (@Nullable final String sStandard, @Nonnull final QName aBusinessMessageName)
+  {
+    // QName uses "" for "no namespace" where DOM uses null
+    final String sNamespaceURI = aBusinessMessageName.getNamespaceURI ();
+    return StringHelper.hasText (sNamespaceURI) && sNamespaceURI.equals (sStandard);
+  }
+
+  /**
+   * Check if the passed document identification type version is valid or not
+   * when reading in streaming mode. This is the counterpart of
+   * {@link #isValidTypeVersion(String, Element)} and by default the value must
+   * either be "2.0" or "2.1".
+   *
+   * @param sTypeVersion
+   *        The value to be checked. This corresponds to the field
+   *        "DocumentIdentification/TypeVersion". May be <code>null</code>.
+   * @param aBusinessMessageName
+   *        The qualified name of the business message root element. Never
+   *        <code>null</code>.
+   * @return <code>true</code> if the value is valid, <code>false</code>
+   *         otherwise.
+   */
+  @OverrideOnDemand
+  protected boolean isValidTypeVersion (@Nullable final String sTypeVersion, @Nonnull final QName aBusinessMessageName)
+  {
+    return CPeppolSBDH.TYPE_VERSION_20.equals (sTypeVersion) || CPeppolSBDH.TYPE_VERSION_21.equals (sTypeVersion);
+  }
+
+  /**
+   * Check if the passed document identification type is valid or not when
+   * reading in streaming mode. This is the counterpart of
+   * {@link #isValidType(String, Element)} and by default checks if the type is
+   * the same as the local name of the business message root element.
+   *
+   * @param sType
+   *        The value to be checked. This corresponds to the field
+   *        "DocumentIdentification/Type". May be <code>null</code>.
+   * @param aBusinessMessageName
+   *        The qualified name of the business message root element. Never
+   *        <code>null</code>.
+   * @return <code>true</code> if the value is valid, <code>false</code>
+   *         otherwise.
+   */
+  @OverrideOnDemand
+  protected boolean isValidType (@Nullable final String sType, @Nonnull final QName aBusinessMessageName)
+  {
+    return EqualsHelper.equals (sType, aBusinessMessageName.getLocalPart ());
+  }
+
   /**
    * Check if the passed document identification instance identifier is valid or
    * not. By default all non-empty values are valid. Override this method to
@@ -307,8 +416,9 @@ public class PeppolSBDHDocumentReader
   }
 
   /**
-   * Create a new SBD marshaller used for reading SBD documents. Override this
-   * method to customize reading.
+   * Create a new SBD marshaller used for reading SBD documents. The created
+   * marshaller is reused for all reads of this reader. Override this method to
+   * customize reading.
    *
    * @return An instance of the {@link SBDMarshaller} and never
    *         <code>null</code>.
@@ -323,6 +433,24 @@ public class PeppolSBDHDocumentReader
     return ret;
   }
 
+  /**
+   * Create a new StAX input factory used for reading SBD documents in streaming
+   * mode. The created factory is reused for all streaming reads of this
+   * reader. Override this method to customize reading.
+   *
+   * @return A new {@link XMLInputFactory} and never <code>null</code>.
+   */
+  @Nonnull
+  @OverrideOnDemand
+  protected XMLInputFactory createXMLInputFactory ()
+  {
+    final XMLInputFactory ret = XMLInputFactory.newInstance ();
+    // Neither DTDs nor external entities are needed in SBD documents
+    ret.setProperty (XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+    ret.setProperty (XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+    return ret;
+  }
+
   /**
    * Extract the document data from the Standard Business Document represents by
    * the passed parameter.
@@ -343,11 +471,11 @@ public class PeppolSBDHDocumentReader
     try
     {
       // Convert to domain object
-      final StandardBusinessDocument aSBD = createSBDMarshaller ().read (aStandardBusinessDocument);
+      final StandardBusinessDocument aSBD = _getSBDMarshaller ().read (aStandardBusinessDocument);
       if (aSBD == null)
         throw new PeppolSBDHDocumentReadException (EPeppolSBDHDocumentReadError.INVALID_SBD_XML);
 
-      return extractData (aSBD);
+      return _extractData (aSBD, false);
     }
     finally
     {
@@ -372,11 +500,11 @@ public class PeppolSBDHDocumentReader
     ValueEnforcer.notNull (aStandardBusinessDocument, "StandardBusinessDocument");
 
     // Convert to domain object
-    final StandardBusinessDocument aSBD = createSBDMarshaller ().read (aStandardBusinessDocument);
+    final StandardBusinessDocument aSBD = _getSBDMarshaller ().read (aStandardBusinessDocument);
     if (aSBD == null)
       throw new PeppolSBDHDocumentReadException (EPeppolSBDHDocumentReadError.INVALID_SBD_XML);
 
-    return extractData (aSBD);
+    return _extractData (aSBD, false);
   }
 
   /**
@@ -396,11 +524,11 @@ public class PeppolSBDHDocumentReader
     ValueEnforcer.notNull (aStandardBusinessDocument, "StandardBusinessDocument");
 
     // Convert to domain object
-    final StandardBusinessDocument aSBD = createSBDMarshaller ().read (aStandardBusinessDocument);
+    final StandardBusinessDocument aSBD = _getSBDMarshaller ().read (aStandardBusinessDocument);
     if (aSBD == null)
       throw new PeppolSBDHDocumentReadException (EPeppolSBDHDocumentReadError.INVALID_SBD_XML);
 
-    return extractData (aSBD);
+    return _extractData (aSBD, false);
   }
 
   /**
@@ -418,6 +546,16 @@ public class PeppolSBDHDocumentReader
   public PeppolSBDHDocument extractData (@Nonnull final StandardBusinessDocument aStandardBusinessDocument) throws PeppolSBDHDocumentReadException
   {
     ValueEnforcer.notNull (aStandardBusinessDocument, "StandardBusinessDocument");
+
+    // The passed object is owned by the caller so the business message must be
+    // cloned
+    return _extractData (aStandardBusinessDocument, true);
+  }
+
+  @Nonnull
+  private PeppolSBDHDocument _extractData (@Nonnull final StandardBusinessDocument aStandardBusinessDocument,
+                                           final boolean bCloneBusinessMessage) throws PeppolSBDHDocumentReadException
+  {
     final PeppolSBDHDocument ret = new PeppolSBDHDocument ();
 
     // Grab the header
@@ -425,6 +563,75 @@ public class PeppolSBDHDocumentReader
     if (aSBDH == null)
       throw new PeppolSBDHDocumentReadException (EPeppolSBDHDocumentReadError.MISSING_SBDH);
 
+    // Check sender, receiver and business scope
+    _extractHeaderData (aSBDH, ret);
+
+    // Check document and metadata
+    {
+      // Extract the main business message first - cannot be null and must be an
+      // Element!
+      final Element aBusinessMessage = (Element) aStandardBusinessDocument.getAny ();
+      if (!isValidBusinessMessage (aBusinessMessage))
+        throw new PeppolSBDHDocumentReadException (EPeppolSBDHDocumentReadError.INVALID_BUSINESS_MESSAGE);
+
+      // Set the main business message to the return data. If the Standard
+      // Business Document was read internally, nobody else has a reference to
+      // the business message and it is not necessary to copy it.
+      if (bCloneBusinessMessage)
+        ret.setBusinessMessage (aBusinessMessage);
+      else
+        ret.setBusinessMessageNoClone (aBusinessMessage);
+
+      // This field is mandatory in XML
+      final DocumentIdentification aDI = aSBDH.getDocumentIdentification ();
+
+      final String sNamespaceURI = aDI.getStandard ();
+      if (!isValidStandard (sNamespaceURI, aBusinessMessage))
+        throw new PeppolSBDHDocumentReadException (EPeppolSBDHDocumentReadError.INVALID_STANDARD,
+                                                   sNamespaceURI,
+                                                   aBusinessMessage.getNamespaceURI ());
+
+      final String sUBLVersion = aDI.getTypeVersion ();
+      if (!isValidTypeVersion (sUBLVersion, aBusinessMessage))
+        throw new PeppolSBDHDocumentReadException (EPeppolSBDHDocumentReadError.INVALID_TYPE_VERSION, sUBLVersion);
+
+      final String sLocalName = aDI.getType ();
+      if (!isValidType (sLocalName, aBusinessMessage))
+        throw new PeppolSBDHDocumentReadException (EPeppolSBDHDocumentReadError.INVALID_TYPE,
+                                                   sLocalName,
+                                                   aBusinessMessage.getLocalName ());
+
+      // The unique message ID
+      final String sSBDHID = aDI.getInstanceIdentifier ();
+      if (!isValidInstanceIdentifier (sSBDHID))
+        throw new PeppolSBDHDocumentReadException (EPeppolSBDHDocumentReadError.INVALID_INSTANCE_IDENTIFIER, sSBDHID);
+
+      // Mandatory date and time (cannot be null)
+      final LocalDateTime aCreationDateAndTime = PDTXMLConverter.getLocalDateTime (aDI.getCreationDateAndTime ());
+      if (!isValidCreationDateTime (aCreationDateAndTime))
+        throw new PeppolSBDHDocumentReadException (EPeppolSBDHDocumentReadError.INVALID_CREATION_DATE_TIME,
+                                                   String.valueOf (aCreationDateAndTime));
+      ret.setDocumentIdentification (sNamespaceURI, sUBLVersion, sLocalName, sSBDHID, aCreationDateAndTime);
+    }
+
+    return ret;
+  }
+
+  /**
+   * Check all header fields that are independent of the business message and
+   * copy them to the passed document data. This is shared between the JAXB
+   * based and the streaming reading.
+   *
+   * @param aSBDH
+   *        The header to read from. May not be <code>null</code>.
+   * @param ret
+   *        The document data to be filled. May not be <code>null</code>.
+   * @throws PeppolSBDHDocumentReadException
+   *         In case the header does not conform to the PEPPOL rules.
+   */
+  private void _extractHeaderData (@Nonnull final StandardBusinessDocumentHeader aSBDH,
+                                   @Nonnull final PeppolSBDHDocument ret) throws PeppolSBDHDocumentReadException
+  {
     // Check that the header version is correct
     if (!isValidHeaderVersion (aSBDH.getHeaderVersion ()))
       throw new PeppolSBDHDocumentReadException (EPeppolSBDHDocumentReadError.INVALID_HEADER_VERSION,
@@ -518,36 +725,277 @@ public class PeppolSBDHDocumentReader
       if (!bFoundProcessIDScope)
         throw new PeppolSBDHDocumentReadException (EPeppolSBDHDocumentReadError.MISSING_PROCESS_IDENTIFIER);
     }
+  }
 
-    // Check document and metadata
+  @Nonnull
+  private SBDMarshaller _getSBDMarshaller ()
+  {
+    if (m_aSBDMarshaller == null)
+      m_aSBDMarshaller = createSBDMarshaller ();
+    return m_aSBDMarshaller;
+  }
+
+  @Nonnull
+  private XMLInputFactory _getXMLInputFactory ()
+  {
+    if (m_aXMLInputFactory == null)
+      m_aXMLInputFactory = createXMLInputFactory ();
+    return m_aXMLInputFactory;
+  }
+
+  @Nonnull
+  private DatatypeFactory _getDatatypeFactory ()
+  {
+    if (m_aDatatypeFactory == null)
+      try
+      {
+        m_aDatatypeFactory = DatatypeFactory.newInstance ();
+      }
+      catch (final DatatypeConfigurationException ex)
+      {
+        throw new IllegalStateException ("Failed to create DatatypeFactory", ex);
+      }
+    return m_aDatatypeFactory;
+  }
+
+  @Nonnull
+  private static PeppolSBDHDocumentReadException _invalidXML (@Nonnull final String sMsg)
+  {
+    return new PeppolSBDHDocumentReadException (EPeppolSBDHDocumentReadError.INVALID_SBD_XML, sMsg);
+  }
+
+  private static boolean _isSBDHElement (@Nonnull final XMLStreamReader aReader, @Nonnull final String sLocalName)
+  {
+    return CPeppolSBDH.SBDH_NS.equals (aReader.getNamespaceURI ()) && sLocalName.equals (aReader.getLocalName ());
+  }
+
+  /**
+   * Skip the element the reader is currently positioned on, including all
+   * child nodes. Afterwards the reader is positioned on the matching end
+   * element.
+   */
+  private static void _skipElement (@Nonnull final XMLStreamReader aReader) throws XMLStreamException
+  {
+    int nDepth = 1;
+    while (nDepth > 0)
     {
-      // Extract the main business message first - cannot be null and must be an
-      // Element!
-      final Element aBusinessMessage = (Element) aStandardBusinessDocument.getAny ();
-      if (!isValidBusinessMessage (aBusinessMessage))
-        throw new PeppolSBDHDocumentReadException (EPeppolSBDHDocumentReadError.INVALID_BUSINESS_MESSAGE);
+      final int nEventType = aReader.next ();
+      if (nEventType == XMLStreamConstants.START_ELEMENT)
+        nDepth++;
+      else
+        if (nEventType == XMLStreamConstants.END_ELEMENT)
+          nDepth--;
+    }
+  }
 
-      // Set the main business message to the return data
-      ret.setBusinessMessage (aBusinessMessage);
+  @Nonnull
+  private static Partner _readPartner (@Nonnull final XMLStreamReader aReader) throws XMLStreamException,
+                                                                                 PeppolSBDHDocumentReadException
+  {
+    final Partner ret = new Partner ();
+    while (aReader.nextTag () == XMLStreamConstants.START_ELEMENT)
+      if (_isSBDHElement (aReader, "Identifier"))
+      {
+        final PartnerIdentification aID = new PartnerIdentification ();
+        aID.setAuthority (aReader.getAttributeValue (null, "Authority"));
+        aID.setValue (aReader.getElementText ());
+        ret.setIdentifier (aID);
+      }
+      else
+      {
+        // e.g. "ContactInformation"
+        _skipElement (aReader);
+      }
+    if (ret.getIdentifier () == null)
+      throw _invalidXML ("Partner identifier is missing");
+    return ret;
+  }
+
+  @Nonnull
+  private DocumentIdentification _readDocumentIdentification (@Nonnull final XMLStreamReader aReader) throws XMLStreamException,
+                                                                                                      PeppolSBDHDocumentReadException
+  {
+    final DocumentIdentification ret = new DocumentIdentification ();
+    while (aReader.nextTag () == XMLStreamConstants.START_ELEMENT)
+      if (_isSBDHElement (aReader, "Standard"))
+        ret.setStandard (aReader.getElementText ());
+      else
+        if (_isSBDHElement (aReader, "TypeVersion"))
+          ret.setTypeVersion (aReader.getElementText ());
+        else
+          if (_isSBDHElement (aReader, "InstanceIdentifier"))
+            ret.setInstanceIdentifier (aReader.getElementText ());
+          else
+            if (_isSBDHElement (aReader, "Type"))
+              ret.setType (aReader.getElementText ());
+            else
+              if (_isSBDHElement (aReader, "CreationDateAndTime"))
+              {
+                // Must be a valid xs:dateTime
+                final String sCreationDateAndTime = aReader.getElementText ().trim ();
+                final XMLGregorianCalendar aCreationDateAndTime;
+                try
+                {
+                  aCreationDateAndTime = _getDatatypeFactory ().newXMLGregorianCalendar (sCreationDateAndTime);
+                }
+                catch (final IllegalArgumentException ex)
+                {
+                  throw _invalidXML ("Invalid CreationDateAndTime '" + sCreationDateAndTime + "'");
+                }
+                if (!DatatypeConstants.DATETIME.equals (aCreationDateAndTime.getXMLSchemaType ()))
+                  throw _invalidXML ("Invalid CreationDateAndTime '" + sCreationDateAndTime + "'");
+                ret.setCreationDateAndTime (aCreationDateAndTime);
+              }
+              else
+              {
+                // e.g. "MultipleType"
+                _skipElement (aReader);
+              }
+
+    if (ret.getStandard () == null ||
+        ret.getTypeVersion () == null ||
+        ret.getInstanceIdentifier () == null ||
+        ret.getType () == null ||
+        ret.getCreationDateAndTime () == null)
+      throw _invalidXML ("DocumentIdentification is incomplete");
+    return ret;
+  }
+
+  @Nonnull
+  private static BusinessScope _readBusinessScope (@Nonnull final XMLStreamReader aReader) throws XMLStreamException,
+                                                                                            PeppolSBDHDocumentReadException
+  {
+    final BusinessScope ret = new BusinessScope ();
+    while (aReader.nextTag () == XMLStreamConstants.START_ELEMENT)
+      if (_isSBDHElement (aReader, "Scope"))
+      {
+        final Scope aScope = new Scope ();
+        while (aReader.nextTag () == XMLStreamConstants.START_ELEMENT)
+          if (_isSBDHElement (aReader, "Type"))
+            aScope.setType (aReader.getElementText ());
+          else
+            if (_isSBDHElement (aReader, "InstanceIdentifier"))
+              aScope.setInstanceIdentifier (aReader.getElementText ());
+            else
+            {
+              // e.g. "Identifier" or "ScopeInformation"
+              _skipElement (aReader);
+            }
+        if (aScope.getType () == null || aScope.getInstanceIdentifier () == null)
+          throw _invalidXML ("Scope is incomplete");
+        ret.getScope ().add (aScope);
+      }
+      else
+        _skipElement (aReader);
+    return ret;
+  }
+
+  @Nonnull
+  private StandardBusinessDocumentHeader _readHeader (@Nonnull final XMLStreamReader aReader) throws XMLStreamException,
+                                                                                              PeppolSBDHDocumentReadException
+  {
+    final StandardBusinessDocumentHeader ret = new StandardBusinessDocumentHeader ();
+    while (aReader.nextTag () == XMLStreamConstants.START_ELEMENT)
+      if (_isSBDHElement (aReader, "HeaderVersion"))
+        ret.setHeaderVersion (aReader.getElementText ());
+      else
+        if (_isSBDHElement (aReader, "Sender"))
+          ret.getSender ().add (_readPartner (aReader));
+        else
+          if (_isSBDHElement (aReader, "Receiver"))
+            ret.getReceiver ().add (_readPartner (aReader));
+          else
+            if (_isSBDHElement (aReader, "DocumentIdentification"))
+              ret.setDocumentIdentification (_readDocumentIdentification (aReader));
+            else
+              if (_isSBDHElement (aReader, "BusinessScope"))
+                ret.setBusinessScope (_readBusinessScope (aReader));
+              else
+              {
+                // e.g. "Manifest"
+                _skipElement (aReader);
+              }
+
+    // Check the elements that are mandatory according to the XML Schema
+    if (ret.getHeaderVersion () == null)
+      throw _invalidXML ("HeaderVersion is missing");
+    if (ret.getSenderCount () == 0)
+      throw _invalidXML ("Sender is missing");
+    if (ret.getReceiverCount () == 0)
+      throw _invalidXML ("Receiver is missing");
+    if (ret.getDocumentIdentification () == null)
+      throw _invalidXML ("DocumentIdentification is missing");
+    return ret;
+  }
+
+  /**
+   * Read the Standard Business Document Header with StAX and stop at the start
+   * element of the business message.
+   *
+   * @param aReader
+   *        The StAX reader to use. Must be positioned at the start of the
+   *        document.
+   * @param aRootNamespaces
+   *        The map that is filled with the namespace declarations of the root
+   *        element.
+   * @return The document data without a business message. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  private PeppolSBDHDocument _readUpToBusinessMessage (@Nonnull final XMLStreamReader aReader,
+                                                       @Nonnull final Map <String, String> aRootNamespaces) throws XMLStreamException,
+                                                                                                        PeppolSBDHDocumentReadException
+  {
+    if (aReader.nextTag () != XMLStreamConstants.START_ELEMENT ||
+        !_isSBDHElement (aReader, "StandardBusinessDocument"))
+      throw _invalidXML ("Root element is not a StandardBusinessDocument");
+
+    // Remember the namespace declarations that are in scope for the business
+    // message
+    for (int i = 0; i < aReader.getNamespaceCount (); ++i)
+      aRootNamespaces.put (StringHelper.getNotNull (aReader.getNamespacePrefix (i)),
+                           StringHelper.getNotNull (aReader.getNamespaceURI (i)));
+
+    if (aReader.nextTag () != XMLStreamConstants.START_ELEMENT)
+      throw _invalidXML ("StandardBusinessDocument is empty");
+
+    // Grab the header
+    if (!_isSBDHElement (aReader, "StandardBusinessDocumentHeader"))
+      throw new PeppolSBDHDocumentReadException (EPeppolSBDHDocumentReadError.MISSING_SBDH);
+    final StandardBusinessDocumentHeader aSBDH = _readHeader (aReader);
+
+    // The business message must follow directly
+    if (aReader.nextTag () != XMLStreamConstants.START_ELEMENT)
+      throw _invalidXML ("The business message is missing");
+
+    final PeppolSBDHDocument ret = new PeppolSBDHDocument ();
+
+    // Check sender, receiver and business scope
+    _extractHeaderData (aSBDH, ret);
+
+    // Check metadata - only the name of the business message is known
+    {
+      final QName aBusinessMessageName = aReader.getName ();
+      if (!isValidBusinessMessage (aBusinessMessageName))
+        throw new PeppolSBDHDocumentReadException (EPeppolSBDHDocumentReadError.INVALID_BUSINESS_MESSAGE);
 
-      // This field is mandatory in XML
       final DocumentIdentification aDI = aSBDH.getDocumentIdentification ();
 
       final String sNamespaceURI = aDI.getStandard ();
-      if (!isValidStandard (sNamespaceURI, aBusinessMessage))
+      if (!isValidStandard (sNamespaceURI, aBusinessMessageName))
         throw new PeppolSBDHDocumentReadException (EPeppolSBDHDocumentReadError.INVALID_STANDARD,
                                                    sNamespaceURI,
-                                                   aBusinessMessage.getNamespaceURI ());
+                                                   aBusinessMessageName.getNamespaceURI ());
 
       final String sUBLVersion = aDI.getTypeVersion ();
-      if (!isValidTypeVersion (sUBLVersion, aBusinessMessage))
+      if (!isValidTypeVersion (sUBLVersion, aBusinessMessageName))
         throw new PeppolSBDHDocumentReadException (EPeppolSBDHDocumentReadError.INVALID_TYPE_VERSION, sUBLVersion);
 
       final String sLocalName = aDI.getType ();
-      if (!isValidType (sLocalName, aBusinessMessage))
+      if (!isValidType (sLocalName, aBusinessMessageName))
         throw new PeppolSBDHDocumentReadException (EPeppolSBDHDocumentReadError.INVALID_TYPE,
                                                    sLocalName,
-                                                   aBusinessMessage.getLocalName ());
+                                                   aBusinessMessageName.getLocalPart ());
 
       // The unique message ID
       final String sSBDHID = aDI.getInstanceIdentifier ();
@@ -561,7 +1009,106 @@ public class PeppolSBDHDocumentReader
                                                    String.valueOf (aCreationDateAndTime));
       ret.setDocumentIdentification (sNamespaceURI, sUBLVersion, sLocalName, sSBDHID, aCreationDateAndTime);
     }
-
     return ret;
   }
+
+  private static void _close (@Nullable final XMLStreamReader aReader)
+  {
+    if (aReader != null)
+      try
+      {
+        aReader.close ();
+      }
+      catch (final XMLStreamException ex)
+      {
+        // ignore
+      }
+  }
+
+  /**
+   * Extract the document data from the Standard Business Document represented
+   * by the passed input stream in streaming mode. Only the
+   * <code>StandardBusinessDocumentHeader</code> is read with StAX and all
+   * checks of this class are applied. The business message is not read but the
+   * returned object is positioned at its root element so that it can be
+   * consumed lazily by the caller.<br>
+   * Compared to the JAXB based reading, the streaming reading only checks for
+   * the presence of the mandatory header elements and ignores the element
+   * order. The business message checks are performed with the
+   * {@link QName} based <code>isValid*</code> methods.
+   *
+   * @param aStandardBusinessDocument
+   *        The input stream to read from. Will be closed when the returned
+   *        object is closed, or by this method if reading fails. May not be
+   *        <code>null</code>.
+   * @return The streamed document with the header data and the lazily readable
+   *         business message. Never <code>null</code>. Must be closed by the
+   *         caller.
+   * @throws PeppolSBDHDocumentReadException
+   *         In case the passed Standard Business Document does not conform to
+   *         the PEPPOL rules.
+   */
+  @Nonnull
+  public PeppolSBDHStreamedDocument extractDataStreaming (@Nonnull @WillCloseWhenClosed final InputStream aStandardBusinessDocument) throws PeppolSBDHDocumentReadException
+  {
+    ValueEnforcer.notNull (aStandardBusinessDocument, "StandardBusinessDocument");
+
+    XMLStreamReader aReader = null;
+    boolean bSuccess = false;
+    try
+    {
+      aReader = _getXMLInputFactory ().createXMLStreamReader (aStandardBusinessDocument);
+      final Map <String, String> aRootNamespaces = new LinkedHashMap <String, String> ();
+      final PeppolSBDHDocument aData = _readUpToBusinessMessage (aReader, aRootNamespaces);
+      final PeppolSBDHStreamedDocument ret = new PeppolSBDHStreamedDocument (aData,
+                                                                             aReader,
+                                                                             aRootNamespaces,
+                                                                             aStandardBusinessDocument);
+      bSuccess = true;
+      return ret;
+    }
+    catch (final XMLStreamException ex)
+    {
+      throw new PeppolSBDHDocumentReadException (EPeppolSBDHDocumentReadError.INVALID_SBD_XML, ex.getMessage ());
+    }
+    finally
+    {
+      if (!bSuccess)
+      {
+        _close (aReader);
+        StreamHelper.close (aStandardBusinessDocument);
+      }
+    }
+  }
+
+  /**
+   * Extract only the header data from the Standard Business Document
+   * represented by the passed input stream in streaming mode. Reading stops at
+   * the start of the business message so the time and memory needed are
+   * independent of the business message size. The returned object does not
+   * contain a business message.
+   *
+   * @param aStandardBusinessDocument
+   *        The input stream to read from. Will be closed by this method. May
+   *        not be <code>null</code>.
+   * @return The document data without a business message and never
+   *         <code>null</code>.
+   * @throws PeppolSBDHDocumentReadException
+   *         In case the passed Standard Business Document header does not
+   *         conform to the PEPPOL rules.
+   * @see #extractDataStreaming(InputStream)
+   */
+  @Nonnull
+  public PeppolSBDHDocument extractHeaderData (@Nonnull @WillClose final InputStream aStandardBusinessDocument) throws PeppolSBDHDocumentReadException
+  {
+    final PeppolSBDHStreamedDocument aStreamedDoc = extractDataStreaming (aStandardBusinessDocument);
+    try
+    {
+      return aStreamedDoc.getDocumentData ();
+    }
+    finally
+    {
+      StreamHelper.close (aStreamedDoc);
+    }
+  }
 }
@@ -0,0 +1,278 @@
+/**
+ * Copyright (C) 2014-2016 Philip Helger
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.peppol.sbdh.read;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.WillCloseWhenClosed;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.io.stream.StreamHelper;
+import com.helger.commons.string.StringHelper;
+import com.helger.commons.string.ToStringGenerator;
+import com.helger.commons.xml.XMLFactory;
+import com.helger.peppol.sbdh.PeppolSBDHDocument;
+
+/**
+ * The result of
+ * {@link PeppolSBDHDocumentReader#extractDataStreaming(InputStream)}. It
+ * contains the already checked header data and gives lazy access to the
+ * business message that was not yet read from the underlying stream. The
+ * business message can be consumed exactly once, either via
+ * {@link #getBusinessMessageReader()} or via {@link #readBusinessMessage()}.
+ * Objects of this class must be closed after usage.
+ *
+ * @author Philip Helger
+ */
+@NotThreadSafe
+public class PeppolSBDHStreamedDocument implements Closeable
+{
+  private final PeppolSBDHDocument m_aDocumentData;
+  private final QName m_aBusinessMessageName;
+  private final XMLStreamReader m_aReader;
+  private final Map <String, String> m_aRootNamespaces;
+  private final InputStream m_aIS;
+  private boolean m_bConsumed = false;
+
+  PeppolSBDHStreamedDocument (@Nonnull final PeppolSBDHDocument aDocumentData,
+                              @Nonnull final XMLStreamReader aReader,
+                              @Nonnull final Map <String, String> aRootNamespaces,
+                              @Nonnull @WillCloseWhenClosed final InputStream aIS)
+  {
+    ValueEnforcer.notNull (aDocumentData, "DocumentData");
+    ValueEnforcer.notNull (aReader, "Reader");
+    ValueEnforcer.isTrue (aReader.getEventType () == XMLStreamConstants.START_ELEMENT,
+                          "Reader must be positioned on a start element");
+    ValueEnforcer.notNull (aRootNamespaces, "RootNamespaces");
+    ValueEnforcer.notNull (aIS, "InputStream");
+    m_aDocumentData = aDocumentData;
+    m_aBusinessMessageName = aReader.getName ();
+    m_aReader = aReader;
+    m_aRootNamespaces = aRootNamespaces;
+    m_aIS = aIS;
+  }
+
+  /**
+   * @return The header data that was extracted and checked. The contained
+   *         business message is never set. Never <code>null</code>.
+   */
+  @Nonnull
+  public PeppolSBDHDocument getDocumentData ()
+  {
+    return m_aDocumentData;
+  }
+
+  /**
+   * @return The qualified name of the business message root element. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  public QName getBusinessMessageName ()
+  {
+    return m_aBusinessMessageName;
+  }
+
+  /**
+   * @return <code>true</code> if the business message was already consumed via
+   *         {@link #getBusinessMessageReader()} or
+   *         {@link #readBusinessMessage()}.
+   */
+  public boolean isBusinessMessageConsumed ()
+  {
+    return m_bConsumed;
+  }
+
+  private void _consume ()
+  {
+    if (m_bConsumed)
+      throw new IllegalStateException ("The business message was already consumed");
+    m_bConsumed = true;
+  }
+
+  /**
+   * Get the StAX reader to consume the business message. The reader is
+   * positioned on the start element of the business message root element and
+   * the caller should stop reading at the matching end element. Namespace
+   * declarations of the outer <code>StandardBusinessDocument</code> element
+   * are still resolved by the reader.
+   *
+   * @return The reader and never <code>null</code>. The reader is closed when
+   *         this object is closed.
+   * @throws IllegalStateException
+   *         If the business message was already consumed.
+   */
+  @Nonnull
+  public XMLStreamReader getBusinessMessageReader ()
+  {
+    _consume ();
+    return m_aReader;
+  }
+
+  @Nullable
+  private static String _getNamespaceURI (@Nullable final String sNamespaceURI)
+  {
+    // DOM uses null for "no namespace"
+    return StringHelper.hasText (sNamespaceURI) ? sNamespaceURI : null;
+  }
+
+  @Nonnull
+  private static String _getQualifiedName (@Nullable final String sPrefix, @Nonnull final String sLocalName)
+  {
+    return StringHelper.hasText (sPrefix) ? sPrefix + ':' + sLocalName : sLocalName;
+  }
+
+  private static void _declareNamespace (@Nonnull final Element aElement,
+                                         @Nullable final String sPrefix,
+                                         @Nullable final String sNamespaceURI)
+  {
+    aElement.setAttributeNS (XMLConstants.XMLNS_ATTRIBUTE_NS_URI,
+                             StringHelper.hasText (sPrefix) ? XMLConstants.XMLNS_ATTRIBUTE + ':' + sPrefix
+                                                            : XMLConstants.XMLNS_ATTRIBUTE,
+                             StringHelper.getNotNull (sNamespaceURI));
+  }
+
+  /**
+   * Read the business message into a new DOM document. Namespace declarations
+   * of the outer <code>StandardBusinessDocument</code> element that are not
+   * redeclared are copied to the business message root element, so that the
+   * resulting element is self-contained.
+   *
+   * @return The business message root element and never <code>null</code>.
+   * @throws PeppolSBDHDocumentReadException
+   *         In case the business message is not well-formed XML.
+   * @throws IllegalStateException
+   *         If the business message was already consumed.
+   */
+  @Nonnull
+  public Element readBusinessMessage () throws PeppolSBDHDocumentReadException
+  {
+    _consume ();
+
+    final Document aDoc = XMLFactory.newDocument ();
+    Node aParent = aDoc;
+    int nDepth = 0;
+    try
+    {
+      int nEventType = m_aReader.getEventType ();
+      while (true)
+      {
+        switch (nEventType)
+        {
+          case XMLStreamConstants.START_ELEMENT:
+          {
+            final Element aElement = aDoc.createElementNS (_getNamespaceURI (m_aReader.getNamespaceURI ()),
+                                                           _getQualifiedName (m_aReader.getPrefix (),
+                                                                              m_aReader.getLocalName ()));
+            for (int i = 0; i < m_aReader.getNamespaceCount (); ++i)
+              _declareNamespace (aElement, m_aReader.getNamespacePrefix (i), m_aReader.getNamespaceURI (i));
+            if (nDepth == 0)
+            {
+              // Copy the namespaces of the root element that are not
+              // redeclared by the business message itself
+              for (final Map.Entry <String, String> aEntry : m_aRootNamespaces.entrySet ())
+              {
+                final String sPrefix = aEntry.getKey ();
+                final String sAttrLocalName = StringHelper.hasText (sPrefix) ? sPrefix : XMLConstants.XMLNS_ATTRIBUTE;
+                if (!aElement.hasAttributeNS (XMLConstants.XMLNS_ATTRIBUTE_NS_URI, sAttrLocalName))
+                  _declareNamespace (aElement, sPrefix, aEntry.getValue ());
+              }
+            }
+            for (int i = 0; i < m_aReader.getAttributeCount (); ++i)
+              aElement.setAttributeNS (_getNamespaceURI (m_aReader.getAttributeNamespace (i)),
+                                       _getQualifiedName (m_aReader.getAttributePrefix (i),
+                                                          m_aReader.getAttributeLocalName (i)),
+                                       m_aReader.getAttributeValue (i));
+            aParent.appendChild (aElement);
+            aParent = aElement;
+            nDepth++;
+            break;
+          }
+          case XMLStreamConstants.END_ELEMENT:
+            aParent = aParent.getParentNode ();
+            nDepth--;
+            break;
+          case XMLStreamConstants.CHARACTERS:
+          case XMLStreamConstants.SPACE:
+          case XMLStreamConstants.ENTITY_REFERENCE:
+            aParent.appendChild (aDoc.createTextNode (m_aReader.getText ()));
+            break;
+          case XMLStreamConstants.CDATA:
+            aParent.appendChild (aDoc.createCDATASection (m_aReader.getText ()));
+            break;
+          case XMLStreamConstants.COMMENT:
+            aParent.appendChild (aDoc.createComment (m_aReader.getText ()));
+            break;
+          case XMLStreamConstants.PROCESSING_INSTRUCTION:
+            aParent.appendChild (aDoc.createProcessingInstruction (m_aReader.getPITarget (),
+                                                                   m_aReader.getPIData ()));
+            break;
+          default:
+            // ignore
+            break;
+        }
+        if (nDepth == 0)
+          break;
+        nEventType = m_aReader.next ();
+      }
+    }
+    catch (final XMLStreamException ex)
+    {
+      throw new PeppolSBDHDocumentReadException (EPeppolSBDHDocumentReadError.INVALID_SBD_XML, ex.getMessage ());
+    }
+    return aDoc.getDocumentElement ();
+  }
+
+  /**
+   * Close the underlying StAX reader and input stream. Calling this method more
+   * than once has no effect.
+   */
+  public void close ()
+  {
+    try
+    {
+      m_aReader.close ();
+    }
+    catch (final XMLStreamException ex)
+    {
+      // ignore
+    }
+    StreamHelper.close (m_aIS);
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("documentData", m_aDocumentData)
+                                       .append ("businessMessageName", m_aBusinessMessageName)
+                                       .append ("consumed", m_bConsumed)
+                                       .toString ();
+  }
+}
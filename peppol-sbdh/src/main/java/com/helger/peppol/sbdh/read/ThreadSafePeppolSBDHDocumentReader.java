@@ -0,0 +1,177 @@
+/**
+ * Copyright (C) 2014-2016 Philip Helger
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.peppol.sbdh.read;
+
+import java.io.InputStream;
+
+import javax.annotation.Nonnull;
+import javax.annotation.WillClose;
+import javax.annotation.WillCloseWhenClosed;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.unece.cefact.namespaces.sbdh.StandardBusinessDocument;
+import org.w3c.dom.Node;
+
+import com.helger.commons.annotation.OverrideOnDemand;
+import com.helger.commons.io.resource.IReadableResource;
+import com.helger.peppol.sbdh.PeppolSBDHDocument;
+
+/**
+ * A thread-safe variant of {@link PeppolSBDHDocumentReader} that can be shared
+ * between threads. Each thread lazily gets its own
+ * {@link PeppolSBDHDocumentReader} so that the contained SBD marshaller and
+ * StAX factory are created only once per thread and are never used
+ * concurrently.
+ *
+ * @author Philip Helger
+ */
+@ThreadSafe
+public class ThreadSafePeppolSBDHDocumentReader
+{
+  // PeppolSBDHDocumentReader objects are not thread-safe
+  private final ThreadLocal <PeppolSBDHDocumentReader> m_aReaders = new ThreadLocal <PeppolSBDHDocumentReader> ()
+  {
+    @Override
+    protected PeppolSBDHDocumentReader initialValue ()
+    {
+      return createReader ();
+    }
+  };
+
+  public ThreadSafePeppolSBDHDocumentReader ()
+  {}
+
+  /**
+   * Create a new reader for the current thread. Override this method to
+   * customize the checks performed while reading.
+   *
+   * @return A new {@link PeppolSBDHDocumentReader} and never <code>null</code>.
+   */
+  @Nonnull
+  @OverrideOnDemand
+  protected PeppolSBDHDocumentReader createReader ()
+  {
+    return new PeppolSBDHDocumentReader ();
+  }
+
+  /**
+   * @return The reader of the current thread. Never <code>null</code>. The
+   *         returned object must not be passed to other threads.
+   */
+  @Nonnull
+  public PeppolSBDHDocumentReader getReaderOfCurrentThread ()
+  {
+    return m_aReaders.get ();
+  }
+
+  /**
+   * @param aStandardBusinessDocument
+   *        The input stream to read from. Will be closed by this method. May
+   *        not be <code>null</code>.
+   * @return The document data and never <code>null</code>.
+   * @throws PeppolSBDHDocumentReadException
+   *         In case the passed Standard Business Document does not conform to
+   *         the PEPPOL rules.
+   * @see PeppolSBDHDocumentReader#extractData(InputStream)
+   */
+  @Nonnull
+  public PeppolSBDHDocument extractData (@Nonnull @WillClose final InputStream aStandardBusinessDocument) throws PeppolSBDHDocumentReadException
+  {
+    return getReaderOfCurrentThread ().extractData (aStandardBusinessDocument);
+  }
+
+  /**
+   * @param aStandardBusinessDocument
+   *        The resource to read from. May not be <code>null</code>.
+   * @return The document data and never <code>null</code>.
+   * @throws PeppolSBDHDocumentReadException
+   *         In case the passed Standard Business Document does not conform to
+   *         the PEPPOL rules.
+   * @see PeppolSBDHDocumentReader#extractData(IReadableResource)
+   */
+  @Nonnull
+  public PeppolSBDHDocument extractData (@Nonnull final IReadableResource aStandardBusinessDocument) throws PeppolSBDHDocumentReadException
+  {
+    return getReaderOfCurrentThread ().extractData (aStandardBusinessDocument);
+  }
+
+  /**
+   * @param aStandardBusinessDocument
+   *        The DOM node to read from. May not be <code>null</code>.
+   * @return The document data and never <code>null</code>.
+   * @throws PeppolSBDHDocumentReadException
+   *         In case the passed Standard Business Document does not conform to
+   *         the PEPPOL rules.
+   * @see PeppolSBDHDocumentReader#extractData(Node)
+   */
+  @Nonnull
+  public PeppolSBDHDocument extractData (@Nonnull final Node aStandardBusinessDocument) throws PeppolSBDHDocumentReadException
+  {
+    return getReaderOfCurrentThread ().extractData (aStandardBusinessDocument);
+  }
+
+  /**
+   * @param aStandardBusinessDocument
+   *        The domain object to read from. May not be <code>null</code>.
+   * @return The document data and never <code>null</code>.
+   * @throws PeppolSBDHDocumentReadException
+   *         In case the passed Standard Business Document does not conform to
+   *         the PEPPOL rules.
+   * @see PeppolSBDHDocumentReader#extractData(StandardBusinessDocument)
+   */
+  @Nonnull
+  public PeppolSBDHDocument extractData (@Nonnull final StandardBusinessDocument aStandardBusinessDocument) throws PeppolSBDHDocumentReadException
+  {
+    return getReaderOfCurrentThread ().extractData (aStandardBusinessDocument);
+  }
+
+  /**
+   * @param aStandardBusinessDocument
+   *        The input stream to read from. Will be closed when the returned
+   *        object is closed, or by this method if reading fails. May not be
+   *        <code>null</code>.
+   * @return The streamed document with the header data and the lazily readable
+   *         business message. Never <code>null</code>. Must be closed by the
+   *         caller.
+   * @throws PeppolSBDHDocumentReadException
+   *         In case the passed Standard Business Document does not conform to
+   *         the PEPPOL rules.
+   * @see PeppolSBDHDocumentReader#extractDataStreaming(InputStream)
+   */
+  @Nonnull
+  public PeppolSBDHStreamedDocument extractDataStreaming (@Nonnull @WillCloseWhenClosed final InputStream aStandardBusinessDocument) throws PeppolSBDHDocumentReadException
+  {
+    return getReaderOfCurrentThread ().extractDataStreaming (aStandardBusinessDocument);
+  }
+
+  /**
+   * @param aStandardBusinessDocument
+   *        The input stream to read from. Will be closed by this method. May
+   *        not be <code>null</code>.
+   * @return The document data without a business message and never
+   *         <code>null</code>.
+   * @throws PeppolSBDHDocumentReadException
+   *         In case the passed Standard Business Document header does not
+   *         conform to the PEPPOL rules.
+   * @see PeppolSBDHDocumentReader#extractHeaderData(InputStream)
+   */
+  @Nonnull
+  public PeppolSBDHDocument extractHeaderData (@Nonnull @WillClose final InputStream aStandardBusinessDocument) throws PeppolSBDHDocumentReadException
+  {
+    return getReaderOfCurrentThread ().extractHeaderData (aStandardBusinessDocument);
+  }
+}
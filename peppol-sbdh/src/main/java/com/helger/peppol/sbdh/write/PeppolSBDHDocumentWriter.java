@@ -16,8 +16,23 @@
  */
 package com.helger.peppol.sbdh.write;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 import javax.annotation.Nonnull;
+import javax.annotation.WillClose;
+import javax.annotation.WillNotClose;
 import javax.annotation.concurrent.NotThreadSafe;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 
 import org.unece.cefact.namespaces.sbdh.BusinessScope;
 import org.unece.cefact.namespaces.sbdh.DocumentIdentification;
@@ -29,13 +44,30 @@ import org.unece.cefact.namespaces.sbdh.StandardBusinessDocumentHeader;
 
 import com.helger.commons.ValueEnforcer;
 import com.helger.commons.annotation.OverrideOnDemand;
+import com.helger.commons.charset.CCharset;
+import com.helger.commons.io.stream.StreamHelper;
 import com.helger.datetime.util.PDTXMLConverter;
 import com.helger.peppol.sbdh.CPeppolSBDH;
 import com.helger.peppol.sbdh.PeppolSBDHDocument;
 
+/**
+ * Main class to create standard business documents from PEPPOL document data.
+ * To share a writer between threads use
+ * {@link ThreadSafePeppolSBDHDocumentWriter}.
+ *
+ * @author Philip Helger
+ */
 @NotThreadSafe
 public class PeppolSBDHDocumentWriter
 {
+  /** The namespace prefix used for the SBDH elements in streaming mode */
+  private static final String SBDH_PREFIX = "sh";
+  /** The buffer size used for copying the payload in streaming mode */
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final Pattern PATTERN_ENCODING = Pattern.compile ("encoding\\s*=\\s*[\"']([^\"']+)[\"']");
+
+  private XMLOutputFactory m_aXMLOutputFactory;
+
   public PeppolSBDHDocumentWriter ()
   {}
 
@@ -51,9 +83,23 @@ public class PeppolSBDHDocumentWriter
     return CPeppolSBDH.HEADER_VERSION;
   }
 
+  /**
+   * Create a new StAX output factory used for writing SBD documents in
+   * streaming mode. The created factory is reused for all streaming writes of
+   * this writer. Override this method to customize writing.
+   *
+   * @return A new {@link XMLOutputFactory} and never <code>null</code>.
+   */
+  @Nonnull
+  @OverrideOnDemand
+  protected XMLOutputFactory createXMLOutputFactory ()
+  {
+    return XMLOutputFactory.newInstance ();
+  }
+
   /**
    * Create a new {@link StandardBusinessDocument} from the specified document
-   * data.
+   * data. The business message of the passed document data is copied.
    *
    * @param aData
    *        The document data to be used. May not be <code>null</code> and
@@ -61,9 +107,43 @@ public class PeppolSBDHDocumentWriter
    * @return Never <code>null</code>.
    * @throws IllegalArgumentException
    *         if not all document data fields are set!
+   * @see #createStandardBusinessDocumentNoClone(PeppolSBDHDocument)
    */
   @Nonnull
   public StandardBusinessDocument createStandardBusinessDocument (@Nonnull final PeppolSBDHDocument aData)
+  {
+    final StandardBusinessDocument aSBD = _createStandardBusinessDocument (aData);
+    // getBusinessMessage already returns a cloned node!
+    aSBD.setAny (aData.getBusinessMessage ());
+    return aSBD;
+  }
+
+  /**
+   * Create a new {@link StandardBusinessDocument} from the specified document
+   * data. The business message of the passed document data is not copied but
+   * used as is, so the returned object shares it with the passed document
+   * data. Use this method if the business message is only serialized
+   * afterwards (e.g. when a read document is routed and written again) and
+   * neither the returned object nor the document data is modified.
+   *
+   * @param aData
+   *        The document data to be used. May not be <code>null</code> and
+   *        {@link PeppolSBDHDocument#areAllFieldsSet()} must return true!
+   * @return Never <code>null</code>.
+   * @throws IllegalArgumentException
+   *         if not all document data fields are set!
+   * @see #createStandardBusinessDocument(PeppolSBDHDocument)
+   */
+  @Nonnull
+  public StandardBusinessDocument createStandardBusinessDocumentNoClone (@Nonnull final PeppolSBDHDocument aData)
+  {
+    final StandardBusinessDocument aSBD = _createStandardBusinessDocument (aData);
+    aSBD.setAny (aData.getBusinessMessageNoClone ());
+    return aSBD;
+  }
+
+  @Nonnull
+  private StandardBusinessDocument _createStandardBusinessDocument (@Nonnull final PeppolSBDHDocument aData)
   {
     ValueEnforcer.notNull (aData, "Data");
     if (!aData.areAllFieldsSet ())
@@ -123,8 +203,271 @@ public class PeppolSBDHDocumentWriter
       }
       aSBD.setStandardBusinessDocumentHeader (aSBDH);
     }
-    // getBusinessMessage already returns a cloned node!
-    aSBD.setAny (aData.getBusinessMessage ());
     return aSBD;
   }
+
+  @Nonnull
+  private XMLOutputFactory _getXMLOutputFactory ()
+  {
+    if (m_aXMLOutputFactory == null)
+      m_aXMLOutputFactory = createXMLOutputFactory ();
+    return m_aXMLOutputFactory;
+  }
+
+  private static void _writeStartElement (@Nonnull final XMLStreamWriter aWriter,
+                                          @Nonnull final String sLocalName) throws XMLStreamException
+  {
+    aWriter.writeStartElement (SBDH_PREFIX, sLocalName, CPeppolSBDH.SBDH_NS);
+  }
+
+  private static void _writeElement (@Nonnull final XMLStreamWriter aWriter,
+                                     @Nonnull final String sLocalName,
+                                     @Nonnull final String sValue) throws XMLStreamException
+  {
+    _writeStartElement (aWriter, sLocalName);
+    aWriter.writeCharacters (sValue);
+    aWriter.writeEndElement ();
+  }
+
+  private static void _writePartner (@Nonnull final XMLStreamWriter aWriter,
+                                     @Nonnull final String sLocalName,
+                                     @Nonnull final String sScheme,
+                                     @Nonnull final String sValue) throws XMLStreamException
+  {
+    _writeStartElement (aWriter, sLocalName);
+    _writeStartElement (aWriter, "Identifier");
+    aWriter.writeAttribute ("Authority", sScheme);
+    aWriter.writeCharacters (sValue);
+    aWriter.writeEndElement ();
+    aWriter.writeEndElement ();
+  }
+
+  private static void _writeScope (@Nonnull final XMLStreamWriter aWriter,
+                                   @Nonnull final String sType,
+                                   @Nonnull final String sInstanceIdentifier) throws XMLStreamException
+  {
+    _writeStartElement (aWriter, "Scope");
+    _writeElement (aWriter, "Type", sType);
+    // The scheme is currently not part of the specs!
+    _writeElement (aWriter, "InstanceIdentifier", sInstanceIdentifier);
+    aWriter.writeEndElement ();
+  }
+
+  private void _writeHeader (@Nonnull final XMLStreamWriter aWriter,
+                             @Nonnull final PeppolSBDHDocument aData) throws XMLStreamException
+  {
+    _writeStartElement (aWriter, "StandardBusinessDocumentHeader");
+    _writeElement (aWriter, "HeaderVersion", getHeaderVersion ());
+    _writePartner (aWriter, "Sender", aData.getSenderScheme (), aData.getSenderValue ());
+    _writePartner (aWriter, "Receiver", aData.getReceiverScheme (), aData.getReceiverValue ());
+
+    _writeStartElement (aWriter, "DocumentIdentification");
+    _writeElement (aWriter, "Standard", aData.getStandard ());
+    _writeElement (aWriter, "TypeVersion", aData.getTypeVersion ());
+    _writeElement (aWriter, "InstanceIdentifier", aData.getInstanceIdentifier ());
+    _writeElement (aWriter, "Type", aData.getType ());
+    _writeElement (aWriter,
+                   "CreationDateAndTime",
+                   PDTXMLConverter.getXMLCalendar (aData.getCreationDateAndTime ()).toXMLFormat ());
+    aWriter.writeEndElement ();
+
+    _writeStartElement (aWriter, "BusinessScope");
+    _writeScope (aWriter, CPeppolSBDH.SCOPE_DOCUMENT_TYPE_ID, aData.getDocumentTypeValue ());
+    _writeScope (aWriter, CPeppolSBDH.SCOPE_PROCESS_ID, aData.getProcessValue ());
+    aWriter.writeEndElement ();
+
+    aWriter.writeEndElement ();
+  }
+
+  private static boolean _isXMLDeclaration (@Nonnull final byte [] aBuffer, final int nStart, final int nLength)
+  {
+    // "<?xml" followed by a whitespace - "<?xml-stylesheet" is a PI
+    if (nLength - nStart < 6)
+      return false;
+    if (aBuffer[nStart] != '<' ||
+        aBuffer[nStart + 1] != '?' ||
+        aBuffer[nStart + 2] != 'x' ||
+        aBuffer[nStart + 3] != 'm' ||
+        aBuffer[nStart + 4] != 'l')
+      return false;
+    final byte b = aBuffer[nStart + 5];
+    return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+  }
+
+  /**
+   * Get the index of the first byte of the payload in the passed buffer,
+   * skipping an optional UTF-8 byte order mark and an optional XML
+   * declaration.
+   */
+  private static int _getPayloadStart (@Nonnull final byte [] aBuffer, final int nLength)
+  {
+    int nStart = 0;
+    if (nLength >= 3 && (aBuffer[0] & 0xff) == 0xef && (aBuffer[1] & 0xff) == 0xbb && (aBuffer[2] & 0xff) == 0xbf)
+    {
+      // UTF-8 byte order mark
+      nStart = 3;
+    }
+    else
+      if (nLength >= 2 &&
+          (((aBuffer[0] & 0xff) == 0xfe && (aBuffer[1] & 0xff) == 0xff) ||
+           ((aBuffer[0] & 0xff) == 0xff && (aBuffer[1] & 0xff) == 0xfe)))
+        throw new IllegalArgumentException ("UTF-16 encoded payloads are not supported");
+
+    if (_isXMLDeclaration (aBuffer, nStart, nLength))
+    {
+      int nEnd = -1;
+      for (int i = nStart + 6; i < nLength - 1; ++i)
+        if (aBuffer[i] == '?' && aBuffer[i + 1] == '>')
+        {
+          nEnd = i;
+          break;
+        }
+      if (nEnd < 0)
+        throw new IllegalArgumentException ("The XML declaration of the payload is not terminated");
+
+      // The payload bytes are copied as is, so they must be UTF-8
+      final String sDeclaration = new String (aBuffer, nStart, nEnd - nStart, CCharset.CHARSET_ISO_8859_1_OBJ);
+      final Matcher aMatcher = PATTERN_ENCODING.matcher (sDeclaration);
+      if (aMatcher.find ())
+      {
+        final String sEncoding = aMatcher.group (1);
+        if (!sEncoding.equalsIgnoreCase (CCharset.CHARSET_UTF_8) && !sEncoding.equalsIgnoreCase ("US-ASCII"))
+          throw new IllegalArgumentException ("The payload must be UTF-8 encoded but is '" + sEncoding + "'");
+      }
+      nStart = nEnd + 2;
+    }
+    return nStart;
+  }
+
+  private static void _copyPayload (@Nonnull @WillNotClose final InputStream aPayload,
+                                    @Nonnull @WillNotClose final OutputStream aOS) throws IOException
+  {
+    final byte [] aBuffer = new byte [BUFFER_SIZE];
+
+    // Read the first block to strip the XML declaration
+    int nLength = 0;
+    int nRead;
+    while (nLength < aBuffer.length && (nRead = aPayload.read (aBuffer, nLength, aBuffer.length - nLength)) > 0)
+      nLength += nRead;
+    final int nStart = _getPayloadStart (aBuffer, nLength);
+    if (nStart >= nLength)
+      throw new IllegalArgumentException ("The payload is empty");
+    aOS.write (aBuffer, nStart, nLength - nStart);
+
+    // Copy the rest as is
+    while ((nRead = aPayload.read (aBuffer)) > 0)
+      aOS.write (aBuffer, 0, nRead);
+  }
+
+  /**
+   * Write a complete Standard Business Document in streaming mode. The
+   * <code>StandardBusinessDocumentHeader</code> is created with StAX from the
+   * passed document data and the bytes of the payload are copied to the
+   * output stream as they are, only stripping an optional byte order mark and
+   * the XML declaration. This way the payload is never parsed and the required
+   * memory is independent of the payload size.<br>
+   * The payload must be a single UTF-8 encoded XML element without a DOCTYPE.
+   * Since the payload is not parsed, it is not checked against the document
+   * identification of the passed data.
+   *
+   * @param aData
+   *        The document data to be used. May not be <code>null</code> and
+   *        {@link PeppolSBDHDocument#areAllHeaderFieldsSet()} must return
+   *        true! A contained business message is ignored.
+   * @param aPayload
+   *        The payload to be wrapped. Will be closed by this method. May not be
+   *        <code>null</code>.
+   * @param aOS
+   *        The output stream to write the Standard Business Document to. Will
+   *        not be closed by this method. May not be <code>null</code>.
+   * @throws IllegalArgumentException
+   *         if not all header data fields are set or if the payload is empty or
+   *         not UTF-8 encoded
+   * @throws IOException
+   *         In case reading or writing fails
+   */
+  public void writeStreaming (@Nonnull final PeppolSBDHDocument aData,
+                              @Nonnull @WillClose final InputStream aPayload,
+                              @Nonnull @WillNotClose final OutputStream aOS) throws IOException
+  {
+    try
+    {
+      ValueEnforcer.notNull (aData, "Data");
+      ValueEnforcer.notNull (aPayload, "Payload");
+      ValueEnforcer.notNull (aOS, "OutputStream");
+      if (!aData.areAllHeaderFieldsSet ())
+        throw new IllegalArgumentException ("Not all header data fields are set!");
+
+      final XMLStreamWriter aWriter = _getXMLOutputFactory ().createXMLStreamWriter (aOS, CCharset.CHARSET_UTF_8);
+      aWriter.writeStartDocument (CCharset.CHARSET_UTF_8, "1.0");
+      _writeStartElement (aWriter, "StandardBusinessDocument");
+      aWriter.writeNamespace (SBDH_PREFIX, CPeppolSBDH.SBDH_NS);
+      _writeHeader (aWriter, aData);
+      aWriter.flush ();
+
+      // The business message is not touched by the StAX writer
+      _copyPayload (aPayload, aOS);
+
+      aWriter.writeEndElement ();
+      aWriter.writeEndDocument ();
+      aWriter.flush ();
+      aWriter.close ();
+    }
+    catch (final XMLStreamException ex)
+    {
+      throw new IOException ("Failed to write Standard Business Document", ex);
+    }
+    finally
+    {
+      StreamHelper.close (aPayload);
+    }
+  }
+
+  /**
+   * Write a complete Standard Business Document in streaming mode with the
+   * payload read from the passed file.
+   *
+   * @param aData
+   *        The document data to be used. May not be <code>null</code>.
+   * @param aPayload
+   *        The file containing the payload to be wrapped. May not be
+   *        <code>null</code>.
+   * @param aOS
+   *        The output stream to write the Standard Business Document to. Will
+   *        not be closed by this method. May not be <code>null</code>.
+   * @throws IOException
+   *         In case reading or writing fails
+   * @see #writeStreaming(PeppolSBDHDocument, InputStream, OutputStream)
+   */
+  public void writeStreaming (@Nonnull final PeppolSBDHDocument aData,
+                              @Nonnull final File aPayload,
+                              @Nonnull @WillNotClose final OutputStream aOS) throws IOException
+  {
+    ValueEnforcer.notNull (aPayload, "Payload");
+    writeStreaming (aData, new FileInputStream (aPayload), aOS);
+  }
+
+  /**
+   * Write a complete Standard Business Document in streaming mode with the
+   * payload read from the passed channel.
+   *
+   * @param aData
+   *        The document data to be used. May not be <code>null</code>.
+   * @param aPayload
+   *        The channel to read the payload from. Will be closed by this
+   *        method. May not be <code>null</code>.
+   * @param aOS
+   *        The output stream to write the Standard Business Document to. Will
+   *        not be closed by this method. May not be <code>null</code>.
+   * @throws IOException
+   *         In case reading or writing fails
+   * @see #writeStreaming(PeppolSBDHDocument, InputStream, OutputStream)
+   */
+  public void writeStreaming (@Nonnull final PeppolSBDHDocument aData,
+                              @Nonnull @WillClose final ReadableByteChannel aPayload,
+                              @Nonnull @WillNotClose final OutputStream aOS) throws IOException
+  {
+    ValueEnforcer.notNull (aPayload, "Payload");
+    writeStreaming (aData, Channels.newInputStream (aPayload), aOS);
+  }
 }
@@ -0,0 +1,170 @@
+/**
+ * Copyright (C) 2014-2016 Philip Helger
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.peppol.sbdh.write;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.ReadableByteChannel;
+
+import javax.annotation.Nonnull;
+import javax.annotation.WillClose;
+import javax.annotation.WillNotClose;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.unece.cefact.namespaces.sbdh.StandardBusinessDocument;
+
+import com.helger.commons.annotation.OverrideOnDemand;
+import com.helger.peppol.sbdh.PeppolSBDHDocument;
+
+/**
+ * A thread-safe variant of {@link PeppolSBDHDocumentWriter} that can be shared
+ * between threads. Each thread lazily gets its own
+ * {@link PeppolSBDHDocumentWriter} so that the contained StAX factory is
+ * created only once per thread and is never used concurrently.
+ *
+ * @author Philip Helger
+ */
+@ThreadSafe
+public class ThreadSafePeppolSBDHDocumentWriter
+{
+  // PeppolSBDHDocumentWriter objects are not thread-safe
+  private final ThreadLocal <PeppolSBDHDocumentWriter> m_aWriters = new ThreadLocal <PeppolSBDHDocumentWriter> ()
+  {
+    @Override
+    protected PeppolSBDHDocumentWriter initialValue ()
+    {
+      return createWriter ();
+    }
+  };
+
+  public ThreadSafePeppolSBDHDocumentWriter ()
+  {}
+
+  /**
+   * Create a new writer for the current thread. Override this method to
+   * customize the created documents.
+   *
+   * @return A new {@link PeppolSBDHDocumentWriter} and never <code>null</code>.
+   */
+  @Nonnull
+  @OverrideOnDemand
+  protected PeppolSBDHDocumentWriter createWriter ()
+  {
+    return new PeppolSBDHDocumentWriter ();
+  }
+
+  /**
+   * @return The writer of the current thread. Never <code>null</code>. The
+   *         returned object must not be passed to other threads.
+   */
+  @Nonnull
+  public PeppolSBDHDocumentWriter getWriterOfCurrentThread ()
+  {
+    return m_aWriters.get ();
+  }
+
+  /**
+   * @param aData
+   *        The document data to be used. May not be <code>null</code> and
+   *        {@link PeppolSBDHDocument#areAllFieldsSet()} must return true!
+   * @return Never <code>null</code>.
+   * @see PeppolSBDHDocumentWriter#createStandardBusinessDocument(PeppolSBDHDocument)
+   */
+  @Nonnull
+  public StandardBusinessDocument createStandardBusinessDocument (@Nonnull final PeppolSBDHDocument aData)
+  {
+    return getWriterOfCurrentThread ().createStandardBusinessDocument (aData);
+  }
+
+  /**
+   * @param aData
+   *        The document data to be used. May not be <code>null</code> and
+   *        {@link PeppolSBDHDocument#areAllFieldsSet()} must return true!
+   * @return Never <code>null</code>.
+   * @see PeppolSBDHDocumentWriter#createStandardBusinessDocumentNoClone(PeppolSBDHDocument)
+   */
+  @Nonnull
+  public StandardBusinessDocument createStandardBusinessDocumentNoClone (@Nonnull final PeppolSBDHDocument aData)
+  {
+    return getWriterOfCurrentThread ().createStandardBusinessDocumentNoClone (aData);
+  }
+
+  /**
+   * @param aData
+   *        The document data to be used. May not be <code>null</code>.
+   * @param aPayload
+   *        The payload to be wrapped. Will be closed by this method. May not be
+   *        <code>null</code>.
+   * @param aOS
+   *        The output stream to write the Standard Business Document to. Will
+   *        not be closed by this method. May not be <code>null</code>.
+   * @throws IOException
+   *         In case reading or writing fails
+   * @see PeppolSBDHDocumentWriter#writeStreaming(PeppolSBDHDocument,
+   *      InputStream, OutputStream)
+   */
+  public void writeStreaming (@Nonnull final PeppolSBDHDocument aData,
+                              @Nonnull @WillClose final InputStream aPayload,
+                              @Nonnull @WillNotClose final OutputStream aOS) throws IOException
+  {
+    getWriterOfCurrentThread ().writeStreaming (aData, aPayload, aOS);
+  }
+
+  /**
+   * @param aData
+   *        The document data to be used. May not be <code>null</code>.
+   * @param aPayload
+   *        The file containing the payload to be wrapped. May not be
+   *        <code>null</code>.
+   * @param aOS
+   *        The output stream to write the Standard Business Document to. Will
+   *        not be closed by this method. May not be <code>null</code>.
+   * @throws IOException
+   *         In case reading or writing fails
+   * @see PeppolSBDHDocumentWriter#writeStreaming(PeppolSBDHDocument, File,
+   *      OutputStream)
+   */
+  public void writeStreaming (@Nonnull final PeppolSBDHDocument aData,
+                              @Nonnull final File aPayload,
+                              @Nonnull @WillNotClose final OutputStream aOS) throws IOException
+  {
+    getWriterOfCurrentThread ().writeStreaming (aData, aPayload, aOS);
+  }
+
+  /**
+   * @param aData
+   *        The document data to be used. May not be <code>null</code>.
+   * @param aPayload
+   *        The channel to read the payload from. Will be closed by this
+   *        method. May not be <code>null</code>.
+   * @param aOS
+   *        The output stream to write the Standard Business Document to. Will
+   *        not be closed by this method. May not be <code>null</code>.
+   * @throws IOException
+   *         In case reading or writing fails
+   * @see PeppolSBDHDocumentWriter#writeStreaming(PeppolSBDHDocument,
+   *      ReadableByteChannel, OutputStream)
+   */
+  public void writeStreaming (@Nonnull final PeppolSBDHDocument aData,
+                              @Nonnull @WillClose final ReadableByteChannel aPayload,
+                              @Nonnull @WillNotClose final OutputStream aOS) throws IOException
+  {
+    getWriterOfCurrentThread ().writeStreaming (aData, aPayload, aOS);
+  }
+}
@@ -18,11 +18,17 @@ package com.helger.peppol.sbdh;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
+import org.w3c.dom.Element;
+import org.xml.sax.SAXException;
 
 import com.helger.commons.mock.CommonsTestHelper;
+import com.helger.commons.xml.serialize.read.DOMReader;
 import com.helger.peppol.identifier.CIdentifier;
 
 /**
@@ -106,4 +112,27 @@ public final class PeppolSBDHDocumentTest
                                                                                           .setDocumentTypeWithDefaultScheme ("doctype")
                                                                                           .setProcessWithDefaultScheme ("proctype"));
   }
+
+  @Test
+  public void testBusinessMessage () throws SAXException
+  {
+    final Element aElement = DOMReader.readXMLDOM ("<root xmlns='urn:foobar'><child>a</child></root>")
+                                      .getDocumentElement ();
+    final PeppolSBDHDocument dd = new PeppolSBDHDocument ();
+    assertNull (dd.getBusinessMessageNoClone ());
+
+    // Cloned
+    dd.setBusinessMessage (aElement);
+    assertTrue (dd.hasBusinessMessage ());
+    assertNotSame (aElement, dd.getBusinessMessageNoClone ());
+    assertNotSame (dd.getBusinessMessageNoClone (), dd.getBusinessMessage ());
+    assertEquals ("root", dd.getBusinessMessage ().getLocalName ());
+
+    // Not cloned
+    dd.setBusinessMessageNoClone (aElement);
+    assertTrue (dd.hasBusinessMessage ());
+    assertSame (aElement, dd.getBusinessMessageNoClone ());
+    assertNotSame (aElement, dd.getBusinessMessage ());
+    assertEquals ("urn:foobar", dd.getBusinessMessage ().getNamespaceURI ());
+  }
 }
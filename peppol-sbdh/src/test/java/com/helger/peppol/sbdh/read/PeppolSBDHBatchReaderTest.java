@@ -0,0 +1,339 @@
+/**
+ * Copyright (C) 2014-2016 Philip Helger
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.peppol.sbdh.read;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.helger.commons.io.resource.ClassPathResource;
+import com.helger.commons.io.stream.StreamHelper;
+import com.helger.peppol.sbdh.PeppolSBDHDocument;
+import com.helger.peppol.testfiles.sbdh.PeppolSBDHTestFiles;
+
+/**
+ * Test class for class {@link PeppolSBDHBatchReader}.
+ *
+ * @author Philip Helger
+ */
+public final class PeppolSBDHBatchReaderTest
+{
+  /**
+   * Remembers the name and the error code (or <code>null</code> for valid
+   * documents) of all documents in the order they were passed.
+   */
+  private static final class RecordingSink implements IPeppolSBDHBatchSink
+  {
+    private final List <String> m_aNames = new ArrayList <String> ();
+    private final List <EPeppolSBDHDocumentReadError> m_aErrors = new ArrayList <EPeppolSBDHDocumentReadError> ();
+    private final List <String> m_aIOErrorNames = new ArrayList <String> ();
+
+    public void onHeaderData (@Nonnull final String sName, @Nonnull final PeppolSBDHDocument aHeaderData)
+    {
+      assertTrue (aHeaderData.areAllHeaderFieldsSet ());
+      m_aNames.add (sName);
+      m_aErrors.add (null);
+    }
+
+    public void onReadError (@Nonnull final String sName, @Nonnull final PeppolSBDHDocumentReadException aException)
+    {
+      m_aNames.add (sName);
+      m_aErrors.add (aException.getErrorCode ());
+    }
+
+    public void onIOError (@Nonnull final String sName, @Nonnull final IOException aException)
+    {
+      m_aNames.add (sName);
+      m_aErrors.add (null);
+      m_aIOErrorNames.add (sName);
+    }
+  }
+
+  private final List <ClassPathResource> m_aResources = new ArrayList <ClassPathResource> ();
+  private final List <EPeppolSBDHDocumentReadError> m_aExpectedErrors = new ArrayList <EPeppolSBDHDocumentReadError> ();
+  private ExecutorService m_aES;
+
+  @Before
+  public void before ()
+  {
+    m_aResources.addAll (PeppolSBDHTestFiles.getAllGoodCases ());
+    m_aResources.addAll (PeppolSBDHTestFiles.getAllBadCases ());
+
+    // Read sequentially to get the expected results
+    final PeppolSBDHDocumentReader aReader = new PeppolSBDHDocumentReader ();
+    for (final ClassPathResource aRes : m_aResources)
+      try
+      {
+        aReader.extractHeaderData (aRes.getInputStream ());
+        m_aExpectedErrors.add (null);
+      }
+      catch (final PeppolSBDHDocumentReadException ex)
+      {
+        m_aExpectedErrors.add (ex.getErrorCode ());
+      }
+    m_aES = Executors.newFixedThreadPool (3);
+  }
+
+  @After
+  public void after ()
+  {
+    m_aES.shutdown ();
+  }
+
+  @Nonnull
+  private static String _getName (final int nIndex)
+  {
+    // Keep the alphabetical order of the directory
+    return "doc" + (100 + nIndex) + ".xml";
+  }
+
+  private void _checkResults (@Nonnull final PeppolSBDHBatchStatistics aStats,
+                              @Nonnull final RecordingSink aSink,
+                              @Nullable final String sNamePrefix)
+  {
+    assertEquals (m_aResources.size (), aStats.getTotalCount ());
+    assertEquals (0, aStats.getIOErrorCount ());
+    assertTrue (aSink.m_aIOErrorNames.isEmpty ());
+    assertEquals (PeppolSBDHTestFiles.getAllGoodCases ().size (), aStats.getValidCount ());
+    assertEquals (m_aResources.size (), aSink.m_aNames.size ());
+    for (int i = 0; i < m_aResources.size (); ++i)
+    {
+      if (sNamePrefix != null)
+        assertEquals (sNamePrefix + _getName (i), aSink.m_aNames.get (i));
+      assertEquals (aSink.m_aNames.get (i), m_aExpectedErrors.get (i), aSink.m_aErrors.get (i));
+    }
+    for (final EPeppolSBDHDocumentReadError eError : EPeppolSBDHDocumentReadError.values ())
+    {
+      int nExpected = 0;
+      for (final EPeppolSBDHDocumentReadError eExpected : m_aExpectedErrors)
+        if (eExpected == eError)
+          nExpected++;
+      assertEquals (nExpected, aStats.getErrorCount (eError));
+    }
+    assertTrue (aStats.getDocumentsPerSecond () > 0);
+  }
+
+  @Nonnull
+  private byte [] _createZip () throws IOException
+  {
+    final ByteArrayOutputStream aBAOS = new ByteArrayOutputStream ();
+    final ZipOutputStream aZOS = new ZipOutputStream (aBAOS);
+    aZOS.putNextEntry (new ZipEntry ("sbdh/"));
+    aZOS.closeEntry ();
+    for (int i = 0; i < m_aResources.size (); ++i)
+    {
+      aZOS.putNextEntry (new ZipEntry ("sbdh/" + _getName (i)));
+      aZOS.write (StreamHelper.getAllBytes (m_aResources.get (i).getInputStream ()));
+      aZOS.closeEntry ();
+    }
+    aZOS.close ();
+    return aBAOS.toByteArray ();
+  }
+
+  @Test
+  public void testReadResources () throws Exception
+  {
+    final RecordingSink aSink = new RecordingSink ();
+    final PeppolSBDHBatchStatistics aStats = new PeppolSBDHBatchReader (m_aES, 2).readResources (m_aResources.iterator (),
+                                                                                                 aSink);
+    assertNotNull (aStats.toString ());
+    _checkResults (aStats, aSink, null);
+    for (int i = 0; i < m_aResources.size (); ++i)
+      assertEquals (m_aResources.get (i).getPath (), aSink.m_aNames.get (i));
+  }
+
+  @Test
+  public void testReadZipStream () throws Exception
+  {
+    final RecordingSink aSink = new RecordingSink ();
+    final ZipInputStream aZIS = new ZipInputStream (new ByteArrayInputStream (_createZip ()));
+    try
+    {
+      _checkResults (new PeppolSBDHBatchReader (m_aES, 4).readZipStream (aZIS, aSink), aSink, "sbdh/");
+    }
+    finally
+    {
+      aZIS.close ();
+    }
+  }
+
+  @Test
+  public void testReadZipStreamInCallingThread () throws Exception
+  {
+    // The executor service rejects all tasks
+    final ExecutorService aES = Executors.newSingleThreadExecutor ();
+    aES.shutdown ();
+
+    final RecordingSink aSink = new RecordingSink ();
+    final ZipInputStream aZIS = new ZipInputStream (new ByteArrayInputStream (_createZip ()));
+    try
+    {
+      _checkResults (new PeppolSBDHBatchReader (aES, 1).readZipStream (aZIS, aSink), aSink, "sbdh/");
+    }
+    finally
+    {
+      aZIS.close ();
+    }
+  }
+
+  @Test
+  public void testReadZipFileAndDirectory () throws Exception
+  {
+    final File aTempDir = File.createTempFile ("sbdh-batch", "");
+    assertTrue (aTempDir.delete ());
+    assertTrue (aTempDir.mkdir ());
+    final List <File> aCreatedFiles = new ArrayList <File> ();
+    try
+    {
+      // ZIP file
+      final File aZipFile = new File (aTempDir, "all.zip");
+      aCreatedFiles.add (aZipFile);
+      OutputStream aOS = new FileOutputStream (aZipFile);
+      aOS.write (_createZip ());
+      aOS.close ();
+
+      RecordingSink aSink = new RecordingSink ();
+      final ZipFile aZF = new ZipFile (aZipFile);
+      try
+      {
+        _checkResults (new PeppolSBDHBatchReader (m_aES, 1).readZipFile (aZF, aSink), aSink, "sbdh/");
+      }
+      finally
+      {
+        aZF.close ();
+      }
+
+      // Directory with an empty and a filled sub directory
+      final File aDir = new File (aTempDir, "dir");
+      final File aEmptyDir = new File (aDir, "a");
+      final File aSubDir = new File (aDir, "b");
+      assertTrue (aEmptyDir.mkdirs ());
+      assertTrue (aSubDir.mkdirs ());
+      aCreatedFiles.add (aDir);
+      aCreatedFiles.add (aEmptyDir);
+      aCreatedFiles.add (aSubDir);
+      for (int i = 0; i < m_aResources.size (); ++i)
+      {
+        final File aFile = new File (aSubDir, _getName (i));
+        aCreatedFiles.add (aFile);
+        aOS = new FileOutputStream (aFile);
+        aOS.write (StreamHelper.getAllBytes (m_aResources.get (i).getInputStream ()));
+        aOS.close ();
+      }
+
+      aSink = new RecordingSink ();
+      _checkResults (new PeppolSBDHBatchReader (m_aES, 8).readDirectory (aDir, aSink), aSink, "b/");
+    }
+    finally
+    {
+      for (int i = aCreatedFiles.size () - 1; i >= 0; --i)
+        aCreatedFiles.get (i).delete ();
+      aTempDir.delete ();
+    }
+  }
+
+  @Test
+  public void testIOErrors () throws Exception
+  {
+    // Missing resource in the middle
+    final List <ClassPathResource> aResources = new ArrayList <ClassPathResource> ();
+    aResources.add (m_aResources.get (0));
+    aResources.add (new ClassPathResource ("does/not/exist.xml"));
+    aResources.add (m_aResources.get (0));
+
+    RecordingSink aSink = new RecordingSink ();
+    PeppolSBDHBatchStatistics aStats = new PeppolSBDHBatchReader (m_aES, 2).readResources (aResources.iterator (),
+                                                                                           aSink);
+    assertEquals (3, aStats.getTotalCount ());
+    assertEquals (2, aStats.getValidCount ());
+    assertEquals (1, aStats.getIOErrorCount ());
+    assertEquals (0, aStats.getErrorCount ());
+    assertEquals (3, aSink.m_aNames.size ());
+    assertEquals ("does/not/exist.xml", aSink.m_aNames.get (1));
+    assertEquals ("does/not/exist.xml", aSink.m_aIOErrorNames.get (0));
+
+    // ZIP stream with an entry with an invalid checksum in the middle
+    final byte [] aContent = StreamHelper.getAllBytes (m_aResources.get (0).getInputStream ());
+    final ByteArrayOutputStream aBAOS = new ByteArrayOutputStream ();
+    final ZipOutputStream aZOS = new ZipOutputStream (aBAOS);
+    for (int i = 0; i < 3; ++i)
+    {
+      final ZipEntry aEntry = new ZipEntry (_getName (i));
+      if (i == 1)
+      {
+        // Stored, so that the content can be modified afterwards
+        final CRC32 aCRC = new CRC32 ();
+        aCRC.update (aContent);
+        aEntry.setMethod (ZipEntry.STORED);
+        aEntry.setSize (aContent.length);
+        aEntry.setCrc (aCRC.getValue ());
+      }
+      aZOS.putNextEntry (aEntry);
+      aZOS.write (aContent);
+      aZOS.closeEntry ();
+    }
+    aZOS.close ();
+    final byte [] aZip = aBAOS.toByteArray ();
+    final int nOfs = _indexOf (aZip, aContent);
+    assertTrue (nOfs > 0);
+    aZip[nOfs + aContent.length / 2] ^= 0x01;
+
+    aSink = new RecordingSink ();
+    aStats = new PeppolSBDHBatchReader (m_aES, 2).readZipStream (new ZipInputStream (new ByteArrayInputStream (aZip)),
+                                                                 aSink);
+    assertEquals (3, aStats.getTotalCount ());
+    assertEquals (2, aStats.getValidCount ());
+    assertEquals (1, aStats.getIOErrorCount ());
+    assertEquals (_getName (1), aSink.m_aIOErrorNames.get (0));
+    assertEquals (_getName (2), aSink.m_aNames.get (2));
+  }
+
+  private static int _indexOf (@Nonnull final byte [] aHaystack, @Nonnull final byte [] aNeedle)
+  {
+    outer: for (int i = 0; i <= aHaystack.length - aNeedle.length; ++i)
+    {
+      for (int j = 0; j < aNeedle.length; ++j)
+        if (aHaystack[i + j] != aNeedle[j])
+          continue outer;
+      return i;
+    }
+    return -1;
+  }
+}
@@ -17,6 +17,7 @@
 package com.helger.peppol.sbdh.read;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -25,10 +26,14 @@ import java.util.HashMap;
 import java.util.Map;
 
 import javax.annotation.Nonnull;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
 
 import org.joda.time.LocalDateTime;
 import org.junit.Test;
 import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 import org.xml.sax.SAXException;
 
 import com.helger.commons.callback.exception.DoNothingExceptionCallback;
@@ -38,6 +43,7 @@ import com.helger.commons.mock.CommonsTestHelper;
 import com.helger.commons.xml.serialize.read.DOMReader;
 import com.helger.commons.xml.serialize.read.DOMReaderSettings;
 import com.helger.datetime.PDTFactory;
+import com.helger.commons.io.stream.StreamHelper;
 import com.helger.peppol.identifier.CIdentifier;
 import com.helger.peppol.sbdh.PeppolSBDHDocument;
 import com.helger.peppol.testfiles.sbdh.PeppolSBDHTestFiles;
@@ -270,4 +276,147 @@ public final class PeppolSBDHDocumentReaderTest
       }
     }
   }
+
+  @Test
+  public void testReadGoodStreamingAndCheckResults () throws Exception
+  {
+    final IReadableResource aRes = PeppolSBDHTestFiles.getFirstGoodCase ();
+    final PeppolSBDHDocumentReader aReader = new PeppolSBDHDocumentReader ();
+    final PeppolSBDHStreamedDocument aStreamedDoc = aReader.extractDataStreaming (aRes.getInputStream ());
+    try
+    {
+      final PeppolSBDHDocument aData = aStreamedDoc.getDocumentData ();
+      assertEquals (CIdentifier.DEFAULT_PARTICIPANT_IDENTIFIER_SCHEME, aData.getSenderScheme ());
+      assertEquals ("0088:7315458756324", aData.getSenderValue ());
+      assertEquals (CIdentifier.DEFAULT_PARTICIPANT_IDENTIFIER_SCHEME, aData.getReceiverScheme ());
+      assertEquals ("0088:4562458856624", aData.getReceiverValue ());
+      assertEquals ("urn:oasis:names:specification:ubl:schema:xsd:Invoice-2", aData.getStandard ());
+      assertEquals ("2.1", aData.getTypeVersion ());
+      assertEquals ("Invoice", aData.getType ());
+      assertEquals ("123123", aData.getInstanceIdentifier ());
+      assertEquals ("2013-02-19T05:10:10.000", aData.getCreationDateAndTime ().toString ());
+      assertEquals (CIdentifier.DEFAULT_DOCUMENT_TYPE_IDENTIFIER_SCHEME, aData.getDocumentTypeScheme ());
+      assertEquals ("urn:oasis:names:specification:ubl:schema:xsd:Invoice-2::Invoice##urn:www.cenbii.eu:transaction:biitrns010:ver2.0:extended:urn:www.peppol.eu:bis:peppol4a:ver2.0::2.1",
+                    aData.getDocumentTypeValue ());
+      assertEquals (CIdentifier.DEFAULT_PROCESS_IDENTIFIER_SCHEME, aData.getProcessScheme ());
+      assertEquals ("urn:www.cenbii.eu:profile:bii04:ver1.0", aData.getProcessValue ());
+      // The business message is not part of the data
+      assertFalse (aData.hasBusinessMessage ());
+      assertFalse (aData.areAllFieldsSet ());
+      assertTrue (aData.areAllHeaderFieldsSet ());
+
+      assertEquals (new QName ("urn:oasis:names:specification:ubl:schema:xsd:Invoice-2", "Invoice"),
+                    aStreamedDoc.getBusinessMessageName ());
+      assertFalse (aStreamedDoc.isBusinessMessageConsumed ());
+      final XMLStreamReader aXMLReader = aStreamedDoc.getBusinessMessageReader ();
+      assertTrue (aStreamedDoc.isBusinessMessageConsumed ());
+      assertEquals (XMLStreamConstants.START_ELEMENT, aXMLReader.getEventType ());
+      assertEquals ("Invoice", aXMLReader.getLocalName ());
+      assertEquals (XMLStreamConstants.START_ELEMENT, aXMLReader.nextTag ());
+      assertEquals ("UBLVersionID", aXMLReader.getLocalName ());
+      try
+      {
+        // Can be consumed only once
+        aStreamedDoc.readBusinessMessage ();
+        fail ();
+      }
+      catch (final IllegalStateException ex)
+      {
+        // expected
+      }
+      CommonsTestHelper.testToStringImplementation (aStreamedDoc);
+    }
+    finally
+    {
+      aStreamedDoc.close ();
+    }
+  }
+
+  @Test
+  public void testReadGoodStreaming () throws Exception
+  {
+    final PeppolSBDHDocumentReader aReader = new PeppolSBDHDocumentReader ();
+    for (final ClassPathResource aRes : PeppolSBDHTestFiles.getAllGoodCases ())
+    {
+      assertTrue (aRes.getPath (), aRes.exists ());
+
+      // Header only
+      final PeppolSBDHDocument aHeaderData = aReader.extractHeaderData (aRes.getInputStream ());
+      assertNotNull (aHeaderData);
+      assertNotNull (aHeaderData.getSenderAsIdentifier ());
+      assertNotNull (aHeaderData.getDocumentTypeValue ());
+      assertNotNull (aHeaderData.getCreationDateAndTime ());
+
+      // Business message as DOM
+      final PeppolSBDHStreamedDocument aStreamedDoc = aReader.extractDataStreaming (aRes.getInputStream ());
+      try
+      {
+        final Element aBusinessMessage = aStreamedDoc.readBusinessMessage ();
+        assertEquals (aHeaderData.getStandard (), aBusinessMessage.getNamespaceURI ());
+        assertEquals (aHeaderData.getType (), aBusinessMessage.getLocalName ());
+
+        // Compare with the DOM read business message
+        Node aExpected = DOMReader.readXMLDOM (aRes).getDocumentElement ().getLastChild ();
+        while (aExpected.getNodeType () != Node.ELEMENT_NODE)
+          aExpected = aExpected.getPreviousSibling ();
+        assertEquals (aExpected.getTextContent (), aBusinessMessage.getTextContent ());
+        assertEquals (aExpected.getChildNodes ().getLength (), aBusinessMessage.getChildNodes ().getLength ());
+
+        // The read element is not referenced elsewhere and must not be cloned
+        assertTrue (aStreamedDoc.getDocumentData ().setBusinessMessageNoClone (aBusinessMessage).areAllFieldsSet ());
+      }
+      finally
+      {
+        StreamHelper.close (aStreamedDoc);
+      }
+    }
+  }
+
+  @Test
+  public void testReadBadStreaming ()
+  {
+    final PeppolSBDHDocumentReader aReader = new PeppolSBDHDocumentReader ();
+    for (final Map.Entry <String, EPeppolSBDHDocumentReadError> aEntry : BAD_CASES.entrySet ())
+    {
+      final IReadableResource aRes = new ClassPathResource ("sbdh/bad/" + aEntry.getKey ());
+      assertTrue (aRes.getPath (), aRes.exists ());
+      try
+      {
+        aReader.extractHeaderData (aRes.getInputStream ());
+        fail (aRes.getPath ());
+      }
+      catch (final PeppolSBDHDocumentReadException ex)
+      {
+        // check for expected error code
+        assertEquals (aRes.getPath (), aEntry.getValue (), ex.getErrorCode ());
+      }
+    }
+  }
+
+  @Test
+  public void testReadGoodAsBadStreaming ()
+  {
+    // Always fails
+    final PeppolSBDHDocumentReader aReader = new PeppolSBDHDocumentReader ()
+    {
+      @Override
+      protected boolean isValidBusinessMessage (@Nonnull final QName aBusinessMessageName)
+      {
+        return "Order".equals (aBusinessMessageName.getLocalPart ());
+      }
+    };
+    for (final ClassPathResource aRes : PeppolSBDHTestFiles.getAllGoodCases ())
+    {
+      assertTrue (aRes.getPath (), aRes.exists ());
+      try
+      {
+        aReader.extractHeaderData (aRes.getInputStream ());
+        fail ();
+      }
+      catch (final PeppolSBDHDocumentReadException ex)
+      {
+        assertEquals (EPeppolSBDHDocumentReadError.INVALID_BUSINESS_MESSAGE, ex.getErrorCode ());
+      }
+    }
+  }
 }
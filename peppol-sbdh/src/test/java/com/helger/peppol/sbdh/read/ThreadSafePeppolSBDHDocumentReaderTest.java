@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2014-2016 Philip Helger
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.peppol.sbdh.read;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.helger.commons.io.resource.ClassPathResource;
+import com.helger.peppol.sbdh.PeppolSBDHDocument;
+import com.helger.peppol.testfiles.sbdh.PeppolSBDHTestFiles;
+
+/**
+ * Test class for class {@link ThreadSafePeppolSBDHDocumentReader}.
+ *
+ * @author Philip Helger
+ */
+public final class ThreadSafePeppolSBDHDocumentReaderTest
+{
+  @Test
+  public void testReaderPerThread () throws Exception
+  {
+    final ThreadSafePeppolSBDHDocumentReader aReader = new ThreadSafePeppolSBDHDocumentReader ();
+    final PeppolSBDHDocumentReader aReader1 = aReader.getReaderOfCurrentThread ();
+    assertSame (aReader1, aReader.getReaderOfCurrentThread ());
+
+    final ExecutorService aES = Executors.newSingleThreadExecutor ();
+    try
+    {
+      final PeppolSBDHDocumentReader aReader2 = aES.submit (new Callable <PeppolSBDHDocumentReader> ()
+      {
+        public PeppolSBDHDocumentReader call ()
+        {
+          return aReader.getReaderOfCurrentThread ();
+        }
+      }).get ();
+      assertNotSame (aReader1, aReader2);
+    }
+    finally
+    {
+      aES.shutdown ();
+    }
+  }
+
+  @Test
+  public void testReadGoodConcurrently () throws Exception
+  {
+    final ThreadSafePeppolSBDHDocumentReader aReader = new ThreadSafePeppolSBDHDocumentReader ();
+    final ExecutorService aES = Executors.newFixedThreadPool (4);
+    try
+    {
+      final List <Future <PeppolSBDHDocument>> aFutures = new ArrayList <Future <PeppolSBDHDocument>> ();
+      final List <PeppolSBDHDocument> aExpected = new ArrayList <PeppolSBDHDocument> ();
+      for (int i = 0; i < 50; ++i)
+        for (final ClassPathResource aRes : PeppolSBDHTestFiles.getAllGoodCases ())
+        {
+          aFutures.add (aES.submit (new Callable <PeppolSBDHDocument> ()
+          {
+            public PeppolSBDHDocument call () throws Exception
+            {
+              return aReader.extractHeaderData (aRes.getInputStream ());
+            }
+          }));
+          if (i == 0)
+            aExpected.add (new PeppolSBDHDocumentReader ().extractHeaderData (aRes.getInputStream ()));
+        }
+
+      for (int i = 0; i < aFutures.size (); ++i)
+        assertEquals (aExpected.get (i % aExpected.size ()), aFutures.get (i).get ());
+    }
+    finally
+    {
+      aES.shutdown ();
+    }
+  }
+}
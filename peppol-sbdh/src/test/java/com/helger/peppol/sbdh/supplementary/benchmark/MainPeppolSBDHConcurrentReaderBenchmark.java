@@ -0,0 +1,121 @@
+/**
+ * Copyright (C) 2014-2016 Philip Helger
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.peppol.sbdh.supplementary.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.io.stream.StreamHelper;
+import com.helger.peppol.sbdh.read.PeppolSBDHDocumentReader;
+import com.helger.peppol.sbdh.read.ThreadSafePeppolSBDHDocumentReader;
+import com.helger.peppol.testfiles.sbdh.PeppolSBDHTestFiles;
+
+/**
+ * Compare the throughput of reading SBDH headers concurrently with a new
+ * {@link PeppolSBDHDocumentReader} per document and with one shared
+ * {@link ThreadSafePeppolSBDHDocumentReader} for an increasing number of
+ * threads.
+ *
+ * @author Philip Helger
+ */
+public final class MainPeppolSBDHConcurrentReaderBenchmark
+{
+  private static final Logger s_aLogger = LoggerFactory.getLogger (MainPeppolSBDHConcurrentReaderBenchmark.class);
+  private static final int WARMUP_RUNS = 2;
+  private static final int RUNS = 5;
+  private static final int DOCUMENTS_PER_THREAD = 5000;
+
+  private MainPeppolSBDHConcurrentReaderBenchmark ()
+  {}
+
+  private static long _run (@Nonnull final ExecutorService aES,
+                            final int nThreads,
+                            @Nonnull final byte [] aSBD,
+                            @Nonnull final ThreadSafePeppolSBDHDocumentReader aSharedReader) throws Exception
+  {
+    final List <Future <Integer>> aFutures = new ArrayList <Future <Integer>> ();
+    final long nStart = System.nanoTime ();
+    for (int nThread = 0; nThread < nThreads; ++nThread)
+      aFutures.add (aES.submit (new Callable <Integer> ()
+      {
+        public Integer call () throws Exception
+        {
+          int ret = 0;
+          for (int i = 0; i < DOCUMENTS_PER_THREAD; ++i)
+          {
+            final PeppolSBDHDocumentReader aReader = aSharedReader != null ? aSharedReader.getReaderOfCurrentThread ()
+                                                                           : new PeppolSBDHDocumentReader ();
+            ret += aReader.extractHeaderData (new ByteArrayInputStream (aSBD)).getType ().length ();
+          }
+          return Integer.valueOf (ret);
+        }
+      }));
+    for (final Future <Integer> aFuture : aFutures)
+      aFuture.get ();
+    return System.nanoTime () - nStart;
+  }
+
+  public static void main (final String [] args) throws Exception
+  {
+    final byte [] aSBD = StreamHelper.getAllBytes (PeppolSBDHTestFiles.getFirstGoodCase ().getInputStream ());
+    final int nCPUs = Runtime.getRuntime ().availableProcessors ();
+
+    for (int nThreads = 1; nThreads <= nCPUs; nThreads *= 2)
+    {
+      final ExecutorService aES = Executors.newFixedThreadPool (nThreads);
+      try
+      {
+        final ThreadSafePeppolSBDHDocumentReader aSharedReader = new ThreadSafePeppolSBDHDocumentReader ();
+        for (int i = 0; i < WARMUP_RUNS; ++i)
+        {
+          _run (aES, nThreads, aSBD, null);
+          _run (aES, nThreads, aSBD, aSharedReader);
+        }
+
+        long nNewNanos = 0;
+        long nSharedNanos = 0;
+        for (int i = 0; i < RUNS; ++i)
+        {
+          nNewNanos += _run (aES, nThreads, aSBD, null);
+          nSharedNanos += _run (aES, nThreads, aSBD, aSharedReader);
+        }
+
+        final double dDocuments = (double) RUNS * nThreads * DOCUMENTS_PER_THREAD;
+        s_aLogger.info (nThreads +
+                        " thread(s): new reader " +
+                        (long) (dDocuments * 1E9 / nNewNanos) +
+                        " docs/s, shared reader " +
+                        (long) (dDocuments * 1E9 / nSharedNanos) +
+                        " docs/s");
+      }
+      finally
+      {
+        aES.shutdown ();
+      }
+    }
+  }
+}
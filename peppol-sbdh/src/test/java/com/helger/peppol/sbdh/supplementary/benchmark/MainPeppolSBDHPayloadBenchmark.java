@@ -0,0 +1,169 @@
+/**
+ * Copyright (C) 2014-2016 Philip Helger
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.peppol.sbdh.supplementary.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.unece.cefact.namespaces.sbdh.StandardBusinessDocument;
+import org.w3c.dom.Element;
+
+import com.helger.commons.io.resource.ClassPathResource;
+import com.helger.commons.io.resource.IReadableResource;
+import com.helger.commons.xml.serialize.read.DOMReader;
+import com.helger.datetime.PDTFactory;
+import com.helger.peppol.sbdh.CPeppolSBDH;
+import com.helger.peppol.sbdh.PeppolSBDHDocument;
+import com.helger.peppol.sbdh.write.PeppolSBDHDocumentWriter;
+
+/**
+ * Compare the memory usage and speed of passing large business messages from
+ * reading over routing to writing with the cloning business message accessors
+ * of {@link PeppolSBDHDocument} and with the "no clone" accessors.
+ *
+ * @author Philip Helger
+ */
+public final class MainPeppolSBDHPayloadBenchmark
+{
+  private static final Logger s_aLogger = LoggerFactory.getLogger (MainPeppolSBDHPayloadBenchmark.class);
+  private static final int WARMUP_RUNS = 3;
+  private static final int RUNS = 5;
+  private static final int MESSAGES = 10;
+  private static final String [] FILES = new String [] { "/peppol-official/BIS04A/Use Case 5_ExampleFile_PEPPOL BIS.xml",
+                                                          "/peppol-ubl/test-invoices/error/atgov-t10-fail-r002.xml" };
+
+  private MainPeppolSBDHPayloadBenchmark ()
+  {}
+
+  private static long _getUsedMemory ()
+  {
+    final Runtime aRuntime = Runtime.getRuntime ();
+    for (int i = 0; i < 3; ++i)
+      System.gc ();
+    return aRuntime.totalMemory () - aRuntime.freeMemory ();
+  }
+
+  @Nonnull
+  private static PeppolSBDHDocument _setIdentifiers (@Nonnull final PeppolSBDHDocument aData)
+  {
+    return aData.setSenderWithDefaultScheme ("0088:sender")
+                .setReceiverWithDefaultScheme ("0088:receiver")
+                .setDocumentTypeWithDefaultScheme ("doctypeid")
+                .setProcessWithDefaultScheme ("procid");
+  }
+
+  /**
+   * The previous way: the business message is cloned when it is set, when it
+   * is routed and when the Standard Business Document is created.
+   */
+  @Nonnull
+  private static StandardBusinessDocument _runCloning (@Nonnull final Element aBusinessMessage,
+                                                       @Nonnull final List <Object> aInFlight)
+  {
+    final PeppolSBDHDocument aData = _setIdentifiers (PeppolSBDHDocument.create (aBusinessMessage));
+    // Route based on the business message
+    if (!aData.getType ().equals (aData.getBusinessMessage ().getLocalName ()))
+      throw new IllegalStateException ();
+    final StandardBusinessDocument aSBD = new PeppolSBDHDocumentWriter ().createStandardBusinessDocument (aData);
+    aInFlight.add (aData);
+    aInFlight.add (aSBD);
+    return aSBD;
+  }
+
+  @Nonnull
+  private static StandardBusinessDocument _runNoClone (@Nonnull final Element aBusinessMessage,
+                                                       @Nonnull final List <Object> aInFlight)
+  {
+    final PeppolSBDHDocument aData = _setIdentifiers (new PeppolSBDHDocument ().setBusinessMessageNoClone (aBusinessMessage)
+                                                                               .setDocumentIdentification (aBusinessMessage.getNamespaceURI (),
+                                                                                                           CPeppolSBDH.TYPE_VERSION_21,
+                                                                                                           aBusinessMessage.getLocalName (),
+                                                                                                           "instance",
+                                                                                                           PDTFactory.getCurrentLocalDateTime ()));
+    // Route based on the business message
+    if (!aData.getType ().equals (aData.getBusinessMessageNoClone ().getLocalName ()))
+      throw new IllegalStateException ();
+    final StandardBusinessDocument aSBD = new PeppolSBDHDocumentWriter ().createStandardBusinessDocumentNoClone (aData);
+    aInFlight.add (aData);
+    aInFlight.add (aSBD);
+    return aSBD;
+  }
+
+  public static void main (final String [] args) throws Exception
+  {
+    for (final String sFilename : FILES)
+    {
+      final IReadableResource aRes = new ClassPathResource (sFilename);
+      final List <Element> aMessages = new ArrayList <Element> ();
+      for (int i = 0; i < MESSAGES; ++i)
+        aMessages.add (DOMReader.readXMLDOM (aRes).getDocumentElement ());
+
+      // Memory of all messages in flight at the same time
+      List <Object> aInFlight = new ArrayList <Object> ();
+      long nBefore = _getUsedMemory ();
+      for (final Element aMessage : aMessages)
+        _runCloning (aMessage, aInFlight);
+      final long nCloningBytes = _getUsedMemory () - nBefore;
+      aInFlight = new ArrayList <Object> ();
+
+      nBefore = _getUsedMemory ();
+      for (final Element aMessage : aMessages)
+        _runNoClone (aMessage, aInFlight);
+      final long nNoCloneBytes = _getUsedMemory () - nBefore;
+      aInFlight = null;
+
+      // Speed
+      for (int i = 0; i < WARMUP_RUNS; ++i)
+        for (final Element aMessage : aMessages)
+        {
+          _runCloning (aMessage, new ArrayList <Object> ());
+          _runNoClone (aMessage, new ArrayList <Object> ());
+        }
+
+      long nCloningNanos = 0;
+      long nNoCloneNanos = 0;
+      for (int i = 0; i < RUNS; ++i)
+        for (final Element aMessage : aMessages)
+        {
+          long nStart = System.nanoTime ();
+          _runCloning (aMessage, new ArrayList <Object> ());
+          nCloningNanos += System.nanoTime () - nStart;
+
+          nStart = System.nanoTime ();
+          _runNoClone (aMessage, new ArrayList <Object> ());
+          nNoCloneNanos += System.nanoTime () - nStart;
+        }
+
+      final long nCount = (long) RUNS * MESSAGES;
+      s_aLogger.info (sFilename);
+      s_aLogger.info ("  Cloning:  " +
+                      (nCloningBytes / MESSAGES / 1024) +
+                      " KB/message in flight, " +
+                      (nCloningNanos / nCount / 1000) +
+                      " us/message");
+      s_aLogger.info ("  No clone: " +
+                      (nNoCloneBytes / MESSAGES / 1024) +
+                      " KB/message in flight, " +
+                      (nNoCloneNanos / nCount / 1000) +
+                      " us/message");
+    }
+  }
+}
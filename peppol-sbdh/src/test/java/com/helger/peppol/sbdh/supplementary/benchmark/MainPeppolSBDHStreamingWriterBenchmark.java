@@ -0,0 +1,212 @@
+/**
+ * Copyright (C) 2014-2016 Philip Helger
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.peppol.sbdh.supplementary.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.unece.cefact.namespaces.sbdh.StandardBusinessDocument;
+import org.w3c.dom.Document;
+
+import com.helger.commons.charset.CCharset;
+import com.helger.commons.xml.serialize.read.DOMReader;
+import com.helger.datetime.PDTFactory;
+import com.helger.peppol.sbdh.CPeppolSBDH;
+import com.helger.peppol.sbdh.PeppolSBDHDocument;
+import com.helger.peppol.sbdh.write.PeppolSBDHDocumentWriter;
+
+/**
+ * Compare the speed and the memory usage of wrapping a large payload into a
+ * Standard Business Document with the streaming writer and with the DOM based
+ * way. The DOM based way only contains parsing the payload and creating the
+ * {@link StandardBusinessDocument} - the marshalling is not included.
+ *
+ * @author Philip Helger
+ */
+public final class MainPeppolSBDHStreamingWriterBenchmark
+{
+  private static final Logger s_aLogger = LoggerFactory.getLogger (MainPeppolSBDHStreamingWriterBenchmark.class);
+  private static final int WARMUP_RUNS = 2;
+  private static final int RUNS = 5;
+  private static final long PAYLOAD_BYTES = 50L * 1024 * 1024;
+
+  private MainPeppolSBDHStreamingWriterBenchmark ()
+  {}
+
+  private static long _getUsedMemory ()
+  {
+    final Runtime aRuntime = Runtime.getRuntime ();
+    for (int i = 0; i < 3; ++i)
+      System.gc ();
+    return aRuntime.totalMemory () - aRuntime.freeMemory ();
+  }
+
+  /**
+   * An output stream that only counts the written bytes.
+   */
+  private static final class CountingNullOutputStream extends OutputStream
+  {
+    private long m_nBytes = 0;
+
+    @Override
+    public void write (final int b)
+    {
+      m_nBytes++;
+    }
+
+    @Override
+    public void write (final byte [] aBuf, final int nOfs, final int nLen)
+    {
+      m_nBytes += nLen;
+    }
+  }
+
+  @Nonnull
+  private static File _createPayloadFile () throws IOException
+  {
+    final File aFile = File.createTempFile ("sbdh-payload", ".xml");
+    aFile.deleteOnExit ();
+    final Writer aWriter = new BufferedWriter (new OutputStreamWriter (new FileOutputStream (aFile),
+                                                                       CCharset.CHARSET_UTF_8_OBJ));
+    try
+    {
+      aWriter.write ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<root xmlns=\"urn:foobar\">\n");
+      long nWritten = 0;
+      int i = 0;
+      while (nWritten < PAYLOAD_BYTES)
+      {
+        final String sLine = "  <line id=\"" + i++ + "\"><amount currency=\"EUR\">123.45</amount><note>Some text</note></line>\n";
+        aWriter.write (sLine);
+        nWritten += sLine.length ();
+      }
+      aWriter.write ("</root>\n");
+    }
+    finally
+    {
+      aWriter.close ();
+    }
+    return aFile;
+  }
+
+  @Nonnull
+  private static PeppolSBDHDocument _createHeaderData ()
+  {
+    return new PeppolSBDHDocument ().setSenderWithDefaultScheme ("0088:sender")
+                                    .setReceiverWithDefaultScheme ("0088:receiver")
+                                    .setDocumentTypeWithDefaultScheme ("doctypeid")
+                                    .setProcessWithDefaultScheme ("procid")
+                                    .setDocumentIdentification ("urn:foobar",
+                                                                CPeppolSBDH.TYPE_VERSION_21,
+                                                                "root",
+                                                                "instance",
+                                                                PDTFactory.getCurrentLocalDateTime ());
+  }
+
+  private static long _runCopy (@Nonnull final File aPayload) throws IOException
+  {
+    final CountingNullOutputStream aOS = new CountingNullOutputStream ();
+    final InputStream aIS = new FileInputStream (aPayload);
+    try
+    {
+      final byte [] aBuffer = new byte [64 * 1024];
+      int nRead;
+      while ((nRead = aIS.read (aBuffer)) > 0)
+        aOS.write (aBuffer, 0, nRead);
+    }
+    finally
+    {
+      aIS.close ();
+    }
+    return aOS.m_nBytes;
+  }
+
+  private static long _runStreaming (@Nonnull final File aPayload) throws IOException
+  {
+    final CountingNullOutputStream aOS = new CountingNullOutputStream ();
+    new PeppolSBDHDocumentWriter ().writeStreaming (_createHeaderData (), aPayload, aOS);
+    return aOS.m_nBytes;
+  }
+
+  @Nonnull
+  private static StandardBusinessDocument _runDOM (@Nonnull final File aPayload) throws Exception
+  {
+    final Document aDoc = DOMReader.readXMLDOM (new FileInputStream (aPayload));
+    final PeppolSBDHDocument aData = _createHeaderData ().setBusinessMessageNoClone (aDoc.getDocumentElement ());
+    return new PeppolSBDHDocumentWriter ().createStandardBusinessDocument (aData);
+  }
+
+  public static void main (final String [] args) throws Exception
+  {
+    final File aPayload = _createPayloadFile ();
+    final double dMB = aPayload.length () / (1024d * 1024d);
+    s_aLogger.info ("Payload size: " + (long) dMB + " MB");
+
+    // Memory retained by the DOM based result - the streaming writer only
+    // uses a fixed size copy buffer
+    long nBefore = _getUsedMemory ();
+    StandardBusinessDocument aSBD = _runDOM (aPayload);
+    final long nDOMBytes = _getUsedMemory () - nBefore;
+    if (aSBD.getAny () == null)
+      throw new IllegalStateException ();
+    aSBD = null;
+
+    for (int i = 0; i < WARMUP_RUNS; ++i)
+    {
+      _runCopy (aPayload);
+      _runStreaming (aPayload);
+      _runDOM (aPayload);
+    }
+
+    long nCopyNanos = 0;
+    long nStreamingNanos = 0;
+    long nDOMNanos = 0;
+    for (int i = 0; i < RUNS; ++i)
+    {
+      long nStart = System.nanoTime ();
+      _runCopy (aPayload);
+      nCopyNanos += System.nanoTime () - nStart;
+
+      nStart = System.nanoTime ();
+      if (_runStreaming (aPayload) < aPayload.length ())
+        throw new IllegalStateException ();
+      nStreamingNanos += System.nanoTime () - nStart;
+
+      nStart = System.nanoTime ();
+      _runDOM (aPayload);
+      nDOMNanos += System.nanoTime () - nStart;
+    }
+
+    s_aLogger.info ("Plain copy: " + (long) (dMB * RUNS * 1E9 / nCopyNanos) + " MB/s");
+    s_aLogger.info ("Streaming:  " + (long) (dMB * RUNS * 1E9 / nStreamingNanos) + " MB/s");
+    s_aLogger.info ("DOM:        " +
+                    (long) (dMB * RUNS * 1E9 / nDOMNanos) +
+                    " MB/s, " +
+                    (nDOMBytes / 1024 / 1024) +
+                    " MB heap retained");
+  }
+}
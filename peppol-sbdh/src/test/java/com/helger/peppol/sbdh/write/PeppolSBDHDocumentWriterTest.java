@@ -17,21 +17,35 @@
 package com.helger.peppol.sbdh.write;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+
+import javax.annotation.Nonnull;
+
 import org.junit.Test;
 import org.unece.cefact.namespaces.sbdh.StandardBusinessDocument;
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 import org.xml.sax.SAXException;
 
+import com.helger.commons.charset.CCharset;
+import com.helger.commons.io.resource.ClassPathResource;
 import com.helger.commons.mock.CommonsTestHelper;
 import com.helger.commons.xml.serialize.read.DOMReader;
 import com.helger.peppol.identifier.CIdentifier;
 import com.helger.peppol.sbdh.PeppolSBDHDocument;
 import com.helger.peppol.sbdh.read.PeppolSBDHDocumentReadException;
 import com.helger.peppol.sbdh.read.PeppolSBDHDocumentReader;
+import com.helger.peppol.sbdh.read.PeppolSBDHStreamedDocument;
 import com.helger.sbdh.SBDMarshaller;
 
 public final class PeppolSBDHDocumentWriterTest
@@ -81,6 +95,35 @@ public final class PeppolSBDHDocumentWriterTest
     CommonsTestHelper.testDefaultImplementationWithEqualContentObject (aData, aDataRead);
   }
 
+  @Test
+  public void testCreateSBDHNoClone () throws SAXException
+  {
+    final PeppolSBDHDocument aData = _createHeaderData ();
+    final PeppolSBDHDocumentWriter aWriter = new PeppolSBDHDocumentWriter ();
+
+    // The business message is copied
+    StandardBusinessDocument aSBD = aWriter.createStandardBusinessDocument (aData);
+    assertNotSame (aData.getBusinessMessageNoClone (), aSBD.getAny ());
+    assertEquals ("root", ((Element) aSBD.getAny ()).getLocalName ());
+
+    // The business message is shared
+    aSBD = aWriter.createStandardBusinessDocumentNoClone (aData);
+    assertSame (aData.getBusinessMessageNoClone (), aSBD.getAny ());
+    assertEquals ("0088:sender",
+                  aSBD.getStandardBusinessDocumentHeader ().getSender ().get (0).getIdentifier ().getValue ());
+
+    try
+    {
+      // Not all fields are set
+      aWriter.createStandardBusinessDocumentNoClone (new PeppolSBDHDocument ());
+      fail ();
+    }
+    catch (final IllegalArgumentException ex)
+    {
+      // Expected
+    }
+  }
+
   @Test
   public void testBadCase ()
   {
@@ -96,4 +139,152 @@ public final class PeppolSBDHDocumentWriterTest
       // Expected
     }
   }
+
+  @Nonnull
+  private static PeppolSBDHDocument _createHeaderData () throws SAXException
+  {
+    final Document aDoc = DOMReader.readXMLDOM ("<root xmlns='urn:foobar'><child>a</child></root>");
+    return PeppolSBDHDocument.create (aDoc.getDocumentElement ())
+                             .setSenderWithDefaultScheme ("0088:sender")
+                             .setReceiverWithDefaultScheme ("0099:receiver")
+                             .setDocumentTypeWithDefaultScheme ("doctypeid")
+                             .setProcessWithDefaultScheme ("procid");
+  }
+
+  @Nonnull
+  private static PeppolSBDHStreamedDocument _readStreaming (@Nonnull final ByteArrayOutputStream aBAOS) throws PeppolSBDHDocumentReadException
+  {
+    return new PeppolSBDHDocumentReader ().extractDataStreaming (new ByteArrayInputStream (aBAOS.toByteArray ()));
+  }
+
+  @Test
+  public void testWriteStreaming () throws Exception
+  {
+    final PeppolSBDHDocument aData = _createHeaderData ();
+    final PeppolSBDHDocumentWriter aWriter = new PeppolSBDHDocumentWriter ();
+
+    // With XML declaration and byte order mark
+    for (final String sPayload : new String [] { "<root xmlns='urn:foobar'><child>a</child></root>",
+                                                 "<?xml version='1.0' encoding='UTF-8'?>\n<root xmlns='urn:foobar'><child>a</child></root>",
+                                                 "\ufeff<?xml version=\"1.0\"?><root xmlns='urn:foobar'><child>a</child></root>",
+                                                 "<?xml version='1.0' encoding='us-ascii' ?><!-- c --><root xmlns=\"urn:foobar\"><child>a</child></root>" })
+    {
+      final ByteArrayOutputStream aBAOS = new ByteArrayOutputStream ();
+      aWriter.writeStreaming (aData,
+                              new ByteArrayInputStream (sPayload.getBytes (CCharset.CHARSET_UTF_8_OBJ)),
+                              aBAOS);
+
+      // Read again and compare values
+      final PeppolSBDHStreamedDocument aStreamedDoc = _readStreaming (aBAOS);
+      try
+      {
+        final PeppolSBDHDocument aDataRead = aStreamedDoc.getDocumentData ();
+        assertEquals (CIdentifier.DEFAULT_PARTICIPANT_IDENTIFIER_SCHEME, aDataRead.getSenderScheme ());
+        assertEquals ("0088:sender", aDataRead.getSenderValue ());
+        assertEquals ("0099:receiver", aDataRead.getReceiverValue ());
+        assertEquals ("urn:foobar", aDataRead.getStandard ());
+        assertEquals ("2.1", aDataRead.getTypeVersion ());
+        assertEquals ("root", aDataRead.getType ());
+        assertEquals (aData.getInstanceIdentifier (), aDataRead.getInstanceIdentifier ());
+        assertEquals (aData.getCreationDateAndTime ().toString (), aDataRead.getCreationDateAndTime ().toString ());
+        assertEquals ("doctypeid", aDataRead.getDocumentTypeValue ());
+        assertEquals ("procid", aDataRead.getProcessValue ());
+
+        final Element aBusinessMessage = aStreamedDoc.readBusinessMessage ();
+        assertEquals ("urn:foobar", aBusinessMessage.getNamespaceURI ());
+        assertEquals ("root", aBusinessMessage.getLocalName ());
+        assertEquals ("a", aBusinessMessage.getTextContent ());
+      }
+      finally
+      {
+        aStreamedDoc.close ();
+      }
+    }
+
+    // The SBDH prefix does not leak into a business message without namespace
+    {
+      final ByteArrayOutputStream aBAOS = new ByteArrayOutputStream ();
+      aWriter.writeStreaming (aData,
+                              Channels.newChannel (new ByteArrayInputStream ("<root/>".getBytes (CCharset.CHARSET_UTF_8_OBJ))),
+                              aBAOS);
+      final Document aSBD = DOMReader.readXMLDOM (aBAOS.toByteArray ());
+      final Element aBusinessMessage = (Element) aSBD.getDocumentElement ().getLastChild ();
+      assertNull (aBusinessMessage.getNamespaceURI ());
+      assertEquals ("root", aBusinessMessage.getLocalName ());
+    }
+  }
+
+  @Test
+  public void testWriteStreamingFile () throws Exception
+  {
+    final ClassPathResource aRes = new ClassPathResource ("/peppol-official/BIS04A/Use Case 5_ExampleFile_PEPPOL BIS.xml");
+    final Element aInvoice = DOMReader.readXMLDOM (aRes).getDocumentElement ();
+    final PeppolSBDHDocument aData = PeppolSBDHDocument.create (aInvoice)
+                                                       .setSenderWithDefaultScheme ("0088:sender")
+                                                       .setReceiverWithDefaultScheme ("0099:receiver")
+                                                       .setDocumentTypeWithDefaultScheme ("doctypeid")
+                                                       .setProcessWithDefaultScheme ("procid");
+
+    final ByteArrayOutputStream aBAOS = new ByteArrayOutputStream ();
+    new PeppolSBDHDocumentWriter ().writeStreaming (aData, aRes.getAsFile (), aBAOS);
+
+    final PeppolSBDHStreamedDocument aStreamedDoc = _readStreaming (aBAOS);
+    try
+    {
+      assertEquals ("Invoice", aStreamedDoc.getDocumentData ().getType ());
+      final Element aBusinessMessage = aStreamedDoc.readBusinessMessage ();
+      assertEquals (aInvoice.getElementsByTagNameNS ("*", "*").getLength (),
+                    aBusinessMessage.getElementsByTagNameNS ("*", "*").getLength ());
+      assertEquals (aInvoice.getTextContent (), aBusinessMessage.getTextContent ());
+    }
+    finally
+    {
+      aStreamedDoc.close ();
+    }
+  }
+
+  @Test
+  public void testWriteStreamingBadCase () throws Exception
+  {
+    final PeppolSBDHDocumentWriter aWriter = new PeppolSBDHDocumentWriter ();
+    try
+    {
+      // Not all header fields are set
+      aWriter.writeStreaming (new PeppolSBDHDocument (),
+                              new ByteArrayInputStream ("<root/>".getBytes (CCharset.CHARSET_UTF_8_OBJ)),
+                              new ByteArrayOutputStream ());
+      fail ();
+    }
+    catch (final IllegalArgumentException ex)
+    {
+      // Expected
+    }
+
+    final PeppolSBDHDocument aData = _createHeaderData ();
+    for (final byte [] aPayload : new byte [] [] { new byte [0],
+                                                   "<?xml version='1.0'?>".getBytes (CCharset.CHARSET_UTF_8_OBJ),
+                                                   "<?xml version='1.0' <root/>".getBytes (CCharset.CHARSET_UTF_8_OBJ),
+                                                   "<?xml version='1.0' encoding='ISO-8859-1'?><root/>".getBytes (CCharset.CHARSET_ISO_8859_1_OBJ),
+                                                   "\ufeff<root/>".getBytes ("UTF-16") })
+    {
+      final ByteArrayOutputStream aBAOS = new ByteArrayOutputStream ();
+      try
+      {
+        aWriter.writeStreaming (aData, new ByteArrayInputStream (aPayload), aBAOS);
+        fail ();
+      }
+      catch (final IllegalArgumentException ex)
+      {
+        // Expected
+      }
+    }
+
+    // "<?xml-stylesheet" is not an XML declaration and is kept
+    final ByteArrayOutputStream aBAOS = new ByteArrayOutputStream ();
+    aWriter.writeStreaming (aData,
+                            new ByteArrayInputStream ("<?xml-stylesheet href='a.xsl'?><root xmlns='urn:foobar'/>".getBytes (CCharset.CHARSET_UTF_8_OBJ)),
+                            aBAOS);
+    assertTrue (aBAOS.toString (CCharset.CHARSET_UTF_8).contains ("<?xml-stylesheet href='a.xsl'?>"));
+    assertFalse (aBAOS.toString (CCharset.CHARSET_UTF_8).contains ("<?xml version='1.0'?>"));
+  }
 }
@@ -0,0 +1,102 @@
+/**
+ * Copyright (C) 2014-2016 Philip Helger
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.peppol.sbdh.write;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.helger.commons.charset.CCharset;
+import com.helger.commons.xml.serialize.read.DOMReader;
+import com.helger.peppol.sbdh.PeppolSBDHDocument;
+import com.helger.peppol.sbdh.read.PeppolSBDHDocumentReader;
+
+/**
+ * Test class for class {@link ThreadSafePeppolSBDHDocumentWriter}.
+ *
+ * @author Philip Helger
+ */
+public final class ThreadSafePeppolSBDHDocumentWriterTest
+{
+  @Test
+  public void testWriteStreamingConcurrently () throws Exception
+  {
+    final ThreadSafePeppolSBDHDocumentWriter aWriter = new ThreadSafePeppolSBDHDocumentWriter ();
+    final PeppolSBDHDocumentWriter aWriter1 = aWriter.getWriterOfCurrentThread ();
+    assertSame (aWriter1, aWriter.getWriterOfCurrentThread ());
+
+    final PeppolSBDHDocument aData = PeppolSBDHDocument.create (DOMReader.readXMLDOM ("<root xmlns='urn:foobar'/>")
+                                                                         .getDocumentElement ())
+                                                       .setSenderWithDefaultScheme ("0088:sender")
+                                                       .setReceiverWithDefaultScheme ("0099:receiver")
+                                                       .setDocumentTypeWithDefaultScheme ("doctypeid")
+                                                       .setProcessWithDefaultScheme ("procid");
+
+    final ExecutorService aES = Executors.newFixedThreadPool (4);
+    try
+    {
+      assertNotSame (aWriter1, aES.submit (new Callable <PeppolSBDHDocumentWriter> ()
+      {
+        public PeppolSBDHDocumentWriter call ()
+        {
+          return aWriter.getWriterOfCurrentThread ();
+        }
+      }).get ());
+
+      final List <Future <byte []>> aFutures = new ArrayList <Future <byte []>> ();
+      for (int i = 0; i < 100; ++i)
+      {
+        final String sPayload = "<root xmlns='urn:foobar'>" + i + "</root>";
+        aFutures.add (aES.submit (new Callable <byte []> ()
+        {
+          public byte [] call () throws Exception
+          {
+            final ByteArrayOutputStream aBAOS = new ByteArrayOutputStream ();
+            aWriter.writeStreaming (aData,
+                                    new ByteArrayInputStream (sPayload.getBytes (CCharset.CHARSET_UTF_8_OBJ)),
+                                    aBAOS);
+            return aBAOS.toByteArray ();
+          }
+        }));
+      }
+
+      final PeppolSBDHDocumentReader aReader = new PeppolSBDHDocumentReader ();
+      for (int i = 0; i < aFutures.size (); ++i)
+      {
+        final byte [] aSBD = aFutures.get (i).get ();
+        assertEquals ("0088:sender", aReader.extractHeaderData (new ByteArrayInputStream (aSBD)).getSenderValue ());
+        assertEquals (Integer.toString (i),
+                      DOMReader.readXMLDOM (aSBD).getDocumentElement ().getLastChild ().getTextContent ());
+      }
+    }
+    finally
+    {
+      aES.shutdown ();
+    }
+  }
+}
@@ -75,10 +75,14 @@ import com.helger.peppol.identifier.IParticipantIdentifier;
 import com.helger.peppol.identifier.IProcessIdentifier;
 import com.helger.peppol.identifier.IdentifierHelper;
 import com.helger.peppol.sml.ISMLInfo;
+import com.helger.peppol.sml.SMLDNSResolver;
 import com.helger.peppol.smp.ISMPTransportProfile;
+import com.helger.peppol.smpclient.ISMPRequestExecutor;
 import com.helger.peppol.smpclient.SMPClientConfiguration;
 import com.helger.peppol.smpclient.SMPHttpResponseHandlerSigned;
 import com.helger.peppol.smpclient.SMPHttpResponseHandlerUnsigned;
+import com.helger.peppol.smpclient.SMPPooledRequestExecutor;
+import com.helger.peppol.smpclient.SMPRequestCoalescer;
 import com.helger.peppol.smpclient.exception.SMPClientBadRequestException;
 import com.helger.peppol.smpclient.exception.SMPClientException;
 import com.helger.peppol.smpclient.exception.SMPClientNotFoundException;
@@ -98,6 +102,15 @@ public class BDXRClientReadOnly
 {
   private static final Logger s_aLogger = LoggerFactory.getLogger (BDXRClientReadOnly.class);
 
+  /**
+   * By default concurrent identical service group and service registration
+   * requests are not coalesced. The default can be changed in the
+   * configuration file.
+   *
+   * @see SMPClientConfiguration#isCoalesceRequests()
+   */
+  public static final boolean DEFAULT_COALESCE_REQUESTS = false;
+
   /**
    * The string representation of the SMP host URL, always ending with a
    * trailing slash!
@@ -106,6 +119,14 @@ public class BDXRClientReadOnly
 
   private HttpHost m_aProxy;
 
+  private ISMPRequestExecutor m_aRequestExecutor = SMPPooledRequestExecutor.getDefaultInstance ();
+  private boolean m_bCoalesceRequests;
+  // Shared by all client instances, because usually a new client is created
+  // per lookup. The key contains the request executor, the proxy and the
+  // client class as well.
+  private static final SMPRequestCoalescer <ServiceGroupType> s_aServiceGroupCoalescer = new SMPRequestCoalescer <ServiceGroupType> ();
+  private static final SMPRequestCoalescer <SignedServiceMetadataType> s_aServiceRegistrationCoalescer = new SMPRequestCoalescer <SignedServiceMetadataType> ();
+
   /**
    * Constructor with SML lookup
    *
@@ -122,6 +143,40 @@ public class BDXRClientReadOnly
     this (BusdoxURLHelper.getSMPURIOfParticipant (aParticipantIdentifier, aSMLInfo));
   }
 
+  /**
+   * Constructor with SML lookup using a custom DNS resolver. In contrast to
+   * {@link #BDXRClientReadOnly(IParticipantIdentifier, ISMLInfo)} the existence of the
+   * participant host name is checked immediately, using the cache of the
+   * passed resolver. The SMP URI still contains the participant host name.<br>
+   * Note: this constructor does not change how the address of the SMP is
+   * resolved when connecting. To resolve it with the same resolver instead of
+   * the JVM global DNS cache, additionally call
+   * {@link #setRequestExecutor(ISMPRequestExecutor)} with an
+   * {@link SMPPooledRequestExecutor} created with the same resolver, which
+   * should be shared between the clients. The connection then uses the cached
+   * result of the existence check.
+   *
+   * @param aParticipantIdentifier
+   *        The participant identifier to be used. Required to build the SMP
+   *        access URI.
+   * @param aSMLInfo
+   *        The SML to be used. Required to build the SMP access URI.
+   * @param aDNSResolver
+   *        The DNS resolver to be used. May not be <code>null</code>.
+   * @throws UnknownHostException
+   *         If the participant is not registered in the SML
+   * @throws IOException
+   *         In case of a DNS error or a timeout
+   * @see SMLDNSResolver#getSMPURIOfParticipant(IParticipantIdentifier, ISMLInfo)
+   * @see SMPPooledRequestExecutor#SMPPooledRequestExecutor(SMLDNSResolver)
+   */
+  public BDXRClientReadOnly (@Nonnull final IParticipantIdentifier aParticipantIdentifier,
+                             @Nonnull final ISMLInfo aSMLInfo,
+                             @Nonnull final SMLDNSResolver aDNSResolver) throws IOException
+  {
+    this (aDNSResolver.getSMPURIOfParticipant (aParticipantIdentifier, aSMLInfo));
+  }
+
   /**
    * Constructor with SML lookup
    *
@@ -165,6 +220,7 @@ public class BDXRClientReadOnly
 
     // Set default proxy from configuration file
     m_aProxy = SMPClientConfiguration.getHttpProxy ();
+    m_bCoalesceRequests = SMPClientConfiguration.isCoalesceRequests ();
   }
 
   /**
@@ -202,6 +258,68 @@ public class BDXRClientReadOnly
     return this;
   }
 
+  /**
+   * @return The executor used to perform the HTTP requests. By default the
+   *         shared {@link SMPPooledRequestExecutor#getDefaultInstance()} is
+   *         used. Never <code>null</code>.
+   */
+  @Nonnull
+  public ISMPRequestExecutor getRequestExecutor ()
+  {
+    return m_aRequestExecutor;
+  }
+
+  /**
+   * Set the executor to be used to perform the HTTP requests.
+   *
+   * @param aRequestExecutor
+   *        The executor to be used. May not be <code>null</code>.
+   * @return this for chaining
+   */
+  @Nonnull
+  public BDXRClientReadOnly setRequestExecutor (@Nonnull final ISMPRequestExecutor aRequestExecutor)
+  {
+    m_aRequestExecutor = ValueEnforcer.notNull (aRequestExecutor, "RequestExecutor");
+    return this;
+  }
+
+  /**
+   * @return <code>true</code> if concurrent identical requests for service
+   *         groups and service registrations of this client share a single
+   *         HTTP request with the ones of other clients, <code>false</code>
+   *         otherwise. The default is taken from
+   *         {@link SMPClientConfiguration#isCoalesceRequests()}.
+   */
+  public boolean isCoalesceRequests ()
+  {
+    return m_bCoalesceRequests;
+  }
+
+  /**
+   * Enable or disable the coalescing of concurrent identical requests. If
+   * enabled, a request of this client waits for an identical request that is
+   * already in flight - from this or any other client instance with coalescing
+   * enabled - and shares its result. Requests are identical if they have the
+   * same URI, use the same request executor instance, the same proxy and are
+   * performed by clients of the same class.<br>
+   * Only enable it, if the callers don't modify the returned objects: all
+   * callers waiting for the same request receive the same
+   * {@link ServiceGroupType} or {@link SignedServiceMetadataType} object and
+   * the same exception object. Don't enable it, if
+   * {@link #executeRequest(Request)} is overridden in a way that makes the
+   * results of identical URIs differ between instances of the same class.
+   *
+   * @param bCoalesceRequests
+   *        <code>true</code> to enable, <code>false</code> to disable.
+   * @return this for chaining
+   */
+  @Nonnull
+  public BDXRClientReadOnly setCoalesceRequests (final boolean bCoalesceRequests)
+  {
+    m_bCoalesceRequests = bCoalesceRequests;
+    return this;
+  }
+
   /**
    * The main execution routine. Overwrite this method to add additional
    * properties to the call.
@@ -218,7 +336,7 @@ public class BDXRClientReadOnly
   {
     if (m_aProxy != null)
       aRequest.viaProxy (m_aProxy);
-    return aRequest.connectTimeout (5000).socketTimeout (10000).execute ();
+    return m_aRequestExecutor.execute (aRequest);
   }
 
   /**
@@ -281,10 +399,29 @@ public class BDXRClientReadOnly
   {
     ValueEnforcer.notNull (aServiceGroupID, "ServiceGroupID");
 
+    final String sURI = m_sSMPHost + IdentifierHelper.getIdentifierURIPercentEncoded (aServiceGroupID);
+    if (!m_bCoalesceRequests)
+      return _getServiceGroup (sURI);
+
+    final SMPRequestCoalescer.RequestKey aKey = new SMPRequestCoalescer.RequestKey (sURI,
+                                                                                    m_aRequestExecutor,
+                                                                                    m_aProxy,
+                                                                                    getClass ());
+    return s_aServiceGroupCoalescer.execute (aKey, new SMPRequestCoalescer.IRequest <ServiceGroupType> ()
+    {
+      public ServiceGroupType execute () throws SMPClientException
+      {
+        return _getServiceGroup (sURI);
+      }
+    });
+  }
+
+  @Nonnull
+  private ServiceGroupType _getServiceGroup (@Nonnull final String sURI) throws SMPClientException
+  {
     try
     {
-      final Request aRequest = Request.Get (m_sSMPHost +
-                                            IdentifierHelper.getIdentifierURIPercentEncoded (aServiceGroupID));
+      final Request aRequest = Request.Get (sURI);
       return executeRequest (aRequest).handleResponse (SMPHttpResponseHandlerUnsigned.create (new BDXRMarshallerServiceGroupType ()));
     }
     catch (final Exception ex)
@@ -352,12 +489,31 @@ public class BDXRClientReadOnly
     ValueEnforcer.notNull (aServiceGroupID, "ServiceGroupID");
     ValueEnforcer.notNull (aDocumentTypeID, "DocumentTypeID");
 
+    final String sURI = m_sSMPHost +
+                        IdentifierHelper.getIdentifierURIPercentEncoded (aServiceGroupID) +
+                        "/services/" +
+                        IdentifierHelper.getIdentifierURIPercentEncoded (aDocumentTypeID);
+    if (!m_bCoalesceRequests)
+      return _getServiceRegistration (sURI);
+
+    final SMPRequestCoalescer.RequestKey aKey = new SMPRequestCoalescer.RequestKey (sURI,
+                                                                                    m_aRequestExecutor,
+                                                                                    m_aProxy,
+                                                                                    getClass ());
+    return s_aServiceRegistrationCoalescer.execute (aKey, new SMPRequestCoalescer.IRequest <SignedServiceMetadataType> ()
+    {
+      public SignedServiceMetadataType execute () throws SMPClientException
+      {
+        return _getServiceRegistration (sURI);
+      }
+    });
+  }
+
+  @Nonnull
+  private SignedServiceMetadataType _getServiceRegistration (@Nonnull final String sURI) throws SMPClientException
+  {
     try
     {
-      final String sURI = m_sSMPHost +
-                          IdentifierHelper.getIdentifierURIPercentEncoded (aServiceGroupID) +
-                          "/services/" +
-                          IdentifierHelper.getIdentifierURIPercentEncoded (aDocumentTypeID);
       Request aRequest = Request.Get (sURI);
       SignedServiceMetadataType aMetadata = executeRequest (aRequest).handleResponse (SMPHttpResponseHandlerSigned.create (new BDXRMarshallerSignedServiceMetadataType ()));
 
@@ -0,0 +1,528 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.smpclient;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.equals.EqualsHelper;
+import com.helger.commons.hashcode.HashCodeGenerator;
+import com.helger.commons.string.ToStringGenerator;
+import com.helger.peppol.identifier.IDocumentTypeIdentifier;
+import com.helger.peppol.identifier.IParticipantIdentifier;
+import com.helger.peppol.identifier.IProcessIdentifier;
+import com.helger.peppol.identifier.IdentifierHelper;
+import com.helger.peppol.smp.ISMPTransportProfile;
+import com.helger.peppol.smpclient.exception.SMPClientException;
+import com.helger.peppol.smpclient.exception.SMPClientNotFoundException;
+
+/**
+ * Abstract base class for a caching endpoint resolver in front of an SMP
+ * client. Results are cached per participant identifier, document type
+ * identifier, process identifier and transport profile. Participant identifiers
+ * are compared case insensitive as in
+ * {@link IdentifierHelper#areParticipantIdentifiersEqual(IParticipantIdentifier, IParticipantIdentifier)}
+ * .
+ * <ul>
+ * <li>The number of cached entries is bounded - the least recently used entry
+ * is removed first.</li>
+ * <li>Found endpoints are cached for the TTL.</li>
+ * <li>Not found endpoints (including {@link SMPClientNotFoundException}) are
+ * cached for the negative TTL.</li>
+ * <li>After the TTL an entry is still returned during the stale period, while
+ * it is refreshed in the background. Only after the stale period the lookup is
+ * done synchronously again.</li>
+ * <li>All other errors are never cached.</li>
+ * </ul>
+ *
+ * @author Philip Helger
+ * @param <T>
+ *        The endpoint type
+ */
+@ThreadSafe
+public abstract class AbstractCachingEndpointResolver <T>
+{
+  /** Default maximum number of cached endpoints */
+  public static final int DEFAULT_MAX_SIZE = 10000;
+  /** Default time to live of a found endpoint: 10 minutes */
+  public static final long DEFAULT_TTL_MILLIS = 10 * 60 * 1000L;
+  /** Default time to live of a not found endpoint: 1 minute */
+  public static final long DEFAULT_NEGATIVE_TTL_MILLIS = 60 * 1000L;
+  /** Default time a stale entry may be served while refreshing: 5 minutes */
+  public static final long DEFAULT_STALE_MILLIS = 5 * 60 * 1000L;
+
+  private static final Logger s_aLogger = LoggerFactory.getLogger (AbstractCachingEndpointResolver.class);
+
+  @Immutable
+  private static final class Key
+  {
+    private final String m_sParticipantScheme;
+    private final String m_sParticipantValue;
+    private final String m_sDocTypeScheme;
+    private final String m_sDocTypeValue;
+    private final String m_sProcessScheme;
+    private final String m_sProcessValue;
+    private final String m_sTransportProfileID;
+    private final int m_nHashCode;
+
+    public Key (@Nonnull final IParticipantIdentifier aParticipantID,
+                @Nonnull final IDocumentTypeIdentifier aDocumentTypeID,
+                @Nonnull final IProcessIdentifier aProcessID,
+                @Nonnull final ISMPTransportProfile aTransportProfile)
+    {
+      // Participant identifiers are case insensitive
+      m_sParticipantScheme = _lower (aParticipantID.getScheme ());
+      m_sParticipantValue = _lower (aParticipantID.getValue ());
+      // Document type and process identifiers are case sensitive
+      m_sDocTypeScheme = aDocumentTypeID.getScheme ();
+      m_sDocTypeValue = aDocumentTypeID.getValue ();
+      m_sProcessScheme = aProcessID.getScheme ();
+      m_sProcessValue = aProcessID.getValue ();
+      m_sTransportProfileID = aTransportProfile.getID ();
+      m_nHashCode = new HashCodeGenerator (this).append (m_sParticipantScheme)
+                                                .append (m_sParticipantValue)
+                                                .append (m_sDocTypeScheme)
+                                                .append (m_sDocTypeValue)
+                                                .append (m_sProcessScheme)
+                                                .append (m_sProcessValue)
+                                                .append (m_sTransportProfileID)
+                                                .getHashCode ();
+    }
+
+    @Nullable
+    private static String _lower (@Nullable final String s)
+    {
+      return s == null ? null : s.toLowerCase (Locale.US);
+    }
+
+    @Override
+    public boolean equals (final Object o)
+    {
+      if (o == this)
+        return true;
+      if (o == null || !getClass ().equals (o.getClass ()))
+        return false;
+      final Key rhs = (Key) o;
+      return m_nHashCode == rhs.m_nHashCode &&
+             EqualsHelper.equals (m_sParticipantScheme, rhs.m_sParticipantScheme) &&
+             EqualsHelper.equals (m_sParticipantValue, rhs.m_sParticipantValue) &&
+             EqualsHelper.equals (m_sDocTypeScheme, rhs.m_sDocTypeScheme) &&
+             EqualsHelper.equals (m_sDocTypeValue, rhs.m_sDocTypeValue) &&
+             EqualsHelper.equals (m_sProcessScheme, rhs.m_sProcessScheme) &&
+             EqualsHelper.equals (m_sProcessValue, rhs.m_sProcessValue) &&
+             EqualsHelper.equals (m_sTransportProfileID, rhs.m_sTransportProfileID);
+    }
+
+    @Override
+    public int hashCode ()
+    {
+      return m_nHashCode;
+    }
+  }
+
+  private static final class Entry <T>
+  {
+    private final T m_aEndpoint;
+    private final long m_nExpiration;
+    private final long m_nStaleExpiration;
+    private final AtomicBoolean m_aRefreshing = new AtomicBoolean (false);
+
+    public Entry (@Nullable final T aEndpoint, final long nExpiration, final long nStaleExpiration)
+    {
+      m_aEndpoint = aEndpoint;
+      m_nExpiration = nExpiration;
+      m_nStaleExpiration = nStaleExpiration;
+    }
+  }
+
+  private final int m_nMaxSize;
+  private final long m_nTTLMillis;
+  private final long m_nNegativeTTLMillis;
+  private final long m_nStaleMillis;
+  private final ExecutorService m_aRefreshExecutor;
+  private final Lock m_aLock = new ReentrantLock ();
+  @GuardedBy ("m_aLock")
+  private final Map <Key, Entry <T>> m_aMap;
+  private final AtomicLong m_aHits = new AtomicLong ();
+  private final AtomicLong m_aStaleHits = new AtomicLong ();
+  private final AtomicLong m_aMisses = new AtomicLong ();
+
+  /**
+   * Constructor
+   *
+   * @param nMaxSize
+   *        The maximum number of cached endpoints. Must be &gt; 0.
+   * @param nTTLMillis
+   *        The time to live of a found endpoint in milliseconds. Must be &gt;
+   *        0.
+   * @param nNegativeTTLMillis
+   *        The time to live of a not found endpoint in milliseconds. Must be
+   *        &ge; 0. Use 0 to disable negative caching.
+   * @param nStaleMillis
+   *        The time in milliseconds after the expiration during which the
+   *        expired entry is returned while it is refreshed in the background.
+   *        Must be &ge; 0. Use 0 to disable background refresh.
+   * @param aRefreshExecutor
+   *        The executor service on which background refreshes are performed.
+   *        May not be <code>null</code>.
+   */
+  protected AbstractCachingEndpointResolver (@Nonnegative final int nMaxSize,
+                                             @Nonnegative final long nTTLMillis,
+                                             @Nonnegative final long nNegativeTTLMillis,
+                                             @Nonnegative final long nStaleMillis,
+                                             @Nonnull final ExecutorService aRefreshExecutor)
+  {
+    ValueEnforcer.isGT0 (nMaxSize, "MaxSize");
+    ValueEnforcer.isGT0 (nTTLMillis, "TTLMillis");
+    ValueEnforcer.isGE0 (nNegativeTTLMillis, "NegativeTTLMillis");
+    ValueEnforcer.isGE0 (nStaleMillis, "StaleMillis");
+    ValueEnforcer.notNull (aRefreshExecutor, "RefreshExecutor");
+    m_nMaxSize = nMaxSize;
+    m_nTTLMillis = nTTLMillis;
+    m_nNegativeTTLMillis = nNegativeTTLMillis;
+    m_nStaleMillis = nStaleMillis;
+    m_aRefreshExecutor = aRefreshExecutor;
+    // Access order for LRU
+    m_aMap = new LinkedHashMap <Key, Entry <T>> (16, 0.75f, true)
+    {
+      @Override
+      protected boolean removeEldestEntry (final Map.Entry <Key, Entry <T>> aEldest)
+      {
+        return size () > m_nMaxSize;
+      }
+    };
+  }
+
+  /**
+   * @return The maximum number of cached endpoints. Always &gt; 0.
+   */
+  @Nonnegative
+  public int getMaxSize ()
+  {
+    return m_nMaxSize;
+  }
+
+  /**
+   * @return The time to live of a found endpoint in milliseconds. Always &gt;
+   *         0.
+   */
+  @Nonnegative
+  public long getTTLMillis ()
+  {
+    return m_nTTLMillis;
+  }
+
+  /**
+   * @return The time to live of a not found endpoint in milliseconds. Always
+   *         &ge; 0.
+   */
+  @Nonnegative
+  public long getNegativeTTLMillis ()
+  {
+    return m_nNegativeTTLMillis;
+  }
+
+  /**
+   * @return The time in milliseconds an expired entry may be served while it
+   *         is refreshed in the background. Always &ge; 0.
+   */
+  @Nonnegative
+  public long getStaleMillis ()
+  {
+    return m_nStaleMillis;
+  }
+
+  /**
+   * Perform the real endpoint lookup.
+   *
+   * @param aParticipantID
+   *        Participant ID. Never <code>null</code>.
+   * @param aDocumentTypeID
+   *        Document type ID. Never <code>null</code>.
+   * @param aProcessID
+   *        Process ID. Never <code>null</code>.
+   * @param aTransportProfile
+   *        Transport profile. Never <code>null</code>.
+   * @return <code>null</code> if no such endpoint exists.
+   * @throws SMPClientException
+   *         In case of error. {@link SMPClientNotFoundException} is treated
+   *         like a <code>null</code> return value.
+   */
+  @Nullable
+  protected abstract T loadEndpoint (@Nonnull IParticipantIdentifier aParticipantID,
+                                     @Nonnull IDocumentTypeIdentifier aDocumentTypeID,
+                                     @Nonnull IProcessIdentifier aProcessID,
+                                     @Nonnull ISMPTransportProfile aTransportProfile) throws SMPClientException;
+
+  @Nullable
+  private T _loadAndCache (@Nonnull final Key aKey,
+                           @Nonnull final IParticipantIdentifier aParticipantID,
+                           @Nonnull final IDocumentTypeIdentifier aDocumentTypeID,
+                           @Nonnull final IProcessIdentifier aProcessID,
+                           @Nonnull final ISMPTransportProfile aTransportProfile) throws SMPClientException
+  {
+    T aEndpoint;
+    try
+    {
+      aEndpoint = loadEndpoint (aParticipantID, aDocumentTypeID, aProcessID, aTransportProfile);
+    }
+    catch (final SMPClientNotFoundException ex)
+    {
+      aEndpoint = null;
+    }
+
+    final long nTTL = aEndpoint != null ? m_nTTLMillis : m_nNegativeTTLMillis;
+    if (nTTL > 0)
+    {
+      final long nExpiration = System.currentTimeMillis () + nTTL;
+      final Entry <T> aEntry = new Entry <T> (aEndpoint, nExpiration, nExpiration + m_nStaleMillis);
+      m_aLock.lock ();
+      try
+      {
+        m_aMap.put (aKey, aEntry);
+      }
+      finally
+      {
+        m_aLock.unlock ();
+      }
+    }
+    return aEndpoint;
+  }
+
+  private void _refreshInBackground (@Nonnull final Key aKey,
+                                     @Nonnull final Entry <T> aEntry,
+                                     @Nonnull final IParticipantIdentifier aParticipantID,
+                                     @Nonnull final IDocumentTypeIdentifier aDocumentTypeID,
+                                     @Nonnull final IProcessIdentifier aProcessID,
+                                     @Nonnull final ISMPTransportProfile aTransportProfile)
+  {
+    // Only one refresh per entry
+    if (!aEntry.m_aRefreshing.compareAndSet (false, true))
+      return;
+
+    try
+    {
+      m_aRefreshExecutor.execute (new Runnable ()
+      {
+        public void run ()
+        {
+          try
+          {
+            _loadAndCache (aKey, aParticipantID, aDocumentTypeID, aProcessID, aTransportProfile);
+          }
+          catch (final SMPClientException ex)
+          {
+            // Keep the stale entry until the stale period is over
+            s_aLogger.warn ("Failed to refresh endpoint of " +
+                            IdentifierHelper.getIdentifierURIEncoded (aParticipantID) +
+                            ": " +
+                            ex.getMessage ());
+          }
+          finally
+          {
+            // Allow the next refresh, even after an unexpected exception
+            aEntry.m_aRefreshing.set (false);
+          }
+        }
+      });
+    }
+    catch (final RejectedExecutionException ex)
+    {
+      aEntry.m_aRefreshing.set (false);
+    }
+  }
+
+  /**
+   * Get the endpoint from the cache or from the SMP.
+   *
+   * @param aParticipantID
+   *        Participant ID. May not be <code>null</code>.
+   * @param aDocumentTypeID
+   *        Document type ID. May not be <code>null</code>.
+   * @param aProcessID
+   *        Process ID. May not be <code>null</code>.
+   * @param aTransportProfile
+   *        Transport profile. May not be <code>null</code>.
+   * @return <code>null</code> if no such endpoint exists.
+   * @throws SMPClientException
+   *         In case the SMP lookup fails
+   */
+  @Nullable
+  public T getEndpoint (@Nonnull final IParticipantIdentifier aParticipantID,
+                        @Nonnull final IDocumentTypeIdentifier aDocumentTypeID,
+                        @Nonnull final IProcessIdentifier aProcessID,
+                        @Nonnull final ISMPTransportProfile aTransportProfile) throws SMPClientException
+  {
+    ValueEnforcer.notNull (aParticipantID, "ParticipantID");
+    ValueEnforcer.notNull (aDocumentTypeID, "DocumentTypeID");
+    ValueEnforcer.notNull (aProcessID, "ProcessID");
+    ValueEnforcer.notNull (aTransportProfile, "TransportProfile");
+
+    final Key aKey = new Key (aParticipantID, aDocumentTypeID, aProcessID, aTransportProfile);
+    final long nNow = System.currentTimeMillis ();
+
+    Entry <T> aEntry;
+    m_aLock.lock ();
+    try
+    {
+      aEntry = m_aMap.get (aKey);
+      if (aEntry != null && aEntry.m_nStaleExpiration <= nNow)
+      {
+        // Completely expired
+        m_aMap.remove (aKey);
+        aEntry = null;
+      }
+    }
+    finally
+    {
+      m_aLock.unlock ();
+    }
+
+    if (aEntry != null)
+    {
+      if (aEntry.m_nExpiration > nNow)
+        m_aHits.incrementAndGet ();
+      else
+      {
+        // Stale - return the old value and refresh asynchronously
+        m_aStaleHits.incrementAndGet ();
+        _refreshInBackground (aKey, aEntry, aParticipantID, aDocumentTypeID, aProcessID, aTransportProfile);
+      }
+      return aEntry.m_aEndpoint;
+    }
+
+    m_aMisses.incrementAndGet ();
+    return _loadAndCache (aKey, aParticipantID, aDocumentTypeID, aProcessID, aTransportProfile);
+  }
+
+  /**
+   * @return The number of lookups answered from a non-expired cache entry.
+   */
+  @Nonnegative
+  public long getHitCount ()
+  {
+    return m_aHits.get ();
+  }
+
+  /**
+   * @return The number of lookups answered from an expired entry during the
+   *         stale period.
+   */
+  @Nonnegative
+  public long getStaleHitCount ()
+  {
+    return m_aStaleHits.get ();
+  }
+
+  /**
+   * @return The number of lookups that required a synchronous SMP query.
+   */
+  @Nonnegative
+  public long getMissCount ()
+  {
+    return m_aMisses.get ();
+  }
+
+  /**
+   * @return The number of currently cached entries, including already expired
+   *         ones that were not yet evicted.
+   */
+  @Nonnegative
+  public int getSize ()
+  {
+    m_aLock.lock ();
+    try
+    {
+      return m_aMap.size ();
+    }
+    finally
+    {
+      m_aLock.unlock ();
+    }
+  }
+
+  /**
+   * Remove all cached entries. The counters are not modified.
+   */
+  public void clearCache ()
+  {
+    m_aLock.lock ();
+    try
+    {
+      m_aMap.clear ();
+    }
+    finally
+    {
+      m_aLock.unlock ();
+    }
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("MaxSize", m_nMaxSize)
+                                       .append ("TTLMillis", m_nTTLMillis)
+                                       .append ("NegativeTTLMillis", m_nNegativeTTLMillis)
+                                       .append ("StaleMillis", m_nStaleMillis)
+                                       .append ("Hits", m_aHits.get ())
+                                       .append ("StaleHits", m_aStaleHits.get ())
+                                       .append ("Misses", m_aMisses.get ())
+                                       .toString ();
+  }
+}
@@ -0,0 +1,488 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.smpclient;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.annotation.Nonempty;
+import com.helger.commons.annotation.OverrideOnDemand;
+import com.helger.commons.annotation.ReturnsMutableCopy;
+import com.helger.commons.string.ToStringGenerator;
+import com.helger.peppol.sml.ISMLInfo;
+import com.helger.peppol.sml.SMLDNSEntry;
+import com.helger.peppol.sml.SMLDNSResolver;
+import com.helger.peppol.smp.EndpointType;
+import com.helger.peppol.smpclient.exception.SMPClientException;
+import com.helger.peppol.utils.BusdoxURLHelper;
+
+/**
+ * Resolve the endpoints of many receivers at once. All requests are grouped by
+ * the SMP host the participant is registered at (as determined by
+ * {@link #getSMPHostName(String)}), and each group is processed by at most
+ * {@link #getMaxConcurrentRequestsPerHost()} parallel tasks on the provided
+ * executor service. Participants registered at the same SMP share this limit.
+ * The requests are still sent to the participant specific SMP URI (as
+ * determined by
+ * {@link BusdoxURLHelper#getSMPURIOfParticipant(com.helger.peppol.identifier.IParticipantIdentifier, ISMLInfo)}
+ * ). Errors are reported per request and never abort the whole batch.<br>
+ * By default the shared executor service of {@link SMPClientReadOnlyAsync} is
+ * used and the per host parallelism matches
+ * {@link SMPClientConfiguration#getMaxConnectionsPerRoute()}, so that the
+ * batch never waits for HTTP connections of {@link SMPPooledRequestExecutor}.
+ * The resolution must not be started from a thread of the used executor
+ * service. If the executor service rejects a task because it is saturated, the
+ * task is executed in the calling thread.
+ *
+ * @author Philip Helger
+ */
+@ThreadSafe
+public class SMPBatchEndpointResolver
+{
+  private static final Logger s_aLogger = LoggerFactory.getLogger (SMPBatchEndpointResolver.class);
+
+  private final ISMLInfo m_aSMLInfo;
+  private final ExecutorService m_aExecutorService;
+  private final int m_nMaxConcurrentRequestsPerHost;
+  private final SMLDNSResolver m_aDNSResolver;
+
+  /**
+   * Constructor using the default executor service and the default per host
+   * parallelism.
+   *
+   * @param aSMLInfo
+   *        The SML to be used to determine the SMP hosts. May not be
+   *        <code>null</code>.
+   */
+  public SMPBatchEndpointResolver (@Nonnull final ISMLInfo aSMLInfo)
+  {
+    this (aSMLInfo,
+          SMPClientReadOnlyAsync.getDefaultExecutorService (),
+          SMPClientConfiguration.getMaxConnectionsPerRoute ());
+  }
+
+  /**
+   * Constructor
+   *
+   * @param aSMLInfo
+   *        The SML to be used to determine the SMP hosts. May not be
+   *        <code>null</code>.
+   * @param aExecutorService
+   *        The executor service on which the lookups are performed. May not be
+   *        <code>null</code>. Should be bounded.
+   * @param nMaxConcurrentRequestsPerHost
+   *        The maximum number of parallel lookups per SMP host. Must be &gt; 0.
+   */
+  public SMPBatchEndpointResolver (@Nonnull final ISMLInfo aSMLInfo,
+                                   @Nonnull final ExecutorService aExecutorService,
+                                   @Nonnegative final int nMaxConcurrentRequestsPerHost)
+  {
+    this (aSMLInfo, aExecutorService, nMaxConcurrentRequestsPerHost, new SMLDNSResolver ());
+  }
+
+  /**
+   * Constructor
+   *
+   * @param aSMLInfo
+   *        The SML to be used to determine the SMP hosts. May not be
+   *        <code>null</code>.
+   * @param aExecutorService
+   *        The executor service on which the lookups are performed. May not be
+   *        <code>null</code>. Should be bounded.
+   * @param nMaxConcurrentRequestsPerHost
+   *        The maximum number of parallel lookups per SMP host. Must be &gt; 0.
+   * @param aDNSResolver
+   *        The DNS resolver used to determine the SMP host of the
+   *        participants. May not be <code>null</code>.
+   */
+  public SMPBatchEndpointResolver (@Nonnull final ISMLInfo aSMLInfo,
+                                   @Nonnull final ExecutorService aExecutorService,
+                                   @Nonnegative final int nMaxConcurrentRequestsPerHost,
+                                   @Nonnull final SMLDNSResolver aDNSResolver)
+  {
+    ValueEnforcer.notNull (aSMLInfo, "SMLInfo");
+    ValueEnforcer.notNull (aExecutorService, "ExecutorService");
+    ValueEnforcer.isGT0 (nMaxConcurrentRequestsPerHost, "MaxConcurrentRequestsPerHost");
+    ValueEnforcer.notNull (aDNSResolver, "DNSResolver");
+    m_aSMLInfo = aSMLInfo;
+    m_aExecutorService = aExecutorService;
+    m_nMaxConcurrentRequestsPerHost = nMaxConcurrentRequestsPerHost;
+    m_aDNSResolver = aDNSResolver;
+  }
+
+  /**
+   * @return The SML used to determine the SMP hosts. Never <code>null</code>.
+   */
+  @Nonnull
+  public ISMLInfo getSMLInfo ()
+  {
+    return m_aSMLInfo;
+  }
+
+  /**
+   * @return The executor service used by this object. Never <code>null</code>.
+   */
+  @Nonnull
+  public ExecutorService getExecutorService ()
+  {
+    return m_aExecutorService;
+  }
+
+  /**
+   * @return The maximum number of parallel lookups per SMP host. Always &gt; 0.
+   */
+  @Nonnegative
+  public int getMaxConcurrentRequestsPerHost ()
+  {
+    return m_nMaxConcurrentRequestsPerHost;
+  }
+
+  /**
+   * @return The DNS resolver used to determine the SMP host of the
+   *         participants. Never <code>null</code>.
+   */
+  @Nonnull
+  public SMLDNSResolver getDNSResolver ()
+  {
+    return m_aDNSResolver;
+  }
+
+  /**
+   * Determine the SMP host the passed participant host name is registered at.
+   * All participants with the same SMP host share the per host parallelism.
+   * Overwrite this method to use another way of grouping.
+   *
+   * @param sParticipantHostName
+   *        The SML host name of the participant (
+   *        <code>B-&lt;hash&gt;.&lt;scheme&gt;.&lt;sml-zone&gt;</code>). Never
+   *        <code>null</code>.
+   * @return The SMP host name. May neither be <code>null</code> nor empty.
+   * @throws UnknownHostException
+   *         If the participant is not registered in the SML
+   * @throws IOException
+   *         In case of a DNS error or a timeout
+   * @see SMLDNSEntry#getSMPHostName()
+   */
+  @Nonnull
+  @Nonempty
+  @OverrideOnDemand
+  protected String getSMPHostName (@Nonnull final String sParticipantHostName) throws IOException
+  {
+    final SMLDNSEntry aEntry = m_aDNSResolver.resolve (sParticipantHostName);
+    if (aEntry == null)
+      throw new UnknownHostException (sParticipantHostName);
+    return aEntry.getSMPHostName ();
+  }
+
+  /**
+   * Create the SMP client for the passed participant specific SMP URI. The
+   * client is shared by all requests of the same participant within one batch.
+   * Overwrite this method to customize the client (e.g. the proxy).
+   *
+   * @param aSMPURI
+   *        The participant specific SMP URI. Never <code>null</code>.
+   * @return The SMP client to use. May not be <code>null</code>.
+   */
+  @Nonnull
+  @OverrideOnDemand
+  protected SMPClientReadOnly createClient (@Nonnull final URI aSMPURI)
+  {
+    return new SMPClientReadOnly (aSMPURI);
+  }
+
+  /**
+   * Resolve a single endpoint.
+   *
+   * @param aClient
+   *        The SMP client as created by {@link #createClient(URI)}. Never
+   *        <code>null</code>.
+   * @param aRequest
+   *        The request to resolve. Never <code>null</code>.
+   * @return The endpoint or <code>null</code> if no matching endpoint is
+   *         registered.
+   * @throws SMPClientException
+   *         in case something goes wrong
+   */
+  @Nullable
+  @OverrideOnDemand
+  protected EndpointType resolveEndpoint (@Nonnull final SMPClientReadOnly aClient,
+                                          @Nonnull final SMPEndpointRequest aRequest) throws SMPClientException
+  {
+    return aClient.getEndpoint (aRequest.getParticipantID (),
+                                aRequest.getDocumentTypeID (),
+                                aRequest.getProcessID (),
+                                aRequest.getTransportProfile ());
+  }
+
+  @Nonnull
+  private SMPEndpointResult _resolve (@Nonnull final SMPClientReadOnly aClient,
+                                      @Nonnull final SMPEndpointRequest aRequest)
+  {
+    try
+    {
+      return SMPEndpointResult.createSuccess (resolveEndpoint (aClient, aRequest));
+    }
+    catch (final SMPClientException ex)
+    {
+      return SMPEndpointResult.createFailure (ex);
+    }
+    catch (final RuntimeException ex)
+    {
+      return SMPEndpointResult.createFailure (SMPClientReadOnly.getConvertedException (ex));
+    }
+  }
+
+  @Nonnull
+  private <T> Future <T> _submit (@Nonnull final Callable <T> aCallable)
+  {
+    try
+    {
+      return m_aExecutorService.submit (aCallable);
+    }
+    catch (final RejectedExecutionException ex)
+    {
+      // Executor service is saturated - run in the calling thread
+      final FutureTask <T> ret = new FutureTask <T> (aCallable);
+      ret.run ();
+      return ret;
+    }
+  }
+
+  /**
+   * Resolve the endpoints of all passed requests. This method blocks until all
+   * requests are resolved.
+   *
+   * @param aRequests
+   *        The requests to resolve. May not be <code>null</code>. Duplicate
+   *        requests are only resolved once.
+   * @return A map from each request to its result, in the order of the passed
+   *         collection. Never <code>null</code>. If the current thread is
+   *         interrupted, all unfinished requests contain an exception.
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public Map <SMPEndpointRequest, SMPEndpointResult> resolveAll (@Nonnull final Collection <SMPEndpointRequest> aRequests)
+  {
+    ValueEnforcer.notNull (aRequests, "Requests");
+
+    final Set <SMPEndpointRequest> aUniqueRequests = new LinkedHashSet <SMPEndpointRequest> (aRequests);
+    final Map <SMPEndpointRequest, SMPEndpointResult> aResults = new ConcurrentHashMap <SMPEndpointRequest, SMPEndpointResult> ();
+
+    // Determine the participant specific SMP URIs
+    final Map <URI, List <SMPEndpointRequest>> aParticipants = new LinkedHashMap <URI, List <SMPEndpointRequest>> ();
+    for (final SMPEndpointRequest aRequest : aUniqueRequests)
+    {
+      ValueEnforcer.notNull (aRequest, "Request");
+      final URI aSMPURI;
+      try
+      {
+        aSMPURI = BusdoxURLHelper.getSMPURIOfParticipant (aRequest.getParticipantID (), m_aSMLInfo);
+      }
+      catch (final IllegalArgumentException ex)
+      {
+        aResults.put (aRequest,
+                      SMPEndpointResult.createFailure (new SMPClientException ("Failed to determine SMP host of " +
+                                                                               aRequest.getParticipantID (),
+                                                                               ex)));
+        continue;
+      }
+      List <SMPEndpointRequest> aList = aParticipants.get (aSMPURI);
+      if (aList == null)
+      {
+        aList = new ArrayList <SMPEndpointRequest> ();
+        aParticipants.put (aSMPURI, aList);
+      }
+      aList.add (aRequest);
+    }
+
+    // Determine the SMP hosts of all participants in parallel
+    final List <Future <String>> aHostFutures = new ArrayList <Future <String>> ();
+    for (final URI aSMPURI : aParticipants.keySet ())
+      aHostFutures.add (_submit (new Callable <String> ()
+      {
+        public String call () throws IOException
+        {
+          return getSMPHostName (aSMPURI.getHost ());
+        }
+      }));
+
+    // Group by SMP host
+    final Map <String, Queue <SMPEndpointRequest>> aGroups = new LinkedHashMap <String, Queue <SMPEndpointRequest>> ();
+    final Map <SMPEndpointRequest, SMPClientReadOnly> aClients = new ConcurrentHashMap <SMPEndpointRequest, SMPClientReadOnly> ();
+    int nIndex = 0;
+    for (final Map.Entry <URI, List <SMPEndpointRequest>> aEntry : aParticipants.entrySet ())
+    {
+      final Future <String> aHostFuture = aHostFutures.get (nIndex++);
+      String sSMPHostName;
+      try
+      {
+        sSMPHostName = aHostFuture.get ();
+      }
+      catch (final InterruptedException ex)
+      {
+        Thread.currentThread ().interrupt ();
+        for (final Future <String> aOtherFuture : aHostFutures)
+          aOtherFuture.cancel (true);
+        break;
+      }
+      catch (final ExecutionException ex)
+      {
+        final Throwable aCause = ex.getCause ();
+        final SMPClientException aException = aCause instanceof Exception ? SMPClientReadOnly.getConvertedException ((Exception) aCause)
+                                                                          : new SMPClientException ("Failed to determine SMP host",
+                                                                                                    aCause);
+        for (final SMPEndpointRequest aRequest : aEntry.getValue ())
+          aResults.put (aRequest, SMPEndpointResult.createFailure (aException));
+        continue;
+      }
+
+      Queue <SMPEndpointRequest> aQueue = aGroups.get (sSMPHostName);
+      if (aQueue == null)
+      {
+        aQueue = new ConcurrentLinkedQueue <SMPEndpointRequest> ();
+        aGroups.put (sSMPHostName, aQueue);
+      }
+      final SMPClientReadOnly aClient = createClient (aEntry.getKey ());
+      for (final SMPEndpointRequest aRequest : aEntry.getValue ())
+      {
+        aClients.put (aRequest, aClient);
+        aQueue.add (aRequest);
+      }
+    }
+
+    if (s_aLogger.isDebugEnabled ())
+      s_aLogger.debug ("Resolving " +
+                       aUniqueRequests.size () +
+                       " endpoint(s) of " +
+                       aParticipants.size () +
+                       " participant(s) on " +
+                       aGroups.size () +
+                       " SMP host(s)");
+
+    // Each worker processes requests of a single host until the queue is empty
+    final List <Future <?>> aFutures = new ArrayList <Future <?>> ();
+    for (final Queue <SMPEndpointRequest> aQueue : aGroups.values ())
+    {
+      final int nWorkers = Math.min (aQueue.size (), m_nMaxConcurrentRequestsPerHost);
+      for (int i = 0; i < nWorkers; ++i)
+        aFutures.add (_submit (Executors.callable (new Runnable ()
+        {
+          public void run ()
+          {
+            SMPEndpointRequest aRequest;
+            while ((aRequest = aQueue.poll ()) != null)
+              aResults.put (aRequest, _resolve (aClients.get (aRequest), aRequest));
+          }
+        })));
+    }
+
+    // Wait for all workers
+    for (final Future <?> aFuture : aFutures)
+    {
+      try
+      {
+        aFuture.get ();
+      }
+      catch (final InterruptedException ex)
+      {
+        Thread.currentThread ().interrupt ();
+        for (final Future <?> aOtherFuture : aFutures)
+          aOtherFuture.cancel (true);
+        break;
+      }
+      catch (final ExecutionException ex)
+      {
+        // Only Errors can end up here
+        s_aLogger.error ("Error in batch endpoint resolution", ex.getCause ());
+      }
+    }
+
+    // Build result in the order of the requests
+    final Map <SMPEndpointRequest, SMPEndpointResult> ret = new LinkedHashMap <SMPEndpointRequest, SMPEndpointResult> ();
+    for (final SMPEndpointRequest aRequest : aUniqueRequests)
+    {
+      SMPEndpointResult aResult = aResults.get (aRequest);
+      if (aResult == null)
+        aResult = SMPEndpointResult.createFailure (new SMPClientException ("Endpoint resolution of " +
+                                                                           aRequest +
+                                                                           " was not finished"));
+      ret.put (aRequest, aResult);
+    }
+    return ret;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("SMLInfo", m_aSMLInfo)
+                                       .append ("ExecutorService", m_aExecutorService)
+                                       .append ("MaxConcurrentRequestsPerHost", m_nMaxConcurrentRequestsPerHost)
+                                       .append ("DNSResolver", m_aDNSResolver)
+                                       .toString ();
+  }
+}
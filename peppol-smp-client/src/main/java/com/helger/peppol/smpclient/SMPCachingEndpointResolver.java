@@ -0,0 +1,218 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.smpclient;
+
+import java.util.concurrent.ExecutorService;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.peppol.identifier.IDocumentTypeIdentifier;
+import com.helger.peppol.identifier.IParticipantIdentifier;
+import com.helger.peppol.identifier.IProcessIdentifier;
+import com.helger.peppol.sml.ISMLInfo;
+import com.helger.peppol.smp.EndpointType;
+import com.helger.peppol.smp.ISMPTransportProfile;
+import com.helger.peppol.smp.SignedServiceMetadataType;
+import com.helger.peppol.smpclient.exception.SMPClientException;
+
+/**
+ * A caching endpoint resolver in front of {@link SMPClientReadOnly}. It either
+ * uses a fixed SMP client or determines the SMP of each participant via the DNS
+ * of the provided SML.
+ *
+ * @author Philip Helger
+ * @see AbstractCachingEndpointResolver
+ */
+@ThreadSafe
+public class SMPCachingEndpointResolver extends AbstractCachingEndpointResolver <EndpointType>
+{
+  private final SMPClientReadOnly m_aClient;
+  private final ISMLInfo m_aSMLInfo;
+
+  private SMPCachingEndpointResolver (@Nullable final SMPClientReadOnly aClient,
+                                      @Nullable final ISMLInfo aSMLInfo,
+                                      @Nonnegative final int nMaxSize,
+                                      @Nonnegative final long nTTLMillis,
+                                      @Nonnegative final long nNegativeTTLMillis,
+                                      @Nonnegative final long nStaleMillis,
+                                      @Nonnull final ExecutorService aRefreshExecutor)
+  {
+    super (nMaxSize, nTTLMillis, nNegativeTTLMillis, nStaleMillis, aRefreshExecutor);
+    m_aClient = aClient;
+    m_aSMLInfo = aSMLInfo;
+  }
+
+  /**
+   * Constructor for a fixed SMP using the default cache settings.
+   *
+   * @param aClient
+   *        The SMP client to use. May not be <code>null</code>.
+   */
+  public SMPCachingEndpointResolver (@Nonnull final SMPClientReadOnly aClient)
+  {
+    this (aClient,
+          DEFAULT_MAX_SIZE,
+          DEFAULT_TTL_MILLIS,
+          DEFAULT_NEGATIVE_TTL_MILLIS,
+          DEFAULT_STALE_MILLIS,
+          SMPClientReadOnlyAsync.getDefaultExecutorService ());
+  }
+
+  /**
+   * Constructor for a fixed SMP.
+   *
+   * @param aClient
+   *        The SMP client to use. May not be <code>null</code>.
+   * @param nMaxSize
+   *        The maximum number of cached endpoints. Must be &gt; 0.
+   * @param nTTLMillis
+   *        The time to live of a found endpoint in milliseconds. Must be &gt;
+   *        0.
+   * @param nNegativeTTLMillis
+   *        The time to live of a not found endpoint in milliseconds. Must be
+   *        &ge; 0.
+   * @param nStaleMillis
+   *        The stale period in milliseconds. Must be &ge; 0.
+   * @param aRefreshExecutor
+   *        The executor service for background refreshes. May not be
+   *        <code>null</code>.
+   */
+  public SMPCachingEndpointResolver (@Nonnull final SMPClientReadOnly aClient,
+                                     @Nonnegative final int nMaxSize,
+                                     @Nonnegative final long nTTLMillis,
+                                     @Nonnegative final long nNegativeTTLMillis,
+                                     @Nonnegative final long nStaleMillis,
+                                     @Nonnull final ExecutorService aRefreshExecutor)
+  {
+    this (ValueEnforcer.notNull (aClient, "Client"),
+          null,
+          nMaxSize,
+          nTTLMillis,
+          nNegativeTTLMillis,
+          nStaleMillis,
+          aRefreshExecutor);
+  }
+
+  /**
+   * Constructor for DNS based SMP lookup using the default cache settings.
+   *
+   * @param aSMLInfo
+   *        The SML to be used to find the SMP of each participant. May not be
+   *        <code>null</code>.
+   */
+  public SMPCachingEndpointResolver (@Nonnull final ISMLInfo aSMLInfo)
+  {
+    this (aSMLInfo,
+          DEFAULT_MAX_SIZE,
+          DEFAULT_TTL_MILLIS,
+          DEFAULT_NEGATIVE_TTL_MILLIS,
+          DEFAULT_STALE_MILLIS,
+          SMPClientReadOnlyAsync.getDefaultExecutorService ());
+  }
+
+  /**
+   * Constructor for DNS based SMP lookup.
+   *
+   * @param aSMLInfo
+   *        The SML to be used to find the SMP of each participant. May not be
+   *        <code>null</code>.
+   * @param nMaxSize
+   *        The maximum number of cached endpoints. Must be &gt; 0.
+   * @param nTTLMillis
+   *        The time to live of a found endpoint in milliseconds. Must be &gt;
+   *        0.
+   * @param nNegativeTTLMillis
+   *        The time to live of a not found endpoint in milliseconds. Must be
+   *        &ge; 0.
+   * @param nStaleMillis
+   *        The stale period in milliseconds. Must be &ge; 0.
+   * @param aRefreshExecutor
+   *        The executor service for background refreshes. May not be
+   *        <code>null</code>.
+   */
+  public SMPCachingEndpointResolver (@Nonnull final ISMLInfo aSMLInfo,
+                                     @Nonnegative final int nMaxSize,
+                                     @Nonnegative final long nTTLMillis,
+                                     @Nonnegative final long nNegativeTTLMillis,
+                                     @Nonnegative final long nStaleMillis,
+                                     @Nonnull final ExecutorService aRefreshExecutor)
+  {
+    this (null,
+          ValueEnforcer.notNull (aSMLInfo, "SMLInfo"),
+          nMaxSize,
+          nTTLMillis,
+          nNegativeTTLMillis,
+          nStaleMillis,
+          aRefreshExecutor);
+  }
+
+  /**
+   * Get the SMP client to use for the passed participant.
+   *
+   * @param aParticipantID
+   *        Participant ID. Never <code>null</code>.
+   * @return The SMP client to use. Never <code>null</code>.
+   */
+  @Nonnull
+  protected SMPClientReadOnly getClient (@Nonnull final IParticipantIdentifier aParticipantID)
+  {
+    if (m_aClient != null)
+      return m_aClient;
+    return new SMPClientReadOnly (aParticipantID, m_aSMLInfo);
+  }
+
+  @Override
+  @Nullable
+  protected EndpointType loadEndpoint (@Nonnull final IParticipantIdentifier aParticipantID,
+                                       @Nonnull final IDocumentTypeIdentifier aDocumentTypeID,
+                                       @Nonnull final IProcessIdentifier aProcessID,
+                                       @Nonnull final ISMPTransportProfile aTransportProfile) throws SMPClientException
+  {
+    // Throws SMPClientNotFoundException which is cached negatively
+    final SignedServiceMetadataType aSignedServiceMetadata = getClient (aParticipantID).getServiceRegistration (aParticipantID,
+                                                                                                                aDocumentTypeID);
+    return SMPClientReadOnly.getEndpoint (aSignedServiceMetadata, aProcessID, aTransportProfile);
+  }
+}
@@ -147,4 +147,92 @@ public final class SMPClientConfiguration
 
     return null;
   }
+
+  /**
+   * @return The HTTP connection timeout in milliseconds as specified in the
+   *         configuration file by the key <code>http.connect.timeout.ms</code>
+   *         . If none is present 5000 (5 seconds) is returned as a default.
+   */
+  public static int getConnectionTimeoutMS ()
+  {
+    return s_aConfigFile.getInt ("http.connect.timeout.ms", 5000);
+  }
+
+  /**
+   * @return The HTTP socket (read) timeout in milliseconds as specified in the
+   *         configuration file by the key <code>http.socket.timeout.ms</code>.
+   *         If none is present 10000 (10 seconds) is returned as a default.
+   */
+  public static int getSocketTimeoutMS ()
+  {
+    return s_aConfigFile.getInt ("http.socket.timeout.ms", 10000);
+  }
+
+  /**
+   * @return The maximum number of pooled HTTP connections in total as
+   *         specified in the configuration file by the key
+   *         <code>http.pool.max.total</code>. If none is present 100 is
+   *         returned as a default.
+   */
+  public static int getMaxConnectionsTotal ()
+  {
+    return s_aConfigFile.getInt ("http.pool.max.total", 100);
+  }
+
+  /**
+   * @return The maximum number of pooled HTTP connections per route (SMP host)
+   *         as specified in the configuration file by the key
+   *         <code>http.pool.max.per.route</code>. If none is present 20 is
+   *         returned as a default.
+   */
+  public static int getMaxConnectionsPerRoute ()
+  {
+    return s_aConfigFile.getInt ("http.pool.max.per.route", 20);
+  }
+
+  /**
+   * @return The time in milliseconds a pooled HTTP connection is kept alive if
+   *         the SMP server does not send a "Keep-Alive" header, as specified in
+   *         the configuration file by the key <code>http.keepalive.ms</code>.
+   *         If none is present 30000 (30 seconds) is returned as a default.
+   */
+  public static long getKeepAliveMS ()
+  {
+    return s_aConfigFile.getLong ("http.keepalive.ms", 30000);
+  }
+
+  /**
+   * @return The time in milliseconds after which idle pooled HTTP connections
+   *         are closed, as specified in the configuration file by the key
+   *         <code>http.pool.idle.timeout.ms</code>. If none is present 60000
+   *         (60 seconds) is returned as a default.
+   */
+  public static long getIdleConnectionTimeoutMS ()
+  {
+    return s_aConfigFile.getLong ("http.pool.idle.timeout.ms", 60000);
+  }
+
+  /**
+   * @return The maximum number of pending lookups of the default executor
+   *         service of {@link SMPClientReadOnlyAsync} as specified in the
+   *         configuration file by the key <code>async.queue.size</code>. If
+   *         none is present 1000 is returned as a default.
+   */
+  public static int getAsyncQueueSize ()
+  {
+    return s_aConfigFile.getInt ("async.queue.size", 1000);
+  }
+
+  /**
+   * @return <code>true</code> if new SMP and BDXR clients coalesce concurrent
+   *         identical requests, as specified in the configuration file by the
+   *         key <code>coalesce.requests</code>. If none is present
+   *         {@link SMPClientReadOnly#DEFAULT_COALESCE_REQUESTS} is returned as
+   *         a default.
+   * @see SMPClientReadOnly#setCoalesceRequests(boolean)
+   */
+  public static boolean isCoalesceRequests ()
+  {
+    return s_aConfigFile.getBoolean ("coalesce.requests", SMPClientReadOnly.DEFAULT_COALESCE_REQUESTS);
+  }
 }
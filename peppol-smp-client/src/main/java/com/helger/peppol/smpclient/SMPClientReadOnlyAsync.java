@@ -0,0 +1,437 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.smpclient;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.string.ToStringGenerator;
+import com.helger.peppol.identifier.IDocumentTypeIdentifier;
+import com.helger.peppol.identifier.IParticipantIdentifier;
+import com.helger.peppol.identifier.IProcessIdentifier;
+import com.helger.peppol.smp.CompleteServiceGroupType;
+import com.helger.peppol.smp.EndpointType;
+import com.helger.peppol.smp.ISMPTransportProfile;
+import com.helger.peppol.smp.ServiceGroupType;
+import com.helger.peppol.smp.SignedServiceMetadataType;
+import com.helger.peppol.smpclient.exception.SMPClientException;
+
+/**
+ * Asynchronous counterpart of {@link SMPClientReadOnly}. All lookups are
+ * executed on a bounded thread pool and return a {@link Future}, so that the
+ * calling thread is not blocked for the network round trip, the signature
+ * verification and the unmarshalling. Use {@link #getResult(Future)} to
+ * retrieve a result with the same exception semantics as the synchronous
+ * client.<br>
+ * Note: this is not non-blocking I/O. Each lookup runs the synchronous client
+ * on a pool thread, so a lookup in progress occupies one thread for the whole
+ * round trip including the signature verification and the unmarshalling. The
+ * number of concurrent lookups is therefore limited by the number of pool
+ * threads, and lookups exceeding it wait in the queue of the pool.<br>
+ * By default all instances share a single pool with
+ * {@link SMPClientConfiguration#getMaxConnectionsTotal()} daemon threads, so
+ * that the number of concurrent lookups matches the size of the HTTP
+ * connection pool of {@link SMPPooledRequestExecutor}. Its queue is limited to
+ * {@link SMPClientConfiguration#getAsyncQueueSize()} pending lookups. If the
+ * queue is full, new lookups are rejected with a
+ * {@link RejectedExecutionException}.
+ *
+ * @author Philip Helger
+ */
+@ThreadSafe
+public class SMPClientReadOnlyAsync
+{
+  private static final class AsyncThreadFactory implements ThreadFactory
+  {
+    private final AtomicInteger m_aCounter = new AtomicInteger ();
+
+    public Thread newThread (@Nonnull final Runnable aRunnable)
+    {
+      final Thread aThread = new Thread (aRunnable, "SMP-client-async-" + m_aCounter.incrementAndGet ());
+      aThread.setDaemon (true);
+      return aThread;
+    }
+  }
+
+  private static final class SingletonHolder
+  {
+    static final ExecutorService s_aInstance = createExecutorService (SMPClientConfiguration.getMaxConnectionsTotal (),
+                                                                      SMPClientConfiguration.getAsyncQueueSize ());
+  }
+
+  private final SMPClientReadOnly m_aClient;
+  private final ExecutorService m_aExecutorService;
+
+  /**
+   * Constructor using the shared default thread pool.
+   *
+   * @param aClient
+   *        The synchronous SMP client to be used. May not be <code>null</code>
+   *        .
+   */
+  public SMPClientReadOnlyAsync (@Nonnull final SMPClientReadOnly aClient)
+  {
+    this (aClient, getDefaultExecutorService ());
+  }
+
+  /**
+   * Constructor
+   *
+   * @param aClient
+   *        The synchronous SMP client to be used. May not be <code>null</code>
+   *        .
+   * @param aExecutorService
+   *        The executor service on which the lookups are performed. May not be
+   *        <code>null</code>. Should be bounded.
+   * @see #createExecutorService(int, int)
+   */
+  public SMPClientReadOnlyAsync (@Nonnull final SMPClientReadOnly aClient,
+                                 @Nonnull final ExecutorService aExecutorService)
+  {
+    m_aClient = ValueEnforcer.notNull (aClient, "Client");
+    m_aExecutorService = ValueEnforcer.notNull (aExecutorService, "ExecutorService");
+  }
+
+  /**
+   * Create a new bounded executor service for asynchronous SMP lookups. It uses
+   * daemon threads that are stopped after being idle for 60 seconds. If all
+   * threads are busy and the queue is full, new tasks are rejected with a
+   * {@link RejectedExecutionException}.
+   *
+   * @param nMaxThreads
+   *        The maximum number of threads and therefore concurrent lookups. Must
+   *        be &gt; 0.
+   * @param nMaxQueueSize
+   *        The maximum number of pending lookups. Must be &gt; 0.
+   * @return A new executor service. Never <code>null</code>. Must be shut down
+   *         by the caller.
+   */
+  @Nonnull
+  public static ExecutorService createExecutorService (@Nonnegative final int nMaxThreads,
+                                                       @Nonnegative final int nMaxQueueSize)
+  {
+    ValueEnforcer.isGT0 (nMaxThreads, "MaxThreads");
+    ValueEnforcer.isGT0 (nMaxQueueSize, "MaxQueueSize");
+
+    final ThreadPoolExecutor ret = new ThreadPoolExecutor (nMaxThreads,
+                                                           nMaxThreads,
+                                                           60,
+                                                           TimeUnit.SECONDS,
+                                                           new ArrayBlockingQueue <Runnable> (nMaxQueueSize),
+                                                           new AsyncThreadFactory (),
+                                                           new ThreadPoolExecutor.AbortPolicy ());
+    ret.allowCoreThreadTimeOut (true);
+    return ret;
+  }
+
+  /**
+   * @return The shared default executor service used for asynchronous SMP
+   *         lookups. Never <code>null</code>.
+   * @see #createExecutorService(int, int)
+   */
+  @Nonnull
+  public static ExecutorService getDefaultExecutorService ()
+  {
+    return SingletonHolder.s_aInstance;
+  }
+
+  /**
+   * @return The underlying synchronous SMP client. Never <code>null</code>.
+   */
+  @Nonnull
+  public SMPClientReadOnly getClient ()
+  {
+    return m_aClient;
+  }
+
+  /**
+   * @return The executor service used by this object. Never <code>null</code>.
+   */
+  @Nonnull
+  public ExecutorService getExecutorService ()
+  {
+    return m_aExecutorService;
+  }
+
+  /**
+   * Asynchronous version of
+   * {@link SMPClientReadOnly#getCompleteServiceGroup(IParticipantIdentifier)}.
+   *
+   * @param aServiceGroupID
+   *        The service group id corresponding to the service group which one
+   *        wants to get. May not be <code>null</code>.
+   * @return The future complete service group. Never <code>null</code>.
+   * @throws RejectedExecutionException
+   *         If the executor service cannot accept more lookups
+   */
+  @Nonnull
+  public Future <CompleteServiceGroupType> getCompleteServiceGroup (@Nonnull final IParticipantIdentifier aServiceGroupID)
+  {
+    ValueEnforcer.notNull (aServiceGroupID, "ServiceGroupID");
+
+    return m_aExecutorService.submit (new Callable <CompleteServiceGroupType> ()
+    {
+      public CompleteServiceGroupType call () throws SMPClientException
+      {
+        return m_aClient.getCompleteServiceGroup (aServiceGroupID);
+      }
+    });
+  }
+
+  /**
+   * Asynchronous version of
+   * {@link SMPClientReadOnly#getServiceGroup(IParticipantIdentifier)}.
+   *
+   * @param aServiceGroupID
+   *        The service group id corresponding to the service group which one
+   *        wants to get. May not be <code>null</code>.
+   * @return The future service group. Never <code>null</code>.
+   * @throws RejectedExecutionException
+   *         If the executor service cannot accept more lookups
+   */
+  @Nonnull
+  public Future <ServiceGroupType> getServiceGroup (@Nonnull final IParticipantIdentifier aServiceGroupID)
+  {
+    ValueEnforcer.notNull (aServiceGroupID, "ServiceGroupID");
+
+    return m_aExecutorService.submit (new Callable <ServiceGroupType> ()
+    {
+      public ServiceGroupType call () throws SMPClientException
+      {
+        return m_aClient.getServiceGroup (aServiceGroupID);
+      }
+    });
+  }
+
+  /**
+   * Asynchronous version of
+   * {@link SMPClientReadOnly#getServiceGroupOrNull(IParticipantIdentifier)}.
+   *
+   * @param aServiceGroupID
+   *        The service group id corresponding to the service group which one
+   *        wants to get. May not be <code>null</code>.
+   * @return The future service group. Never <code>null</code>. The result of
+   *         the future is <code>null</code> if the service group is not
+   *         present.
+   * @throws RejectedExecutionException
+   *         If the executor service cannot accept more lookups
+   */
+  @Nonnull
+  public Future <ServiceGroupType> getServiceGroupOrNull (@Nonnull final IParticipantIdentifier aServiceGroupID)
+  {
+    ValueEnforcer.notNull (aServiceGroupID, "ServiceGroupID");
+
+    return m_aExecutorService.submit (new Callable <ServiceGroupType> ()
+    {
+      public ServiceGroupType call () throws SMPClientException
+      {
+        return m_aClient.getServiceGroupOrNull (aServiceGroupID);
+      }
+    });
+  }
+
+  /**
+   * Asynchronous version of
+   * {@link SMPClientReadOnly#getServiceRegistration(IParticipantIdentifier, IDocumentTypeIdentifier)}
+   * .
+   *
+   * @param aServiceGroupID
+   *        The service group id of the service metadata to get. May not be
+   *        <code>null</code>.
+   * @param aDocumentTypeID
+   *        The document type of the service metadata to get. May not be
+   *        <code>null</code>.
+   * @return The future signed service metadata object. Never <code>null</code>
+   *         .
+   * @throws RejectedExecutionException
+   *         If the executor service cannot accept more lookups
+   */
+  @Nonnull
+  public Future <SignedServiceMetadataType> getServiceRegistration (@Nonnull final IParticipantIdentifier aServiceGroupID,
+                                                                    @Nonnull final IDocumentTypeIdentifier aDocumentTypeID)
+  {
+    ValueEnforcer.notNull (aServiceGroupID, "ServiceGroupID");
+    ValueEnforcer.notNull (aDocumentTypeID, "DocumentTypeID");
+
+    return m_aExecutorService.submit (new Callable <SignedServiceMetadataType> ()
+    {
+      public SignedServiceMetadataType call () throws SMPClientException
+      {
+        return m_aClient.getServiceRegistration (aServiceGroupID, aDocumentTypeID);
+      }
+    });
+  }
+
+  /**
+   * Asynchronous version of
+   * {@link SMPClientReadOnly#getServiceRegistrationOrNull(IParticipantIdentifier, IDocumentTypeIdentifier)}
+   * .
+   *
+   * @param aServiceGroupID
+   *        The service group id of the service metadata to get. May not be
+   *        <code>null</code>.
+   * @param aDocumentTypeID
+   *        The document type of the service metadata to get. May not be
+   *        <code>null</code>.
+   * @return The future signed service metadata object. Never <code>null</code>
+   *         . The result of the future is <code>null</code> if no such
+   *         registration is present.
+   * @throws RejectedExecutionException
+   *         If the executor service cannot accept more lookups
+   */
+  @Nonnull
+  public Future <SignedServiceMetadataType> getServiceRegistrationOrNull (@Nonnull final IParticipantIdentifier aServiceGroupID,
+                                                                          @Nonnull final IDocumentTypeIdentifier aDocumentTypeID)
+  {
+    ValueEnforcer.notNull (aServiceGroupID, "ServiceGroupID");
+    ValueEnforcer.notNull (aDocumentTypeID, "DocumentTypeID");
+
+    return m_aExecutorService.submit (new Callable <SignedServiceMetadataType> ()
+    {
+      public SignedServiceMetadataType call () throws SMPClientException
+      {
+        return m_aClient.getServiceRegistrationOrNull (aServiceGroupID, aDocumentTypeID);
+      }
+    });
+  }
+
+  /**
+   * Asynchronous version of
+   * {@link SMPClientReadOnly#getEndpoint(IParticipantIdentifier, IDocumentTypeIdentifier, IProcessIdentifier, ISMPTransportProfile)}
+   * .
+   *
+   * @param aServiceGroupID
+   *        The service group id of the service metadata to get. May not be
+   *        <code>null</code>.
+   * @param aDocumentTypeID
+   *        The document type of the service metadata to get. May not be
+   *        <code>null</code>.
+   * @param aProcessID
+   *        The process ID of the service metadata to get. May not be
+   *        <code>null</code>.
+   * @param aTransportProfile
+   *        The transport profile of the service metadata to get. May not be
+   *        <code>null</code>.
+   * @return The future endpoint. Never <code>null</code>. The result of the
+   *         future is <code>null</code> if no such endpoint is present.
+   * @throws RejectedExecutionException
+   *         If the executor service cannot accept more lookups
+   */
+  @Nonnull
+  public Future <EndpointType> getEndpoint (@Nonnull final IParticipantIdentifier aServiceGroupID,
+                                            @Nonnull final IDocumentTypeIdentifier aDocumentTypeID,
+                                            @Nonnull final IProcessIdentifier aProcessID,
+                                            @Nonnull final ISMPTransportProfile aTransportProfile)
+  {
+    ValueEnforcer.notNull (aServiceGroupID, "ServiceGroupID");
+    ValueEnforcer.notNull (aDocumentTypeID, "DocumentTypeID");
+    ValueEnforcer.notNull (aProcessID, "ProcessID");
+    ValueEnforcer.notNull (aTransportProfile, "TransportProfile");
+
+    return m_aExecutorService.submit (new Callable <EndpointType> ()
+    {
+      public EndpointType call () throws SMPClientException
+      {
+        return m_aClient.getEndpoint (aServiceGroupID, aDocumentTypeID, aProcessID, aTransportProfile);
+      }
+    });
+  }
+
+  /**
+   * Wait for the result of the passed future and convert any execution error
+   * into an {@link SMPClientException}.
+   *
+   * @param aFuture
+   *        The future as returned by one of the lookup methods of this class.
+   *        May not be <code>null</code>.
+   * @return The result of the future. May be <code>null</code> for the
+   *         "OrNull" lookups.
+   * @throws SMPClientException
+   *         The exception thrown by the lookup, or a wrapped exception if the
+   *         current thread was interrupted while waiting.
+   * @param <T>
+   *        Result type
+   */
+  @Nullable
+  public static <T> T getResult (@Nonnull final Future <T> aFuture) throws SMPClientException
+  {
+    ValueEnforcer.notNull (aFuture, "Future");
+
+    try
+    {
+      return aFuture.get ();
+    }
+    catch (final InterruptedException ex)
+    {
+      Thread.currentThread ().interrupt ();
+      throw new SMPClientException ("Interrupted while waiting for the SMP lookup", ex);
+    }
+    catch (final ExecutionException ex)
+    {
+      final Throwable aCause = ex.getCause ();
+      if (aCause instanceof Exception)
+        throw SMPClientReadOnly.getConvertedException ((Exception) aCause);
+      throw new SMPClientException ("Error in SMP lookup", ex);
+    }
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("Client", m_aClient)
+                                       .append ("ExecutorService", m_aExecutorService)
+                                       .toString ();
+  }
+}
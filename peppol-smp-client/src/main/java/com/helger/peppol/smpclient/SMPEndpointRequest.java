@@ -0,0 +1,168 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.smpclient;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.hashcode.HashCodeGenerator;
+import com.helger.commons.string.ToStringGenerator;
+import com.helger.peppol.identifier.IDocumentTypeIdentifier;
+import com.helger.peppol.identifier.IParticipantIdentifier;
+import com.helger.peppol.identifier.IProcessIdentifier;
+import com.helger.peppol.identifier.IdentifierHelper;
+import com.helger.peppol.smp.ISMPTransportProfile;
+
+/**
+ * A single endpoint lookup as used by {@link SMPBatchEndpointResolver}. Two
+ * requests are equal if the URI encoded identifiers and the transport profile
+ * IDs are equal.
+ *
+ * @author Philip Helger
+ */
+@Immutable
+public final class SMPEndpointRequest
+{
+  private final IParticipantIdentifier m_aParticipantID;
+  private final IDocumentTypeIdentifier m_aDocumentTypeID;
+  private final IProcessIdentifier m_aProcessID;
+  private final ISMPTransportProfile m_aTransportProfile;
+  // Status vars
+  private final String m_sKey;
+
+  /**
+   * Constructor
+   *
+   * @param aParticipantID
+   *        The receiver participant ID. May not be <code>null</code>.
+   * @param aDocumentTypeID
+   *        The document type ID. May not be <code>null</code>.
+   * @param aProcessID
+   *        The process ID. May not be <code>null</code>.
+   * @param aTransportProfile
+   *        The transport profile. May not be <code>null</code>.
+   */
+  public SMPEndpointRequest (@Nonnull final IParticipantIdentifier aParticipantID,
+                             @Nonnull final IDocumentTypeIdentifier aDocumentTypeID,
+                             @Nonnull final IProcessIdentifier aProcessID,
+                             @Nonnull final ISMPTransportProfile aTransportProfile)
+  {
+    ValueEnforcer.notNull (aParticipantID, "ParticipantID");
+    ValueEnforcer.notNull (aDocumentTypeID, "DocumentTypeID");
+    ValueEnforcer.notNull (aProcessID, "ProcessID");
+    ValueEnforcer.notNull (aTransportProfile, "TransportProfile");
+    m_aParticipantID = aParticipantID;
+    m_aDocumentTypeID = aDocumentTypeID;
+    m_aProcessID = aProcessID;
+    m_aTransportProfile = aTransportProfile;
+    m_sKey = IdentifierHelper.getIdentifierURIEncoded (aParticipantID) +
+             '/' +
+             IdentifierHelper.getIdentifierURIEncoded (aDocumentTypeID) +
+             '/' +
+             IdentifierHelper.getIdentifierURIEncoded (aProcessID) +
+             '/' +
+             aTransportProfile.getID ();
+  }
+
+  /**
+   * @return The receiver participant ID. Never <code>null</code>.
+   */
+  @Nonnull
+  public IParticipantIdentifier getParticipantID ()
+  {
+    return m_aParticipantID;
+  }
+
+  /**
+   * @return The document type ID. Never <code>null</code>.
+   */
+  @Nonnull
+  public IDocumentTypeIdentifier getDocumentTypeID ()
+  {
+    return m_aDocumentTypeID;
+  }
+
+  /**
+   * @return The process ID. Never <code>null</code>.
+   */
+  @Nonnull
+  public IProcessIdentifier getProcessID ()
+  {
+    return m_aProcessID;
+  }
+
+  /**
+   * @return The transport profile. Never <code>null</code>.
+   */
+  @Nonnull
+  public ISMPTransportProfile getTransportProfile ()
+  {
+    return m_aTransportProfile;
+  }
+
+  @Override
+  public boolean equals (final Object o)
+  {
+    if (o == this)
+      return true;
+    if (o == null || !getClass ().equals (o.getClass ()))
+      return false;
+    final SMPEndpointRequest rhs = (SMPEndpointRequest) o;
+    return m_sKey.equals (rhs.m_sKey);
+  }
+
+  @Override
+  public int hashCode ()
+  {
+    return new HashCodeGenerator (this).append (m_sKey).getHashCode ();
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("ParticipantID", m_aParticipantID)
+                                       .append ("DocumentTypeID", m_aDocumentTypeID)
+                                       .append ("ProcessID", m_aProcessID)
+                                       .append ("TransportProfile", m_aTransportProfile)
+                                       .toString ();
+  }
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.smpclient;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.string.ToStringGenerator;
+import com.helger.peppol.smp.EndpointType;
+import com.helger.peppol.smpclient.exception.SMPClientException;
+
+/**
+ * The result of a single endpoint lookup of {@link SMPBatchEndpointResolver}.
+ * It either contains the resolved endpoint (which may be <code>null</code> if
+ * the SMP has no matching endpoint) or the exception that occurred.
+ *
+ * @author Philip Helger
+ */
+@Immutable
+public final class SMPEndpointResult
+{
+  private final EndpointType m_aEndpoint;
+  private final SMPClientException m_aException;
+
+  private SMPEndpointResult (@Nullable final EndpointType aEndpoint, @Nullable final SMPClientException aException)
+  {
+    m_aEndpoint = aEndpoint;
+    m_aException = aException;
+  }
+
+  /**
+   * @return <code>true</code> if the lookup finished without an exception,
+   *         <code>false</code> otherwise.
+   */
+  public boolean isSuccess ()
+  {
+    return m_aException == null;
+  }
+
+  /**
+   * @return <code>true</code> if the lookup was successful and an endpoint was
+   *         found.
+   */
+  public boolean hasEndpoint ()
+  {
+    return m_aEndpoint != null;
+  }
+
+  /**
+   * @return The resolved endpoint. May be <code>null</code> if the lookup
+   *         failed or if no matching endpoint is registered.
+   */
+  @Nullable
+  public EndpointType getEndpoint ()
+  {
+    return m_aEndpoint;
+  }
+
+  /**
+   * @return The address of the resolved endpoint. May be <code>null</code>.
+   * @see SMPClientReadOnly#getEndpointAddress(EndpointType)
+   */
+  @Nullable
+  public String getEndpointAddress ()
+  {
+    return SMPClientReadOnly.getEndpointAddress (m_aEndpoint);
+  }
+
+  /**
+   * @return The exception of the failed lookup. May be <code>null</code> if
+   *         the lookup was successful.
+   */
+  @Nullable
+  public SMPClientException getException ()
+  {
+    return m_aException;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).appendIfNotNull ("Endpoint", m_aEndpoint)
+                                       .appendIfNotNull ("Exception", m_aException)
+                                       .toString ();
+  }
+
+  /**
+   * Create a successful result.
+   *
+   * @param aEndpoint
+   *        The resolved endpoint. May be <code>null</code> if no matching
+   *        endpoint is registered.
+   * @return The new result. Never <code>null</code>.
+   */
+  @Nonnull
+  public static SMPEndpointResult createSuccess (@Nullable final EndpointType aEndpoint)
+  {
+    return new SMPEndpointResult (aEndpoint, null);
+  }
+
+  /**
+   * Create a failure result.
+   *
+   * @param aException
+   *        The exception that occurred. May not be <code>null</code>.
+   * @return The new result. Never <code>null</code>.
+   */
+  @Nonnull
+  public static SMPEndpointResult createFailure (@Nonnull final SMPClientException aException)
+  {
+    ValueEnforcer.notNull (aException, "Exception");
+    return new SMPEndpointResult (null, aException);
+  }
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.smpclient;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.conn.util.InetAddressUtils;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.string.ToStringGenerator;
+import com.helger.peppol.sml.SMLDNSEntry;
+import com.helger.peppol.sml.SMLDNSResolver;
+
+/**
+ * An HTTP client {@link DnsResolver} that resolves the addresses of the SMP
+ * connections with an {@link SMLDNSResolver} instead of the JVM global
+ * {@link InetAddress} cache. The request URI and therefore the HTTP Host header
+ * are not modified, so the participant host name is still sent to the SMP.
+ * CNAME chains are followed using the same resolver. Only IPv4 addresses are
+ * resolved. IP address literals are used as they are.
+ *
+ * @author Philip Helger
+ * @see SMPPooledRequestExecutor#SMPPooledRequestExecutor(SMLDNSResolver)
+ */
+@ThreadSafe
+public class SMPHttpDnsResolver implements DnsResolver
+{
+  /** The maximum number of CNAME records to follow */
+  public static final int MAX_CNAME_CHAIN_LENGTH = 8;
+
+  private final SMLDNSResolver m_aDNSResolver;
+
+  /**
+   * Constructor
+   *
+   * @param aDNSResolver
+   *        The DNS resolver to be used. May not be <code>null</code>.
+   */
+  public SMPHttpDnsResolver (@Nonnull final SMLDNSResolver aDNSResolver)
+  {
+    m_aDNSResolver = ValueEnforcer.notNull (aDNSResolver, "DNSResolver");
+  }
+
+  /**
+   * @return The DNS resolver used. Never <code>null</code>.
+   */
+  @Nonnull
+  public SMLDNSResolver getDNSResolver ()
+  {
+    return m_aDNSResolver;
+  }
+
+  @Nonnull
+  public InetAddress [] resolve (@Nonnull final String sHost) throws UnknownHostException
+  {
+    if (InetAddressUtils.isIPv4Address (sHost) || InetAddressUtils.isIPv6Address (sHost))
+    {
+      // No lookup is performed for literals
+      return InetAddress.getAllByName (sHost);
+    }
+
+    String sHostName = sHost;
+    for (int i = 0; i <= MAX_CNAME_CHAIN_LENGTH; ++i)
+    {
+      final SMLDNSEntry aEntry;
+      try
+      {
+        aEntry = m_aDNSResolver.resolve (sHostName);
+      }
+      catch (final IOException ex)
+      {
+        final UnknownHostException ex2 = new UnknownHostException ("Failed to resolve '" +
+                                                                   sHostName +
+                                                                   "': " +
+                                                                   ex.getMessage ());
+        ex2.initCause (ex);
+        throw ex2;
+      }
+      if (aEntry == null)
+        throw new UnknownHostException (sHostName);
+
+      final List <InetAddress> aAddresses = aEntry.getAllAddresses ();
+      if (!aAddresses.isEmpty ())
+        return aAddresses.toArray (new InetAddress [aAddresses.size ()]);
+
+      // Only a CNAME record is present - resolve the target
+      sHostName = aEntry.getCanonicalHostName ();
+    }
+    throw new UnknownHostException ("Too many CNAME records resolving '" + sHost + "'");
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("DNSResolver", m_aDNSResolver).toString ();
+  }
+}
@@ -43,14 +43,8 @@ package com.helger.peppol.smpclient;
 import java.io.IOException;
 import java.io.InputStream;
 import java.security.Key;
-import java.security.KeyStore;
 import java.security.PublicKey;
-import java.security.cert.CertPath;
-import java.security.cert.CertPathValidator;
-import java.security.cert.CertificateFactory;
-import java.security.cert.PKIXParameters;
 import java.security.cert.X509Certificate;
-import java.util.Arrays;
 import java.util.Iterator;
 
 import javax.annotation.Nonnull;
@@ -82,12 +76,15 @@ import org.w3c.dom.Document;
 import org.w3c.dom.NodeList;
 
 import com.helger.commons.ValueEnforcer;
+import com.helger.commons.annotation.Nonempty;
 import com.helger.commons.collection.ArrayHelper;
 import com.helger.commons.io.stream.NonBlockingByteArrayInputStream;
 import com.helger.commons.io.stream.StreamHelper;
 import com.helger.commons.xml.serialize.read.DOMReader;
 import com.helger.jaxb.AbstractJAXBMarshaller;
-import com.helger.peppol.utils.KeyStoreHelper;
+import com.helger.peppol.utils.CachedTrustStore;
+import com.helger.peppol.utils.CertificateValidationCache;
+import com.helger.peppol.utils.TrustStoreCache;
 
 /**
  * This is the Apache HTTP client response handler to verify signed HTTP
@@ -129,10 +126,10 @@ public final class SMPHttpResponseHandlerSigned <T> implements ResponseHandler <
     private final String m_sTrustoreLocation;
     private final String m_sTrustStorePassword;
 
-    public X509KeySelector ()
+    public X509KeySelector (@Nonnull final String sTruststoreLocation, @Nullable final String sTruststorePassword)
     {
-      m_sTrustoreLocation = SMPClientConfiguration.getTruststoreLocation ();
-      m_sTrustStorePassword = SMPClientConfiguration.getTruststorePassword ();
+      m_sTrustoreLocation = sTruststoreLocation;
+      m_sTrustStorePassword = sTruststorePassword;
     }
 
     public static boolean algorithmEquals (@Nonnull final String sAlgURI, @Nonnull final String sAlgName)
@@ -168,18 +165,12 @@ public final class SMPHttpResponseHandlerSigned <T> implements ResponseHandler <
             // Check if the certificate is expired or active.
             aCertificate.checkValidity ();
 
-            // Checks whether the certificate is in the trusted store.
-            final X509Certificate [] aCertArray = new X509Certificate [] { aCertificate };
-
-            final KeyStore aKeyStore = KeyStoreHelper.loadKeyStore (m_sTrustoreLocation, m_sTrustStorePassword);
-            // The PKIXParameters constructor may fail because:
-            // - the trustAnchorsParameter is empty
-            final PKIXParameters aPKIXParams = new PKIXParameters (aKeyStore);
-            aPKIXParams.setRevocationEnabled (false);
-            final CertificateFactory aCertificateFactory = CertificateFactory.getInstance ("X509");
-            final CertPath aCertPath = aCertificateFactory.generateCertPath (Arrays.asList (aCertArray));
-            final CertPathValidator aPathValidator = CertPathValidator.getInstance ("PKIX");
-            aPathValidator.validate (aCertPath, aPKIXParams);
+            // Checks whether the certificate is in the trusted store. The
+            // trust store is only loaded once and then cached. Successful
+            // validations of the same certificate are cached as well.
+            final CachedTrustStore aTrustStore = TrustStoreCache.getTrustStore (m_sTrustoreLocation,
+                                                                                m_sTrustStorePassword);
+            s_aCertificateValidationCache.validateCertificate (aTrustStore, aCertificate);
 
             final PublicKey aPublicKey = aCertificate.getPublicKey ();
 
@@ -198,67 +189,162 @@ public final class SMPHttpResponseHandlerSigned <T> implements ResponseHandler <
   }
 
   private static final Logger s_aLogger = LoggerFactory.getLogger (SMPHttpResponseHandlerSigned.class);
+  private static final CertificateValidationCache s_aCertificateValidationCache = new CertificateValidationCache ();
+
+  /**
+   * By default the DOM document used for signature validation is also used for
+   * unmarshalling, so that the response is only parsed once.
+   */
+  public static final boolean DEFAULT_UNMARSHAL_VALIDATED_DOCUMENT = true;
 
   private final AbstractJAXBMarshaller <T> m_aMarshaller;
+  private final boolean m_bUnmarshalValidatedDocument;
+  private final String m_sTruststoreLocation;
+  private final String m_sTruststorePassword;
 
   public SMPHttpResponseHandlerSigned (@Nonnull final AbstractJAXBMarshaller <T> aMarshaller)
+  {
+    this (aMarshaller, DEFAULT_UNMARSHAL_VALIDATED_DOCUMENT);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param aMarshaller
+   *        The marshaller to be used. May not be <code>null</code>.
+   * @param bUnmarshalValidatedDocument
+   *        <code>true</code> to unmarshal the DOM document that was used for
+   *        signature validation (only one XML parsing step per response),
+   *        <code>false</code> to buffer the response bytes and to parse them
+   *        again for unmarshalling.
+   */
+  public SMPHttpResponseHandlerSigned (@Nonnull final AbstractJAXBMarshaller <T> aMarshaller,
+                                       final boolean bUnmarshalValidatedDocument)
+  {
+    this (aMarshaller,
+          bUnmarshalValidatedDocument,
+          SMPClientConfiguration.getTruststoreLocation (),
+          SMPClientConfiguration.getTruststorePassword ());
+  }
+
+  /**
+   * Constructor
+   *
+   * @param aMarshaller
+   *        The marshaller to be used. May not be <code>null</code>.
+   * @param bUnmarshalValidatedDocument
+   *        <code>true</code> to unmarshal the DOM document that was used for
+   *        signature validation (only one XML parsing step per response),
+   *        <code>false</code> to buffer the response bytes and to parse them
+   *        again for unmarshalling.
+   * @param sTruststoreLocation
+   *        The location of the trust store containing the trusted SMP
+   *        certificates. May neither be <code>null</code> nor empty.
+   * @param sTruststorePassword
+   *        The password of the trust store. May be <code>null</code>.
+   */
+  public SMPHttpResponseHandlerSigned (@Nonnull final AbstractJAXBMarshaller <T> aMarshaller,
+                                       final boolean bUnmarshalValidatedDocument,
+                                       @Nonnull @Nonempty final String sTruststoreLocation,
+                                       @Nullable final String sTruststorePassword)
   {
     m_aMarshaller = ValueEnforcer.notNull (aMarshaller, "Marshaller");
+    m_bUnmarshalValidatedDocument = bUnmarshalValidatedDocument;
+    m_sTruststoreLocation = ValueEnforcer.notEmpty (sTruststoreLocation, "TruststoreLocation");
+    m_sTruststorePassword = sTruststorePassword;
+  }
+
+  /**
+   * @return <code>true</code> if the validated DOM document is unmarshalled
+   *         directly, <code>false</code> if the response is parsed twice.
+   */
+  public boolean isUnmarshalValidatedDocument ()
+  {
+    return m_bUnmarshalValidatedDocument;
+  }
+
+  /**
+   * @return The location of the trust store used to check the SMP
+   *         certificates. Neither <code>null</code> nor empty.
+   */
+  @Nonnull
+  @Nonempty
+  public String getTruststoreLocation ()
+  {
+    return m_sTruststoreLocation;
+  }
+
+  /**
+   * @return The cache for the validation results of the SMP signing
+   *         certificates. Use it e.g. to check the hit and miss counters. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  public static CertificateValidationCache getCertificateValidationCache ()
+  {
+    return s_aCertificateValidationCache;
   }
 
-  private static boolean _checkSignature (@Nonnull @WillClose final InputStream aEntityInputStream) throws Exception
+  @Nonnull
+  private static Document _readDocument (@Nonnull @WillClose final InputStream aEntityInputStream) throws Exception
   {
     try
     {
       // Get response from servlet
       final Document aDocument = DOMReader.readXMLDOM (aEntityInputStream);
+      if (aDocument == null)
+        throw new IllegalArgumentException ("Failed to parse SMP XML response");
+      return aDocument;
+    }
+    finally
+    {
+      // Close the input stream
+      StreamHelper.close (aEntityInputStream);
+    }
+  }
 
-      // We make sure that the XML is a Signed. If not, we don't have to check
-      // any certificates.
+  private boolean _checkSignature (@Nonnull final Document aDocument) throws Exception
+  {
+    // We make sure that the XML is a Signed. If not, we don't have to check
+    // any certificates.
 
-      // Find Signature element.
-      final NodeList aNodeList = aDocument.getElementsByTagNameNS (XMLSignature.XMLNS, "Signature");
-      if (aNodeList == null || aNodeList.getLength () == 0)
-        throw new IllegalArgumentException ("Element <Signature> not found in SMP XML response");
+    // Find Signature element.
+    final NodeList aNodeList = aDocument.getElementsByTagNameNS (XMLSignature.XMLNS, "Signature");
+    if (aNodeList == null || aNodeList.getLength () == 0)
+      throw new IllegalArgumentException ("Element <Signature> not found in SMP XML response");
 
-      // Create a DOMValidateContext and specify a KeySelector
-      // and document context.
-      final X509KeySelector aKeySelector = new X509KeySelector ();
-      final DOMValidateContext aValidateContext = new DOMValidateContext (aKeySelector, aNodeList.item (0));
-      final XMLSignatureFactory aSignatureFactory = XMLSignatureFactory.getInstance ("DOM");
+    // Create a DOMValidateContext and specify a KeySelector
+    // and document context.
+    final X509KeySelector aKeySelector = new X509KeySelector (m_sTruststoreLocation, m_sTruststorePassword);
+    final DOMValidateContext aValidateContext = new DOMValidateContext (aKeySelector, aNodeList.item (0));
+    final XMLSignatureFactory aSignatureFactory = XMLSignatureFactory.getInstance ("DOM");
 
-      // Unmarshal the XMLSignature.
-      final XMLSignature aSignature = aSignatureFactory.unmarshalXMLSignature (aValidateContext);
+    // Unmarshal the XMLSignature.
+    final XMLSignature aSignature = aSignatureFactory.unmarshalXMLSignature (aValidateContext);
 
-      // Validate the XMLSignature.
-      final boolean bCoreValid = aSignature.validate (aValidateContext);
-      if (!bCoreValid)
+    // Validate the XMLSignature.
+    final boolean bCoreValid = aSignature.validate (aValidateContext);
+    if (!bCoreValid)
+    {
+      // This code block is for debugging purposes only - it has no semantical
+      // influence
+      s_aLogger.info ("Signature failed core validation");
+      final boolean bSignatureValueValid = aSignature.getSignatureValue ().validate (aValidateContext);
+      s_aLogger.info ("  Signature value valid: " + bSignatureValueValid);
+      if (!bSignatureValueValid)
       {
-        // This code block is for debugging purposes only - it has no semantical
-        // influence
-        s_aLogger.info ("Signature failed core validation");
-        final boolean bSignatureValueValid = aSignature.getSignatureValue ().validate (aValidateContext);
-        s_aLogger.info ("  Signature value valid: " + bSignatureValueValid);
-        if (!bSignatureValueValid)
+        // Check the validation status of each Reference.
+        int nIndex = 0;
+        final Iterator <?> i = aSignature.getSignedInfo ().getReferences ().iterator ();
+        while (i.hasNext ())
         {
-          // Check the validation status of each Reference.
-          int nIndex = 0;
-          final Iterator <?> i = aSignature.getSignedInfo ().getReferences ().iterator ();
-          while (i.hasNext ())
-          {
-            final boolean bRefValid = ((Reference) i.next ()).validate (aValidateContext);
-            s_aLogger.info ("  Reference[" + nIndex + "] validity status: " + (bRefValid ? "valid" : "NOT valid!"));
-            ++nIndex;
-          }
+          final boolean bRefValid = ((Reference) i.next ()).validate (aValidateContext);
+          s_aLogger.info ("  Reference[" + nIndex + "] validity status: " + (bRefValid ? "valid" : "NOT valid!"));
+          ++nIndex;
         }
       }
-      return bCoreValid;
-    }
-    finally
-    {
-      // Close the input stream
-      StreamHelper.close (aEntityInputStream);
     }
+    return bCoreValid;
   }
 
   @Nonnull
@@ -271,15 +357,28 @@ public final class SMPHttpResponseHandlerSigned <T> implements ResponseHandler <
     if (aEntity == null)
       throw new ClientProtocolException ("Response from SMP server contains no content");
 
-    // Get complete response as one big byte buffer
-    final byte [] aResponseBytes = StreamHelper.getAllBytes (aEntity.getContent ());
-    if (ArrayHelper.isEmpty (aResponseBytes))
-      throw new ClientProtocolException ("Could not read SMP server response content");
+    byte [] aResponseBytes = null;
+    final InputStream aIS;
+    if (m_bUnmarshalValidatedDocument)
+    {
+      // Parse directly from the response stream
+      aIS = aEntity.getContent ();
+    }
+    else
+    {
+      // Get complete response as one big byte buffer
+      aResponseBytes = StreamHelper.getAllBytes (aEntity.getContent ());
+      if (ArrayHelper.isEmpty (aResponseBytes))
+        throw new ClientProtocolException ("Could not read SMP server response content");
+      aIS = new NonBlockingByteArrayInputStream (aResponseBytes);
+    }
 
+    final Document aDocument;
     try
     {
       // Check the signature
-      if (!_checkSignature (new NonBlockingByteArrayInputStream (aResponseBytes)))
+      aDocument = _readDocument (aIS);
+      if (!_checkSignature (aDocument))
         throw new ClientProtocolException ("Signature returned from SMP server was not valid");
     }
     catch (final Exception ex)
@@ -288,7 +387,14 @@ public final class SMPHttpResponseHandlerSigned <T> implements ResponseHandler <
     }
 
     // Finally convert to domain object
-    final T ret = m_aMarshaller.read (aResponseBytes);
+    final T ret;
+    if (m_bUnmarshalValidatedDocument)
+    {
+      // Use the already validated DOM - no second parsing
+      ret = m_aMarshaller.read (aDocument);
+    }
+    else
+      ret = m_aMarshaller.read (aResponseBytes);
     if (ret == null)
       throw new ClientProtocolException ("Malformed XML document returned from SMP server");
     return ret;
@@ -299,4 +405,11 @@ public final class SMPHttpResponseHandlerSigned <T> implements ResponseHandler <
   {
     return new SMPHttpResponseHandlerSigned <U> (aMarshaller);
   }
+
+  @Nonnull
+  public static <U> SMPHttpResponseHandlerSigned <U> create (@Nonnull final AbstractJAXBMarshaller <U> aMarshaller,
+                                                             final boolean bUnmarshalValidatedDocument)
+  {
+    return new SMPHttpResponseHandlerSigned <U> (aMarshaller, bUnmarshalValidatedDocument);
+  }
 }
@@ -0,0 +1,372 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.smpclient;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.fluent.Executor;
+import org.apache.http.client.fluent.Request;
+import org.apache.http.client.fluent.Response;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.string.ToStringGenerator;
+import com.helger.peppol.sml.SMLDNSResolver;
+
+/**
+ * An {@link ISMPRequestExecutor} that is backed by a single pooled HTTP client,
+ * so that multiple requests to the same SMP host re-use already established
+ * TCP connections instead of opening a new one for every request. Idle
+ * connections are closed by a background daemon thread.<br>
+ * By default all SMP and BDXR clients share the instance returned by
+ * {@link #getDefaultInstance()} which is configured via
+ * {@link SMPClientConfiguration}.<br>
+ * The addresses of the hosts are resolved with the passed {@link DnsResolver}
+ * or with the JVM global DNS cache if none is passed. To resolve SML
+ * participant host names with the own cache of an {@link SMLDNSResolver}, use
+ * {@link #SMPPooledRequestExecutor(SMLDNSResolver)}.
+ *
+ * @author Philip Helger
+ */
+@ThreadSafe
+public class SMPPooledRequestExecutor implements ISMPRequestExecutor, Closeable
+{
+  private static final Logger s_aLogger = LoggerFactory.getLogger (SMPPooledRequestExecutor.class);
+
+  private static final class SingletonHolder
+  {
+    static final SMPPooledRequestExecutor s_aInstance = new SMPPooledRequestExecutor ();
+  }
+
+  /**
+   * Background thread that periodically closes expired and idle connections of
+   * the pool.
+   */
+  private static final class IdleConnectionEvictor extends Thread
+  {
+    private final PoolingHttpClientConnectionManager m_aConnMgr;
+    private final long m_nIdleTimeoutMS;
+    private volatile boolean m_bShutdown = false;
+
+    public IdleConnectionEvictor (@Nonnull final PoolingHttpClientConnectionManager aConnMgr,
+                                  final long nIdleTimeoutMS)
+    {
+      super ("SMP-client-idle-connection-evictor");
+      setDaemon (true);
+      m_aConnMgr = aConnMgr;
+      m_nIdleTimeoutMS = nIdleTimeoutMS;
+    }
+
+    @Override
+    public void run ()
+    {
+      try
+      {
+        // Check at least every 5 seconds
+        final long nSleepMS = Math.max (1000, Math.min (5000, m_nIdleTimeoutMS / 2));
+        while (!m_bShutdown)
+        {
+          Thread.sleep (nSleepMS);
+          m_aConnMgr.closeExpiredConnections ();
+          m_aConnMgr.closeIdleConnections (m_nIdleTimeoutMS, TimeUnit.MILLISECONDS);
+        }
+      }
+      catch (final InterruptedException ex)
+      {
+        // Terminate
+      }
+    }
+
+    public void shutdown ()
+    {
+      m_bShutdown = true;
+      interrupt ();
+    }
+  }
+
+  private final int m_nConnectTimeoutMS;
+  private final int m_nSocketTimeoutMS;
+  private final DnsResolver m_aDnsResolver;
+  private final PoolingHttpClientConnectionManager m_aConnMgr;
+  private final CloseableHttpClient m_aHttpClient;
+  private final Executor m_aExecutor;
+  private final IdleConnectionEvictor m_aEvictor;
+
+  /**
+   * Constructor using the settings from {@link SMPClientConfiguration}.
+   */
+  public SMPPooledRequestExecutor ()
+  {
+    this (SMPClientConfiguration.getMaxConnectionsTotal (),
+          SMPClientConfiguration.getMaxConnectionsPerRoute (),
+          SMPClientConfiguration.getConnectionTimeoutMS (),
+          SMPClientConfiguration.getSocketTimeoutMS (),
+          SMPClientConfiguration.getKeepAliveMS (),
+          SMPClientConfiguration.getIdleConnectionTimeoutMS ());
+  }
+
+  /**
+   * Constructor using the settings from {@link SMPClientConfiguration} that
+   * resolves the addresses of all hosts with the passed SML DNS resolver
+   * instead of the JVM global DNS cache. The request URIs and therefore the
+   * HTTP Host headers are not modified.
+   *
+   * @param aDNSResolver
+   *        The DNS resolver to be used. May not be <code>null</code>.
+   * @see SMPHttpDnsResolver
+   */
+  public SMPPooledRequestExecutor (@Nonnull final SMLDNSResolver aDNSResolver)
+  {
+    this (SMPClientConfiguration.getMaxConnectionsTotal (),
+          SMPClientConfiguration.getMaxConnectionsPerRoute (),
+          SMPClientConfiguration.getConnectionTimeoutMS (),
+          SMPClientConfiguration.getSocketTimeoutMS (),
+          SMPClientConfiguration.getKeepAliveMS (),
+          SMPClientConfiguration.getIdleConnectionTimeoutMS (),
+          new SMPHttpDnsResolver (aDNSResolver));
+  }
+
+  /**
+   * Constructor using the JVM global DNS cache.
+   *
+   * @param nMaxTotal
+   *        Maximum number of pooled connections in total. Must be &gt; 0.
+   * @param nMaxPerRoute
+   *        Maximum number of pooled connections per route (SMP host). Must be
+   *        &gt; 0.
+   * @param nConnectTimeoutMS
+   *        Connection timeout in milliseconds. Must be &ge; 0.
+   * @param nSocketTimeoutMS
+   *        Socket (read) timeout in milliseconds. Must be &ge; 0.
+   * @param nKeepAliveMS
+   *        The time in milliseconds a connection is kept alive if the server
+   *        does not send a "Keep-Alive" header. Must be &gt; 0.
+   * @param nIdleTimeoutMS
+   *        The time in milliseconds after which idle connections are closed.
+   *        Must be &gt; 0.
+   */
+  public SMPPooledRequestExecutor (@Nonnegative final int nMaxTotal,
+                                   @Nonnegative final int nMaxPerRoute,
+                                   @Nonnegative final int nConnectTimeoutMS,
+                                   @Nonnegative final int nSocketTimeoutMS,
+                                   @Nonnegative final long nKeepAliveMS,
+                                   @Nonnegative final long nIdleTimeoutMS)
+  {
+    this (nMaxTotal, nMaxPerRoute, nConnectTimeoutMS, nSocketTimeoutMS, nKeepAliveMS, nIdleTimeoutMS, null);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param nMaxTotal
+   *        Maximum number of pooled connections in total. Must be &gt; 0.
+   * @param nMaxPerRoute
+   *        Maximum number of pooled connections per route (SMP host). Must be
+   *        &gt; 0.
+   * @param nConnectTimeoutMS
+   *        Connection timeout in milliseconds. Must be &ge; 0.
+   * @param nSocketTimeoutMS
+   *        Socket (read) timeout in milliseconds. Must be &ge; 0.
+   * @param nKeepAliveMS
+   *        The time in milliseconds a connection is kept alive if the server
+   *        does not send a "Keep-Alive" header. Must be &gt; 0.
+   * @param nIdleTimeoutMS
+   *        The time in milliseconds after which idle connections are closed.
+   *        Must be &gt; 0.
+   * @param aDnsResolver
+   *        The resolver for the addresses of the hosts to connect to. May be
+   *        <code>null</code> to use the JVM global DNS cache.
+   */
+  public SMPPooledRequestExecutor (@Nonnegative final int nMaxTotal,
+                                   @Nonnegative final int nMaxPerRoute,
+                                   @Nonnegative final int nConnectTimeoutMS,
+                                   @Nonnegative final int nSocketTimeoutMS,
+                                   @Nonnegative final long nKeepAliveMS,
+                                   @Nonnegative final long nIdleTimeoutMS,
+                                   @Nullable final DnsResolver aDnsResolver)
+  {
+    ValueEnforcer.isGT0 (nMaxTotal, "MaxTotal");
+    ValueEnforcer.isGT0 (nMaxPerRoute, "MaxPerRoute");
+    ValueEnforcer.isGE0 (nConnectTimeoutMS, "ConnectTimeoutMS");
+    ValueEnforcer.isGE0 (nSocketTimeoutMS, "SocketTimeoutMS");
+    ValueEnforcer.isGT0 (nKeepAliveMS, "KeepAliveMS");
+    ValueEnforcer.isGT0 (nIdleTimeoutMS, "IdleTimeoutMS");
+
+    m_nConnectTimeoutMS = nConnectTimeoutMS;
+    m_nSocketTimeoutMS = nSocketTimeoutMS;
+    m_aDnsResolver = aDnsResolver;
+
+    if (aDnsResolver == null)
+      m_aConnMgr = new PoolingHttpClientConnectionManager ();
+    else
+    {
+      // Same socket factories as the default
+      m_aConnMgr = new PoolingHttpClientConnectionManager (RegistryBuilder.<ConnectionSocketFactory> create ()
+                                                                          .register ("http",
+                                                                                     PlainConnectionSocketFactory.getSocketFactory ())
+                                                                          .register ("https",
+                                                                                     SSLConnectionSocketFactory.getSocketFactory ())
+                                                                          .build (),
+                                                           aDnsResolver);
+    }
+    m_aConnMgr.setMaxTotal (nMaxTotal);
+    m_aConnMgr.setDefaultMaxPerRoute (nMaxPerRoute);
+
+    // Use the "Keep-Alive" header of the server if present, else the
+    // configured default
+    final ConnectionKeepAliveStrategy aKeepAliveStrategy = new DefaultConnectionKeepAliveStrategy ()
+    {
+      @Override
+      public long getKeepAliveDuration (final HttpResponse aResponse, final HttpContext aContext)
+      {
+        final long nDuration = super.getKeepAliveDuration (aResponse, aContext);
+        return nDuration > 0 ? nDuration : nKeepAliveMS;
+      }
+    };
+
+    m_aHttpClient = HttpClients.custom ()
+                               .setConnectionManager (m_aConnMgr)
+                               .setKeepAliveStrategy (aKeepAliveStrategy)
+                               .build ();
+    m_aExecutor = Executor.newInstance (m_aHttpClient);
+
+    m_aEvictor = new IdleConnectionEvictor (m_aConnMgr, nIdleTimeoutMS);
+    m_aEvictor.start ();
+  }
+
+  /**
+   * @return The shared default instance, configured via
+   *         {@link SMPClientConfiguration}. Never <code>null</code>.
+   */
+  @Nonnull
+  public static SMPPooledRequestExecutor getDefaultInstance ()
+  {
+    return SingletonHolder.s_aInstance;
+  }
+
+  /**
+   * @return The connection timeout in milliseconds. Always &ge; 0.
+   */
+  @Nonnegative
+  public int getConnectTimeoutMS ()
+  {
+    return m_nConnectTimeoutMS;
+  }
+
+  /**
+   * @return The socket timeout in milliseconds. Always &ge; 0.
+   */
+  @Nonnegative
+  public int getSocketTimeoutMS ()
+  {
+    return m_nSocketTimeoutMS;
+  }
+
+  /**
+   * @return The resolver for the addresses of the hosts to connect to. May be
+   *         <code>null</code> if the JVM global DNS cache is used.
+   */
+  @Nullable
+  public DnsResolver getDnsResolver ()
+  {
+    return m_aDnsResolver;
+  }
+
+  @Nonnull
+  public Response execute (@Nonnull final Request aRequest) throws IOException
+  {
+    ValueEnforcer.notNull (aRequest, "Request");
+
+    // The fluent request configuration overwrites the client defaults, so the
+    // timeouts need to be set on each request
+    aRequest.connectTimeout (m_nConnectTimeoutMS).socketTimeout (m_nSocketTimeoutMS);
+    return m_aExecutor.execute (aRequest);
+  }
+
+  /**
+   * Stop the idle connection eviction and close all pooled connections. This
+   * object cannot be used afterwards.
+   */
+  public void close () throws IOException
+  {
+    m_aEvictor.shutdown ();
+    try
+    {
+      m_aHttpClient.close ();
+    }
+    finally
+    {
+      m_aConnMgr.shutdown ();
+      s_aLogger.info ("Closed pooled SMP request executor");
+    }
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("ConnectTimeoutMS", m_nConnectTimeoutMS)
+                                       .append ("SocketTimeoutMS", m_nSocketTimeoutMS)
+                                       .append ("MaxTotal", m_aConnMgr.getMaxTotal ())
+                                       .append ("MaxPerRoute", m_aConnMgr.getDefaultMaxPerRoute ())
+                                       .appendIfNotNull ("DnsResolver", m_aDnsResolver)
+                                       .toString ();
+  }
+}
@@ -0,0 +1,299 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.smpclient;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.apache.http.HttpHost;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.equals.EqualsHelper;
+import com.helger.commons.hashcode.HashCodeGenerator;
+import com.helger.commons.string.ToStringGenerator;
+import com.helger.peppol.smpclient.exception.SMPClientException;
+
+/**
+ * Single-flight de-duplication of concurrent identical SMP requests: while a
+ * request for a certain key is in flight, all other callers for the same key
+ * wait for it and share its result or its exception instead of performing the
+ * same HTTP request and signature check again. Nothing is cached after the
+ * request finished.<br>
+ * Note: all waiting callers receive the same result object, so it must not be
+ * modified.<br>
+ * An instance can be shared by many SMP client instances, if the key
+ * identifies everything the result depends on (see {@link RequestKey}).
+ *
+ * @author Philip Helger
+ * @param <T>
+ *        The result type
+ */
+@ThreadSafe
+public final class SMPRequestCoalescer <T>
+{
+  /**
+   * The action to be performed for a key.
+   *
+   * @author Philip Helger
+   * @param <T>
+   *        The result type
+   */
+  public interface IRequest <T>
+  {
+    /**
+     * @return The result of the request. May be <code>null</code>.
+     * @throws SMPClientException
+     *         In case of error
+     */
+    @Nullable
+    T execute () throws SMPClientException;
+  }
+
+  /**
+   * The key of an SMP request that is shared between client instances. Two
+   * requests are only coalesced if they have the same URI, use the same request
+   * executor instance, the same proxy and are performed by the same client
+   * class (because the client class may customize the request execution).
+   *
+   * @author Philip Helger
+   */
+  public static final class RequestKey
+  {
+    private final String m_sURI;
+    private final ISMPRequestExecutor m_aRequestExecutor;
+    private final HttpHost m_aProxy;
+    private final Class <?> m_aClientClass;
+    private final int m_nHashCode;
+
+    /**
+     * Constructor
+     *
+     * @param sURI
+     *        The request URI. May not be <code>null</code>.
+     * @param aRequestExecutor
+     *        The request executor. Compared by identity. May not be
+     *        <code>null</code>.
+     * @param aProxy
+     *        The proxy used. May be <code>null</code>.
+     * @param aClientClass
+     *        The class of the client performing the request. May not be
+     *        <code>null</code>.
+     */
+    public RequestKey (@Nonnull final String sURI,
+                       @Nonnull final ISMPRequestExecutor aRequestExecutor,
+                       @Nullable final HttpHost aProxy,
+                       @Nonnull final Class <?> aClientClass)
+    {
+      m_sURI = ValueEnforcer.notNull (sURI, "URI");
+      m_aRequestExecutor = ValueEnforcer.notNull (aRequestExecutor, "RequestExecutor");
+      m_aProxy = aProxy;
+      m_aClientClass = ValueEnforcer.notNull (aClientClass, "ClientClass");
+      m_nHashCode = new HashCodeGenerator (this).append (sURI)
+                                                .append (System.identityHashCode (aRequestExecutor))
+                                                .append (aProxy)
+                                                .append (aClientClass)
+                                                .getHashCode ();
+    }
+
+    @Override
+    public boolean equals (final Object o)
+    {
+      if (o == this)
+        return true;
+      if (o == null || !getClass ().equals (o.getClass ()))
+        return false;
+      final RequestKey rhs = (RequestKey) o;
+      return m_sURI.equals (rhs.m_sURI) &&
+             m_aRequestExecutor == rhs.m_aRequestExecutor &&
+             EqualsHelper.equals (m_aProxy, rhs.m_aProxy) &&
+             m_aClientClass.equals (rhs.m_aClientClass);
+    }
+
+    @Override
+    public int hashCode ()
+    {
+      return m_nHashCode;
+    }
+
+    @Override
+    public String toString ()
+    {
+      return new ToStringGenerator (this).append ("URI", m_sURI)
+                                         .append ("RequestExecutor", m_aRequestExecutor)
+                                         .appendIfNotNull ("Proxy", m_aProxy)
+                                         .append ("ClientClass", m_aClientClass)
+                                         .toString ();
+    }
+  }
+
+  private static final class InFlight <T>
+  {
+    private final CountDownLatch m_aLatch = new CountDownLatch (1);
+    // Written before the latch is released and read afterwards
+    private T m_aResult;
+    private SMPClientException m_aException;
+    private RuntimeException m_aRuntimeException;
+    private Error m_aError;
+
+    @Nullable
+    public T await () throws SMPClientException
+    {
+      try
+      {
+        m_aLatch.await ();
+      }
+      catch (final InterruptedException ex)
+      {
+        Thread.currentThread ().interrupt ();
+        throw new SMPClientException ("Interrupted while waiting for an identical SMP request", ex);
+      }
+      if (m_aException != null)
+        throw m_aException;
+      if (m_aRuntimeException != null)
+        throw m_aRuntimeException;
+      if (m_aError != null)
+        throw m_aError;
+      return m_aResult;
+    }
+  }
+
+  private final ConcurrentMap <Object, InFlight <T>> m_aInFlight = new ConcurrentHashMap <Object, InFlight <T>> ();
+  private final AtomicLong m_aExecuted = new AtomicLong ();
+  private final AtomicLong m_aCoalesced = new AtomicLong ();
+
+  public SMPRequestCoalescer ()
+  {}
+
+  /**
+   * Execute the passed request, unless a request with the same key is already
+   * in flight. In the latter case wait for the other request and return its
+   * result.
+   *
+   * @param aKey
+   *        The key identifying the request, usually a {@link RequestKey} or
+   *        the request URI. Must implement equals and hashCode. May not be
+   *        <code>null</code>.
+   * @param aRequest
+   *        The request to be executed. May not be <code>null</code>.
+   * @return The result of the request. May be <code>null</code> if the request
+   *         returned <code>null</code>.
+   * @throws SMPClientException
+   *         The exception thrown by the executed request
+   */
+  @Nullable
+  public T execute (@Nonnull final Object aKey, @Nonnull final IRequest <T> aRequest) throws SMPClientException
+  {
+    ValueEnforcer.notNull (aKey, "Key");
+    ValueEnforcer.notNull (aRequest, "Request");
+
+    final InFlight <T> aNew = new InFlight <T> ();
+    final InFlight <T> aExisting = m_aInFlight.putIfAbsent (aKey, aNew);
+    if (aExisting != null)
+    {
+      // Same request is already running
+      m_aCoalesced.incrementAndGet ();
+      return aExisting.await ();
+    }
+
+    m_aExecuted.incrementAndGet ();
+    try
+    {
+      aNew.m_aResult = aRequest.execute ();
+      return aNew.m_aResult;
+    }
+    catch (final SMPClientException ex)
+    {
+      aNew.m_aException = ex;
+      throw ex;
+    }
+    catch (final RuntimeException ex)
+    {
+      aNew.m_aRuntimeException = ex;
+      throw ex;
+    }
+    catch (final Error ex)
+    {
+      aNew.m_aError = ex;
+      throw ex;
+    }
+    finally
+    {
+      // Later callers start a new request
+      m_aInFlight.remove (aKey, aNew);
+      aNew.m_aLatch.countDown ();
+    }
+  }
+
+  /**
+   * @return The number of requests that were really executed.
+   */
+  @Nonnegative
+  public long getExecutedCount ()
+  {
+    return m_aExecuted.get ();
+  }
+
+  /**
+   * @return The number of requests that shared the result of an identical
+   *         request in flight.
+   */
+  @Nonnegative
+  public long getCoalescedCount ()
+  {
+    return m_aCoalesced.get ();
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("InFlight", m_aInFlight.size ())
+                                       .append ("Executed", m_aExecuted.get ())
+                                       .append ("Coalesced", m_aCoalesced.get ())
+                                       .toString ();
+  }
+}
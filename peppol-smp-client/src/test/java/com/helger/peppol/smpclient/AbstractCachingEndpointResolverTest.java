@@ -0,0 +1,219 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.smpclient;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.UnknownHostException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+import com.helger.peppol.identifier.IDocumentTypeIdentifier;
+import com.helger.peppol.identifier.IParticipantIdentifier;
+import com.helger.peppol.identifier.IProcessIdentifier;
+import com.helger.peppol.identifier.doctype.SimpleDocumentTypeIdentifier;
+import com.helger.peppol.identifier.participant.SimpleParticipantIdentifier;
+import com.helger.peppol.identifier.process.SimpleProcessIdentifier;
+import com.helger.peppol.smp.ESMPTransportProfile;
+import com.helger.peppol.smp.ISMPTransportProfile;
+import com.helger.peppol.smpclient.exception.SMPClientException;
+import com.helger.peppol.smpclient.exception.SMPClientNotFoundException;
+
+/**
+ * Test class for class {@link AbstractCachingEndpointResolver}.
+ *
+ * @author Philip Helger
+ */
+public final class AbstractCachingEndpointResolverTest
+{
+  private static final IDocumentTypeIdentifier DOCTYPE = SimpleDocumentTypeIdentifier.createWithDefaultScheme ("doctype");
+  private static final IProcessIdentifier PROCESS = SimpleProcessIdentifier.createWithDefaultScheme ("process");
+  private static final ISMPTransportProfile TP = ESMPTransportProfile.TRANSPORT_PROFILE_AS2;
+
+  private static final class MockResolver extends AbstractCachingEndpointResolver <String>
+  {
+    private final AtomicInteger m_aLoads = new AtomicInteger ();
+    private volatile boolean m_bFailUnexpectedly = false;
+
+    public MockResolver (final long nTTLMillis, final long nStaleMillis, @Nonnull final ExecutorService aExecutor)
+    {
+      super (2, nTTLMillis, 60 * 1000, nStaleMillis, aExecutor);
+    }
+
+    @Override
+    protected String loadEndpoint (@Nonnull final IParticipantIdentifier aParticipantID,
+                                   @Nonnull final IDocumentTypeIdentifier aDocumentTypeID,
+                                   @Nonnull final IProcessIdentifier aProcessID,
+                                   @Nonnull final ISMPTransportProfile aTransportProfile) throws SMPClientException
+    {
+      m_aLoads.incrementAndGet ();
+      if (m_bFailUnexpectedly)
+        throw new IllegalStateException ("unexpected");
+      final String sValue = aParticipantID.getValue ();
+      if (sValue.endsWith ("notfound"))
+        throw new SMPClientNotFoundException (new UnknownHostException (sValue));
+      if (sValue.endsWith ("error"))
+        throw new SMPClientException ("error");
+      return "endpoint-" + m_aLoads.get ();
+    }
+  }
+
+  @Test
+  public void testBasic () throws Exception
+  {
+    final ExecutorService aExecutor = Executors.newSingleThreadExecutor ();
+    try
+    {
+      final MockResolver aResolver = new MockResolver (60 * 1000, 0, aExecutor);
+
+      // Participant identifiers are case insensitive
+      assertEquals ("endpoint-1",
+                    aResolver.getEndpoint (SimpleParticipantIdentifier.createWithDefaultScheme ("9915:abc"),
+                                           DOCTYPE,
+                                           PROCESS,
+                                           TP));
+      assertEquals ("endpoint-1",
+                    aResolver.getEndpoint (SimpleParticipantIdentifier.createWithDefaultScheme ("9915:ABC"),
+                                           DOCTYPE,
+                                           PROCESS,
+                                           TP));
+      assertEquals (1, aResolver.getHitCount ());
+      assertEquals (1, aResolver.getMissCount ());
+
+      // Negative caching
+      final IParticipantIdentifier aNotFound = SimpleParticipantIdentifier.createWithDefaultScheme ("9915:notfound");
+      assertNull (aResolver.getEndpoint (aNotFound, DOCTYPE, PROCESS, TP));
+      assertNull (aResolver.getEndpoint (aNotFound, DOCTYPE, PROCESS, TP));
+      assertEquals (2, aResolver.m_aLoads.get ());
+      assertEquals (2, aResolver.getSize ());
+
+      // Errors are not cached
+      final IParticipantIdentifier aError = SimpleParticipantIdentifier.createWithDefaultScheme ("9915:error");
+      for (int i = 0; i < 2; ++i)
+        try
+        {
+          aResolver.getEndpoint (aError, DOCTYPE, PROCESS, TP);
+          fail ();
+        }
+        catch (final SMPClientException ex)
+        {
+          // expected
+        }
+      assertEquals (4, aResolver.m_aLoads.get ());
+      assertEquals (2, aResolver.getSize ());
+
+      aResolver.clearCache ();
+      assertEquals (0, aResolver.getSize ());
+    }
+    finally
+    {
+      aExecutor.shutdownNow ();
+    }
+  }
+
+  @Test
+  public void testStaleWhileRevalidate () throws Exception
+  {
+    final ExecutorService aExecutor = Executors.newSingleThreadExecutor ();
+    final MockResolver aResolver = new MockResolver (50, 60 * 1000, aExecutor);
+    final IParticipantIdentifier aPI = SimpleParticipantIdentifier.createWithDefaultScheme ("9915:abc");
+    assertEquals ("endpoint-1", aResolver.getEndpoint (aPI, DOCTYPE, PROCESS, TP));
+
+    Thread.sleep (100);
+
+    // Expired - the stale value is returned and refreshed in the background
+    assertEquals ("endpoint-1", aResolver.getEndpoint (aPI, DOCTYPE, PROCESS, TP));
+    assertEquals (1, aResolver.getStaleHitCount ());
+
+    aExecutor.shutdown ();
+    assertTrue (aExecutor.awaitTermination (10, TimeUnit.SECONDS));
+    assertEquals ("endpoint-2", aResolver.getEndpoint (aPI, DOCTYPE, PROCESS, TP));
+    assertEquals (2, aResolver.m_aLoads.get ());
+  }
+
+  @Test
+  public void testRefreshAfterUnexpectedException () throws Exception
+  {
+    final ExecutorService aExecutor = Executors.newSingleThreadExecutor ();
+    try
+    {
+      final MockResolver aResolver = new MockResolver (50, 60 * 1000, aExecutor);
+      final IParticipantIdentifier aPI = SimpleParticipantIdentifier.createWithDefaultScheme ("9915:abc");
+      assertEquals ("endpoint-1", aResolver.getEndpoint (aPI, DOCTYPE, PROCESS, TP));
+
+      Thread.sleep (100);
+
+      // The background refresh fails with a runtime exception
+      aResolver.m_bFailUnexpectedly = true;
+      assertEquals ("endpoint-1", aResolver.getEndpoint (aPI, DOCTYPE, PROCESS, TP));
+      aExecutor.submit (new Runnable ()
+      {
+        public void run ()
+        {}
+      }).get ();
+      assertEquals (2, aResolver.m_aLoads.get ());
+
+      // The entry must still be refreshable
+      aResolver.m_bFailUnexpectedly = false;
+      assertEquals ("endpoint-1", aResolver.getEndpoint (aPI, DOCTYPE, PROCESS, TP));
+      aExecutor.submit (new Runnable ()
+      {
+        public void run ()
+        {}
+      }).get ();
+      assertEquals ("endpoint-3", aResolver.getEndpoint (aPI, DOCTYPE, PROCESS, TP));
+      assertEquals (3, aResolver.m_aLoads.get ());
+    }
+    finally
+    {
+      aExecutor.shutdownNow ();
+    }
+  }
+}
@@ -0,0 +1,311 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.smpclient;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+import com.helger.peppol.identifier.IParticipantIdentifier;
+import com.helger.peppol.identifier.doctype.EPredefinedDocumentTypeIdentifier;
+import com.helger.peppol.identifier.participant.SimpleParticipantIdentifier;
+import com.helger.peppol.identifier.process.EPredefinedProcessIdentifier;
+import com.helger.peppol.sml.ESML;
+import com.helger.peppol.smp.ESMPTransportProfile;
+import com.helger.peppol.smp.EndpointType;
+import com.helger.peppol.smpclient.exception.SMPClientException;
+import com.helger.peppol.smpclient.exception.SMPClientNotFoundException;
+import com.helger.peppol.utils.BusdoxURLHelper;
+
+/**
+ * Test class for class {@link SMPBatchEndpointResolver}.
+ *
+ * @author Philip Helger
+ */
+public final class SMPBatchEndpointResolverTest
+{
+  private static final int MAX_PER_HOST = 2;
+
+  /**
+   * Resolver that does not perform DNS and HTTP requests but records the
+   * parallelism per SMP host.
+   */
+  private static final class MockResolver extends SMPBatchEndpointResolver
+  {
+    private final Map <String, String> m_aSMPHosts = new ConcurrentHashMap <String, String> ();
+    private final Map <String, AtomicInteger> m_aActive = new ConcurrentHashMap <String, AtomicInteger> ();
+    private final AtomicInteger m_aMaxActive = new AtomicInteger ();
+    private final AtomicInteger m_aCreatedClients = new AtomicInteger ();
+
+    public MockResolver (@Nonnull final ExecutorService aExecutorService)
+    {
+      super (ESML.DIGIT_TEST, aExecutorService, MAX_PER_HOST);
+    }
+
+    @Nonnull
+    private static String _getSMPHostName (@Nonnull final String sParticipantValue)
+    {
+      // "found" and "none" are registered at the same SMP
+      return sParticipantValue.endsWith ("found") || sParticipantValue.endsWith ("none") ? "smp1.example.org"
+                                                                                        : "smp2.example.org";
+    }
+
+    @Override
+    protected String getSMPHostName (@Nonnull final String sParticipantHostName) throws IOException
+    {
+      final String ret = m_aSMPHosts.get (sParticipantHostName);
+      if (ret == null)
+        throw new UnknownHostException (sParticipantHostName);
+      return ret;
+    }
+
+    public void register (@Nonnull final IParticipantIdentifier aPI)
+    {
+      m_aSMPHosts.put (BusdoxURLHelper.getDNSNameOfParticipant (aPI, ESML.DIGIT_TEST),
+                       _getSMPHostName (aPI.getValue ()));
+    }
+
+    @Override
+    protected SMPClientReadOnly createClient (@Nonnull final URI aSMPURI)
+    {
+      m_aCreatedClients.incrementAndGet ();
+      return super.createClient (aSMPURI);
+    }
+
+    @Override
+    protected EndpointType resolveEndpoint (@Nonnull final SMPClientReadOnly aClient,
+                                            @Nonnull final SMPEndpointRequest aRequest) throws SMPClientException
+    {
+      final String sValue = aRequest.getParticipantID ().getValue ();
+      final String sSMPHostName = _getSMPHostName (sValue);
+      m_aActive.putIfAbsent (sSMPHostName, new AtomicInteger ());
+      final AtomicInteger aActive = m_aActive.get (sSMPHostName);
+      final int nActive = aActive.incrementAndGet ();
+      try
+      {
+        synchronized (m_aMaxActive)
+        {
+          if (nActive > m_aMaxActive.get ())
+            m_aMaxActive.set (nActive);
+        }
+        Thread.sleep (5);
+
+        if (sValue.endsWith ("error"))
+          throw new SMPClientException ("Failed to resolve " + sValue);
+        if (sValue.endsWith ("runtime"))
+          throw new IllegalStateException ("Unexpected");
+        return sValue.endsWith ("none") ? null : new EndpointType ();
+      }
+      catch (final InterruptedException ex)
+      {
+        throw new SMPClientException ("Interrupted", ex);
+      }
+      finally
+      {
+        aActive.decrementAndGet ();
+      }
+    }
+  }
+
+  @Nonnull
+  private static List <SMPEndpointRequest> _createRequests (@Nonnull final IParticipantIdentifier aPI)
+  {
+    final List <SMPEndpointRequest> ret = new ArrayList <SMPEndpointRequest> ();
+    for (final EPredefinedDocumentTypeIdentifier eDocType : EPredefinedDocumentTypeIdentifier.values ())
+      ret.add (new SMPEndpointRequest (aPI,
+                                       eDocType,
+                                       EPredefinedProcessIdentifier.BIS4A_V20,
+                                       ESMPTransportProfile.TRANSPORT_PROFILE_AS2));
+    return ret;
+  }
+
+  @Test
+  public void testResolveAll ()
+  {
+    final ExecutorService aES = Executors.newFixedThreadPool (16);
+    try
+    {
+      final MockResolver aResolver = new MockResolver (aES);
+
+      final List <SMPEndpointRequest> aRequests = new ArrayList <SMPEndpointRequest> ();
+      for (final String sValue : new String [] { "9915:found", "9915:none", "9915:error" })
+      {
+        final IParticipantIdentifier aPI = SimpleParticipantIdentifier.createWithDefaultScheme (sValue);
+        aResolver.register (aPI);
+        aRequests.addAll (_createRequests (aPI));
+      }
+      final IParticipantIdentifier aRuntimePI = SimpleParticipantIdentifier.createWithDefaultScheme ("9915:runtime");
+      aResolver.register (aRuntimePI);
+      aRequests.add (new SMPEndpointRequest (aRuntimePI,
+                                             EPredefinedDocumentTypeIdentifier.INVOICE_T010_BIS4A_V20,
+                                             EPredefinedProcessIdentifier.BIS4A_V20,
+                                             ESMPTransportProfile.TRANSPORT_PROFILE_AS2));
+      // Not registered in the SML
+      aRequests.add (new SMPEndpointRequest (SimpleParticipantIdentifier.createWithDefaultScheme ("9915:unknown"),
+                                             EPredefinedDocumentTypeIdentifier.INVOICE_T010_BIS4A_V20,
+                                             EPredefinedProcessIdentifier.BIS4A_V20,
+                                             ESMPTransportProfile.TRANSPORT_PROFILE_AS2));
+      // Invalid participant identifier scheme
+      aRequests.add (new SMPEndpointRequest (new SimpleParticipantIdentifier ("invalid.scheme", "9915:test"),
+                                             EPredefinedDocumentTypeIdentifier.INVOICE_T010_BIS4A_V20,
+                                             EPredefinedProcessIdentifier.BIS4A_V20,
+                                             ESMPTransportProfile.TRANSPORT_PROFILE_AS2));
+      // Duplicate
+      aRequests.add (aRequests.get (0));
+
+      final Map <SMPEndpointRequest, SMPEndpointResult> aResults = aResolver.resolveAll (aRequests);
+      assertEquals (aRequests.size () - 1, aResults.size ());
+      // One client per registered participant
+      assertEquals (4, aResolver.m_aCreatedClients.get ());
+      // The limit is shared by all participants of the same SMP host
+      assertEquals (2, aResolver.m_aActive.size ());
+      assertTrue (aResolver.m_aMaxActive.get () <= MAX_PER_HOST);
+
+      // Results are in request order
+      final Iterator <SMPEndpointRequest> it = aResults.keySet ().iterator ();
+      for (int i = 0; i < aResults.size (); ++i)
+        assertEquals (aRequests.get (i), it.next ());
+
+      for (final Map.Entry <SMPEndpointRequest, SMPEndpointResult> aEntry : aResults.entrySet ())
+      {
+        final String sValue = aEntry.getKey ().getParticipantID ().getValue ();
+        final SMPEndpointResult aResult = aEntry.getValue ();
+        assertNotNull (aResult);
+        if (sValue.endsWith ("found"))
+        {
+          assertTrue (aResult.isSuccess ());
+          assertTrue (aResult.hasEndpoint ());
+        }
+        else
+          if (sValue.endsWith ("none"))
+          {
+            assertTrue (aResult.isSuccess ());
+            assertFalse (aResult.hasEndpoint ());
+            assertNull (aResult.getEndpointAddress ());
+          }
+          else
+          {
+            assertFalse (aResult.isSuccess ());
+            assertNotNull (aResult.getException ());
+            if (sValue.endsWith ("unknown"))
+              assertTrue (aResult.getException () instanceof SMPClientNotFoundException);
+          }
+      }
+    }
+    finally
+    {
+      aES.shutdown ();
+    }
+  }
+
+  @Test
+  public void testSaturatedExecutorService ()
+  {
+    // Only one thread and one queued task - most tasks are rejected and run in
+    // the calling thread
+    final ExecutorService aES = SMPClientReadOnlyAsync.createExecutorService (1, 1);
+    try
+    {
+      final MockResolver aResolver = new MockResolver (aES);
+      final List <SMPEndpointRequest> aRequests = new ArrayList <SMPEndpointRequest> ();
+      for (int i = 0; i < 20; ++i)
+      {
+        final IParticipantIdentifier aPI = SimpleParticipantIdentifier.createWithDefaultScheme ("9915:" + i + "found");
+        aResolver.register (aPI);
+        aRequests.addAll (_createRequests (aPI));
+      }
+
+      final Map <SMPEndpointRequest, SMPEndpointResult> aResults = aResolver.resolveAll (aRequests);
+      assertEquals (aRequests.size (), aResults.size ());
+      for (final SMPEndpointResult aResult : aResults.values ())
+        assertTrue (aResult.isSuccess ());
+      assertTrue (aResolver.m_aMaxActive.get () <= MAX_PER_HOST);
+    }
+    finally
+    {
+      aES.shutdown ();
+    }
+  }
+
+  @Test
+  public void testEmpty ()
+  {
+    final SMPBatchEndpointResolver aResolver = new SMPBatchEndpointResolver (ESML.DIGIT_TEST);
+    assertTrue (aResolver.resolveAll (new ArrayList <SMPEndpointRequest> ()).isEmpty ());
+  }
+
+  @Test
+  public void testRequestEquals ()
+  {
+    final SMPEndpointRequest aRequest1 = new SMPEndpointRequest (SimpleParticipantIdentifier.createWithDefaultScheme ("9915:test"),
+                                                                 EPredefinedDocumentTypeIdentifier.INVOICE_T010_BIS4A_V20,
+                                                                 EPredefinedProcessIdentifier.BIS4A_V20,
+                                                                 ESMPTransportProfile.TRANSPORT_PROFILE_AS2);
+    final SMPEndpointRequest aRequest2 = new SMPEndpointRequest (SimpleParticipantIdentifier.createWithDefaultScheme ("9915:test"),
+                                                                 EPredefinedDocumentTypeIdentifier.INVOICE_T010_BIS4A_V20,
+                                                                 EPredefinedProcessIdentifier.BIS4A_V20,
+                                                                 ESMPTransportProfile.TRANSPORT_PROFILE_AS2);
+    assertEquals (aRequest1, aRequest2);
+    assertEquals (aRequest1.hashCode (), aRequest2.hashCode ());
+    assertFalse (aRequest1.equals (new SMPEndpointRequest (SimpleParticipantIdentifier.createWithDefaultScheme ("9915:test"),
+                                                           EPredefinedDocumentTypeIdentifier.INVOICE_T010_BIS4A_V20,
+                                                           EPredefinedProcessIdentifier.BIS4A_V20,
+                                                           ESMPTransportProfile.TRANSPORT_PROFILE_START)));
+  }
+}
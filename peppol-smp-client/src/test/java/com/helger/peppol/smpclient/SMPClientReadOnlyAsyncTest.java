@@ -0,0 +1,140 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.smpclient;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.net.URI;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.helger.peppol.identifier.participant.SimpleParticipantIdentifier;
+import com.helger.peppol.smp.ServiceGroupType;
+import com.helger.peppol.smpclient.exception.SMPClientException;
+
+/**
+ * Test class for class {@link SMPClientReadOnlyAsync}.
+ *
+ * @author Philip Helger
+ */
+public final class SMPClientReadOnlyAsyncTest
+{
+  @Test
+  public void testBasic ()
+  {
+    final SMPClientReadOnly aClient = new SMPClientReadOnly (URI.create ("http://localhost/"));
+    final SMPClientReadOnlyAsync aAsyncClient = new SMPClientReadOnlyAsync (aClient);
+    assertSame (aClient, aAsyncClient.getClient ());
+    assertSame (SMPClientReadOnlyAsync.getDefaultExecutorService (), aAsyncClient.getExecutorService ());
+  }
+
+  @Test
+  public void testErrorIsPropagated ()
+  {
+    // Nothing is listening on port 1
+    final SMPClientReadOnlyAsync aAsyncClient = new SMPClientReadOnlyAsync (new SMPClientReadOnly (URI.create ("http://localhost:1/")));
+    final Future <ServiceGroupType> aFuture = aAsyncClient.getServiceGroupOrNull (SimpleParticipantIdentifier.createWithDefaultScheme ("9915:test"));
+    assertNotNull (aFuture);
+    try
+    {
+      SMPClientReadOnlyAsync.getResult (aFuture);
+      fail ();
+    }
+    catch (final SMPClientException ex)
+    {
+      // expected
+    }
+  }
+
+  @Test
+  public void testBoundedExecutorService () throws Exception
+  {
+    final ExecutorService aES = SMPClientReadOnlyAsync.createExecutorService (2, 3);
+    final CountDownLatch aLatch = new CountDownLatch (1);
+    try
+    {
+      final ThreadPoolExecutor aTPE = (ThreadPoolExecutor) aES;
+      assertEquals (2, aTPE.getMaximumPoolSize ());
+      assertEquals (3, aTPE.getQueue ().remainingCapacity ());
+
+      final Runnable aBlocking = new Runnable ()
+      {
+        public void run ()
+        {
+          try
+          {
+            aLatch.await (10, TimeUnit.SECONDS);
+          }
+          catch (final InterruptedException ex)
+          {
+            Thread.currentThread ().interrupt ();
+          }
+        }
+      };
+      // 2 running and 3 queued
+      for (int i = 0; i < 5; ++i)
+        aES.submit (aBlocking);
+      try
+      {
+        aES.submit (aBlocking);
+        fail ();
+      }
+      catch (final RejectedExecutionException ex)
+      {
+        // expected
+      }
+    }
+    finally
+    {
+      aLatch.countDown ();
+      aES.shutdown ();
+    }
+  }
+}
@@ -0,0 +1,231 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.smpclient;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+import org.apache.http.HttpHost;
+import org.apache.http.client.fluent.Request;
+import org.apache.http.client.fluent.Response;
+import org.junit.Test;
+
+import com.helger.peppol.identifier.IParticipantIdentifier;
+import com.helger.peppol.identifier.participant.SimpleParticipantIdentifier;
+import com.helger.peppol.smp.ServiceGroupType;
+import com.helger.peppol.smpclient.exception.SMPClientException;
+
+/**
+ * Test class for class {@link SMPClientReadOnly}.
+ *
+ * @author Philip Helger
+ */
+public final class SMPClientReadOnlyTest
+{
+  /**
+   * Client that counts the requests and blocks them until a latch is released.
+   */
+  private static final class BlockingClient extends SMPClientReadOnly
+  {
+    private final CountDownLatch m_aLatch;
+    private final AtomicInteger m_aRequests;
+
+    public BlockingClient (@Nonnull final CountDownLatch aLatch, @Nonnull final AtomicInteger aRequests)
+    {
+      super (URI.create ("http://localhost/"));
+      m_aLatch = aLatch;
+      m_aRequests = aRequests;
+      setCoalesceRequests (true);
+    }
+
+    @Override
+    protected Response executeRequest (@Nonnull final Request aRequest) throws IOException
+    {
+      m_aRequests.incrementAndGet ();
+      try
+      {
+        m_aLatch.await (10, TimeUnit.SECONDS);
+      }
+      catch (final InterruptedException ex)
+      {
+        Thread.currentThread ().interrupt ();
+      }
+      throw new IOException ("failed");
+    }
+  }
+
+  private static void _waitForRequests (@Nonnull final AtomicInteger aRequests, final int nExpected) throws InterruptedException
+  {
+    final long nEnd = System.currentTimeMillis () + 10 * 1000;
+    while (aRequests.get () < nExpected && System.currentTimeMillis () < nEnd)
+      Thread.sleep (10);
+  }
+
+  @Nonnull
+  private static Future <ServiceGroupType> _submit (@Nonnull final ExecutorService aES,
+                                                    @Nonnull final SMPClientReadOnly aClient,
+                                                    @Nonnull final IParticipantIdentifier aPI)
+  {
+    return aES.submit (new Callable <ServiceGroupType> ()
+    {
+      public ServiceGroupType call () throws SMPClientException
+      {
+        return aClient.getServiceGroup (aPI);
+      }
+    });
+  }
+
+  private static void _assertFailed (@Nonnull final Future <ServiceGroupType> aFuture) throws InterruptedException
+  {
+    try
+    {
+      aFuture.get ();
+      fail ();
+    }
+    catch (final ExecutionException ex)
+    {
+      assertTrue (ex.getCause () instanceof SMPClientException);
+    }
+  }
+
+  @Test
+  public void testCoalescingIsOptIn ()
+  {
+    assertFalse (SMPClientConfiguration.isCoalesceRequests ());
+    assertFalse (new SMPClientReadOnly (URI.create ("http://localhost/")).isCoalesceRequests ());
+  }
+
+  @Test
+  public void testCoalescingAcrossInstances () throws Exception
+  {
+    final IParticipantIdentifier aPI = SimpleParticipantIdentifier.createWithDefaultScheme ("9915:test");
+    final CountDownLatch aLatch = new CountDownLatch (1);
+    final AtomicInteger aRequests = new AtomicInteger ();
+    final ExecutorService aES = Executors.newFixedThreadPool (10);
+    try
+    {
+      // A new client per lookup
+      final Future <ServiceGroupType> aFuture = _submit (aES, new BlockingClient (aLatch, aRequests), aPI);
+      _waitForRequests (aRequests, 1);
+
+      final List <Future <ServiceGroupType>> aFutures = new ArrayList <Future <ServiceGroupType>> ();
+      for (int i = 0; i < 9; ++i)
+        aFutures.add (_submit (aES, new BlockingClient (aLatch, aRequests), aPI));
+
+      // All other clients wait for the request in flight
+      Thread.sleep (200);
+      assertEquals (1, aRequests.get ());
+      for (final Future <ServiceGroupType> aOther : aFutures)
+        assertFalse (aOther.isDone ());
+
+      aLatch.countDown ();
+      _assertFailed (aFuture);
+      for (final Future <ServiceGroupType> aOther : aFutures)
+        _assertFailed (aOther);
+      assertEquals (1, aRequests.get ());
+    }
+    finally
+    {
+      aES.shutdownNow ();
+    }
+  }
+
+  @Test
+  public void testNoCoalescingWithOtherRequestExecutor () throws Exception
+  {
+    final IParticipantIdentifier aPI = SimpleParticipantIdentifier.createWithDefaultScheme ("9915:test2");
+    final CountDownLatch aLatch = new CountDownLatch (1);
+    final AtomicInteger aRequests = new AtomicInteger ();
+    final BlockingClient aClient1 = new BlockingClient (aLatch, aRequests);
+    final BlockingClient aClient2 = new BlockingClient (aLatch, aRequests);
+    aClient2.setRequestExecutor (new ISMPRequestExecutor ()
+    {
+      public Response execute (@Nonnull final Request aRequest) throws IOException
+      {
+        throw new IOException ("Not called");
+      }
+    });
+    final BlockingClient aClient3 = new BlockingClient (aLatch, aRequests);
+    aClient3.setProxy (new HttpHost ("proxy.example.org", 8080));
+
+    final ExecutorService aES = Executors.newFixedThreadPool (3);
+    try
+    {
+      final Future <ServiceGroupType> aFuture1 = _submit (aES, aClient1, aPI);
+      _waitForRequests (aRequests, 1);
+
+      // Same URI but another request executor or another proxy - must perform
+      // its own request
+      final Future <ServiceGroupType> aFuture2 = _submit (aES, aClient2, aPI);
+      _waitForRequests (aRequests, 2);
+      final Future <ServiceGroupType> aFuture3 = _submit (aES, aClient3, aPI);
+      _waitForRequests (aRequests, 3);
+      assertEquals (3, aRequests.get ());
+
+      aLatch.countDown ();
+      _assertFailed (aFuture1);
+      _assertFailed (aFuture2);
+      _assertFailed (aFuture3);
+      assertEquals (3, aRequests.get ());
+    }
+    finally
+    {
+      aES.shutdownNow ();
+    }
+  }
+}
@@ -0,0 +1,246 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.smpclient;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import org.apache.http.client.fluent.Request;
+import org.junit.Test;
+
+import com.helger.commons.charset.CCharset;
+import com.helger.peppol.sml.SMLDNSEntry;
+import com.helger.peppol.sml.SMLDNSResolver;
+
+/**
+ * Test class for class {@link SMPHttpDnsResolver}.
+ *
+ * @author Philip Helger
+ */
+public final class SMPHttpDnsResolverTest
+{
+  /**
+   * An {@link SMLDNSResolver} answering from an in-memory map without any DNS
+   * query.
+   */
+  private static final class MockDNSResolver extends SMLDNSResolver
+  {
+    private final Map <String, SMLDNSEntry> m_aEntries = new HashMap <String, SMLDNSEntry> ();
+    private final List <String> m_aResolved = Collections.synchronizedList (new ArrayList <String> ());
+    private boolean m_bFail = false;
+
+    public void addEntry (@Nonnull final SMLDNSEntry aEntry)
+    {
+      m_aEntries.put (aEntry.getHostName (), aEntry);
+    }
+
+    @Override
+    public SMLDNSEntry resolve (@Nonnull final String sHostName) throws IOException
+    {
+      m_aResolved.add (sHostName);
+      if (m_bFail)
+        throw new IOException ("DNS timeout");
+      return m_aEntries.get (sHostName);
+    }
+  }
+
+  @Nonnull
+  private static InetAddress _getAddress (final int n) throws UnknownHostException
+  {
+    return InetAddress.getByAddress (new byte [] { 10, 0, 0, (byte) n });
+  }
+
+  @Test
+  public void testResolve () throws Exception
+  {
+    final MockDNSResolver aDNSResolver = new MockDNSResolver ();
+    aDNSResolver.addEntry (new SMLDNSEntry ("b-1.sml.test", null, Collections.singletonList (_getAddress (1))));
+    // CNAME with addresses of the target
+    aDNSResolver.addEntry (new SMLDNSEntry ("b-2.sml.test", "smp.example.org", Collections.singletonList (_getAddress (2))));
+    // CNAME only
+    aDNSResolver.addEntry (new SMLDNSEntry ("b-3.sml.test", "smp3.example.org", new ArrayList <InetAddress> ()));
+    aDNSResolver.addEntry (new SMLDNSEntry ("smp3.example.org", null, Collections.singletonList (_getAddress (3))));
+
+    final SMPHttpDnsResolver aResolver = new SMPHttpDnsResolver (aDNSResolver);
+    assertSame (aDNSResolver, aResolver.getDNSResolver ());
+
+    assertArrayEquals (new InetAddress [] { _getAddress (1) }, aResolver.resolve ("b-1.sml.test"));
+    assertArrayEquals (new InetAddress [] { _getAddress (2) }, aResolver.resolve ("b-2.sml.test"));
+    assertEquals (2, aDNSResolver.m_aResolved.size ());
+
+    aDNSResolver.m_aResolved.clear ();
+    assertArrayEquals (new InetAddress [] { _getAddress (3) }, aResolver.resolve ("b-3.sml.test"));
+    assertEquals (2, aDNSResolver.m_aResolved.size ());
+    assertEquals ("smp3.example.org", aDNSResolver.m_aResolved.get (1));
+
+    // Literals are not resolved
+    aDNSResolver.m_aResolved.clear ();
+    assertArrayEquals (new InetAddress [] { _getAddress (4) }, aResolver.resolve ("10.0.0.4"));
+    assertTrue (aDNSResolver.m_aResolved.isEmpty ());
+
+    try
+    {
+      aResolver.resolve ("b-unknown.sml.test");
+      fail ();
+    }
+    catch (final UnknownHostException ex)
+    {
+      // expected
+    }
+
+    // DNS errors
+    aDNSResolver.m_bFail = true;
+    try
+    {
+      aResolver.resolve ("b-1.sml.test");
+      fail ();
+    }
+    catch (final UnknownHostException ex)
+    {
+      assertNotNull (ex.getCause ());
+    }
+  }
+
+  @Test
+  public void testCNAMELoop () throws Exception
+  {
+    final MockDNSResolver aDNSResolver = new MockDNSResolver ();
+    aDNSResolver.addEntry (new SMLDNSEntry ("a.example.org", "b.example.org", new ArrayList <InetAddress> ()));
+    aDNSResolver.addEntry (new SMLDNSEntry ("b.example.org", "a.example.org", new ArrayList <InetAddress> ()));
+    try
+    {
+      new SMPHttpDnsResolver (aDNSResolver).resolve ("a.example.org");
+      fail ();
+    }
+    catch (final UnknownHostException ex)
+    {
+      // expected
+    }
+    assertEquals (SMPHttpDnsResolver.MAX_CNAME_CHAIN_LENGTH + 1, aDNSResolver.m_aResolved.size ());
+  }
+
+  @Test
+  public void testPooledRequestExecutor () throws Exception
+  {
+    final MockDNSResolver aDNSResolver = new MockDNSResolver ();
+    aDNSResolver.addEntry (new SMLDNSEntry ("b-1.sml.test",
+                                            "smp.example.org",
+                                            Collections.singletonList (InetAddress.getByName ("127.0.0.1"))));
+
+    final ServerSocket aServerSocket = new ServerSocket (0, 1, InetAddress.getByName ("127.0.0.1"));
+    final String [] aHostHeader = new String [1];
+    final Thread aServer = new Thread (new Runnable ()
+    {
+      public void run ()
+      {
+        try
+        {
+          final Socket aSocket = aServerSocket.accept ();
+          try
+          {
+            final BufferedReader aReader = new BufferedReader (new InputStreamReader (aSocket.getInputStream (),
+                                                                                      CCharset.CHARSET_ISO_8859_1_OBJ));
+            String sLine;
+            while ((sLine = aReader.readLine ()) != null && sLine.length () > 0)
+              if (sLine.regionMatches (true, 0, "host:", 0, 5))
+                aHostHeader[0] = sLine.substring (5).trim ();
+            final OutputStream aOS = aSocket.getOutputStream ();
+            aOS.write ("HTTP/1.1 200 OK\r\nContent-Length: 2\r\nConnection: close\r\n\r\nOK".getBytes (CCharset.CHARSET_ISO_8859_1_OBJ));
+            aOS.flush ();
+          }
+          finally
+          {
+            aSocket.close ();
+          }
+        }
+        catch (final IOException ex)
+        {
+          // Test fails because of the missing header
+        }
+      }
+    }, "MockSMPServer");
+    aServer.setDaemon (true);
+    aServer.start ();
+
+    final SMPPooledRequestExecutor aExecutor = new SMPPooledRequestExecutor (aDNSResolver);
+    try
+    {
+      assertTrue (aExecutor.getDnsResolver () instanceof SMPHttpDnsResolver);
+
+      final int nPort = aServerSocket.getLocalPort ();
+      final String sContent = aExecutor.execute (Request.Get ("http://b-1.sml.test:" + nPort + "/x"))
+                                       .returnContent ()
+                                       .asString ();
+      assertEquals ("OK", sContent);
+      aServer.join ();
+
+      // The address came from the resolver, the Host header is still the
+      // participant host name
+      assertEquals (Collections.singletonList ("b-1.sml.test"), aDNSResolver.m_aResolved);
+      assertEquals ("b-1.sml.test:" + nPort, aHostHeader[0]);
+    }
+    finally
+    {
+      aExecutor.close ();
+      aServerSocket.close ();
+    }
+  }
+}
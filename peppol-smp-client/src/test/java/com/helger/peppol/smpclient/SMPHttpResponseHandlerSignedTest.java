@@ -0,0 +1,169 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.smpclient;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import javax.annotation.Nonnull;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Test;
+
+import com.helger.commons.charset.CCharset;
+import com.helger.commons.io.resource.ClassPathResource;
+import com.helger.commons.io.stream.StreamHelper;
+import com.helger.peppol.smp.SignedServiceMetadataType;
+
+/**
+ * Test class for class {@link SMPHttpResponseHandlerSigned}.
+ *
+ * @author Philip Helger
+ */
+public final class SMPHttpResponseHandlerSignedTest
+{
+  /** Contains only the CA that issued the certificate of the fixture */
+  private static final String TRUSTSTORE_LOCATION = "smp-signed/truststore.jks";
+  private static final String TRUSTSTORE_PASSWORD = "peppol";
+
+  @Nonnull
+  private static byte [] _getSignedResponse ()
+  {
+    final byte [] ret = StreamHelper.getAllBytes (new ClassPathResource ("smp-signed/signed-service-metadata.xml").getInputStream ());
+    assertNotNull (ret);
+    return ret;
+  }
+
+  @Nonnull
+  private static HttpResponse _createResponse (@Nonnull final byte [] aBytes)
+  {
+    final HttpResponse ret = new BasicHttpResponse (HttpVersion.HTTP_1_1, 200, "OK");
+    ret.setEntity (new ByteArrayEntity (aBytes));
+    return ret;
+  }
+
+  @Nonnull
+  private static SMPHttpResponseHandlerSigned <SignedServiceMetadataType> _createHandler (final boolean bUnmarshalValidatedDocument)
+  {
+    return new SMPHttpResponseHandlerSigned <SignedServiceMetadataType> (new SMPMarshallerSignedServiceMetadataType (),
+                                                                        bUnmarshalValidatedDocument,
+                                                                        TRUSTSTORE_LOCATION,
+                                                                        TRUSTSTORE_PASSWORD);
+  }
+
+  @Test
+  public void testBasic ()
+  {
+    final SMPHttpResponseHandlerSigned <SignedServiceMetadataType> aHandler = SMPHttpResponseHandlerSigned.create (new SMPMarshallerSignedServiceMetadataType ());
+    assertEquals (SMPHttpResponseHandlerSigned.DEFAULT_UNMARSHAL_VALIDATED_DOCUMENT,
+                  aHandler.isUnmarshalValidatedDocument ());
+    assertEquals (SMPClientConfiguration.getTruststoreLocation (), aHandler.getTruststoreLocation ());
+
+    assertTrue (_createHandler (true).isUnmarshalValidatedDocument ());
+    assertFalse (_createHandler (false).isUnmarshalValidatedDocument ());
+    assertEquals (TRUSTSTORE_LOCATION, _createHandler (true).getTruststoreLocation ());
+  }
+
+  @Test
+  public void testUnmarshalValidatedDocument () throws Exception
+  {
+    final byte [] aBytes = _getSignedResponse ();
+
+    // Parsed once
+    final SignedServiceMetadataType aMetadata = _createHandler (true).handleResponse (_createResponse (aBytes));
+    assertNotNull (aMetadata);
+    assertEquals ("9915:test",
+                  aMetadata.getServiceMetadata ().getServiceInformation ().getParticipantIdentifier ().getValue ());
+    assertNotNull (aMetadata.getSignature ());
+
+    // Parsed again from the buffered bytes
+    final SignedServiceMetadataType aMetadataFromBytes = _createHandler (false).handleResponse (_createResponse (aBytes));
+    assertNotNull (aMetadataFromBytes);
+
+    // Both ways must create the same object
+    final SMPMarshallerSignedServiceMetadataType aMarshaller = new SMPMarshallerSignedServiceMetadataType ();
+    assertEquals (aMarshaller.getAsXMLString (aMetadataFromBytes), aMarshaller.getAsXMLString (aMetadata));
+    assertEquals (aMetadataFromBytes.getServiceMetadata (), aMetadata.getServiceMetadata ());
+  }
+
+  @Test
+  public void testTamperedDocument () throws Exception
+  {
+    final String sResponse = new String (_getSignedResponse (), CCharset.CHARSET_UTF_8_OBJ);
+    assertTrue (sResponse.contains ("https://ap.example.org/as2"));
+    final byte [] aTampered = sResponse.replace ("https://ap.example.org/as2", "https://evil.example.org/as2")
+                                       .getBytes (CCharset.CHARSET_UTF_8_OBJ);
+
+    for (final boolean bUnmarshalValidatedDocument : new boolean [] { true, false })
+      try
+      {
+        _createHandler (bUnmarshalValidatedDocument).handleResponse (_createResponse (aTampered));
+        fail ();
+      }
+      catch (final ClientProtocolException ex)
+      {
+        // expected
+      }
+  }
+
+  @Test
+  public void testUntrustedCertificate () throws Exception
+  {
+    // The default PEPPOL trust store does not contain the test CA
+    final SMPHttpResponseHandlerSigned <SignedServiceMetadataType> aHandler = SMPHttpResponseHandlerSigned.create (new SMPMarshallerSignedServiceMetadataType ());
+    try
+    {
+      aHandler.handleResponse (_createResponse (_getSignedResponse ()));
+      fail ();
+    }
+    catch (final ClientProtocolException ex)
+    {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,238 @@
+/**
+ * Copyright (C) 2015-2016 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Version: MPL 1.1/EUPL 1.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at:
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Copyright The PEPPOL project (http://www.peppol.eu)
+ *
+ * Alternatively, the contents of this file may be used under the
+ * terms of the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL
+ * (the "Licence"); You may not use this work except in compliance
+ * with the Licence.
+ * You may obtain a copy of the Licence at:
+ * http://joinup.ec.europa.eu/software/page/eupl/licence-eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * If you wish to allow use of your version of this file only
+ * under the terms of the EUPL License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the EUPL License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the EUPL License.
+ */
+package com.helger.peppol.smpclient;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpHost;
+import org.apache.http.client.fluent.Request;
+import org.apache.http.client.fluent.Response;
+import org.junit.Test;
+
+import com.helger.peppol.smpclient.exception.SMPClientException;
+
+/**
+ * Test class for class {@link SMPRequestCoalescer}.
+ *
+ * @author Philip Helger
+ */
+public final class SMPRequestCoalescerTest
+{
+  @Test
+  public void testSequential () throws SMPClientException
+  {
+    final SMPRequestCoalescer <String> aCoalescer = new SMPRequestCoalescer <String> ();
+    final AtomicInteger aCount = new AtomicInteger ();
+    final SMPRequestCoalescer.IRequest <String> aRequest = new SMPRequestCoalescer.IRequest <String> ()
+    {
+      public String execute ()
+      {
+        return "r" + aCount.incrementAndGet ();
+      }
+    };
+    // Nothing is cached
+    assertEquals ("r1", aCoalescer.execute ("key", aRequest));
+    assertEquals ("r2", aCoalescer.execute ("key", aRequest));
+    assertEquals (2, aCoalescer.getExecutedCount ());
+    assertEquals (0, aCoalescer.getCoalescedCount ());
+
+    assertNull (aCoalescer.execute ("null", new SMPRequestCoalescer.IRequest <String> ()
+    {
+      public String execute ()
+      {
+        return null;
+      }
+    }));
+  }
+
+  @Test
+  public void testConcurrent () throws Exception
+  {
+    final int nThreads = 10;
+    final SMPRequestCoalescer <String> aCoalescer = new SMPRequestCoalescer <String> ();
+    final AtomicInteger aCount = new AtomicInteger ();
+    final CountDownLatch aStarted = new CountDownLatch (1);
+    final CountDownLatch aRelease = new CountDownLatch (1);
+    final SMPRequestCoalescer.IRequest <String> aRequest = new SMPRequestCoalescer.IRequest <String> ()
+    {
+      public String execute () throws SMPClientException
+      {
+        aCount.incrementAndGet ();
+        aStarted.countDown ();
+        try
+        {
+          aRelease.await ();
+        }
+        catch (final InterruptedException ex)
+        {
+          throw new SMPClientException ("interrupted", ex);
+        }
+        throw new SMPClientException ("failure");
+      }
+    };
+
+    final ExecutorService aES = Executors.newFixedThreadPool (nThreads);
+    try
+    {
+      final List <Future <String>> aFutures = new ArrayList <Future <String>> ();
+      aFutures.add (aES.submit (new CallableRequest (aCoalescer, aRequest)));
+      aStarted.await ();
+      for (int i = 1; i < nThreads; ++i)
+        aFutures.add (aES.submit (new CallableRequest (aCoalescer, aRequest)));
+
+      // Wait until all others are waiting for the first one
+      final long nEnd = System.currentTimeMillis () + 10000;
+      while (aCoalescer.getCoalescedCount () < nThreads - 1 && System.currentTimeMillis () < nEnd)
+        Thread.sleep (10);
+      aRelease.countDown ();
+
+      // All share the same exception
+      Throwable aFirst = null;
+      for (final Future <String> aFuture : aFutures)
+        try
+        {
+          aFuture.get ();
+          fail ();
+        }
+        catch (final ExecutionException ex)
+        {
+          assertTrue (ex.getCause () instanceof SMPClientException);
+          if (aFirst == null)
+            aFirst = ex.getCause ();
+          else
+            assertSame (aFirst, ex.getCause ());
+        }
+      assertEquals (1, aCount.get ());
+      assertEquals (1, aCoalescer.getExecutedCount ());
+      assertEquals (nThreads - 1, aCoalescer.getCoalescedCount ());
+    }
+    finally
+    {
+      aES.shutdown ();
+      aES.awaitTermination (10, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test
+  public void testRequestKey ()
+  {
+    final ISMPRequestExecutor aExecutor1 = new ISMPRequestExecutor ()
+    {
+      public Response execute (final Request aRequest) throws IOException
+      {
+        throw new IOException ("Not called");
+      }
+    };
+    final ISMPRequestExecutor aExecutor2 = new ISMPRequestExecutor ()
+    {
+      public Response execute (final Request aRequest) throws IOException
+      {
+        throw new IOException ("Not called");
+      }
+    };
+    final String sURI = "http://localhost/iso6523-actorid-upis%3A%3A9915%3Atest";
+    final SMPRequestCoalescer.RequestKey aKey = new SMPRequestCoalescer.RequestKey (sURI,
+                                                                                    aExecutor1,
+                                                                                    null,
+                                                                                    SMPClientReadOnly.class);
+    final SMPRequestCoalescer.RequestKey aSameKey = new SMPRequestCoalescer.RequestKey (new String (sURI),
+                                                                                        aExecutor1,
+                                                                                        null,
+                                                                                        SMPClientReadOnly.class);
+    assertEquals (aKey, aSameKey);
+    assertEquals (aKey.hashCode (), aSameKey.hashCode ());
+
+    // Different URI, executor, proxy or client class
+    assertFalse (aKey.equals (new SMPRequestCoalescer.RequestKey (sURI + "/services",
+                                                                  aExecutor1,
+                                                                  null,
+                                                                  SMPClientReadOnly.class)));
+    assertFalse (aKey.equals (new SMPRequestCoalescer.RequestKey (sURI, aExecutor2, null, SMPClientReadOnly.class)));
+    assertFalse (aKey.equals (new SMPRequestCoalescer.RequestKey (sURI,
+                                                                  aExecutor1,
+                                                                  new HttpHost ("proxy", 8080),
+                                                                  SMPClientReadOnly.class)));
+    assertFalse (aKey.equals (new SMPRequestCoalescer.RequestKey (sURI, aExecutor1, null, SMPClient.class)));
+    assertEquals (new SMPRequestCoalescer.RequestKey (sURI,
+                                                      aExecutor1,
+                                                      new HttpHost ("proxy", 8080),
+                                                      SMPClientReadOnly.class),
+                  new SMPRequestCoalescer.RequestKey (sURI,
+                                                      aExecutor1,
+                                                      new HttpHost ("proxy", 8080),
+                                                      SMPClientReadOnly.class));
+  }
+
+  private static final class CallableRequest implements Callable <String>
+  {
+    private final SMPRequestCoalescer <String> m_aCoalescer;
+    private final SMPRequestCoalescer.IRequest <String> m_aRequest;
+
+    public CallableRequest (final SMPRequestCoalescer <String> aCoalescer,
+                            final SMPRequestCoalescer.IRequest <String> aRequest)
+    {
+      m_aCoalescer = aCoalescer;
+      m_aRequest = aRequest;
+    }
+
+    public String call () throws SMPClientException
+    {
+      return m_aCoalescer.execute ("key", m_aRequest);
+    }
+  }
+}